@@ -79,19 +79,9 @@ create table train_carriages
 create table seats
 (
     seat_id     bigint auto_increment,
-    carriage_id bigint          not null,
-    seat_number varchar(10)     not null comment '座位号如1A, 2B等',
-    seat_type   varchar(10)     null comment '靠窗, 靠过道, 中间等',
-    date_1      bigint unsigned null comment '日期位图字段1',
-    date_2      bigint unsigned null comment '日期位图字段2',
-    date_3      bigint unsigned null comment '日期位图字段3',
-    date_4      bigint unsigned null comment '日期位图字段4',
-    date_5      bigint unsigned null comment '日期位图字段5',
-    date_6      bigint unsigned null comment '日期位图字段6',
-    date_7      bigint unsigned null comment '日期位图字段7',
-    date_8      bigint unsigned null comment '日期位图字段8',
-    date_9      bigint unsigned null comment '日期位图字段9',
-    date_10     bigint unsigned null comment '日期位图字段10',
+    carriage_id bigint      not null,
+    seat_number varchar(10) not null comment '座位号如1A, 2B等',
+    seat_type   varchar(10) null comment '靠窗, 靠过道, 中间等',
     primary key (carriage_id, seat_id),
     constraint uk_carriage_seat_number
         unique (carriage_id, seat_number),
@@ -104,6 +94,23 @@ create table seats
 create index idx_available_seat
     on seats (carriage_id, seat_type);
 
+create table seat_occupancy
+(
+    occupancy_id     bigint auto_increment
+        primary key,
+    seat_id          bigint          not null,
+    travel_date      date            not null,
+    word_index       int default 0   not null comment '多字位图的字下标，每个字覆盖32个站点',
+    occupancy_bitmap bigint unsigned not null comment '区间占用位图',
+    constraint uk_seat_date_word
+        unique (seat_id, travel_date, word_index),
+    constraint fk_occupancy_seat
+        foreign key (seat_id) references seats (seat_id)
+);
+
+create index idx_occupancy_date
+    on seat_occupancy (travel_date);
+
 create index idx_carriage_type
     on train_carriages (type_id);
 
@@ -217,8 +224,28 @@ create table orders
 create index idx_order_time
     on orders (order_time);
 
-create index idx_user
-    on orders (user_id);
+create index idx_user_order_time
+    on orders (user_id, order_time, order_id);
+
+create table order_outbox
+(
+    outbox_id    bigint auto_increment
+        primary key,
+    order_number varchar(32) not null,
+    exchange     varchar(64) not null,
+    routing_key  varchar(64) not null,
+    payload      text        not null,
+    status       tinyint     not null comment '0-待投递,1-已投递',
+    attempts     int         not null,
+    created_time datetime    not null,
+    sent_time    datetime    null,
+    constraint uk_outbox_order_number
+        unique (order_number)
+)
+    charset = utf8mb4;
+
+create index idx_order_outbox_status
+    on order_outbox (status, outbox_id);
 
 create table tickets
 (
@@ -278,6 +305,9 @@ create index idx_order_status
 create index idx_passenger_order
     on tickets (passenger_id, order_id);
 
+create index idx_passenger_created
+    on tickets (passenger_id, created_time, ticket_id);
+
 create index idx_status_created
     on tickets (ticket_status, created_time);
 
@@ -304,6 +334,59 @@ create table user_passenger_relations
 create index passenger_id
     on user_passenger_relations (passenger_id);
 
+create table waitlist_orders
+(
+    waitlist_id  bigint auto_increment
+        primary key,
+    order_number varchar(32)                        not null comment 'WL+日期+序列',
+    user_id      bigint                             not null,
+    order_time   datetime default CURRENT_TIMESTAMP not null,
+    total_amount decimal(10, 2)                     not null,
+    expire_time  datetime                           not null comment '开车前2小时',
+    order_status tinyint  default 0                 null comment '0-待兑现,1-部分成功,2-全部成功,3-已取消',
+    item_count   int                                null,
+    constraint uk_waitlist_order_number
+        unique (order_number),
+    constraint fk_waitlist_user
+        foreign key (user_id) references users (user_id)
+)
+    charset = utf8mb4;
+
+create index idx_waitlist_user
+    on waitlist_orders (user_id, order_status);
+
+create index idx_waitlist_user_time
+    on waitlist_orders (user_id, order_time, waitlist_id);
+
+create table waitlist_items
+(
+    item_id           bigint auto_increment
+        primary key,
+    waitlist_id       bigint                             not null,
+    passenger_id      bigint                             not null,
+    train_id          int                                not null,
+    departure_stop_id bigint                             not null,
+    arrival_stop_id   bigint                             not null,
+    travel_date       date                               not null,
+    carriage_type_id  int                                not null,
+    ticket_type       tinyint                            not null comment '1-成人,2-儿童,3-学生,4-残疾,5-军人',
+    item_status       tinyint  default 0                 null comment '0-待兑现,1-兑现中,2-兑现成功,3-兑现失败',
+    created_time      datetime default CURRENT_TIMESTAMP null,
+    price             decimal(10, 2)                     null,
+    constraint fk_item_passenger
+        foreign key (passenger_id) references passengers (passenger_id),
+    constraint fk_item_waitlist
+        foreign key (waitlist_id) references waitlist_orders (waitlist_id)
+)
+    charset = utf8mb4;
+
+create index idx_waitlist_match
+    on waitlist_items (train_id, travel_date, departure_stop_id, arrival_stop_id, carriage_type_id,
+                       item_status);
+
+create index idx_waitlist_priority
+    on waitlist_items (created_time);
+
 create index idx_phone
     on users (phone_number);
 
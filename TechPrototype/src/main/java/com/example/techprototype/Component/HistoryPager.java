@@ -0,0 +1,140 @@
+package com.example.techprototype.Component;
+
+import com.example.techprototype.Util.HistoryCursor;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * 用户历史记录（订单、车票、候补订单）的游标分页和流式导出
+ * 按（时间，ID）倒序的键集分页，每页只读取页大小+1行，翻页耗时与历史记录总数无关；
+ * 请求既没有游标也没有页大小时按原接口返回全部记录（逐批读取），不分页的调用方不受影响。
+ * 导出时逐批读取、逐批转换并写出JSON数组，内存中最多只有一批记录
+ */
+@Component
+public class HistoryPager {
+
+    @Value("${history.page.default-size:20}")
+    private int defaultPageSize = 20;
+
+    @Value("${history.page.max-size:100}")
+    private int maxPageSize = 100;
+
+    @Value("${history.export.batch-size:500}")
+    private int exportBatchSize = 500;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    /**
+     * 按键集读取一批记录
+     */
+    @FunctionalInterface
+    public interface KeysetQuery<E> {
+        /**
+         * @param after 上一批最后一行的位置，为null时从最新的记录开始
+         * @param limit 最多读取的行数
+         */
+        List<E> fetch(HistoryCursor after, int limit);
+    }
+
+    /**
+     * 一页记录和下一页的游标，没有更多记录时游标为null
+     */
+    public static final class Page<E> {
+        private final List<E> items;
+        private final String nextCursor;
+
+        private Page(List<E> items, String nextCursor) {
+            this.items = items;
+            this.nextCursor = nextCursor;
+        }
+
+        public List<E> getItems() {
+            return items;
+        }
+
+        public String getNextCursor() {
+            return nextCursor;
+        }
+    }
+
+    /**
+     * 读取一页，多读一行用于判断是否还有下一页；游标和页大小都未指定时返回全部记录
+     * @throws IllegalArgumentException 游标格式不正确
+     */
+    public <E> Page<E> page(String cursor, Integer size, KeysetQuery<E> query, Function<E, HistoryCursor> keyOf) {
+        if ((cursor == null || cursor.isBlank()) && size == null) {
+            return new Page<>(readAll(query, keyOf), null);
+        }
+        int pageSize = pageSize(size);
+        List<E> rows = query.fetch(HistoryCursor.decode(cursor), pageSize + 1);
+        if (rows.size() <= pageSize) {
+            return new Page<>(rows, null);
+        }
+        List<E> items = rows.subList(0, pageSize);
+        return new Page<>(items, keyOf.apply(items.get(pageSize - 1)).encode());
+    }
+
+    /**
+     * 按导出批大小逐批读取全部记录
+     */
+    private <E> List<E> readAll(KeysetQuery<E> query, Function<E, HistoryCursor> keyOf) {
+        List<E> rows = new ArrayList<>();
+        HistoryCursor after = null;
+        while (true) {
+            List<E> batch = query.fetch(after, exportBatchSize);
+            rows.addAll(batch);
+            if (batch.size() < exportBatchSize) {
+                return rows;
+            }
+            after = keyOf.apply(batch.get(batch.size() - 1));
+        }
+    }
+
+    /**
+     * 请求的页大小，未指定时取默认值，超过上限时取上限
+     */
+    public int pageSize(Integer size) {
+        if (size == null || size <= 0) {
+            return defaultPageSize;
+        }
+        return Math.min(size, maxPageSize);
+    }
+
+    /**
+     * 把全部记录写成一个JSON数组，每批转换后立即写出并刷新
+     * @param converter 把一批实体转换为响应对象，可以跳过部分实体
+     */
+    public <E, D> void export(OutputStream out, KeysetQuery<E> query, Function<E, HistoryCursor> keyOf,
+                              Function<List<E>, List<D>> converter) throws IOException {
+        int rows = 0;
+        try (JsonGenerator generator = objectMapper.createGenerator(out)) {
+            generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+            generator.writeStartArray();
+            HistoryCursor after = null;
+            while (true) {
+                List<E> batch = query.fetch(after, exportBatchSize);
+                for (D item : converter.apply(batch)) {
+                    generator.writeObject(item);
+                }
+                generator.flush();
+                rows += batch.size();
+                if (batch.size() < exportBatchSize) {
+                    break;
+                }
+                after = keyOf.apply(batch.get(batch.size() - 1));
+            }
+            generator.writeEndArray();
+        }
+        System.out.println("历史记录导出完成: " + rows + "行");
+    }
+}
@@ -0,0 +1,75 @@
+package com.example.techprototype.Component;
+
+import com.example.techprototype.Entity.Train;
+import com.example.techprototype.Entity.TrainStop;
+import com.example.techprototype.Util.IntervalMaskTable;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 车次区间掩码表缓存
+ * 每个车次首次使用时根据时刻表缓存中的停靠站生成一次掩码表，时刻表变更时失效
+ */
+@Component
+public class IntervalMaskCache {
+    
+    @Autowired
+    private TimetableCache timetableCache;
+    
+    // 车次ID -> 区间掩码表
+    private final Map<Integer, IntervalMaskTable> tables = new ConcurrentHashMap<>();
+    
+    /**
+     * 获取车次的区间掩码表，不存在时按停靠站生成
+     */
+    public IntervalMaskTable getTable(Integer trainId) {
+        return tables.computeIfAbsent(trainId, this::loadTable);
+    }
+    
+    /**
+     * 查询车次的区间掩码，返回的数组是共享的，不能修改
+     */
+    public long[] getMask(Integer trainId, int departureSequence, int arrivalSequence) {
+        return getTable(trainId).getMask(departureSequence, arrivalSequence);
+    }
+    
+    /**
+     * 一次性加载所有车次的掩码表
+     * @return 加载的车次数
+     */
+    public int loadAll() {
+        TimetableSnapshot snapshot = timetableCache.getSnapshot();
+        int loaded = 0;
+        for (Train train : snapshot.getTrains()) {
+            List<TrainStop> stops = snapshot.getStops(train.getTrainId());
+            if (!stops.isEmpty()) {
+                tables.put(train.getTrainId(), build(stops));
+                loaded++;
+            }
+        }
+        return loaded;
+    }
+    
+    /**
+     * 使车次的掩码表失效，下次使用时重新生成
+     */
+    public void evict(Integer trainId) {
+        tables.remove(trainId);
+    }
+    
+    private IntervalMaskTable loadTable(Integer trainId) {
+        return build(timetableCache.getStops(trainId));
+    }
+    
+    /**
+     * 按站序排列的停靠站生成掩码表，站数取最后一站的站序
+     */
+    private IntervalMaskTable build(List<TrainStop> stops) {
+        int stationCount = stops.isEmpty() ? 0 : stops.get(stops.size() - 1).getSequenceNumber();
+        return IntervalMaskTable.build(stationCount);
+    }
+}
@@ -0,0 +1,115 @@
+package com.example.techprototype.Component;
+
+import com.example.techprototype.Config.RabbitMQConfig;
+import com.example.techprototype.DTO.OrderMessage;
+import jakarta.annotation.PreDestroy;
+import org.springframework.amqp.core.BatchMessageListener;
+import org.springframework.amqp.core.Message;
+import org.springframework.amqp.rabbit.config.SimpleRabbitListenerContainerFactory;
+import org.springframework.amqp.rabbit.core.RabbitTemplate;
+import org.springframework.amqp.rabbit.listener.SimpleMessageListenerContainer;
+import org.springframework.amqp.support.converter.MessageConverter;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.CommandLineRunner;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 订单分区队列消费者
+ * 每个分区队列一个单消费者容器，分区内的订单在同一线程中串行选座和落库，不需要分布式锁。
+ * 收到不属于本分区的消息（分区数调整前发出的，或旧的单一订单队列中的）时先转发到所属分区再确认
+ */
+@Component
+public class OrderPartitionConsumers implements CommandLineRunner {
+
+    // 旧的单一订单队列对应的分区号，其中的消息全部转发
+    static final int LEGACY_PARTITION = -1;
+
+    @Autowired
+    private SimpleRabbitListenerContainerFactory orderBatchListenerContainerFactory;
+
+    @Autowired
+    private MessageConverter jsonMessageConverter;
+
+    @Autowired
+    private RabbitTemplate rabbitTemplate;
+
+    @Autowired
+    private OrderPartitioner orderPartitioner;
+
+    @Autowired
+    private OrderProcessor orderProcessor;
+
+    // 等待转发消息发布确认的超时时间
+    @Value("${order.outbox.confirm-timeout-ms:5000}")
+    private long confirmTimeoutMillis = 5000;
+
+    private final List<SimpleMessageListenerContainer> containers = new ArrayList<>();
+
+    /**
+     * 应用启动完成后开始消费各分区队列
+     */
+    @Override
+    public void run(String... args) {
+        containers.add(startContainer(RabbitMQConfig.ORDER_QUEUE, LEGACY_PARTITION));
+        for (int partition = 0; partition < orderPartitioner.getConsumedPartitionCount(); partition++) {
+            containers.add(startContainer(orderPartitioner.queueName(partition), partition));
+        }
+        System.out.println("订单分区消费者已启动: " + containers.size() + "个队列");
+    }
+
+    @PreDestroy
+    public void stop() {
+        for (SimpleMessageListenerContainer container : containers) {
+            container.stop();
+        }
+        containers.clear();
+    }
+
+    /**
+     * 处理一个分区队列的一批消息：不属于本分区的先转发，其余交给订单处理器
+     * 转发失败时抛出异常，整批消息重新入队，已处理的订单在重投时按订单号去重
+     */
+    public void onMessages(int partition, List<Message> messages) {
+        List<OrderMessage> owned = new ArrayList<>();
+        List<OrderMessage> misrouted = new ArrayList<>();
+        for (Message message : messages) {
+            OrderMessage orderMessage = (OrderMessage) jsonMessageConverter.fromMessage(message);
+            if (orderPartitioner.partitionOf(orderMessage.getTrainId(), orderMessage.getTravelDate()) == partition) {
+                owned.add(orderMessage);
+            } else {
+                misrouted.add(orderMessage);
+            }
+        }
+
+        if (!misrouted.isEmpty()) {
+            forward(misrouted);
+            System.out.println("分区" + partition + "转发不属于本分区的订单消息: " + misrouted.size() + "条");
+        }
+        if (!owned.isEmpty()) {
+            orderProcessor.processOrders(owned);
+        }
+    }
+
+    private void forward(List<OrderMessage> orderMessages) {
+        rabbitTemplate.invoke(operations -> {
+            for (OrderMessage orderMessage : orderMessages) {
+                operations.convertAndSend(RabbitMQConfig.ORDER_EXCHANGE,
+                        orderPartitioner.routingKey(orderMessage.getTrainId(), orderMessage.getTravelDate()), orderMessage);
+            }
+            operations.waitForConfirmsOrDie(confirmTimeoutMillis);
+            return null;
+        });
+    }
+
+    private SimpleMessageListenerContainer startContainer(String queueName, int partition) {
+        SimpleMessageListenerContainer container = orderBatchListenerContainerFactory.createListenerContainer();
+        container.setQueueNames(queueName);
+        container.setMessageListener((BatchMessageListener) messages -> onMessages(partition, messages));
+        container.start();
+        return container;
+    }
+}
@@ -0,0 +1,93 @@
+package com.example.techprototype.Component;
+
+import com.example.techprototype.Config.RabbitMQConfig;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.LocalDate;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * 订单队列分区
+ * 按 车次+日期 一致性哈希到固定数量的分区，同一车次同一天的订单始终进入同一个分区队列，
+ * 由该分区唯一的活动消费者串行选座；不同车次落在不同分区上并行处理。
+ * 分区数变化时只有约 1/N 的车次日期换分区，旧分区里剩余的消息由消费端转发到新分区
+ */
+@Component
+public class OrderPartitioner {
+
+    // 路由使用的分区数
+    @Value("${order.partition.count:8}")
+    private int partitionCount = 8;
+
+    // 缩容后仍需消费转发的旧分区数，旧分区队列清空后改回0
+    @Value("${order.partition.drain-count:0}")
+    private int drainCount = 0;
+
+    // 每个分区在哈希环上的虚拟节点数
+    @Value("${order.partition.virtual-nodes:160}")
+    private int virtualNodes = 160;
+
+    // 哈希值 -> 分区
+    private final TreeMap<Long, Integer> ring = new TreeMap<>();
+
+    @PostConstruct
+    public void init() {
+        ring.clear();
+        for (int partition = 0; partition < partitionCount; partition++) {
+            for (int node = 0; node < virtualNodes; node++) {
+                ring.put(hash(queueName(partition) + "#" + node), partition);
+            }
+        }
+        System.out.println("订单队列分区初始化完成: " + partitionCount + "个分区, 消费" + getConsumedPartitionCount() + "个分区队列");
+    }
+
+    /**
+     * 计算车次日期所属的分区
+     */
+    public int partitionOf(Integer trainId, LocalDate travelDate) {
+        Map.Entry<Long, Integer> entry = ring.ceilingEntry(hash(trainId + ":" + travelDate));
+        return entry != null ? entry.getValue() : ring.firstEntry().getValue();
+    }
+
+    public String routingKey(Integer trainId, LocalDate travelDate) {
+        return routingKey(partitionOf(trainId, travelDate));
+    }
+
+    public String routingKey(int partition) {
+        return RabbitMQConfig.ORDER_PARTITION_ROUTING_KEY_PREFIX + partition;
+    }
+
+    public String queueName(int partition) {
+        return RabbitMQConfig.ORDER_PARTITION_QUEUE_PREFIX + partition;
+    }
+
+    public int getPartitionCount() {
+        return partitionCount;
+    }
+
+    /**
+     * 需要声明和消费的分区队列数，包括缩容后等待清空的旧分区
+     */
+    public int getConsumedPartitionCount() {
+        return Math.max(partitionCount, drainCount);
+    }
+
+    private long hash(String key) {
+        try {
+            byte[] digest = MessageDigest.getInstance("MD5").digest(key.getBytes(StandardCharsets.UTF_8));
+            long hash = 0;
+            for (int i = 0; i < 8; i++) {
+                hash = (hash << 8) | (digest[i] & 0xFF);
+            }
+            return hash;
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("MD5不可用", e);
+        }
+    }
+}
@@ -1,127 +1,130 @@
 package com.example.techprototype.Component;
 
+import com.example.techprototype.DAO.OrderBatchDAO;
 import com.example.techprototype.DTO.OrderMessage;
 import com.example.techprototype.Entity.Order;
 import com.example.techprototype.Entity.Ticket;
-import com.example.techprototype.Entity.TicketInventory;
 import com.example.techprototype.Enums.OrderStatus;
 import com.example.techprototype.Enums.TicketStatus;
-import com.example.techprototype.Repository.OrderRepository;
-import com.example.techprototype.Repository.TicketRepository;
 import com.example.techprototype.Service.SeatService;
 import com.example.techprototype.Service.RedisService;
-import com.example.techprototype.DAO.TicketInventoryDAO;
-import org.springframework.amqp.rabbit.annotation.RabbitListener;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
-import org.springframework.transaction.annotation.Transactional;
 
 import java.math.BigDecimal;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 
 @Component
 public class OrderProcessor {
     
     @Autowired
-    private OrderRepository orderRepository;
+    private SeatService seatService;
     
     @Autowired
-    private TicketRepository ticketRepository;
+    private TicketPriceCache ticketPriceCache;
     
     @Autowired
-    private SeatService seatService;
-    
-    @Autowired
-    private TicketInventoryDAO ticketInventoryDAO;
+    private OrderBatchDAO orderBatchDAO;
     
     @Autowired
     private RedisService redisService;
+
+    @Autowired
+    private PassengerItineraryIndex passengerItineraryIndex;
     
-    @RabbitListener(queues = "order.queue")
-    @Transactional
-    public void processOrder(OrderMessage orderMessage) {
-        System.out.println("收到订单消息: " + orderMessage.getOrderNumber());
+    /**
+     * 批量处理一个分区的订单消息，由分区消费者调用
+     * 一批消息一次去重、一次选座、一个事务批量插入订单和车票，返回后整批确认；
+     * 整批插入失败时逐个订单重试，单个订单失败时释放其座位并回滚库存，不影响同批其他订单；
+     * 插入事务提交后车票已带回ID，再写入乘客行程索引
+     */
+    public void processOrders(List<OrderMessage> orderMessages) {
+        System.out.println("收到订单消息批次: " + orderMessages.size() + "条");
         
-        // 记录已创建的车票，用于异常时回滚
-        List<Ticket> createdTickets = new ArrayList<>();
-        Order createdOrder = null;
+        // 1. 去重：批内重复和已创建的订单都跳过
+        Map<String, OrderMessage> messagesByNumber = new LinkedHashMap<>();
+        for (OrderMessage message : orderMessages) {
+            messagesByNumber.putIfAbsent(message.getOrderNumber(), message);
+        }
+        for (String existing : orderBatchDAO.findExistingOrderNumbers(messagesByNumber.keySet())) {
+            messagesByNumber.remove(existing);
+            System.out.println("订单已创建，忽略重复消息: " + existing);
+        }
+        if (messagesByNumber.isEmpty()) {
+            return;
+        }
         
+        // 2. 构建订单和车票，整批一次选座
+        List<Order> orders = new ArrayList<>();
+        Map<String, List<Ticket>> ticketsByNumber = new LinkedHashMap<>();
+        List<Ticket> allTickets = new ArrayList<>();
         try {
-            // 1. 创建订单
-            Order order = new Order();
-            order.setOrderNumber(orderMessage.getOrderNumber());
-            order.setUserId(orderMessage.getUserId());
-            order.setOrderTime(LocalDateTime.now());
-            order.setOrderStatus((byte) OrderStatus.PENDING_PAYMENT.getCode());
-            
-            // 计算总金额
-            BigDecimal totalAmount = calculateTotalAmount(orderMessage);
-            order.setTotalAmount(totalAmount);
-            
-            orderRepository.save(order);
-            createdOrder = order;
-            System.out.println("订单创建成功: " + order.getOrderNumber() + ", ID: " + order.getOrderId());
-            
-            // 2. 创建车票记录（未支付状态）
-            List<Ticket> tickets = new ArrayList<>();
-            
-            for (OrderMessage.PassengerInfo passengerInfo : orderMessage.getPassengers()) {
-                Ticket ticket = new Ticket();
-                ticket.setTicketNumber(generateTicketNumber());
-                ticket.setOrderId(order.getOrderId());
-                ticket.setPassengerId(passengerInfo.getPassengerId());
-                ticket.setTrainId(orderMessage.getTrainId());
-                ticket.setDepartureStopId(orderMessage.getDepartureStopId());
-                ticket.setArrivalStopId(orderMessage.getArrivalStopId());
-                ticket.setTravelDate(orderMessage.getTravelDate());
-                ticket.setCarriageTypeId(passengerInfo.getCarriageTypeId());
-                // 从库存表获取基础票价，然后根据票种计算优惠
-                BigDecimal ticketPrice = calculateTicketPrice(
-                    orderMessage.getTrainId(),
-                    orderMessage.getDepartureStopId(),
-                    orderMessage.getArrivalStopId(),
-                    orderMessage.getTravelDate(),
-                    passengerInfo.getCarriageTypeId(),
-                    passengerInfo.getTicketType()
-                );
-                ticket.setPrice(ticketPrice);
-                ticket.setTicketStatus((byte) TicketStatus.PENDING.getCode());
-                ticket.setTicketType(passengerInfo.getTicketType());
-                ticket.setCreatedTime(LocalDateTime.now());
-                
-                // 分配座位
-                seatService.assignSeat(ticket);
-                
-                tickets.add(ticket);
+            for (OrderMessage message : messagesByNumber.values()) {
+                List<Ticket> tickets = buildTickets(message);
+                orders.add(buildOrder(message, tickets));
+                ticketsByNumber.put(message.getOrderNumber(), tickets);
+                allTickets.addAll(tickets);
             }
-            
-            ticketRepository.saveAll(tickets);
-            createdTickets.addAll(tickets);
-            System.out.println("车票创建成功: " + tickets.size() + "张");
-            
+            seatService.assignSeats(allTickets);
         } catch (Exception e) {
-            System.err.println("订单处理失败: " + e.getMessage());
-            e.printStackTrace();
-            
-            // 回滚库存
-            rollbackInventory(orderMessage);
-            
-            // 清理已创建的数据
-            cleanupCreatedData(createdTickets, createdOrder);
-            
-            // 重新抛出异常，确保事务回滚
-            throw new RuntimeException("订单处理失败，已回滚库存: " + e.getMessage(), e);
+            System.err.println("订单批次准备失败，回滚整批库存: " + e.getMessage());
+            for (OrderMessage message : messagesByNumber.values()) {
+                compensate(message, ticketsByNumber.getOrDefault(message.getOrderNumber(), List.of()));
+            }
+            return;
+        }
+        
+        // 3. 一个事务批量插入
+        try {
+            orderBatchDAO.insertOrdersWithTickets(orders, ticketsByNumber);
+            addToItineraryIndex(allTickets);
+            System.out.println("订单批次创建成功: " + orders.size() + "个订单, " + allTickets.size() + "张车票");
+            return;
+        } catch (Exception e) {
+            System.err.println("订单批次插入失败，逐个订单重试: " + e.getMessage());
+        }
+        
+        for (Order order : orders) {
+            List<Ticket> tickets = ticketsByNumber.get(order.getOrderNumber());
+            try {
+                orderBatchDAO.insertOrdersWithTickets(List.of(order), Map.of(order.getOrderNumber(), tickets));
+                addToItineraryIndex(tickets);
+            } catch (Exception e) {
+                System.err.println("订单处理失败: " + order.getOrderNumber() + ", " + e.getMessage());
+                compensate(messagesByNumber.get(order.getOrderNumber()), tickets);
+            }
         }
     }
     
-    private BigDecimal calculateTotalAmount(OrderMessage orderMessage) {
-        BigDecimal totalAmount = BigDecimal.ZERO;
-        
+    private Order buildOrder(OrderMessage orderMessage, List<Ticket> tickets) {
+        Order order = new Order();
+        order.setOrderNumber(orderMessage.getOrderNumber());
+        order.setUserId(orderMessage.getUserId());
+        order.setOrderTime(LocalDateTime.now());
+        order.setOrderStatus((byte) OrderStatus.PENDING_PAYMENT.getCode());
+        order.setTotalAmount(tickets.stream().map(Ticket::getPrice).reduce(BigDecimal.ZERO, BigDecimal::add));
+        order.setTicketCount(tickets.size());
+        return order;
+    }
+    
+    private List<Ticket> buildTickets(OrderMessage orderMessage) {
+        List<Ticket> tickets = new ArrayList<>();
         for (OrderMessage.PassengerInfo passengerInfo : orderMessage.getPassengers()) {
+            Ticket ticket = new Ticket();
+            ticket.setTicketNumber(generateTicketNumber());
+            ticket.setPassengerId(passengerInfo.getPassengerId());
+            ticket.setTrainId(orderMessage.getTrainId());
+            ticket.setDepartureStopId(orderMessage.getDepartureStopId());
+            ticket.setArrivalStopId(orderMessage.getArrivalStopId());
+            ticket.setTravelDate(orderMessage.getTravelDate());
+            ticket.setCarriageTypeId(passengerInfo.getCarriageTypeId());
+            // 从票价缓存获取基础票价，然后根据票种计算优惠
             BigDecimal ticketPrice = calculateTicketPrice(
                 orderMessage.getTrainId(),
                 orderMessage.getDepartureStopId(),
@@ -130,30 +133,30 @@ public class OrderProcessor {
                 passengerInfo.getCarriageTypeId(),
                 passengerInfo.getTicketType()
             );
-            totalAmount = totalAmount.add(ticketPrice);
+            ticket.setPrice(ticketPrice);
+            ticket.setTicketStatus((byte) TicketStatus.PENDING.getCode());
+            ticket.setTicketType(passengerInfo.getTicketType());
+            ticket.setCreatedTime(LocalDateTime.now());
+            
+            tickets.add(ticket);
         }
-        
-        return totalAmount;
+        return tickets;
     }
     
     /**
-     * 计算票价 - 从库存信息获取基础票价，然后根据票种计算优惠
+     * 计算票价 - 从票价缓存获取基础票价，然后根据票种计算优惠
      */
     private BigDecimal calculateTicketPrice(Integer trainId, Long departureStopId, Long arrivalStopId, 
                                           LocalDate travelDate, Integer carriageTypeId, Byte ticketType) {
-        // 从库存信息获取基础票价
-        Optional<TicketInventory> inventory = ticketInventoryDAO.findByKey(trainId, departureStopId, arrivalStopId, travelDate, carriageTypeId);
-        
-        System.out.println("查询库存 - 车次:" + trainId + ", 出发站:" + departureStopId + ", 到达站:" + arrivalStopId + 
-                          ", 日期:" + travelDate + ", 车厢类型:" + carriageTypeId + ", 找到:" + inventory.isPresent());
+        Optional<BigDecimal> price = ticketPriceCache.getBasePrice(trainId, departureStopId, arrivalStopId, travelDate, carriageTypeId);
         
-        if (inventory.isEmpty()) {
-            System.out.println("未找到库存记录，使用默认票价100元");
+        if (price.isEmpty()) {
+            System.out.println("未找到库存记录，使用默认票价100元: 车次" + trainId + ", 出发站" + departureStopId +
+                              ", 到达站" + arrivalStopId + ", 日期" + travelDate + ", 车厢类型" + carriageTypeId);
             return BigDecimal.valueOf(100.0); // 默认票价
         }
         
-        BigDecimal basePrice = inventory.get().getPrice();
-        System.out.println("找到库存记录，基础票价:" + basePrice + "元");
+        BigDecimal basePrice = price.get();
         
         // 根据票种计算优惠
         BigDecimal finalPrice;
@@ -178,10 +181,36 @@ public class OrderProcessor {
                 break;
         }
         
-        System.out.println("票种:" + ticketType + ", 最终票价:" + finalPrice + "元");
         return finalPrice;
     }
     
+    /**
+     * 订单已提交，索引写入失败不能再触发重试或补偿，只记录日志
+     */
+    private void addToItineraryIndex(List<Ticket> tickets) {
+        try {
+            passengerItineraryIndex.add(tickets);
+        } catch (Exception e) {
+            System.err.println("写入乘客行程索引失败: " + e.getMessage());
+        }
+    }
+    
+    /**
+     * 订单无法创建时释放已分配的座位并回滚库存
+     */
+    private void compensate(OrderMessage orderMessage, List<Ticket> tickets) {
+        for (Ticket ticket : tickets) {
+            if (ticket.getSeatNumber() != null && ticket.getCarriageNumber() != null) {
+                try {
+                    seatService.releaseSeat(ticket);
+                } catch (Exception e) {
+                    System.err.println("释放座位失败: " + ticket.getTicketNumber() + ", " + e.getMessage());
+                }
+            }
+        }
+        rollbackInventory(orderMessage);
+    }
+    
     private String generateTicketNumber() {
         return "T" + System.currentTimeMillis() + (int)(Math.random() * 1000);
     }
@@ -219,26 +248,4 @@ public class OrderProcessor {
             e.printStackTrace();
         }
     }
-    
-    /**
-     * 清理已创建的数据 - 当订单处理失败时，清理已创建的订单和车票
-     */
-    private void cleanupCreatedData(List<Ticket> createdTickets, Order createdOrder) {
-        try {
-            // 删除已创建的车票
-            if (!createdTickets.isEmpty()) {
-                ticketRepository.deleteAll(createdTickets);
-                System.out.println("已删除 " + createdTickets.size() + " 张车票");
-            }
-            
-            // 删除已创建的订单
-            if (createdOrder != null) {
-                orderRepository.delete(createdOrder);
-                System.out.println("已删除订单: " + createdOrder.getOrderNumber());
-            }
-        } catch (Exception e) {
-            System.err.println("清理已创建数据失败: " + e.getMessage());
-            e.printStackTrace();
-        }
-    }
 } 
\ No newline at end of file
@@ -0,0 +1,201 @@
+package com.example.techprototype.Component;
+
+import com.example.techprototype.Entity.Ticket;
+import com.example.techprototype.Entity.TrainStop;
+import com.example.techprototype.Repository.TicketRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.DefaultTypedTuple;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.ZSetOperations;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 乘客行程索引
+ * 每名乘客一个Redis有序集合，成员为 "车票ID:到达时间毫秒"，分值为出发时间毫秒，收录出行日期不早于昨天的有效车票。
+ * 时间冲突检查只需一次按分值的范围查询，耗时与乘客的车票总数无关。
+ * 出票、退票、改签时更新索引，索引不存在时从数据库整体加载
+ */
+@Component
+public class PassengerItineraryIndex {
+
+    private static final String KEY_PREFIX = "itinerary:";
+    // 标记乘客的索引已从数据库加载，分值为负数，不会落在任何查询范围内
+    private static final String LOADED_MEMBER = "loaded";
+    // 到达时间最晚为出发日期的次日，单程不超过两天
+    private static final long MAX_TRIP_MILLIS = Duration.ofDays(2).toMillis();
+
+    @Autowired
+    private RedisTemplate<String, Object> redisTemplate;
+
+    @Autowired
+    private TimetableCache timetableCache;
+
+    @Autowired
+    private TicketRepository ticketRepository;
+
+    @Value("${itinerary.index.ttl-hours:24}")
+    private long ttlHours = 24;
+
+    /**
+     * 一段行程的 [出发时间, 到达时间)
+     */
+    public static final class Interval {
+        private final LocalDateTime departure;
+        private final LocalDateTime arrival;
+
+        public Interval(LocalDateTime departure, LocalDateTime arrival) {
+            this.departure = departure;
+            this.arrival = arrival;
+        }
+
+        public LocalDateTime getDeparture() {
+            return departure;
+        }
+
+        public LocalDateTime getArrival() {
+            return arrival;
+        }
+
+        /**
+         * 两段行程有重叠，首尾相接不算冲突
+         */
+        public boolean overlaps(Interval other) {
+            return departure.isBefore(other.arrival) && arrival.isAfter(other.departure);
+        }
+    }
+
+    /**
+     * 按时刻表计算区间票的行程时间，到达时间早于出发时间时视为次日到达
+     * @return 无法获取出发或到达时间时返回null
+     */
+    public Interval intervalOf(LocalDate travelDate, Long departureStopId, Long arrivalStopId) {
+        LocalTime departureTime = timetableCache.getStop(departureStopId).map(TrainStop::getDepartureTime).orElse(null);
+        LocalTime arrivalTime = timetableCache.getStop(arrivalStopId).map(TrainStop::getArrivalTime).orElse(null);
+        if (travelDate == null || departureTime == null || arrivalTime == null) {
+            return null;
+        }
+        LocalDateTime departure = LocalDateTime.of(travelDate, departureTime);
+        LocalDateTime arrival = LocalDateTime.of(travelDate, arrivalTime);
+        if (arrivalTime.isBefore(departureTime)) {
+            arrival = arrival.plusDays(1);
+        }
+        return new Interval(departure, arrival);
+    }
+
+    public Interval intervalOf(Ticket ticket) {
+        return intervalOf(ticket.getTravelDate(), ticket.getDepartureStopId(), ticket.getArrivalStopId());
+    }
+
+    /**
+     * 乘客与给定行程时间重叠的车票ID，按出发时间排序
+     * 索引可能滞后于数据库，调用方需回表确认车票仍然有效
+     */
+    public List<Long> findOverlapping(Long passengerId, Interval interval) {
+        String key = buildKey(passengerId);
+        if (redisTemplate.opsForZSet().score(key, LOADED_MEMBER) == null) {
+            load(passengerId);
+        }
+
+        // 出发早于新行程到达的车票，出发时间不会早于新行程出发前两天
+        long departure = toEpochMillis(interval.getDeparture());
+        Set<Object> members = redisTemplate.opsForZSet().rangeByScore(key,
+                departure - MAX_TRIP_MILLIS, toEpochMillis(interval.getArrival()) - 1);
+        List<Long> ticketIds = new ArrayList<>();
+        if (members == null) {
+            return ticketIds;
+        }
+        for (Object member : members) {
+            String[] parts = member.toString().split(":");
+            // 其中到达晚于新行程出发的才有重叠
+            if (parts.length == 2 && Long.parseLong(parts[1]) > departure) {
+                ticketIds.add(Long.valueOf(parts[0]));
+            }
+        }
+        return ticketIds;
+    }
+
+    /**
+     * 出票或改签生成新票后加入索引
+     * 乘客的索引尚未加载时同样写入，下次检查时整体加载，不会遗漏新票
+     */
+    public void add(Ticket ticket) {
+        if (ticket == null || ticket.getTicketId() == null || ticket.getPassengerId() == null) {
+            return;
+        }
+        Interval interval = intervalOf(ticket);
+        if (interval == null) {
+            return;
+        }
+        String key = buildKey(ticket.getPassengerId());
+        redisTemplate.opsForZSet().add(key, buildMember(ticket.getTicketId(), interval),
+                toEpochMillis(interval.getDeparture()));
+        // 顺带清理已经结束的行程
+        redisTemplate.opsForZSet().removeRangeByScore(key, 0, System.currentTimeMillis() - MAX_TRIP_MILLIS);
+        redisTemplate.expire(key, ttlHours, TimeUnit.HOURS);
+    }
+
+    public void add(List<Ticket> tickets) {
+        for (Ticket ticket : tickets) {
+            add(ticket);
+        }
+    }
+
+    /**
+     * 退票、改签或取消后从索引中移除
+     */
+    public void remove(Ticket ticket) {
+        if (ticket == null || ticket.getTicketId() == null || ticket.getPassengerId() == null) {
+            return;
+        }
+        Interval interval = intervalOf(ticket);
+        if (interval == null) {
+            return;
+        }
+        redisTemplate.opsForZSet().remove(buildKey(ticket.getPassengerId()), buildMember(ticket.getTicketId(), interval));
+    }
+
+    /**
+     * 用一次查询加载乘客出行日期不早于昨天的有效车票，ZADD幂等，与并发的出票写入不冲突
+     */
+    private void load(Long passengerId) {
+        List<Ticket> tickets = ticketRepository.findValidTicketsByPassengerFrom(passengerId, LocalDate.now().minusDays(1));
+        Set<ZSetOperations.TypedTuple<Object>> tuples = new HashSet<>();
+        for (Ticket ticket : tickets) {
+            Interval interval = intervalOf(ticket);
+            if (interval != null) {
+                tuples.add(new DefaultTypedTuple<>(buildMember(ticket.getTicketId(), interval),
+                        (double) toEpochMillis(interval.getDeparture())));
+            }
+        }
+        tuples.add(new DefaultTypedTuple<>(LOADED_MEMBER, -1.0));
+
+        String key = buildKey(passengerId);
+        redisTemplate.opsForZSet().add(key, tuples);
+        redisTemplate.expire(key, ttlHours, TimeUnit.HOURS);
+        System.out.println("乘客行程索引已加载: 乘客" + passengerId + ", " + (tuples.size() - 1) + "张车票");
+    }
+
+    private String buildKey(Long passengerId) {
+        return KEY_PREFIX + passengerId;
+    }
+
+    private String buildMember(Long ticketId, Interval interval) {
+        return ticketId + ":" + toEpochMillis(interval.getArrival());
+    }
+
+    private long toEpochMillis(LocalDateTime time) {
+        return time.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+    }
+}
@@ -0,0 +1,90 @@
+package com.example.techprototype.Component;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.CommandLineRunner;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Lua脚本注册表
+ * 所有RedisScript类型的Bean按Bean名称自动注册，其他服务也可以在运行时注册自己的原子脚本
+ * 注册的脚本是单例，SHA1只计算一次，执行时走EVALSHA（NOSCRIPT时由RedisTemplate回退为EVAL）
+ * 启动时将全部脚本SCRIPT LOAD到Redis，避免首次执行时传输脚本正文
+ */
+@Component
+public class RedisScriptRegistry implements CommandLineRunner {
+    
+    @Autowired
+    private RedisTemplate<String, Object> redisTemplate;
+    
+    // 脚本名称 -> 脚本
+    private final Map<String, RedisScript<?>> scripts = new ConcurrentHashMap<>();
+    
+    @Autowired(required = false)
+    public void setScriptBeans(Map<String, RedisScript<?>> scriptBeans) {
+        scripts.putAll(scriptBeans);
+    }
+    
+    @Override
+    public void run(String... args) throws Exception {
+        System.out.println("开始预加载Lua脚本...");
+        int loaded = 0;
+        for (Map.Entry<String, RedisScript<?>> entry : scripts.entrySet()) {
+            if (preload(entry.getKey(), entry.getValue())) {
+                loaded++;
+            }
+        }
+        System.out.println("Lua脚本预加载完成: " + loaded + "/" + scripts.size());
+    }
+    
+    /**
+     * 注册脚本，同名脚本已存在时返回已注册的脚本
+     */
+    @SuppressWarnings("unchecked")
+    public <T> RedisScript<T> register(String name, String scriptText, Class<T> resultType) {
+        RedisScript<?> script = scripts.computeIfAbsent(name, k -> {
+            RedisScript<T> created = new DefaultRedisScript<>(scriptText, resultType);
+            preload(name, created);
+            return created;
+        });
+        return (RedisScript<T>) script;
+    }
+    
+    /**
+     * 获取已注册的脚本
+     * @throws IllegalArgumentException 脚本未注册或返回类型不一致
+     */
+    @SuppressWarnings("unchecked")
+    public <T> RedisScript<T> get(String name, Class<T> resultType) {
+        RedisScript<?> script = scripts.get(name);
+        if (script == null) {
+            throw new IllegalArgumentException("Lua脚本未注册: " + name);
+        }
+        if (script.getResultType() != null && !resultType.isAssignableFrom(script.getResultType())) {
+            throw new IllegalArgumentException("Lua脚本返回类型不一致: " + name + ", " + script.getResultType().getSimpleName());
+        }
+        return (RedisScript<T>) script;
+    }
+    
+    /**
+     * 将脚本加载到Redis脚本缓存，失败不影响使用（执行时会回退为EVAL）
+     */
+    private boolean preload(String name, RedisScript<?> script) {
+        try {
+            byte[] body = script.getScriptAsString().getBytes(StandardCharsets.UTF_8);
+            String sha = redisTemplate.execute((RedisCallback<String>) connection -> connection.scriptingCommands().scriptLoad(body));
+            System.out.println("Lua脚本已加载: " + name + ", sha1=" + sha);
+            return true;
+        } catch (Exception e) {
+            System.err.println("Lua脚本预加载失败: " + name + ", " + e.getMessage());
+            return false;
+        }
+    }
+}
@@ -0,0 +1,214 @@
+package com.example.techprototype.Component;
+
+import com.example.techprototype.DTO.SearchCacheStats;
+import com.example.techprototype.DTO.SearchRoute;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDate;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * 车次查询结果缓存，按规范化后的 (出发站, 到达站, 日期) 缓存
+ * 1. 车次路线（匹配车次、停靠点、途经站点）只随时刻表变化，按时刻表版本长期缓存
+ * 2. 票价和余票短期缓存，缓存时记录结果中每个 车次+日期 的库存版本；
+ *    库存变更时递增对应版本，版本不一致或超过最大陈旧时间即重新读取
+ * 库存版本只在本实例内维护，其他实例上的售票只能由最大陈旧时间兜底
+ * 路线和余票各最多缓存 search.cache.max-entries 个查询条件，超出时淘汰最久未访问的条件
+ */
+@Component
+public class SearchResultCache {
+
+    @Value("${search.cache.max-staleness-ms:3000}")
+    private long maxStalenessMillis = 3000;
+
+    @Value("${search.cache.max-entries:10000}")
+    private int maxEntries = 10000;
+
+    // 出发站|到达站 -> 车次路线
+    private final Map<String, RouteEntry> routes = lruMap();
+    // 出发站|到达站|日期 -> 座位信息
+    private final Map<String, AvailabilityEntry> availability = lruMap();
+    // 车次ID:日期 -> 库存版本
+    private final Map<String, AtomicLong> stockVersions = new ConcurrentHashMap<>();
+    // 日期 -> 库存变更次数，该日期任一车次库存变更即递增
+    private final Map<LocalDate, AtomicLong> stockChangesByDate = new ConcurrentHashMap<>();
+
+    private final AtomicLong routeHits = new AtomicLong();
+    private final AtomicLong routeMisses = new AtomicLong();
+    private final AtomicLong availabilityHits = new AtomicLong();
+    private final AtomicLong availabilityMisses = new AtomicLong();
+    private final AtomicLong versionInvalidations = new AtomicLong();
+    private final AtomicLong expirations = new AtomicLong();
+    private final AtomicLong lastServedAgeMillis = new AtomicLong();
+    private final AtomicLong maxServedAgeMillis = new AtomicLong();
+
+    /**
+     * 规范化查询关键字：去掉首尾空白并转为小写，与车站索引的匹配规则一致
+     */
+    public static String normalize(String keyword) {
+        return keyword == null ? null : keyword.trim().toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * 查询车次路线，时刻表版本变化后重新加载
+     */
+    public List<SearchRoute> getRoutes(String from, String to, long timetableVersion, Supplier<List<SearchRoute>> loader) {
+        String key = from + "|" + to;
+        RouteEntry entry = routes.get(key);
+        if (entry != null && entry.timetableVersion == timetableVersion) {
+            routeHits.incrementAndGet();
+            return entry.routes;
+        }
+        routeMisses.incrementAndGet();
+        List<SearchRoute> loaded = List.copyOf(loader.get());
+        routes.put(key, new RouteEntry(timetableVersion, loaded));
+        return loaded;
+    }
+
+    /**
+     * 查询车次路线对应的座位信息，返回值与routes下标对齐
+     * 库存版本在读取之前记录，读取期间发生的库存变更会使本次结果在下次查询时失效。
+     * 返回的座位信息可能是缓存中的共享对象，只读使用；loader抛出异常时不缓存，异常直接抛给调用方
+     */
+    public List<List<Map<String, Object>>> getSeatInfos(String from, String to, LocalDate travelDate, long timetableVersion,
+                                                        List<SearchRoute> routes,
+                                                        Function<List<SearchRoute>, List<List<Map<String, Object>>>> loader) {
+        String key = from + "|" + to + "|" + travelDate;
+        long now = System.currentTimeMillis();
+        AvailabilityEntry entry = availability.get(key);
+        if (entry == null) {
+            availabilityMisses.incrementAndGet();
+        } else if (entry.timetableVersion != timetableVersion || !entry.matchesVersions(this, routes, travelDate)) {
+            versionInvalidations.incrementAndGet();
+        } else if (now - entry.loadedAt > maxStalenessMillis) {
+            expirations.incrementAndGet();
+        } else {
+            availabilityHits.incrementAndGet();
+            long age = now - entry.loadedAt;
+            lastServedAgeMillis.set(age);
+            maxServedAgeMillis.accumulateAndGet(age, Math::max);
+            return entry.seatInfos;
+        }
+
+        long[] versions = new long[routes.size()];
+        for (int i = 0; i < routes.size(); i++) {
+            versions[i] = getStockVersion(routes.get(i).getTrainId(), travelDate);
+        }
+        List<List<Map<String, Object>>> loaded = loader.apply(routes);
+        availability.put(key, new AvailabilityEntry(timetableVersion, now, versions, loaded));
+        return loaded;
+    }
+
+    /**
+     * 库存变更时调用，使包含该车次该日期的缓存余票失效
+     */
+    public void onStockChanged(Integer trainId, LocalDate travelDate) {
+        stockVersions.computeIfAbsent(trainId + ":" + travelDate, key -> new AtomicLong()).incrementAndGet();
+        stockChangesByDate.computeIfAbsent(travelDate, key -> new AtomicLong()).incrementAndGet();
+    }
+
+    /**
+     * 指定日期的库存变更次数，未变化时无需逐个比较该日期的车次库存版本
+     */
+    public long getStockChangeCount(LocalDate travelDate) {
+        AtomicLong changes = stockChangesByDate.get(travelDate);
+        return changes == null ? 0 : changes.get();
+    }
+
+    public long getStockVersion(Integer trainId, LocalDate travelDate) {
+        AtomicLong version = stockVersions.get(trainId + ":" + travelDate);
+        return version == null ? 0 : version.get();
+    }
+
+    /**
+     * 每分钟清理过期的余票缓存和已过发车日期的库存版本
+     */
+    @Scheduled(fixedDelay = 60000)
+    public void evictExpired() {
+        long now = System.currentTimeMillis();
+        synchronized (availability) {
+            availability.values().removeIf(entry -> now - entry.loadedAt > maxStalenessMillis);
+        }
+        LocalDate today = LocalDate.now();
+        stockVersions.keySet().removeIf(key -> LocalDate.parse(key.substring(key.indexOf(':') + 1)).isBefore(today));
+        stockChangesByDate.keySet().removeIf(date -> date.isBefore(today));
+    }
+
+    public SearchCacheStats getStats() {
+        long hits = availabilityHits.get();
+        long lookups = hits + availabilityMisses.get() + versionInvalidations.get() + expirations.get();
+        return new SearchCacheStats(
+                routeHits.get(),
+                routeMisses.get(),
+                hits,
+                availabilityMisses.get(),
+                versionInvalidations.get(),
+                expirations.get(),
+                lookups == 0 ? 0.0 : (double) hits / lookups,
+                routes.size(),
+                availability.size(),
+                maxStalenessMillis,
+                lastServedAgeMillis.get(),
+                maxServedAgeMillis.get());
+    }
+
+    /**
+     * 按访问顺序排列的线程安全映射，条件数超过上限时淘汰最久未访问的条件
+     */
+    private <V> Map<String, V> lruMap() {
+        return Collections.synchronizedMap(new LinkedHashMap<String, V>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, V> eldest) {
+                return size() > maxEntries;
+            }
+        });
+    }
+
+    private static final class RouteEntry {
+        private final long timetableVersion;
+        private final List<SearchRoute> routes;
+
+        private RouteEntry(long timetableVersion, List<SearchRoute> routes) {
+            this.timetableVersion = timetableVersion;
+            this.routes = routes;
+        }
+    }
+
+    private static final class AvailabilityEntry {
+        private final long timetableVersion;
+        private final long loadedAt;
+        // 与车次路线下标对齐的库存版本
+        private final long[] stockVersions;
+        private final List<List<Map<String, Object>>> seatInfos;
+
+        private AvailabilityEntry(long timetableVersion, long loadedAt, long[] stockVersions,
+                                  List<List<Map<String, Object>>> seatInfos) {
+            this.timetableVersion = timetableVersion;
+            this.loadedAt = loadedAt;
+            this.stockVersions = stockVersions;
+            this.seatInfos = seatInfos;
+        }
+
+        private boolean matchesVersions(SearchResultCache cache, List<SearchRoute> routes, LocalDate travelDate) {
+            if (stockVersions.length != routes.size()) {
+                return false;
+            }
+            for (int i = 0; i < stockVersions.length; i++) {
+                if (cache.getStockVersion(routes.get(i).getTrainId(), travelDate) != stockVersions[i]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+}
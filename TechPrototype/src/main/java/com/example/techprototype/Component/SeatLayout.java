@@ -0,0 +1,130 @@
+package com.example.techprototype.Component;
+
+import com.example.techprototype.Entity.Seat;
+import com.example.techprototype.Entity.TrainCarriage;
+import com.example.techprototype.Util.SeatBitmapUtil;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 车次+席别的座位布局（不可变）
+ * 座位按车厢ID、座位ID排序后编号为0..n-1，同一车厢的座位下标连续
+ * 所有日期的占用位图共享同一个布局
+ * maskWords：按车次站点数确定的每个座位位图所需long个数，32站以内为1
+ */
+class SeatLayout {
+
+    private final Integer trainId;
+    private final Integer typeId;
+    private final int maskWords;
+    private final Seat[] seats;
+    private final String[] carriageNumbers;
+    private final Map<String, Integer> indexBySeatKey;
+    private final Map<Long, Integer> indexBySeatId;
+    private final int[] carriageStarts; // 每节车厢第一个座位的下标，末尾追加座位总数
+
+    SeatLayout(Integer trainId, Integer typeId, int stationCount, List<TrainCarriage> carriages, List<Seat> seats) {
+        this.trainId = trainId;
+        this.typeId = typeId;
+        this.maskWords = SeatBitmapUtil.wordCount(stationCount);
+
+        Map<Long, String> carriageNumberById = new HashMap<>();
+        for (TrainCarriage carriage : carriages) {
+            carriageNumberById.put(carriage.getCarriageId(), carriage.getCarriageNumber());
+        }
+
+        List<Seat> ordered = new ArrayList<>();
+        for (Seat seat : seats) {
+            if (carriageNumberById.containsKey(seat.getCarriageId())) {
+                ordered.add(seat);
+            }
+        }
+        ordered.sort(Comparator.comparing(Seat::getCarriageId).thenComparing(Seat::getSeatId));
+
+        this.seats = ordered.toArray(new Seat[0]);
+        this.carriageNumbers = new String[this.seats.length];
+        this.indexBySeatKey = new HashMap<>(this.seats.length * 2);
+        this.indexBySeatId = new HashMap<>(this.seats.length * 2);
+        for (int i = 0; i < this.seats.length; i++) {
+            Seat seat = this.seats[i];
+            carriageNumbers[i] = carriageNumberById.get(seat.getCarriageId());
+            indexBySeatKey.put(seatKey(carriageNumbers[i], seat.getSeatNumber()), i);
+            indexBySeatId.put(seat.getSeatId(), i);
+        }
+
+        List<Integer> starts = new ArrayList<>();
+        for (int i = 0; i < this.seats.length; i++) {
+            if (i == 0 || !this.seats[i].getCarriageId().equals(this.seats[i - 1].getCarriageId())) {
+                starts.add(i);
+            }
+        }
+        starts.add(this.seats.length);
+        this.carriageStarts = starts.stream().mapToInt(Integer::intValue).toArray();
+    }
+
+    Integer getTrainId() {
+        return trainId;
+    }
+
+    Integer getTypeId() {
+        return typeId;
+    }
+
+    int getMaskWords() {
+        return maskWords;
+    }
+
+    int size() {
+        return seats.length;
+    }
+
+    Seat getSeat(int index) {
+        return seats[index];
+    }
+
+    String getCarriageNumber(int index) {
+        return carriageNumbers[index];
+    }
+
+    /**
+     * 布局中的车厢数
+     */
+    int carriageCount() {
+        return carriageStarts.length - 1;
+    }
+
+    /**
+     * 第c节车厢的座位下标范围 [carriageStart(c), carriageEnd(c))
+     */
+    int carriageStart(int carriage) {
+        return carriageStarts[carriage];
+    }
+
+    int carriageEnd(int carriage) {
+        return carriageStarts[carriage + 1];
+    }
+
+    /**
+     * 根据车厢号和座位号查找座位下标，不存在返回-1
+     */
+    int indexOf(String carriageNumber, String seatNumber) {
+        Integer index = indexBySeatKey.get(seatKey(carriageNumber, seatNumber));
+        return index != null ? index : -1;
+    }
+
+    /**
+     * 根据座位ID查找座位下标，不存在返回-1
+     */
+    int indexOf(Long seatId) {
+        Integer index = indexBySeatId.get(seatId);
+        return index != null ? index : -1;
+    }
+
+    private static String seatKey(String carriageNumber, String seatNumber) {
+        return carriageNumber + ":" + seatNumber;
+    }
+}
@@ -0,0 +1,462 @@
+package com.example.techprototype.Component;
+
+import com.example.techprototype.Entity.Seat;
+import com.example.techprototype.Entity.SeatOccupancy;
+import com.example.techprototype.Entity.TrainCarriage;
+import com.example.techprototype.Repository.SeatOccupancyRepository;
+import com.example.techprototype.Repository.SeatRepository;
+import com.example.techprototype.Repository.TrainCarriageRepository;
+import com.example.techprototype.Util.IntervalMaskTable;
+import com.example.techprototype.Util.SeatBitmapUtil;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.CommandLineRunner;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 常驻内存的座位占用引擎
+ * 按 车次/席别 维护一个以日期为槽位的环形缓冲，每个槽位是该日期的座位占用位图
+ * 位图字数按车次站点数确定，超过32站的长途车次自动使用多字位图，区间掩码从车次的预计算掩码表中读取
+ * 选座、锁座、释放座位均在内存中完成，不访问数据库
+ * 启动时从seat_occupancy表预热，变更由定时任务异步批量回写数据库，每日零点滚动清理过期日期
+ */
+@Component
+public class SeatOccupancyEngine implements CommandLineRunner {
+
+    @Autowired
+    private SeatRepository seatRepository;
+
+    @Autowired
+    private TrainCarriageRepository trainCarriageRepository;
+
+    @Autowired
+    private SeatOccupancyRepository seatOccupancyRepository;
+
+    @Autowired
+    private IntervalMaskCache intervalMaskCache;
+
+    // 可售日期窗口天数：今天 到 今天+horizonDays-1
+    @Value("${seat.occupancy.horizon-days:30}")
+    private int horizonDays = 30;
+
+    // 车次:席别 -> 日期环形缓冲
+    private final Map<String, SeatOccupancyRing> rings = new ConcurrentHashMap<>();
+
+    // 座位ID -> 所属环形缓冲，用于按座位操作和预热分发
+    private final Map<Long, SeatOccupancyRing> ringBySeatId = new ConcurrentHashMap<>();
+
+    // 有待回写数据的占用位图
+    private final Set<SeatOccupancyMap> dirtyMaps = ConcurrentHashMap.newKeySet();
+
+    @Override
+    public void run(String... args) throws Exception {
+        System.out.println("开始预热座位占用引擎...");
+        try {
+            warmUp();
+        } catch (Exception e) {
+            // 预热失败不影响启动，后续按需加载
+            System.err.println("座位占用引擎预热失败: " + e.getMessage());
+        }
+    }
+
+    /**
+     * 从数据库一次性加载全部座位布局和窗口内的占用位图
+     */
+    public void warmUp() {
+        Map<Long, TrainCarriage> carriageById = new HashMap<>();
+        Map<String, List<TrainCarriage>> carriagesByLayout = new HashMap<>();
+        for (TrainCarriage carriage : trainCarriageRepository.findAll()) {
+            carriageById.put(carriage.getCarriageId(), carriage);
+            carriagesByLayout.computeIfAbsent(layoutKey(carriage.getTrainId(), carriage.getTypeId()),
+                    k -> new ArrayList<>()).add(carriage);
+        }
+
+        intervalMaskCache.loadAll();
+
+        Map<String, List<Seat>> seatsByLayout = new HashMap<>();
+        for (Seat seat : seatRepository.findAll()) {
+            TrainCarriage carriage = carriageById.get(seat.getCarriageId());
+            if (carriage != null) {
+                seatsByLayout.computeIfAbsent(layoutKey(carriage.getTrainId(), carriage.getTypeId()),
+                        k -> new ArrayList<>()).add(seat);
+            }
+        }
+
+        for (Map.Entry<String, List<TrainCarriage>> entry : carriagesByLayout.entrySet()) {
+            if (rings.containsKey(entry.getKey())) {
+                continue;
+            }
+            TrainCarriage first = entry.getValue().get(0);
+            List<Seat> seats = seatsByLayout.getOrDefault(entry.getKey(), new ArrayList<>());
+            int stationCount = intervalMaskCache.getTable(first.getTrainId()).getStationCount();
+            registerRing(entry.getKey(), new SeatOccupancyRing(
+                    new SeatLayout(first.getTrainId(), first.getTypeId(), stationCount, entry.getValue(), seats), horizonDays));
+        }
+
+        LocalDate today = LocalDate.now();
+        int loaded = 0;
+        for (SeatOccupancy occupancy : seatOccupancyRepository.findByTravelDateBetween(today, lastDate(today))) {
+            SeatOccupancyRing ring = ringBySeatId.get(occupancy.getSeatId());
+            if (ring != null) {
+                applyOccupancy(ring, occupancy);
+                loaded++;
+            }
+        }
+
+        System.out.println("座位占用引擎预热完成: " + rings.size() + " 个车次席别, " + loaded + " 条占用记录, 窗口" + horizonDays + "天");
+    }
+
+    /**
+     * 查找第一个空闲座位（不占用）
+     */
+    public Optional<SeatSlot> findFirstFree(Integer trainId, Integer typeId, LocalDate travelDate,
+                                            int departureSequence, int arrivalSequence) {
+        SeatOccupancyMap map = getOccupancyMap(trainId, typeId, travelDate);
+        if (map == null) {
+            return Optional.empty();
+        }
+        int index = map.findFirstFree(intervalMask(map, departureSequence, arrivalSequence));
+        return index >= 0 ? Optional.of(toSlot(map, index)) : Optional.empty();
+    }
+
+    /**
+     * 原子地查找并占用第一个空闲座位
+     */
+    public Optional<SeatSlot> allocate(Integer trainId, Integer typeId, LocalDate travelDate,
+                                       int departureSequence, int arrivalSequence) {
+        SeatOccupancyMap map = getOccupancyMap(trainId, typeId, travelDate);
+        if (map == null) {
+            return Optional.empty();
+        }
+        int index = map.allocate(intervalMask(map, departureSequence, arrivalSequence));
+        if (index < 0) {
+            return Optional.empty();
+        }
+        dirtyMaps.add(map);
+        return Optional.of(toSlot(map, index));
+    }
+
+    /**
+     * 原子地为同一区间的多名乘客一次选座，优先同一车厢的相邻座位
+     * @return 选中的座位，空闲座位不足时数量少于count
+     */
+    public List<SeatSlot> allocateBatch(Integer trainId, Integer typeId, LocalDate travelDate,
+                                        int departureSequence, int arrivalSequence, int count) {
+        List<SeatSlot> slots = new ArrayList<>();
+        SeatOccupancyMap map = getOccupancyMap(trainId, typeId, travelDate);
+        if (map == null || count <= 0) {
+            return slots;
+        }
+        int[] indices = map.allocateBatch(intervalMask(map, departureSequence, arrivalSequence), count);
+        if (indices.length > 0) {
+            dirtyMaps.add(map);
+        }
+        for (int index : indices) {
+            slots.add(toSlot(map, index));
+        }
+        return slots;
+    }
+
+    /**
+     * 释放指定座位的区间占用
+     * @return 找到座位并释放返回true
+     */
+    public boolean release(Integer trainId, Integer typeId, LocalDate travelDate, String carriageNumber,
+                           String seatNumber, int departureSequence, int arrivalSequence) {
+        SeatOccupancyMap map = getOccupancyMap(trainId, typeId, travelDate);
+        if (map == null) {
+            return false;
+        }
+        int index = map.getLayout().indexOf(carriageNumber, seatNumber);
+        if (index < 0) {
+            return false;
+        }
+        map.release(index, intervalMask(map, departureSequence, arrivalSequence));
+        dirtyMaps.add(map);
+        return true;
+    }
+
+    /**
+     * 占用指定座位的区间
+     * @return 占用成功返回true，区间已被占用、座位不存在或日期超出窗口返回false
+     */
+    public boolean occupy(Seat seat, LocalDate travelDate, int departureSequence, int arrivalSequence) {
+        SeatOccupancyMap map = getOccupancyMap(seat, travelDate);
+        if (map == null) {
+            return false;
+        }
+        int index = map.getLayout().indexOf(seat.getSeatId());
+        if (!map.tryOccupy(index, intervalMask(map, departureSequence, arrivalSequence))) {
+            return false;
+        }
+        dirtyMaps.add(map);
+        return true;
+    }
+
+    /**
+     * 释放指定座位的区间
+     * @return 找到座位并释放返回true
+     */
+    public boolean release(Seat seat, LocalDate travelDate, int departureSequence, int arrivalSequence) {
+        SeatOccupancyMap map = getOccupancyMap(seat, travelDate);
+        if (map == null) {
+            return false;
+        }
+        map.release(map.getLayout().indexOf(seat.getSeatId()), intervalMask(map, departureSequence, arrivalSequence));
+        dirtyMaps.add(map);
+        return true;
+    }
+
+    /**
+     * 检查指定座位的区间是否可用，日期超出窗口视为不可用
+     */
+    public boolean isAvailable(Seat seat, LocalDate travelDate, int departureSequence, int arrivalSequence) {
+        SeatOccupancyMap map = getOccupancyMap(seat, travelDate);
+        if (map == null) {
+            return false;
+        }
+        return map.isAvailable(map.getLayout().indexOf(seat.getSeatId()), intervalMask(map, departureSequence, arrivalSequence));
+    }
+
+    /**
+     * 获取指定座位当天的占用位图，座位不存在或日期超出窗口返回全0位图
+     */
+    public long[] getOccupancy(Seat seat, LocalDate travelDate) {
+        SeatOccupancyMap map = getOccupancyMap(seat, travelDate);
+        return map != null ? map.getOccupancy(map.getLayout().indexOf(seat.getSeatId())) : new long[1];
+    }
+
+    /**
+     * 将内存中变更过的座位位图批量回写数据库
+     * 位图为0的记录直接删除，保持seat_occupancy表稀疏
+     */
+    @Scheduled(fixedDelay = 1000)
+    public void flushDirtySeats() {
+        if (dirtyMaps.isEmpty()) {
+            return;
+        }
+        LocalDate today = LocalDate.now();
+        for (SeatOccupancyMap map : new ArrayList<>(dirtyMaps)) {
+            dirtyMaps.remove(map);
+            int[] indices = map.drainDirty();
+            if (indices.length == 0 || map.getTravelDate().isBefore(today)) {
+                continue; // 没有变更，或日期已滑出窗口
+            }
+            try {
+                SeatLayout layout = map.getLayout();
+                Map<Long, Integer> indexBySeatId = new HashMap<>();
+                for (int index : indices) {
+                    indexBySeatId.put(layout.getSeat(index).getSeatId(), index);
+                }
+                // 已有记录按 座位:字下标 更新，位图字变为0的删除
+                List<SeatOccupancy> toSave = new ArrayList<>();
+                List<SeatOccupancy> toDelete = new ArrayList<>();
+                Set<String> existing = new HashSet<>();
+                for (SeatOccupancy occupancy : seatOccupancyRepository.findBySeatIdInAndTravelDate(indexBySeatId.keySet(), map.getTravelDate())) {
+                    int word = occupancy.getWordIndex() != null ? occupancy.getWordIndex() : 0;
+                    existing.add(occupancy.getSeatId() + ":" + word);
+                    long bitmap = word < layout.getMaskWords() ? map.getOccupancy(indexBySeatId.get(occupancy.getSeatId()), word) : 0L;
+                    occupancy.setOccupancyBitmap(bitmap);
+                    (bitmap == 0L ? toDelete : toSave).add(occupancy);
+                }
+                for (Map.Entry<Long, Integer> entry : indexBySeatId.entrySet()) {
+                    for (int word = 0; word < layout.getMaskWords(); word++) {
+                        long bitmap = map.getOccupancy(entry.getValue(), word);
+                        if (bitmap != 0L && !existing.contains(entry.getKey() + ":" + word)) {
+                            toSave.add(new SeatOccupancy(null, entry.getKey(), map.getTravelDate(), word, bitmap));
+                        }
+                    }
+                }
+                if (!toSave.isEmpty()) {
+                    seatOccupancyRepository.saveAll(toSave);
+                }
+                if (!toDelete.isEmpty()) {
+                    seatOccupancyRepository.deleteAll(toDelete);
+                }
+            } catch (Exception e) {
+                System.err.println("座位位图回写失败: " + e.getMessage());
+                // 回写失败，重新标记为脏数据，下一轮重试
+                for (int index : indices) {
+                    map.markDirty(index);
+                }
+                dirtyMaps.add(map);
+            }
+        }
+    }
+
+    /**
+     * 每日零点滚动日期窗口
+     * 内存中只清空过期槽位，数据库中只删除过期日期的记录，不需要重启或更新所有座位
+     */
+    @Scheduled(cron = "0 0 0 * * ?")
+    public void rollOver() {
+        LocalDate today = LocalDate.now();
+        int expiredSlots = 0;
+        for (SeatOccupancyRing ring : rings.values()) {
+            expiredSlots += ring.rollOver(today);
+        }
+        dirtyMaps.removeIf(map -> map.getTravelDate().isBefore(today));
+        try {
+            int deleted = seatOccupancyRepository.deleteByTravelDateBefore(today);
+            System.out.println("座位日期窗口滚动完成: 清空 " + expiredSlots + " 个过期槽位, 删除 " + deleted + " 条过期占用记录");
+        } catch (Exception e) {
+            System.err.println("清理过期占用记录失败: " + e.getMessage());
+        }
+    }
+
+    /**
+     * 车次时刻表变更后卸载该车次的全部环形缓冲，下次访问时按新的站点数重新加载
+     * 卸载前的未回写变更仍保留在脏数据集合中，立即回写一次
+     * @return 卸载的车次席别数
+     */
+    public int evictTrain(Integer trainId) {
+        int evicted = 0;
+        synchronized (rings) {
+            String prefix = trainId + ":";
+            for (String key : new ArrayList<>(rings.keySet())) {
+                if (key.startsWith(prefix)) {
+                    SeatOccupancyRing ring = rings.remove(key);
+                    ringBySeatId.values().removeIf(r -> r == ring);
+                    evicted++;
+                }
+            }
+        }
+        flushDirtySeats();
+        return evicted;
+    }
+
+    /**
+     * 获取占用位图，车次席别不存在时从数据库按需加载
+     * @return 日期超出窗口返回null
+     */
+    private SeatOccupancyMap getOccupancyMap(Integer trainId, Integer typeId, LocalDate travelDate) {
+        if (!SeatBitmapUtil.isWithinWindow(travelDate, LocalDate.now(), horizonDays)) {
+            return null; // 日期超出范围
+        }
+        return getRing(trainId, typeId).getOrCreate(travelDate);
+    }
+
+    /**
+     * 根据座位获取占用位图
+     * @return 日期超出窗口或座位不存在返回null
+     */
+    private SeatOccupancyMap getOccupancyMap(Seat seat, LocalDate travelDate) {
+        if (!SeatBitmapUtil.isWithinWindow(travelDate, LocalDate.now(), horizonDays)) {
+            return null; // 日期超出范围
+        }
+        SeatOccupancyRing ring = ringBySeatId.get(seat.getSeatId());
+        if (ring == null) {
+            Optional<TrainCarriage> carriage = trainCarriageRepository.findByCarriageId(seat.getCarriageId());
+            if (carriage.isEmpty()) {
+                return null;
+            }
+            ring = getRing(carriage.get().getTrainId(), carriage.get().getTypeId());
+        }
+        if (ring.getLayout().indexOf(seat.getSeatId()) < 0) {
+            return null;
+        }
+        return ring.getOrCreate(travelDate);
+    }
+
+    private SeatOccupancyRing getRing(Integer trainId, Integer typeId) {
+        String key = layoutKey(trainId, typeId);
+        SeatOccupancyRing ring = rings.get(key);
+        if (ring != null) {
+            return ring;
+        }
+        synchronized (rings) {
+            ring = rings.get(key);
+            if (ring == null) {
+                ring = loadRing(trainId, typeId);
+                registerRing(key, ring);
+            }
+            return ring;
+        }
+    }
+
+    /**
+     * 加载车次席别的座位布局及窗口内全部日期的占用记录
+     */
+    private SeatOccupancyRing loadRing(Integer trainId, Integer typeId) {
+        List<TrainCarriage> carriages = trainCarriageRepository.findByTrainIdAndTypeId(trainId, typeId);
+        List<Seat> seats = seatRepository.findByTrainAndType(trainId, typeId);
+        int stationCount = intervalMaskCache.getTable(trainId).getStationCount();
+        SeatOccupancyRing ring = new SeatOccupancyRing(new SeatLayout(trainId, typeId, stationCount, carriages, seats), horizonDays);
+        if (!seats.isEmpty()) {
+            List<Long> seatIds = new ArrayList<>(seats.size());
+            for (Seat seat : seats) {
+                seatIds.add(seat.getSeatId());
+            }
+            LocalDate today = LocalDate.now();
+            for (SeatOccupancy occupancy : seatOccupancyRepository.findBySeatIdInAndTravelDateBetween(seatIds, today, lastDate(today))) {
+                applyOccupancy(ring, occupancy);
+            }
+        }
+        return ring;
+    }
+
+    private void registerRing(String key, SeatOccupancyRing ring) {
+        rings.put(key, ring);
+        SeatLayout layout = ring.getLayout();
+        for (int i = 0; i < layout.size(); i++) {
+            ringBySeatId.put(layout.getSeat(i).getSeatId(), ring);
+        }
+    }
+
+    private void applyOccupancy(SeatOccupancyRing ring, SeatOccupancy occupancy) {
+        int index = ring.getLayout().indexOf(occupancy.getSeatId());
+        if (index >= 0 && occupancy.getOccupancyBitmap() != null) {
+            int word = occupancy.getWordIndex() != null ? occupancy.getWordIndex() : 0;
+            ring.getOrCreate(occupancy.getTravelDate()).load(index, word, occupancy.getOccupancyBitmap());
+        }
+    }
+
+    /**
+     * 从车次掩码表读取区间掩码，不分配内存
+     * 掩码表与布局字数不一致（时刻表刚变更、布局尚未重新加载）时按布局字数临时生成
+     */
+    private long[] intervalMask(SeatOccupancyMap map, int departureSequence, int arrivalSequence) {
+        SeatLayout layout = map.getLayout();
+        IntervalMaskTable table = intervalMaskCache.getTable(layout.getTrainId());
+        if (table.getWords() == layout.getMaskWords() && arrivalSequence <= table.getStationCount()) {
+            return table.getMask(departureSequence, arrivalSequence);
+        }
+        return SeatBitmapUtil.generateIntervalMask(departureSequence, arrivalSequence, layout.getMaskWords());
+    }
+
+    private LocalDate lastDate(LocalDate today) {
+        return today.plusDays(horizonDays - 1);
+    }
+
+    private SeatSlot toSlot(SeatOccupancyMap map, int index) {
+        SeatLayout layout = map.getLayout();
+        return new SeatSlot(layout.getSeat(index), layout.getCarriageNumber(index));
+    }
+
+    private static String layoutKey(Integer trainId, Integer typeId) {
+        return trainId + ":" + typeId;
+    }
+
+    /**
+     * 选座结果：座位及其所在车厢号
+     */
+    @Data
+    @AllArgsConstructor
+    public static class SeatSlot {
+        private Seat seat;
+        private String carriageNumber;
+    }
+}
@@ -0,0 +1,274 @@
+package com.example.techprototype.Component;
+
+import java.time.LocalDate;
+import java.util.Arrays;
+
+/**
+ * 单个车次/日期/席别的座位占用位图
+ * 每个座位的区间占用位图由maskWords个long组成（每站2bit，32站以内只有1个long），与SeatBitmapUtil的区间掩码同构
+ * occupancy[i*maskWords+w]：第i个座位位图的第w个long
+ * occupiedByBit[b]：按bit切片的座位位集，第b位被占用的座位集合，每个long表示64个座位
+ * 查找空闲座位时，只需将掩码中各bit对应的座位位集做OR，再取第一个为0的位，不需要逐个座位比较
+ */
+class SeatOccupancyMap {
+
+    private static final int BITS = Long.SIZE;
+
+    private final SeatLayout layout;
+    private final LocalDate travelDate;
+    private final int maskWords;
+    private final long[] occupancy;
+    private final long[][] occupiedByBit;
+    private final long[] dirty;
+    private final int seatWords;
+    private final long lastWordMask;
+
+    SeatOccupancyMap(SeatLayout layout, LocalDate travelDate) {
+        this.layout = layout;
+        this.travelDate = travelDate;
+        this.maskWords = layout.getMaskWords();
+        this.occupancy = new long[layout.size() * maskWords];
+        this.seatWords = (layout.size() + BITS - 1) / BITS;
+        this.occupiedByBit = new long[maskWords * BITS][]; // 按需分配，只有路线用到的bit才会有数据
+        this.dirty = new long[seatWords];
+        int tail = layout.size() % BITS;
+        this.lastWordMask = tail == 0 ? -1L : (1L << tail) - 1;
+    }
+
+    SeatLayout getLayout() {
+        return layout;
+    }
+
+    LocalDate getTravelDate() {
+        return travelDate;
+    }
+
+    /**
+     * 查找第一个在区间掩码内完全空闲的座位
+     * @return 座位下标，没有空闲座位返回-1
+     */
+    synchronized int findFirstFree(long[] intervalMask) {
+        for (int w = 0; w < seatWords; w++) {
+            long free = freeSeatsInWord(w, intervalMask);
+            if (free != 0) {
+                return w * BITS + Long.numberOfTrailingZeros(free);
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * 原子地查找并占用第一个空闲座位
+     * @return 座位下标，没有空闲座位返回-1
+     */
+    synchronized int allocate(long[] intervalMask) {
+        int index = findFirstFree(intervalMask);
+        if (index >= 0) {
+            occupy(index, intervalMask);
+        }
+        return index;
+    }
+
+    /**
+     * 原子地为多名乘客一次选座并占用
+     * 优先选择同一车厢内连续的空闲座位；没有足够的连续座位时，选择空闲座位足够的车厢；
+     * 仍不满足时按座位顺序跨车厢选取
+     * @return 选中的座位下标，空闲座位不足时长度小于count
+     */
+    synchronized int[] allocateBatch(long[] intervalMask, int count) {
+        long[] free = new long[seatWords];
+        for (int w = 0; w < seatWords; w++) {
+            free[w] = freeSeatsInWord(w, intervalMask);
+        }
+        int[] chosen = chooseSeats(free, count);
+        for (int index : chosen) {
+            occupy(index, intervalMask);
+        }
+        return chosen;
+    }
+
+    /**
+     * 占用指定座位的区间，区间已被占用时返回false
+     */
+    synchronized boolean tryOccupy(int seatIndex, long[] intervalMask) {
+        if (!isAvailable(seatIndex, intervalMask)) {
+            return false;
+        }
+        occupy(seatIndex, intervalMask);
+        return true;
+    }
+
+    /**
+     * 释放指定座位的区间
+     */
+    synchronized void release(int seatIndex, long[] intervalMask) {
+        int base = seatIndex * maskWords;
+        int word = seatIndex / BITS;
+        long seatBit = 1L << (seatIndex % BITS);
+        for (int m = 0; m < maskWords; m++) {
+            long bits = intervalMask[m];
+            occupancy[base + m] &= ~bits;
+            while (bits != 0) {
+                int bit = m * BITS + Long.numberOfTrailingZeros(bits);
+                if (occupiedByBit[bit] != null) {
+                    occupiedByBit[bit][word] &= ~seatBit;
+                }
+                bits &= bits - 1;
+            }
+        }
+        dirty[word] |= seatBit;
+    }
+
+    synchronized boolean isAvailable(int seatIndex, long[] intervalMask) {
+        int base = seatIndex * maskWords;
+        for (int m = 0; m < maskWords; m++) {
+            if ((occupancy[base + m] & intervalMask[m]) != 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 获取座位位图的第maskWord个long
+     */
+    synchronized long getOccupancy(int seatIndex, int maskWord) {
+        return occupancy[seatIndex * maskWords + maskWord];
+    }
+
+    /**
+     * 获取座位位图的副本
+     */
+    synchronized long[] getOccupancy(int seatIndex) {
+        long[] bitmap = new long[maskWords];
+        System.arraycopy(occupancy, seatIndex * maskWords, bitmap, 0, maskWords);
+        return bitmap;
+    }
+
+    /**
+     * 从数据库加载位图的第maskWord个long，不标记为脏数据
+     */
+    synchronized void load(int seatIndex, int maskWord, long bitmap) {
+        if (bitmap != 0 && maskWord >= 0 && maskWord < maskWords) {
+            occupancy[seatIndex * maskWords + maskWord] |= bitmap;
+            setSlices(seatIndex, maskWord, bitmap);
+        }
+    }
+
+    synchronized void markDirty(int seatIndex) {
+        dirty[seatIndex / BITS] |= 1L << (seatIndex % BITS);
+    }
+
+    /**
+     * 取出并清空待回写的座位下标
+     */
+    synchronized int[] drainDirty() {
+        int count = 0;
+        for (long word : dirty) {
+            count += Long.bitCount(word);
+        }
+        int[] indices = new int[count];
+        int n = 0;
+        for (int w = 0; w < seatWords; w++) {
+            long word = dirty[w];
+            while (word != 0) {
+                indices[n++] = w * BITS + Long.numberOfTrailingZeros(word);
+                word &= word - 1;
+            }
+            dirty[w] = 0L;
+        }
+        return indices;
+    }
+
+    private int[] chooseSeats(long[] free, int count) {
+        int carriages = layout.carriageCount();
+        // 1. 同一车厢内连续的空闲座位
+        for (int c = 0; c < carriages; c++) {
+            int run = 0;
+            for (int i = layout.carriageStart(c); i < layout.carriageEnd(c); i++) {
+                run = isFree(free, i) ? run + 1 : 0;
+                if (run == count) {
+                    int[] chosen = new int[count];
+                    for (int k = 0; k < count; k++) {
+                        chosen[k] = i - count + 1 + k;
+                    }
+                    return chosen;
+                }
+            }
+        }
+        // 2. 同一车厢内空闲座位最多的车厢
+        int bestCarriage = -1;
+        int bestFree = 0;
+        for (int c = 0; c < carriages; c++) {
+            int freeCount = 0;
+            for (int i = layout.carriageStart(c); i < layout.carriageEnd(c); i++) {
+                if (isFree(free, i)) {
+                    freeCount++;
+                }
+            }
+            if (freeCount > bestFree) {
+                bestCarriage = c;
+                bestFree = freeCount;
+            }
+        }
+        if (bestCarriage >= 0 && bestFree >= count) {
+            return collectFree(free, layout.carriageStart(bestCarriage), layout.carriageEnd(bestCarriage), count);
+        }
+        // 3. 跨车厢按座位顺序选取
+        return collectFree(free, 0, layout.size(), count);
+    }
+
+    private int[] collectFree(long[] free, int from, int to, int count) {
+        int[] chosen = new int[count];
+        int n = 0;
+        for (int i = from; i < to && n < count; i++) {
+            if (isFree(free, i)) {
+                chosen[n++] = i;
+            }
+        }
+        return n == count ? chosen : Arrays.copyOf(chosen, n);
+    }
+
+    private static boolean isFree(long[] free, int seatIndex) {
+        return (free[seatIndex / BITS] & (1L << (seatIndex % BITS))) != 0;
+    }
+
+    private long freeSeatsInWord(int word, long[] intervalMask) {
+        long occupied = 0L;
+        for (int m = 0; m < maskWords; m++) {
+            long bits = intervalMask[m];
+            while (bits != 0) {
+                long[] slice = occupiedByBit[m * BITS + Long.numberOfTrailingZeros(bits)];
+                if (slice != null) {
+                    occupied |= slice[word];
+                }
+                bits &= bits - 1;
+            }
+        }
+        long valid = word == seatWords - 1 ? lastWordMask : -1L;
+        return ~occupied & valid;
+    }
+
+    private void occupy(int seatIndex, long[] intervalMask) {
+        int base = seatIndex * maskWords;
+        for (int m = 0; m < maskWords; m++) {
+            occupancy[base + m] |= intervalMask[m];
+            setSlices(seatIndex, m, intervalMask[m]);
+        }
+        dirty[seatIndex / BITS] |= 1L << (seatIndex % BITS);
+    }
+
+    private void setSlices(int seatIndex, int maskWord, long bitmap) {
+        int word = seatIndex / BITS;
+        long seatBit = 1L << (seatIndex % BITS);
+        long bits = bitmap;
+        while (bits != 0) {
+            int bit = maskWord * BITS + Long.numberOfTrailingZeros(bits);
+            if (occupiedByBit[bit] == null) {
+                occupiedByBit[bit] = new long[seatWords];
+            }
+            occupiedByBit[bit][word] |= seatBit;
+            bits &= bits - 1;
+        }
+    }
+}
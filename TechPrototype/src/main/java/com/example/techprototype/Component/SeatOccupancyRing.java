@@ -0,0 +1,55 @@
+package com.example.techprototype.Component;
+
+import com.example.techprototype.Util.SeatBitmapUtil;
+
+import java.time.LocalDate;
+
+/**
+ * 单个车次+席别的日期环形缓冲
+ * slots[epochDay % horizonDays] 存放该日期的占用位图，位图自带的出行日期作为槽位标签
+ * 标签与查询日期不一致说明槽位中是已过期的日期，直接视为空槽复用，跨天无需重启或批量更新
+ */
+class SeatOccupancyRing {
+
+    private final SeatLayout layout;
+    private final int horizonDays;
+    private final SeatOccupancyMap[] slots;
+
+    SeatOccupancyRing(SeatLayout layout, int horizonDays) {
+        this.layout = layout;
+        this.horizonDays = horizonDays;
+        this.slots = new SeatOccupancyMap[horizonDays];
+    }
+
+    SeatLayout getLayout() {
+        return layout;
+    }
+
+    /**
+     * 获取指定日期的占用位图，槽位为空或已过期时放入一个全空的位图
+     */
+    synchronized SeatOccupancyMap getOrCreate(LocalDate travelDate) {
+        int slot = SeatBitmapUtil.getSlotIndex(travelDate, horizonDays);
+        SeatOccupancyMap map = slots[slot];
+        if (map == null || !map.getTravelDate().equals(travelDate)) {
+            map = new SeatOccupancyMap(layout, travelDate);
+            slots[slot] = map;
+        }
+        return map;
+    }
+
+    /**
+     * 日期滚动：清空所有早于today的槽位，一次遍历完成
+     * @return 清空的槽位数
+     */
+    synchronized int rollOver(LocalDate today) {
+        int expired = 0;
+        for (int i = 0; i < slots.length; i++) {
+            if (slots[i] != null && slots[i].getTravelDate().isBefore(today)) {
+                slots[i] = null;
+                expired++;
+            }
+        }
+        return expired;
+    }
+}
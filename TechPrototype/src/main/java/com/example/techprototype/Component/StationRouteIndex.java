@@ -0,0 +1,223 @@
+package com.example.techprototype.Component;
+
+import com.example.techprototype.Entity.Station;
+import com.example.techprototype.Entity.TrainStop;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeSet;
+
+/**
+ * 车站 -> 车次倒排索引
+ * 每个车站一条按 (车次ID, 站序) 升序的倒排表，两站之间的直达车次由两条倒排表归并得到；
+ * 站名和城市的所有后缀放入字典树，关键字匹配与 LIKE '%关键字%' 一致。
+ * 随时刻表快照一起构建，构建后不再修改
+ */
+public final class StationRouteIndex {
+
+    private static final int[] NO_STATIONS = new int[0];
+    private static final Postings NO_POSTINGS = new Postings(new int[0], new int[0], new TrainStop[0]);
+
+    // 车站ID -> 倒排表
+    private final Postings[] postingsByStation;
+    // 站名、城市后缀字典树
+    private final TrieNode root;
+
+    private StationRouteIndex(Postings[] postingsByStation, TrieNode root) {
+        this.postingsByStation = postingsByStation;
+        this.root = root;
+    }
+
+    static StationRouteIndex build(List<TrainStop> stops, List<Station> stations, int stationSlots) {
+        List<List<TrainStop>> grouped = new ArrayList<>(stationSlots);
+        for (int i = 0; i < stationSlots; i++) {
+            grouped.add(null);
+        }
+        for (TrainStop stop : stops) {
+            int stationId = stop.getStationId();
+            if (stationId < 0 || stationId >= stationSlots) {
+                continue;
+            }
+            if (grouped.get(stationId) == null) {
+                grouped.set(stationId, new ArrayList<>());
+            }
+            grouped.get(stationId).add(stop);
+        }
+
+        Postings[] postingsByStation = new Postings[stationSlots];
+        for (int stationId = 0; stationId < stationSlots; stationId++) {
+            List<TrainStop> stationStops = grouped.get(stationId);
+            if (stationStops != null) {
+                stationStops.sort(Comparator.comparing(TrainStop::getTrainId).thenComparing(TrainStop::getSequenceNumber));
+                postingsByStation[stationId] = Postings.of(stationStops);
+            }
+        }
+
+        TrieBuilder trie = new TrieBuilder();
+        for (Station station : stations) {
+            trie.addAllSuffixes(station.getStationName(), station.getStationId());
+            trie.addAllSuffixes(station.getCity(), station.getStationId());
+        }
+        return new StationRouteIndex(postingsByStation, trie.freeze());
+    }
+
+    /**
+     * 查找站名或城市包含关键字的车站
+     * @return 车站ID，升序
+     */
+    public int[] findStations(String keyword) {
+        if (keyword == null) {
+            return NO_STATIONS;
+        }
+        TrieNode node = root;
+        String key = keyword.toLowerCase(Locale.ROOT);
+        for (int i = 0; i < key.length() && node != null; i++) {
+            node = node.children.get(key.charAt(i));
+        }
+        return node != null ? node.stationIds : NO_STATIONS;
+    }
+
+    /**
+     * 查找先经过出发站、后经过到达站的车次，归并两站的倒排表，O(a+b)
+     * @return 每个车次一条，按车次ID升序
+     */
+    public List<RouteMatch> findDirect(int fromStationId, int toStationId) {
+        Postings from = postingsOf(fromStationId);
+        Postings to = postingsOf(toStationId);
+        List<RouteMatch> matches = new ArrayList<>();
+        int i = 0;
+        int j = 0;
+        while (i < from.size() && j < to.size()) {
+            int fromTrain = from.trainIds[i];
+            int toTrain = to.trainIds[j];
+            if (fromTrain < toTrain) {
+                i++;
+            } else if (fromTrain > toTrain) {
+                j++;
+            } else {
+                // 同一车次可能多次经停同一站（环线），取最早的出发和其后最早的到达
+                int toEnd = j;
+                while (toEnd < to.size() && to.trainIds[toEnd] == toTrain) {
+                    toEnd++;
+                }
+                for (int k = j; k < toEnd; k++) {
+                    if (to.sequences[k] > from.sequences[i]) {
+                        matches.add(new RouteMatch(from.stops[i], to.stops[k]));
+                        break;
+                    }
+                }
+                while (i < from.size() && from.trainIds[i] == fromTrain) {
+                    i++;
+                }
+                j = toEnd;
+            }
+        }
+        return matches;
+    }
+
+    private Postings postingsOf(int stationId) {
+        Postings postings = stationId >= 0 && stationId < postingsByStation.length ? postingsByStation[stationId] : null;
+        return postings != null ? postings : NO_POSTINGS;
+    }
+
+    /**
+     * 一个车次在出发站和到达站的停靠信息
+     */
+    public static final class RouteMatch {
+        private final TrainStop departureStop;
+        private final TrainStop arrivalStop;
+
+        RouteMatch(TrainStop departureStop, TrainStop arrivalStop) {
+            this.departureStop = departureStop;
+            this.arrivalStop = arrivalStop;
+        }
+
+        public TrainStop getDepartureStop() {
+            return departureStop;
+        }
+
+        public TrainStop getArrivalStop() {
+            return arrivalStop;
+        }
+
+        public Integer getTrainId() {
+            return departureStop.getTrainId();
+        }
+    }
+
+    /**
+     * 一个车站的倒排表，三个数组下标对齐
+     */
+    private static final class Postings {
+        private final int[] trainIds;
+        private final int[] sequences;
+        private final TrainStop[] stops;
+
+        private Postings(int[] trainIds, int[] sequences, TrainStop[] stops) {
+            this.trainIds = trainIds;
+            this.sequences = sequences;
+            this.stops = stops;
+        }
+
+        private static Postings of(List<TrainStop> sortedStops) {
+            int size = sortedStops.size();
+            int[] trainIds = new int[size];
+            int[] sequences = new int[size];
+            TrainStop[] stops = new TrainStop[size];
+            for (int i = 0; i < size; i++) {
+                TrainStop stop = sortedStops.get(i);
+                trainIds[i] = stop.getTrainId();
+                sequences[i] = stop.getSequenceNumber();
+                stops[i] = stop;
+            }
+            return new Postings(trainIds, sequences, stops);
+        }
+
+        private int size() {
+            return trainIds.length;
+        }
+    }
+
+    private static final class TrieNode {
+        private final Map<Character, TrieNode> children;
+        // 经过该节点的所有车站，即名称或城市包含该前缀路径的车站
+        private final int[] stationIds;
+
+        private TrieNode(Map<Character, TrieNode> children, int[] stationIds) {
+            this.children = children;
+            this.stationIds = stationIds;
+        }
+    }
+
+    private static final class TrieBuilder {
+        private final Map<Character, TrieBuilder> children = new HashMap<>();
+        private final TreeSet<Integer> stationIds = new TreeSet<>();
+
+        private void addAllSuffixes(String text, Integer stationId) {
+            stationIds.add(stationId);
+            if (text == null) {
+                return;
+            }
+            String key = text.toLowerCase(Locale.ROOT);
+            for (int start = 0; start < key.length(); start++) {
+                TrieBuilder node = this;
+                for (int i = start; i < key.length(); i++) {
+                    node = node.children.computeIfAbsent(key.charAt(i), c -> new TrieBuilder());
+                    node.stationIds.add(stationId);
+                }
+            }
+        }
+
+        private TrieNode freeze() {
+            Map<Character, TrieNode> frozen = new HashMap<>();
+            for (Map.Entry<Character, TrieBuilder> entry : children.entrySet()) {
+                frozen.put(entry.getKey(), entry.getValue().freeze());
+            }
+            return new TrieNode(frozen, stationIds.stream().mapToInt(Integer::intValue).toArray());
+        }
+    }
+}
@@ -0,0 +1,25 @@
+package com.example.techprototype.Component;
+
+import com.example.techprototype.Entity.TrainStop;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+/**
+ * 车次停靠点序号查询
+ * 停靠点ID -> 站序，用于把出发/到达停靠点换算为区段范围。
+ * 直接取自时刻表缓存的当前快照，时刻表重新加载后自动使用新站序，不需要单独失效
+ */
+@Component
+public class StopSequenceCache {
+
+    @Autowired
+    private TimetableCache timetableCache;
+
+    /**
+     * 查询停靠点在车次中的站序
+     * @return 站序，停靠点不属于该车次时返回null
+     */
+    public Integer getSequence(Integer trainId, Long stopId) {
+        return timetableCache.getStop(trainId, stopId).map(TrainStop::getSequenceNumber).orElse(null);
+    }
+}
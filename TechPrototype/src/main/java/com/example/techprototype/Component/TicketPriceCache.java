@@ -0,0 +1,162 @@
+package com.example.techprototype.Component;
+
+import com.example.techprototype.DAO.TicketInventoryDAO;
+import com.example.techprototype.Entity.TicketInventory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 票价缓存
+ * 基础票价只在库存表中维护且不随售票变化，按 车次+日期 整批加载一次，
+ * 下单时不再对库存行 SELECT ... FOR UPDATE 取票价。
+ * 同时缓存区间的席别、库存ID，车次查询按结果中的车次批量预加载，一次查询取齐所有车次的票价
+ * 缓存项超过有效期后重新加载；没有库存记录的 车次+日期 也会缓存空结果，但有效期更短，
+ * 库存记录补建后最多在该有效期后可见。车次时刻表变更时整车次失效
+ */
+@Component
+public class TicketPriceCache {
+
+    @Autowired
+    private TicketInventoryDAO ticketInventoryDAO;
+
+    @Value("${ticket.price.cache.ttl-ms:1800000}")
+    private long ttlMillis = 1800000;
+
+    @Value("${ticket.price.cache.empty-ttl-ms:60000}")
+    private long emptyTtlMillis = 60000;
+
+    // 车次ID:日期 -> (出发站:到达站 -> 该区间各席别的票价记录)
+    private final Map<String, CachedFares> faresByTrainDate = new ConcurrentHashMap<>();
+
+    /**
+     * 查询基础票价
+     * @return 基础票价，库存表中没有该区间席别时为空
+     */
+    public Optional<BigDecimal> getBasePrice(Integer trainId, Long departureStopId, Long arrivalStopId,
+                                             LocalDate travelDate, Integer carriageTypeId) {
+        for (TicketInventory fare : getFares(trainId, departureStopId, arrivalStopId, travelDate)) {
+            if (fare.getCarriageTypeId().equals(carriageTypeId)) {
+                return Optional.ofNullable(fare.getPrice());
+            }
+        }
+        return Optional.empty();
+    }
+
+    /**
+     * 查询区间各席别的票价记录
+     * 返回的是加载时的只读副本，其中的可用座位数是加载时的快照，不能当作余票使用
+     * @return 库存表中没有该区间时为空列表
+     */
+    public List<TicketInventory> getFares(Integer trainId, Long departureStopId, Long arrivalStopId, LocalDate travelDate) {
+        long now = System.currentTimeMillis();
+        CachedFares cached = faresByTrainDate.compute(trainId + ":" + travelDate, (key, current) ->
+                current != null && !isExpired(current, now) ? current
+                        : load(ticketInventoryDAO.findByTrainAndDate(trainId, travelDate), now));
+        return cached.fares.getOrDefault(departureStopId + ":" + arrivalStopId, Collections.emptyList());
+    }
+
+    /**
+     * 一次查询加载多个车次同一日期的票价，已缓存的车次不再查询
+     */
+    public void preload(Collection<Integer> trainIds, LocalDate travelDate) {
+        long now = System.currentTimeMillis();
+        Set<Integer> missing = new LinkedHashSet<>();
+        for (Integer trainId : trainIds) {
+            CachedFares cached = faresByTrainDate.get(trainId + ":" + travelDate);
+            if (cached == null || isExpired(cached, now)) {
+                missing.add(trainId);
+            }
+        }
+        if (missing.isEmpty()) {
+            return;
+        }
+        Map<Integer, List<TicketInventory>> rowsByTrain = new HashMap<>();
+        for (TicketInventory inventory : ticketInventoryDAO.findByTrainIdsAndDate(missing, travelDate)) {
+            rowsByTrain.computeIfAbsent(inventory.getTrainId(), id -> new ArrayList<>()).add(inventory);
+        }
+        // 没有库存记录的车次也缓存空结果，在较短的有效期内避免重复查询
+        for (Integer trainId : missing) {
+            faresByTrainDate.put(trainId + ":" + travelDate,
+                    load(rowsByTrain.getOrDefault(trainId, Collections.emptyList()), now));
+        }
+    }
+
+    /**
+     * 使车次所有日期的票价失效，车次时刻表变更后停靠点可能变化，由时刻表变更事件调用
+     */
+    public void evict(Integer trainId) {
+        String prefix = trainId + ":";
+        faresByTrainDate.keySet().removeIf(key -> key.startsWith(prefix));
+    }
+
+    /**
+     * 每10分钟清理超过有效期或已过发车日期的票价
+     */
+    @Scheduled(fixedDelay = 600000)
+    public void evictExpired() {
+        long now = System.currentTimeMillis();
+        LocalDate today = LocalDate.now();
+        faresByTrainDate.entrySet().removeIf(entry -> isExpired(entry.getValue(), now)
+                || LocalDate.parse(entry.getKey().substring(entry.getKey().indexOf(':') + 1)).isBefore(today));
+    }
+
+    private CachedFares load(List<TicketInventory> inventories, long now) {
+        return new CachedFares(groupByInterval(inventories), now);
+    }
+
+    private boolean isExpired(CachedFares cached, long now) {
+        return now - cached.loadedAt > (cached.fares.isEmpty() ? emptyTtlMillis : ttlMillis);
+    }
+
+    private Map<String, List<TicketInventory>> groupByInterval(List<TicketInventory> inventories) {
+        Map<String, List<TicketInventory>> fares = new HashMap<>();
+        for (TicketInventory inventory : inventories) {
+            fares.computeIfAbsent(inventory.getDepartureStopId() + ":" + inventory.getArrivalStopId(), key -> new ArrayList<>())
+                    .add(copyFare(inventory));
+        }
+        fares.replaceAll((interval, list) -> Collections.unmodifiableList(list));
+        return fares;
+    }
+
+    /**
+     * 复制票价相关字段，缓存不持有持久化上下文中的实体
+     */
+    private TicketInventory copyFare(TicketInventory inventory) {
+        TicketInventory fare = new TicketInventory();
+        fare.setInventoryId(inventory.getInventoryId());
+        fare.setTrainId(inventory.getTrainId());
+        fare.setDepartureStopId(inventory.getDepartureStopId());
+        fare.setArrivalStopId(inventory.getArrivalStopId());
+        fare.setTravelDate(inventory.getTravelDate());
+        fare.setCarriageTypeId(inventory.getCarriageTypeId());
+        fare.setTotalSeats(inventory.getTotalSeats());
+        fare.setAvailableSeats(inventory.getAvailableSeats());
+        fare.setPrice(inventory.getPrice());
+        return fare;
+    }
+
+    private static final class CachedFares {
+        private final Map<String, List<TicketInventory>> fares;
+        private final long loadedAt;
+
+        private CachedFares(Map<String, List<TicketInventory>> fares, long loadedAt) {
+            this.fares = fares;
+            this.loadedAt = loadedAt;
+        }
+    }
+}
@@ -0,0 +1,188 @@
+package com.example.techprototype.Component;
+
+import com.example.techprototype.Entity.Station;
+import com.example.techprototype.Entity.Train;
+import com.example.techprototype.Entity.TrainStop;
+import com.example.techprototype.Event.TimetableChangedEvent;
+import com.example.techprototype.Repository.StationRepository;
+import com.example.techprototype.Repository.TrainRepository;
+import com.example.techprototype.Repository.TrainStopRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.CommandLineRunner;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * 常驻内存的时刻表缓存
+ * 启动时把车次、停靠点、车站整体加载为一个不可变快照，查询车次号、站名、城市、到发时间时不再访问数据库。
+ * 时刻表变更时重新加载并整体替换快照，读取方拿到的始终是同一版本的完整数据；
+ * 重新加载后逐个车次比较停靠点，对有变化的车次发布时刻表变更事件，由监听器失效依赖停靠点的派生缓存
+ * 重新加载的触发：
+ * 1. 每 timetable.change-check-ms（默认60秒）查询一次时刻表指纹，车次/车站行数或停靠点指纹变化时重新加载，
+ *    停靠点的增删、车站、站序、到发时间、停站时长、里程的修改最多陈旧一个检查周期；
+ * 2. 修改时刻表后调用 POST /api/trains/timetable/reload 立即重新加载，指纹覆盖不到的修改（车次号、站名等）依赖此接口；
+ * 3. 每天凌晨兜底重新加载一次，未触发上述两种方式的修改最多陈旧一天
+ */
+@Component
+public class TimetableCache implements CommandLineRunner {
+
+    @Autowired
+    private TrainRepository trainRepository;
+
+    @Autowired
+    private TrainStopRepository trainStopRepository;
+
+    @Autowired
+    private StationRepository stationRepository;
+
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
+    private volatile TimetableSnapshot snapshot;
+
+    // 当前快照加载前查询的时刻表指纹
+    private volatile String fingerprint;
+
+    @Override
+    public void run(String... args) {
+        reload();
+    }
+
+    /**
+     * 重新加载时刻表，加载完成后替换当前快照，再为停靠点有变化的车次发布变更事件
+     * @return 新快照的版本号
+     */
+    public synchronized long reload() {
+        // 先取指纹再加载，加载期间的修改会在下次检查时再次触发重新加载
+        String currentFingerprint = queryFingerprint();
+        TimetableSnapshot previous = snapshot;
+        long version = previous != null ? previous.getVersion() + 1 : 1;
+        TimetableSnapshot loaded = TimetableSnapshot.build(version, trainRepository.findAll(),
+                trainStopRepository.findAll(), stationRepository.findAll());
+        snapshot = loaded;
+        fingerprint = currentFingerprint;
+        System.out.println("时刻表缓存已加载: 版本" + version + ", " + loaded.getTrainCount() + "个车次, "
+                + loaded.getStopCount() + "个停靠点");
+
+        if (previous != null) {
+            for (Integer trainId : changedTrainIds(previous, loaded)) {
+                eventPublisher.publishEvent(new TimetableChangedEvent(this, trainId));
+            }
+        }
+        return version;
+    }
+
+    /**
+     * 新旧快照中停靠点不同的车次，包括新增和删除的车次
+     */
+    private Set<Integer> changedTrainIds(TimetableSnapshot previous, TimetableSnapshot loaded) {
+        Set<Integer> trainIds = new TreeSet<>();
+        previous.getTrains().forEach(train -> trainIds.add(train.getTrainId()));
+        loaded.getTrains().forEach(train -> trainIds.add(train.getTrainId()));
+        trainIds.removeIf(trainId -> previous.getStops(trainId).equals(loaded.getStops(trainId)));
+        return trainIds;
+    }
+
+    /**
+     * 时刻表指纹变化时重新加载，指纹只需一次聚合查询和两次计数，不加载时刻表
+     * @return 是否重新加载
+     */
+    @Scheduled(fixedDelayString = "${timetable.change-check-ms:60000}", initialDelayString = "${timetable.change-check-ms:60000}")
+    public boolean reloadIfChanged() {
+        try {
+            if (snapshot != null && queryFingerprint().equals(fingerprint)) {
+                return false;
+            }
+            System.out.println("时刻表指纹变化，重新加载时刻表缓存");
+            reload();
+            return true;
+        } catch (Exception e) {
+            System.err.println("时刻表变更检查失败: " + e.getMessage());
+            return false;
+        }
+    }
+
+    private String queryFingerprint() {
+        List<Object[]> rows = trainStopRepository.fingerprint();
+        String stops = rows == null || rows.isEmpty() ? "" : Arrays.toString(rows.get(0));
+        return trainRepository.count() + "|" + stationRepository.count() + "|" + stops;
+    }
+
+    /**
+     * 每天凌晨重新加载一次，发现时刻表修改时发布变更事件
+     */
+    @Scheduled(cron = "0 10 0 * * ?")
+    public void scheduledReload() {
+        try {
+            reload();
+        } catch (Exception e) {
+            System.err.println("时刻表缓存重新加载失败: " + e.getMessage());
+        }
+    }
+
+    /**
+     * 当前快照，首次使用时还未加载则先加载
+     */
+    public TimetableSnapshot getSnapshot() {
+        TimetableSnapshot current = snapshot;
+        if (current == null) {
+            synchronized (this) {
+                if (snapshot == null) {
+                    reload();
+                }
+                current = snapshot;
+            }
+        }
+        return current;
+    }
+
+    public long getVersion() {
+        return getSnapshot().getVersion();
+    }
+
+    public Optional<Train> getTrain(Integer trainId) {
+        return trainId == null ? Optional.empty() : Optional.ofNullable(getSnapshot().getTrain(trainId));
+    }
+
+    public Optional<TrainStop> getStop(Long stopId) {
+        return stopId == null ? Optional.empty() : Optional.ofNullable(getSnapshot().getStop(stopId));
+    }
+
+    /**
+     * 查询车次的停靠点，停靠点不属于该车次时返回空
+     */
+    public Optional<TrainStop> getStop(Integer trainId, Long stopId) {
+        return getStop(stopId).filter(stop -> stop.getTrainId().equals(trainId));
+    }
+
+    /**
+     * 车次的全部停靠点，按站序排列
+     */
+    public List<TrainStop> getStops(Integer trainId) {
+        return trainId == null ? List.of() : getSnapshot().getStops(trainId);
+    }
+
+    public Optional<Station> getStation(Integer stationId) {
+        return stationId == null ? Optional.empty() : Optional.ofNullable(getSnapshot().getStation(stationId));
+    }
+
+    /**
+     * 停靠点所在的车站
+     */
+    public Optional<Station> getStationOfStop(Long stopId) {
+        if (stopId == null) {
+            return Optional.empty();
+        }
+        // 停靠点和车站取自同一个快照
+        TimetableSnapshot current = getSnapshot();
+        TrainStop stop = current.getStop(stopId);
+        return stop == null ? Optional.empty() : Optional.ofNullable(current.getStation(stop.getStationId()));
+    }
+}
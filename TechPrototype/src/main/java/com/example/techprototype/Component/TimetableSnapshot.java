@@ -0,0 +1,142 @@
+package com.example.techprototype.Component;
+
+import com.example.techprototype.Entity.Station;
+import com.example.techprototype.Entity.Train;
+import com.example.techprototype.Entity.TrainStop;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * 时刻表快照（车次、停靠点、车站）
+ * 构建后不再修改，按ID直接下标访问；车次、停靠点、车站ID均为自增主键，数组长度为最大ID+1。
+ * 同时构建车站到车次的倒排索引和中转换乘网络，供车次查询和中转查询使用。
+ * 快照中的实体为共享对象，只读使用，不能修改
+ */
+public final class TimetableSnapshot {
+
+    private final long version;
+    // 车次ID -> 车次
+    private final Train[] trains;
+    // 按车次ID排列的全部车次
+    private final List<Train> trainList;
+    // 停靠点ID -> 停靠点
+    private final TrainStop[] stops;
+    // 车次ID -> 按站序排列的停靠点
+    private final List<TrainStop>[] stopsByTrain;
+    // 车站ID -> 车站
+    private final Station[] stations;
+    private final StationRouteIndex routeIndex;
+    private final TransferNetwork transferNetwork;
+    private final int trainCount;
+    private final int stopCount;
+
+    private TimetableSnapshot(long version, Train[] trains, List<Train> trainList, TrainStop[] stops,
+                              List<TrainStop>[] stopsByTrain, Station[] stations, StationRouteIndex routeIndex,
+                              TransferNetwork transferNetwork, int trainCount, int stopCount) {
+        this.version = version;
+        this.trains = trains;
+        this.trainList = trainList;
+        this.stops = stops;
+        this.stopsByTrain = stopsByTrain;
+        this.stations = stations;
+        this.routeIndex = routeIndex;
+        this.transferNetwork = transferNetwork;
+        this.trainCount = trainCount;
+        this.stopCount = stopCount;
+    }
+
+    @SuppressWarnings("unchecked")
+    public static TimetableSnapshot build(long version, List<Train> trainList, List<TrainStop> stopList, List<Station> stationList) {
+        Train[] trains = new Train[maxId(trainList.stream().mapToLong(Train::getTrainId).max().orElse(-1))];
+        for (Train train : trainList) {
+            trains[train.getTrainId()] = train;
+        }
+        List<Train> trainsById = new ArrayList<>(trainList.size());
+        for (Train train : trains) {
+            if (train != null) {
+                trainsById.add(train);
+            }
+        }
+
+        TrainStop[] stops = new TrainStop[maxId(stopList.stream().mapToLong(TrainStop::getStopId).max().orElse(-1))];
+        List<TrainStop>[] grouped = new List[trains.length];
+        for (TrainStop stop : stopList) {
+            stops[Math.toIntExact(stop.getStopId())] = stop;
+            if (stop.getTrainId() < grouped.length) {
+                if (grouped[stop.getTrainId()] == null) {
+                    grouped[stop.getTrainId()] = new ArrayList<>();
+                }
+                grouped[stop.getTrainId()].add(stop);
+            }
+        }
+        for (int trainId = 0; trainId < grouped.length; trainId++) {
+            if (grouped[trainId] != null) {
+                grouped[trainId].sort(Comparator.comparing(TrainStop::getSequenceNumber));
+                grouped[trainId] = Collections.unmodifiableList(grouped[trainId]);
+            }
+        }
+
+        Station[] stations = new Station[maxId(stationList.stream().mapToLong(Station::getStationId).max().orElse(-1))];
+        for (Station station : stationList) {
+            stations[station.getStationId()] = station;
+        }
+        StationRouteIndex routeIndex = StationRouteIndex.build(stopList, stationList, stations.length);
+        TransferNetwork transferNetwork = TransferNetwork.build(grouped, stations.length);
+        return new TimetableSnapshot(version, trains, Collections.unmodifiableList(trainsById), stops, grouped, stations, routeIndex, transferNetwork,
+                trainList.size(), stopList.size());
+    }
+
+    private static int maxId(long max) {
+        return Math.toIntExact(max + 1);
+    }
+
+    public long getVersion() {
+        return version;
+    }
+
+    public Train getTrain(int trainId) {
+        return trainId >= 0 && trainId < trains.length ? trains[trainId] : null;
+    }
+
+    /**
+     * 全部车次，按车次ID排列
+     */
+    public List<Train> getTrains() {
+        return trainList;
+    }
+
+    public TrainStop getStop(long stopId) {
+        return stopId >= 0 && stopId < stops.length ? stops[(int) stopId] : null;
+    }
+
+    /**
+     * 车次的全部停靠点，按站序排列，车次不存在时返回空列表
+     */
+    public List<TrainStop> getStops(int trainId) {
+        List<TrainStop> trainStops = trainId >= 0 && trainId < stopsByTrain.length ? stopsByTrain[trainId] : null;
+        return trainStops != null ? trainStops : Collections.emptyList();
+    }
+
+    public Station getStation(int stationId) {
+        return stationId >= 0 && stationId < stations.length ? stations[stationId] : null;
+    }
+
+    public StationRouteIndex getRouteIndex() {
+        return routeIndex;
+    }
+
+    public TransferNetwork getTransferNetwork() {
+        return transferNetwork;
+    }
+
+    public int getTrainCount() {
+        return trainCount;
+    }
+
+    public int getStopCount() {
+        return stopCount;
+    }
+}
@@ -0,0 +1,208 @@
+package com.example.techprototype.Component;
+
+import com.example.techprototype.DTO.TrainListDTO;
+import com.example.techprototype.DTO.TrainListPayload;
+import com.example.techprototype.Entity.Station;
+import com.example.techprototype.Entity.Train;
+import com.example.techprototype.Entity.TrainStop;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.util.DigestUtils;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
+
+/**
+ * 车次列表投影（/api/trains/list）
+ * 每个车次一行，连同序列化好的JSON和ETag常驻内存，请求直接返回同一份字节。
+ * 1. 时刻表版本变化时只重建车次、停靠点或途经站名有变化的行
+ * 2. 本实例上列表日期的库存变更按车次库存版本只重建对应的行，其他日期的库存变更不影响投影
+ * 3. 其他实例上的售票由最大陈旧时间兜底，超过后重新读取全部行的余票
+ * 没有重建任何行时沿用已序列化的内容和ETag；有其他线程正在重建时直接返回当前版本，不排队等待
+ */
+@Component
+public class TrainListProjection {
+
+    @Autowired
+    private SearchResultCache searchResultCache;
+
+    @Value("${train.list.max-staleness-ms:5000}")
+    private long maxStalenessMillis = 5000;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final ReentrantLock rebuildLock = new ReentrantLock();
+
+    // 车次ID -> 列表行，只在持有rebuildLock时读写
+    private Map<Integer, Row> rows = new TreeMap<>();
+    private volatile Projection projection;
+
+    /**
+     * 当前的车次列表
+     * @param loader 按车次ID重新生成列表行，返回值与参数下标对齐
+     */
+    public TrainListPayload get(TimetableSnapshot timetable, LocalDate listDate,
+                                Function<List<Integer>, List<TrainListDTO>> loader) {
+        Projection current = projection;
+        if (current != null && current.isFresh(timetable.getVersion(), listDate)) {
+            return current.payload;
+        }
+        if (current != null) {
+            if (!rebuildLock.tryLock()) {
+                return current.payload;
+            }
+        } else {
+            rebuildLock.lock();
+        }
+        try {
+            current = projection;
+            if (current == null || !current.isFresh(timetable.getVersion(), listDate)) {
+                current = rebuild(current, timetable, listDate, loader);
+                projection = current;
+            }
+            return current.payload;
+        } finally {
+            rebuildLock.unlock();
+        }
+    }
+
+    private Projection rebuild(Projection previous, TimetableSnapshot timetable, LocalDate listDate,
+                               Function<List<Integer>, List<TrainListDTO>> loader) {
+        long now = System.currentTimeMillis();
+        // 在读取余票之前记录库存版本，读取期间的库存变更在下次请求时重建
+        long stockChangeCount = searchResultCache.getStockChangeCount(listDate);
+        boolean expired = previous == null || !previous.listDate.equals(listDate)
+                || now - previous.loadedAt > maxStalenessMillis;
+        boolean timetableChanged = previous == null || previous.timetableVersion != timetable.getVersion();
+
+        Map<Integer, Row> next = new TreeMap<>();
+        List<Row> pending = new ArrayList<>();
+        if (timetableChanged) {
+            for (Train train : timetable.getTrains()) {
+                List<TrainStop> stops = timetable.getStops(train.getTrainId());
+                List<String> path = path(timetable, stops);
+                Row row = rows.get(train.getTrainId());
+                if (row == null || !row.sameRoute(train, stops, path)) {
+                    row = new Row(train, stops, path);
+                }
+                next.put(train.getTrainId(), row);
+            }
+        } else {
+            next.putAll(rows);
+        }
+        List<Long> stockVersions = new ArrayList<>();
+        for (Row row : next.values()) {
+            long stockVersion = searchResultCache.getStockVersion(row.train.getTrainId(), listDate);
+            if (expired || row.dto == null || row.stockVersion != stockVersion) {
+                pending.add(row);
+                stockVersions.add(stockVersion);
+            }
+        }
+
+        if (!pending.isEmpty()) {
+            List<Integer> trainIds = new ArrayList<>(pending.size());
+            for (Row row : pending) {
+                trainIds.add(row.train.getTrainId());
+            }
+            // 重新生成失败时不改动已有的行
+            List<TrainListDTO> loaded = loader.apply(trainIds);
+            for (int i = 0; i < pending.size(); i++) {
+                pending.get(i).dto = loaded.get(i);
+                pending.get(i).stockVersion = stockVersions.get(i);
+            }
+        }
+        // 行没有增减、替换或重建时，已序列化的内容仍然有效
+        boolean unchanged = previous != null && pending.isEmpty() && next.equals(rows);
+        rows = next;
+        long loadedAt = expired ? now : previous.loadedAt;
+        if (unchanged) {
+            return new Projection(timetable.getVersion(), stockChangeCount, listDate, loadedAt, previous.payload);
+        }
+
+        List<TrainListDTO> trains = new ArrayList<>(next.size());
+        for (Row row : next.values()) {
+            trains.add(row.dto);
+        }
+        TrainListPayload payload = serialize(Collections.unmodifiableList(trains));
+        System.out.println("车次列表投影已更新: 时刻表版本" + timetable.getVersion() + ", 重建" + pending.size()
+                + "/" + trains.size() + "行, " + payload.getBody().length + "字节");
+        return new Projection(timetable.getVersion(), stockChangeCount, listDate, loadedAt, payload);
+    }
+
+    private TrainListPayload serialize(List<TrainListDTO> trains) {
+        try {
+            byte[] body = objectMapper.writeValueAsBytes(trains);
+            String etag = "\"" + DigestUtils.md5DigestAsHex(body) + "\"";
+            return new TrainListPayload(body, etag, trains);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("车次列表序列化失败: " + e.getMessage(), e);
+        }
+    }
+
+    private static List<String> path(TimetableSnapshot timetable, List<TrainStop> stops) {
+        List<String> path = new ArrayList<>(stops.size());
+        for (TrainStop stop : stops) {
+            Station station = timetable.getStation(stop.getStationId());
+            if (station != null) {
+                path.add(station.getStationName());
+            }
+        }
+        return path;
+    }
+
+    /**
+     * 当前投影对应的时刻表版本、列表日期的库存变更次数和余票读取时间
+     */
+    private final class Projection {
+        private final long timetableVersion;
+        private final long stockChangeCount;
+        private final LocalDate listDate;
+        private final long loadedAt;
+        private final TrainListPayload payload;
+
+        private Projection(long timetableVersion, long stockChangeCount, LocalDate listDate, long loadedAt,
+                           TrainListPayload payload) {
+            this.timetableVersion = timetableVersion;
+            this.stockChangeCount = stockChangeCount;
+            this.listDate = listDate;
+            this.loadedAt = loadedAt;
+            this.payload = payload;
+        }
+
+        private boolean isFresh(long currentTimetableVersion, LocalDate currentListDate) {
+            return timetableVersion == currentTimetableVersion
+                    && listDate.equals(currentListDate)
+                    && stockChangeCount == searchResultCache.getStockChangeCount(currentListDate)
+                    && System.currentTimeMillis() - loadedAt <= maxStalenessMillis;
+        }
+    }
+
+    /**
+     * 一个车次的列表行，记录生成时的车次、停靠点、途经站名和库存版本
+     */
+    private static final class Row {
+        private final Train train;
+        private final List<TrainStop> stops;
+        private final List<String> path;
+        private long stockVersion;
+        private TrainListDTO dto;
+
+        private Row(Train train, List<TrainStop> stops, List<String> path) {
+            this.train = train;
+            this.stops = stops;
+            this.path = path;
+        }
+
+        private boolean sameRoute(Train otherTrain, List<TrainStop> otherStops, List<String> otherPath) {
+            return train.equals(otherTrain) && stops.equals(otherStops) && path.equals(otherPath);
+        }
+    }
+}
@@ -0,0 +1,445 @@
+package com.example.techprototype.Component;
+
+import com.example.techprototype.Entity.TrainStop;
+
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * 中转换乘网络
+ * 每个车次的停靠点按站序换算为相对始发日零点的分钟数（跨零点顺延一天），车次按天循环开行；
+ * 查询时对出发站的每个车次按轮次扫描（RAPTOR）：第k轮在上一轮到达的车站换乘一次，
+ * 只保留比已知更早到达的结果，得到每个首程车次下1次、2次中转的最早到达方案。
+ * 随时刻表快照一起构建，构建后不再修改
+ */
+public final class TransferNetwork {
+
+    private static final int MINUTES_PER_DAY = 1440;
+    private static final int UNREACHED = Integer.MAX_VALUE;
+
+    // 车次ID -> 按站序排列的停靠信息，车次不存在或时刻不完整时为null
+    private final TrainTrip[] trips;
+    // 车站ID -> 经停该站的 (车次ID, 停靠点下标)
+    private final int[][] visitTrains;
+    private final int[][] visitIndexes;
+
+    private TransferNetwork(TrainTrip[] trips, int[][] visitTrains, int[][] visitIndexes) {
+        this.trips = trips;
+        this.visitTrains = visitTrains;
+        this.visitIndexes = visitIndexes;
+    }
+
+    static TransferNetwork build(List<TrainStop>[] stopsByTrain, int stationSlots) {
+        TrainTrip[] trips = new TrainTrip[stopsByTrain.length];
+        int[] visitCounts = new int[stationSlots];
+        for (int trainId = 0; trainId < stopsByTrain.length; trainId++) {
+            if (stopsByTrain[trainId] == null) {
+                continue;
+            }
+            TrainTrip trip = TrainTrip.of(trainId, stopsByTrain[trainId], stationSlots);
+            if (trip == null) {
+                continue;
+            }
+            trips[trainId] = trip;
+            for (int stationId : trip.stationIds) {
+                visitCounts[stationId]++;
+            }
+        }
+
+        int[][] visitTrains = new int[stationSlots][];
+        int[][] visitIndexes = new int[stationSlots][];
+        for (int stationId = 0; stationId < stationSlots; stationId++) {
+            visitTrains[stationId] = new int[visitCounts[stationId]];
+            visitIndexes[stationId] = new int[visitCounts[stationId]];
+        }
+        int[] filled = new int[stationSlots];
+        for (TrainTrip trip : trips) {
+            if (trip == null) {
+                continue;
+            }
+            for (int j = 0; j < trip.size(); j++) {
+                int stationId = trip.stationIds[j];
+                visitTrains[stationId][filled[stationId]] = trip.trainId;
+                visitIndexes[stationId][filled[stationId]] = j;
+                filled[stationId]++;
+            }
+        }
+        return new TransferNetwork(trips, visitTrains, visitIndexes);
+    }
+
+    /**
+     * 查询出发站到到达站的中转方案
+     * 同一车站换乘，换乘时间不少于minConnectionMinutes、不超过maxWaitMinutes；
+     * 首程车次本身经过到达站时，直达部分不作为中转方案，也不参与剪枝，经其他车站换乘的方案照常返回。
+     * 被其他方案支配（中转次数不多、出发不早于、到达不晚于）的方案不返回
+     * @return 按到达时间升序，同时到达的出发晚的在前
+     */
+    public List<Itinerary> search(int fromStationId, int toStationId, int maxTransfers,
+                                  int minConnectionMinutes, int maxWaitMinutes) {
+        if (!isStation(fromStationId) || !isStation(toStationId) || fromStationId == toStationId || maxTransfers < 1) {
+            return Collections.emptyList();
+        }
+        Rounds rounds = new Rounds(maxTransfers + 1, visitTrains.length, trips.length);
+        List<Itinerary> candidates = new ArrayList<>();
+        int[] originTrains = visitTrains[fromStationId];
+        int[] originIndexes = visitIndexes[fromStationId];
+        for (int v = 0; v < originTrains.length; v++) {
+            TrainTrip first = trips[originTrains[v]];
+            int boardIndex = originIndexes[v];
+            if (boardIndex == first.size() - 1) {
+                continue;
+            }
+            // 首程在出发当天开出
+            int shift = Math.floorMod(first.departures[boardIndex], MINUTES_PER_DAY) - first.departures[boardIndex];
+            rounds.reset();
+            scanFirstTrip(rounds, first, boardIndex, shift, fromStationId, toStationId);
+            for (int k = 1; k < rounds.count && rounds.hasMarked(k - 1); k++) {
+                scanRound(rounds, k, fromStationId, toStationId, minConnectionMinutes, maxWaitMinutes);
+                if (rounds.arrival[k][toStationId] != UNREACHED) {
+                    candidates.add(rounds.itinerary(k, toStationId, trips));
+                }
+            }
+        }
+        return paretoSorted(candidates);
+    }
+
+    private void scanFirstTrip(Rounds rounds, TrainTrip trip, int boardIndex, int shift, int fromStationId, int toStationId) {
+        for (int j = boardIndex + 1; j < trip.size(); j++) {
+            int stationId = trip.stationIds[j];
+            int arrival = trip.arrivals[j] + shift;
+            // 首程直达到达站是直达方案，不记录，以免更晚到达的中转方案被剪掉
+            if (stationId != fromStationId && stationId != toStationId && arrival < rounds.best[stationId]) {
+                rounds.improve(0, stationId, arrival, trip.trainId, boardIndex, j, shift);
+            }
+        }
+    }
+
+    /**
+     * 第k轮：在上一轮到达的车站换乘，每个车次只扫描一遍
+     */
+    private void scanRound(Rounds rounds, int k, int fromStationId, int toStationId,
+                           int minConnectionMinutes, int maxWaitMinutes) {
+        // 收集经过上一轮到达车站的车次，记录最靠前的可上车停靠点
+        List<Integer> queued = new ArrayList<>();
+        for (int stationId : rounds.markedStations(k - 1)) {
+            int[] trains = visitTrains[stationId];
+            int[] indexes = visitIndexes[stationId];
+            for (int v = 0; v < trains.length; v++) {
+                int trainId = trains[v];
+                if (rounds.queuedFrom[trainId] == -1) {
+                    queued.add(trainId);
+                    rounds.queuedFrom[trainId] = indexes[v];
+                } else if (indexes[v] < rounds.queuedFrom[trainId]) {
+                    rounds.queuedFrom[trainId] = indexes[v];
+                }
+            }
+        }
+
+        for (int trainId : queued) {
+            TrainTrip trip = trips[trainId];
+            int from = rounds.queuedFrom[trainId];
+            rounds.queuedFrom[trainId] = -1;
+            boolean boarded = false;
+            int shift = 0;
+            int boardIndex = -1;
+            for (int j = from; j < trip.size(); j++) {
+                int stationId = trip.stationIds[j];
+                if (boarded && j > boardIndex && stationId != fromStationId) {
+                    int arrival = trip.arrivals[j] + shift;
+                    // 只保留比已知更早、且早于已知到达站最早到达的结果
+                    if (arrival < rounds.best[stationId] && arrival < rounds.best[toStationId]) {
+                        rounds.improve(k, stationId, arrival, trainId, boardIndex, j, shift);
+                    }
+                }
+                int ready = rounds.arrival[k - 1][stationId];
+                if (ready == UNREACHED || stationId == toStationId || j == trip.size() - 1
+                        || usesTrain(rounds, k - 1, stationId, trainId)) {
+                    continue;
+                }
+                // 车次按天循环开行，取换乘时间之后最近的一班
+                int earliest = ready + minConnectionMinutes;
+                int departure = trip.departures[j];
+                int candidateShift = Math.floorDiv(earliest - departure + MINUTES_PER_DAY - 1, MINUTES_PER_DAY) * MINUTES_PER_DAY;
+                if (departure + candidateShift - ready > maxWaitMinutes) {
+                    continue;
+                }
+                if (!boarded || departure + candidateShift < departure + shift) {
+                    boarded = true;
+                    shift = candidateShift;
+                    boardIndex = j;
+                }
+            }
+        }
+    }
+
+    /**
+     * 第k轮到达该站的方案中是否已乘坐过该车次，同一车次不重复换乘
+     */
+    private boolean usesTrain(Rounds rounds, int k, int stationId, int trainId) {
+        for (int round = k; round >= 0; round--) {
+            int parent = rounds.parentTrain[round][stationId];
+            if (parent == trainId) {
+                return true;
+            }
+            stationId = trips[parent].stationIds[rounds.parentBoard[round][stationId]];
+        }
+        return false;
+    }
+
+    private static List<Itinerary> paretoSorted(List<Itinerary> candidates) {
+        candidates.sort(Comparator.comparingInt(Itinerary::getArrivalMinute)
+                .thenComparing(Comparator.comparingInt(Itinerary::getDepartureMinute).reversed())
+                .thenComparingInt(Itinerary::getTransfers));
+        List<Itinerary> kept = new ArrayList<>();
+        for (Itinerary candidate : candidates) {
+            boolean dominated = false;
+            for (Itinerary other : kept) {
+                // kept中的方案到达不晚于candidate
+                if (other.getTransfers() <= candidate.getTransfers()
+                        && other.getDepartureMinute() >= candidate.getDepartureMinute()) {
+                    dominated = true;
+                    break;
+                }
+            }
+            if (!dominated) {
+                kept.add(candidate);
+            }
+        }
+        return kept;
+    }
+
+    private boolean isStation(int stationId) {
+        return stationId >= 0 && stationId < visitTrains.length;
+    }
+
+    /**
+     * 一个中转方案
+     */
+    public static final class Itinerary {
+        private final List<Leg> legs;
+
+        Itinerary(List<Leg> legs) {
+            this.legs = Collections.unmodifiableList(legs);
+        }
+
+        public List<Leg> getLegs() {
+            return legs;
+        }
+
+        public int getTransfers() {
+            return legs.size() - 1;
+        }
+
+        /**
+         * 相对出发当天零点的分钟数
+         */
+        public int getDepartureMinute() {
+            return legs.get(0).getDepartureMinute();
+        }
+
+        public int getArrivalMinute() {
+            return legs.get(legs.size() - 1).getArrivalMinute();
+        }
+
+        public int getDurationMinutes() {
+            return getArrivalMinute() - getDepartureMinute();
+        }
+    }
+
+    /**
+     * 方案中乘坐的一段车次
+     */
+    public static final class Leg {
+        private final int trainId;
+        private final TrainStop departureStop;
+        private final TrainStop arrivalStop;
+        private final int departureMinute;
+        private final int arrivalMinute;
+
+        Leg(int trainId, TrainStop departureStop, TrainStop arrivalStop, int departureMinute, int arrivalMinute) {
+            this.trainId = trainId;
+            this.departureStop = departureStop;
+            this.arrivalStop = arrivalStop;
+            this.departureMinute = departureMinute;
+            this.arrivalMinute = arrivalMinute;
+        }
+
+        public int getTrainId() {
+            return trainId;
+        }
+
+        public TrainStop getDepartureStop() {
+            return departureStop;
+        }
+
+        public TrainStop getArrivalStop() {
+            return arrivalStop;
+        }
+
+        /**
+         * 相对出发当天零点的分钟数，超过1440表示次日及以后
+         */
+        public int getDepartureMinute() {
+            return departureMinute;
+        }
+
+        public int getArrivalMinute() {
+            return arrivalMinute;
+        }
+    }
+
+    /**
+     * 一个车次的停靠信息，四个数组下标对齐
+     */
+    private static final class TrainTrip {
+        private final int trainId;
+        private final int[] stationIds;
+        // 相对始发日零点的分钟数，跨零点顺延
+        private final int[] arrivals;
+        private final int[] departures;
+        private final TrainStop[] stops;
+
+        private TrainTrip(int trainId, int[] stationIds, int[] arrivals, int[] departures, TrainStop[] stops) {
+            this.trainId = trainId;
+            this.stationIds = stationIds;
+            this.arrivals = arrivals;
+            this.departures = departures;
+            this.stops = stops;
+        }
+
+        /**
+         * @return 停靠点少于两个、缺少到发时刻或车站无效时返回null
+         */
+        private static TrainTrip of(int trainId, List<TrainStop> sortedStops, int stationSlots) {
+            int size = sortedStops.size();
+            if (size < 2) {
+                return null;
+            }
+            int[] stationIds = new int[size];
+            int[] arrivals = new int[size];
+            int[] departures = new int[size];
+            int day = 0;
+            int last = Integer.MIN_VALUE;
+            for (int j = 0; j < size; j++) {
+                TrainStop stop = sortedStops.get(j);
+                LocalTime arrivalTime = stop.getArrivalTime() != null ? stop.getArrivalTime() : stop.getDepartureTime();
+                LocalTime departureTime = stop.getDepartureTime() != null ? stop.getDepartureTime() : stop.getArrivalTime();
+                if (arrivalTime == null || stop.getStationId() == null
+                        || stop.getStationId() < 0 || stop.getStationId() >= stationSlots) {
+                    return null;
+                }
+                stationIds[j] = stop.getStationId();
+                int arrival = toMinute(arrivalTime) + day * MINUTES_PER_DAY;
+                if (arrival < last) {
+                    day++;
+                    arrival += MINUTES_PER_DAY;
+                }
+                int departure = toMinute(departureTime) + day * MINUTES_PER_DAY;
+                if (departure < arrival) {
+                    day++;
+                    departure += MINUTES_PER_DAY;
+                }
+                arrivals[j] = arrival;
+                departures[j] = departure;
+                last = departure;
+            }
+            return new TrainTrip(trainId, stationIds, arrivals, departures, sortedStops.toArray(new TrainStop[0]));
+        }
+
+        private static int toMinute(LocalTime time) {
+            return time.getHour() * 60 + time.getMinute();
+        }
+
+        private int size() {
+            return stationIds.length;
+        }
+    }
+
+    /**
+     * 各轮次的到达时间和来源车次，按首程车次重复使用
+     */
+    private static final class Rounds {
+        private final int count;
+        // 轮次 -> 车站ID -> 最早到达分钟
+        private final int[][] arrival;
+        // 轮次 -> 车站ID -> 到达该站所乘车次、上车下标、下车下标、日偏移
+        private final int[][] parentTrain;
+        private final int[][] parentBoard;
+        private final int[][] parentAlight;
+        private final int[][] parentShift;
+        // 车站ID -> 任一轮次的最早到达分钟
+        private final int[] best;
+        // 车次ID -> 本轮开始扫描的停靠点下标，-1表示未入队
+        private final int[] queuedFrom;
+        // 轮次 -> 本轮到达时间被改写的车站
+        private final List<List<Integer>> marked = new ArrayList<>();
+
+        private Rounds(int count, int stationSlots, int trainSlots) {
+            this.count = count;
+            this.arrival = new int[count][stationSlots];
+            this.parentTrain = new int[count][stationSlots];
+            this.parentBoard = new int[count][stationSlots];
+            this.parentAlight = new int[count][stationSlots];
+            this.parentShift = new int[count][stationSlots];
+            this.best = new int[stationSlots];
+            this.queuedFrom = new int[trainSlots];
+            Arrays.fill(queuedFrom, -1);
+            for (int k = 0; k < count; k++) {
+                Arrays.fill(arrival[k], UNREACHED);
+                marked.add(new ArrayList<>());
+            }
+            Arrays.fill(best, UNREACHED);
+        }
+
+        /**
+         * 只清理上次改写过的车站
+         */
+        private void reset() {
+            for (int k = 0; k < count; k++) {
+                for (int stationId : marked.get(k)) {
+                    arrival[k][stationId] = UNREACHED;
+                    best[stationId] = UNREACHED;
+                }
+                marked.get(k).clear();
+            }
+        }
+
+        private void improve(int k, int stationId, int minute, int trainId, int boardIndex, int alightIndex, int shift) {
+            if (arrival[k][stationId] == UNREACHED) {
+                marked.get(k).add(stationId);
+            }
+            arrival[k][stationId] = minute;
+            best[stationId] = minute;
+            parentTrain[k][stationId] = trainId;
+            parentBoard[k][stationId] = boardIndex;
+            parentAlight[k][stationId] = alightIndex;
+            parentShift[k][stationId] = shift;
+        }
+
+        private boolean hasMarked(int k) {
+            return !marked.get(k).isEmpty();
+        }
+
+        private List<Integer> markedStations(int k) {
+            return marked.get(k);
+        }
+
+        private Itinerary itinerary(int k, int stationId, TrainTrip[] trips) {
+            Leg[] legs = new Leg[k + 1];
+            for (int round = k; round >= 0; round--) {
+                TrainTrip trip = trips[parentTrain[round][stationId]];
+                int board = parentBoard[round][stationId];
+                int alight = parentAlight[round][stationId];
+                int shift = parentShift[round][stationId];
+                legs[round] = new Leg(trip.trainId, trip.stops[board], trip.stops[alight],
+                        trip.departures[board] + shift, trip.arrivals[alight] + shift);
+                stationId = trip.stationIds[board];
+            }
+            return new Itinerary(Arrays.asList(legs));
+        }
+    }
+}
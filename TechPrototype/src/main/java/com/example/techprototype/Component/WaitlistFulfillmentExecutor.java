@@ -0,0 +1,127 @@
+package com.example.techprototype.Component;
+
+import com.example.techprototype.DTO.WaitlistFulfillmentStats;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 候补兑现执行器
+ * 释放库存后的兑现检查不再在退票/超时线程上同步执行，而是提交到有界队列由后台线程处理：
+ * 1. 分区键（车次+日期+席别）哈希到固定分区，每个分区只有一个工作线程，同一库存上的兑现串行执行
+ * 2. 合并窗口内同一合并键（释放区间）的多次触发只执行一轮
+ * 3. 队列满时丢弃触发并计数，候补索引不变，下次释放库存时仍会重新匹配
+ */
+@Component
+public class WaitlistFulfillmentExecutor {
+
+    @Value("${waitlist.fulfillment.partitions:4}")
+    private int partitions = 4;
+
+    @Value("${waitlist.fulfillment.queue-capacity:1000}")
+    private int queueCapacity = 1000;
+
+    @Value("${waitlist.fulfillment.coalesce-window-ms:200}")
+    private long coalesceWindowMillis = 200;
+
+    private ScheduledThreadPoolExecutor[] workers;
+
+    // 合并键 -> 入队时间，存在即表示已有一轮兑现在排队
+    private final Map<String, Long> pending = new ConcurrentHashMap<>();
+
+    private final AtomicLong submitted = new AtomicLong();
+    private final AtomicLong coalesced = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+    private final AtomicLong completed = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private final AtomicLong lastLagMillis = new AtomicLong();
+    private final AtomicLong maxLagMillis = new AtomicLong();
+    private final long startTime = System.currentTimeMillis();
+
+    @PostConstruct
+    public void start() {
+        workers = new ScheduledThreadPoolExecutor[partitions];
+        for (int i = 0; i < partitions; i++) {
+            String threadName = "waitlist-fulfillment-" + i;
+            workers[i] = new ScheduledThreadPoolExecutor(1, task -> {
+                Thread thread = new Thread(task, threadName);
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+        System.out.println("候补兑现执行器启动: 分区数" + partitions + ", 队列容量" + queueCapacity + ", 合并窗口" + coalesceWindowMillis + "ms");
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        for (ScheduledThreadPoolExecutor worker : workers) {
+            worker.shutdown();
+        }
+    }
+
+    /**
+     * 提交一轮兑现检查
+     * @param partitionKey 分区键，相同分区键的任务由同一个工作线程执行
+     * @param coalesceKey 合并键，已有相同合并键的任务在排队时本次触发被合并
+     * @return true 如果已排队（包括被合并），false 如果队列已满被丢弃
+     */
+    public boolean submit(String partitionKey, String coalesceKey, Runnable pass) {
+        submitted.incrementAndGet();
+        long enqueuedAt = System.currentTimeMillis();
+        if (pending.putIfAbsent(coalesceKey, enqueuedAt) != null) {
+            coalesced.incrementAndGet();
+            return true;
+        }
+        if (pending.size() > queueCapacity) {
+            pending.remove(coalesceKey);
+            rejected.incrementAndGet();
+            System.err.println("候补兑现队列已满，丢弃触发: " + coalesceKey);
+            return false;
+        }
+
+        ScheduledThreadPoolExecutor worker = workers[Math.floorMod(partitionKey.hashCode(), workers.length)];
+        worker.schedule(() -> runPass(coalesceKey, enqueuedAt, pass), coalesceWindowMillis, TimeUnit.MILLISECONDS);
+        return true;
+    }
+
+    private void runPass(String coalesceKey, long enqueuedAt, Runnable pass) {
+        // 先出队再执行，执行期间新的释放会排入下一轮，不会丢失
+        pending.remove(coalesceKey);
+        long lag = System.currentTimeMillis() - enqueuedAt;
+        lastLagMillis.set(lag);
+        maxLagMillis.accumulateAndGet(lag, Math::max);
+        try {
+            pass.run();
+            completed.incrementAndGet();
+        } catch (Exception e) {
+            failed.incrementAndGet();
+            System.err.println("候补兑现执行失败: " + coalesceKey + ", " + e.getMessage());
+        }
+    }
+
+    public int getQueueDepth() {
+        return pending.size();
+    }
+
+    public WaitlistFulfillmentStats getStats() {
+        long elapsedMillis = Math.max(1, System.currentTimeMillis() - startTime);
+        return new WaitlistFulfillmentStats(
+                partitions,
+                pending.size(),
+                submitted.get(),
+                coalesced.get(),
+                rejected.get(),
+                completed.get(),
+                failed.get(),
+                lastLagMillis.get(),
+                maxLagMillis.get(),
+                completed.get() * 1000.0 / elapsedMillis);
+    }
+}
@@ -0,0 +1,158 @@
+package com.example.techprototype.Component;
+
+import com.example.techprototype.Entity.WaitlistItem;
+import com.example.techprototype.Entity.WaitlistOrder;
+import com.example.techprototype.Enums.WaitlistItemStatus;
+import com.example.techprototype.Repository.WaitlistItemRepository;
+import com.example.techprototype.Repository.WaitlistOrderRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.CommandLineRunner;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.ZSetOperations;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * 候补订单索引
+ * 按 (车次, 日期, 出发站, 到达站, 席别) 维护Redis有序集合，成员为候补订单ID，分值为下单时间，保证先到先得
+ * 同一车次日期席别下出现过的区间记录在路线集合中，释放库存时只扫描与释放区段重叠的区间，不再遍历全部候补订单
+ */
+@Component
+public class WaitlistIndex implements CommandLineRunner {
+
+    private static final String KEY_PREFIX = "waitlist:";
+    private static final String ROUTES_PREFIX = "waitlist:routes:";
+
+    @Autowired
+    private RedisTemplate<String, Object> redisTemplate;
+
+    @Autowired
+    private StopSequenceCache stopSequenceCache;
+
+    @Autowired
+    private WaitlistOrderRepository waitlistOrderRepository;
+
+    @Autowired
+    private WaitlistItemRepository waitlistItemRepository;
+
+    /**
+     * 启动时用数据库中待兑现的候补订单重建索引，ZADD幂等，重复执行不会产生重复成员
+     */
+    @Override
+    public void run(String... args) throws Exception {
+        System.out.println("开始重建候补订单索引...");
+        int indexed = 0;
+        for (WaitlistOrder order : waitlistOrderRepository.findPendingFulfillmentOrders(LocalDateTime.now())) {
+            add(order, waitlistItemRepository.findPendingItemsByWaitlistId(order.getWaitlistId()));
+            indexed++;
+        }
+        System.out.println("候补订单索引重建完成: " + indexed + "个候补订单");
+    }
+
+    /**
+     * 将候补订单的待兑现项加入索引
+     */
+    public void add(WaitlistOrder order, List<WaitlistItem> items) {
+        double score = toEpochMillis(order.getOrderTime());
+        String member = String.valueOf(order.getWaitlistId());
+        for (WaitlistItem item : items) {
+            if (item.getItemStatus() == null || item.getItemStatus() != WaitlistItemStatus.PENDING_FULFILLMENT.getCode()) {
+                continue;
+            }
+            String key = buildKey(item.getTrainId(), item.getTravelDate(), item.getDepartureStopId(),
+                    item.getArrivalStopId(), item.getCarriageTypeId());
+            String routesKey = buildRoutesKey(item.getTrainId(), item.getTravelDate(), item.getCarriageTypeId());
+            redisTemplate.opsForZSet().add(key, member, score);
+            redisTemplate.opsForSet().add(routesKey, item.getDepartureStopId() + ":" + item.getArrivalStopId());
+
+            // 发车日之后索引不再有意义，过期自动清理
+            Date expireAt = Date.from(item.getTravelDate().plusDays(1).atStartOfDay(ZoneId.systemDefault()).toInstant());
+            redisTemplate.expireAt(key, expireAt);
+            redisTemplate.expireAt(routesKey, expireAt);
+        }
+    }
+
+    /**
+     * 将候补订单从这些项对应的索引中移除（兑现、取消、退款时调用）
+     */
+    public void remove(Long waitlistId, List<WaitlistItem> items) {
+        String member = String.valueOf(waitlistId);
+        for (WaitlistItem item : items) {
+            redisTemplate.opsForZSet().remove(buildKey(item.getTrainId(), item.getTravelDate(),
+                    item.getDepartureStopId(), item.getArrivalStopId(), item.getCarriageTypeId()), member);
+        }
+    }
+
+    /**
+     * 查询释放区段可能兑现的候补订单，按下单时间先到先得排序
+     * 被释放的区段会提高所有与之重叠的区间的余票，因此返回全部重叠区间上的候补订单
+     * @param limit 每个区间最多取的候补订单数
+     * @return 候补订单ID列表，已去重
+     */
+    public List<Long> findCandidates(Integer trainId, LocalDate travelDate, Long departureStopId,
+                                     Long arrivalStopId, Integer carriageTypeId, int limit) {
+        Integer fromSeq = stopSequenceCache.getSequence(trainId, departureStopId);
+        Integer toSeq = stopSequenceCache.getSequence(trainId, arrivalStopId);
+        if (fromSeq == null || toSeq == null || fromSeq >= toSeq) {
+            System.err.println("无法解析释放区段，跳过候补订单匹配: 车次" + trainId + ", 出发站" + departureStopId + ", 到达站" + arrivalStopId);
+            return new ArrayList<>();
+        }
+
+        String routesKey = buildRoutesKey(trainId, travelDate, carriageTypeId);
+        Set<Object> routes = redisTemplate.opsForSet().members(routesKey);
+        if (routes == null || routes.isEmpty()) {
+            return new ArrayList<>();
+        }
+
+        List<ZSetOperations.TypedTuple<Object>> candidates = new ArrayList<>();
+        for (Object route : routes) {
+            String[] stops = route.toString().split(":");
+            Long routeDeparture = Long.valueOf(stops[0]);
+            Long routeArrival = Long.valueOf(stops[1]);
+            Integer routeFrom = stopSequenceCache.getSequence(trainId, routeDeparture);
+            Integer routeTo = stopSequenceCache.getSequence(trainId, routeArrival);
+            // [routeFrom, routeTo) 与 [fromSeq, toSeq) 不重叠时该区间的余票不受影响
+            if (routeFrom == null || routeTo == null || routeTo <= fromSeq || routeFrom >= toSeq) {
+                continue;
+            }
+
+            String key = buildKey(trainId, travelDate, routeDeparture, routeArrival, carriageTypeId);
+            Set<ZSetOperations.TypedTuple<Object>> queued = redisTemplate.opsForZSet().rangeWithScores(key, 0, limit - 1);
+            if (queued == null || queued.isEmpty()) {
+                // 区间上已没有候补订单，从路线集合中移除
+                redisTemplate.opsForSet().remove(routesKey, route);
+                continue;
+            }
+            candidates.addAll(queued);
+        }
+
+        candidates.sort(Comparator.comparingDouble(tuple -> tuple.getScore() == null ? Double.MAX_VALUE : tuple.getScore()));
+        Set<Long> waitlistIds = new LinkedHashSet<>();
+        for (ZSetOperations.TypedTuple<Object> tuple : candidates) {
+            waitlistIds.add(Long.valueOf(tuple.getValue().toString()));
+        }
+        return new ArrayList<>(waitlistIds);
+    }
+
+    private String buildKey(Integer trainId, LocalDate travelDate, Long departureStopId,
+                            Long arrivalStopId, Integer carriageTypeId) {
+        return KEY_PREFIX + trainId + ":" + travelDate + ":" + departureStopId + ":" + arrivalStopId + ":" + carriageTypeId;
+    }
+
+    private String buildRoutesKey(Integer trainId, LocalDate travelDate, Integer carriageTypeId) {
+        return ROUTES_PREFIX + trainId + ":" + travelDate + ":" + carriageTypeId;
+    }
+
+    private double toEpochMillis(LocalDateTime time) {
+        return time.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+    }
+}
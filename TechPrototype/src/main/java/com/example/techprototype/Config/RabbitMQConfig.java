@@ -1,20 +1,32 @@
 package com.example.techprototype.Config;
 
+import com.example.techprototype.Component.OrderPartitioner;
 import org.springframework.amqp.core.*;
+import org.springframework.amqp.rabbit.config.SimpleRabbitListenerContainerFactory;
 import org.springframework.amqp.rabbit.connection.ConnectionFactory;
 import org.springframework.amqp.rabbit.core.RabbitTemplate;
 import org.springframework.amqp.support.converter.Jackson2JsonMessageConverter;
 import org.springframework.amqp.support.converter.MessageConverter;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
 @Configuration
 public class RabbitMQConfig {
     
     public static final String ORDER_QUEUE = "order.queue";
     public static final String ORDER_EXCHANGE = "order.exchange";
     public static final String ORDER_ROUTING_KEY = "order.create";
+    public static final String ORDER_PARTITION_QUEUE_PREFIX = "order.queue.";
+    public static final String ORDER_PARTITION_ROUTING_KEY_PREFIX = "order.create.";
     
+    /**
+     * 旧的单一订单队列，只用于接收未分区的消息，由消费端转发到所属分区
+     */
     @Bean
     public Queue orderQueue() {
         return new Queue(ORDER_QUEUE, true);
@@ -30,6 +42,22 @@ public class RabbitMQConfig {
         return BindingBuilder.bind(orderQueue).to(orderExchange).with(ORDER_ROUTING_KEY);
     }
     
+    /**
+     * 订单分区队列及绑定：每个分区一个持久队列，开启单活动消费者，
+     * 多个实例同时订阅时只有一个消费者收到消息，保证同一分区串行处理
+     */
+    @Bean
+    public Declarables orderPartitionDeclarables(DirectExchange orderExchange, OrderPartitioner orderPartitioner) {
+        List<Declarable> declarables = new ArrayList<>();
+        for (int partition = 0; partition < orderPartitioner.getConsumedPartitionCount(); partition++) {
+            Queue queue = new Queue(orderPartitioner.queueName(partition), true, false, false,
+                    Map.of("x-single-active-consumer", true));
+            declarables.add(queue);
+            declarables.add(BindingBuilder.bind(queue).to(orderExchange).with(orderPartitioner.routingKey(partition)));
+        }
+        return new Declarables(declarables);
+    }
+    
     @Bean
     public MessageConverter jsonMessageConverter() {
         return new Jackson2JsonMessageConverter();
@@ -41,4 +69,27 @@ public class RabbitMQConfig {
         rabbitTemplate.setMessageConverter(jsonMessageConverter());
         return rabbitTemplate;
     }
-} 
\ No newline at end of file
+    
+    /**
+     * 订单分区队列的批量消费容器：每个分区一个消费者，一次取一批消息，监听返回后整批确认
+     */
+    @Bean
+    public SimpleRabbitListenerContainerFactory orderBatchListenerContainerFactory(
+            ConnectionFactory connectionFactory,
+            @Value("${order.consumer.batch-size:100}") int batchSize,
+            @Value("${order.consumer.receive-timeout-ms:200}") long receiveTimeout,
+            @Value("${order.consumer.prefetch:250}") int prefetch) {
+        SimpleRabbitListenerContainerFactory factory = new SimpleRabbitListenerContainerFactory();
+        factory.setConnectionFactory(connectionFactory);
+        factory.setMessageConverter(jsonMessageConverter());
+        factory.setBatchListener(true);
+        factory.setConsumerBatchEnabled(true);
+        factory.setBatchSize(batchSize);
+        // 队列不足一批时最多等待的时间，避免低峰期订单迟迟不落库
+        factory.setReceiveTimeout(receiveTimeout);
+        factory.setConcurrentConsumers(1);
+        factory.setMaxConcurrentConsumers(1);
+        factory.setPrefetchCount(prefetch);
+        return factory;
+    }
+}
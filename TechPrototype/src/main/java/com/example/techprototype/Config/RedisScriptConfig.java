@@ -0,0 +1,175 @@
+package com.example.techprototype.Config;
+
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+
+import java.util.List;
+
+/**
+ * 库存相关的Lua脚本
+ * 库存按区段存储：每个车次/日期/席别一个Hash，区段i表示站序i到i+1，区间余票为覆盖区段的最小值
+ * 库存变更时在同一脚本内把库存key加入待同步集合，同步任务只回写变更过的key
+ * 脚本作为单例Bean创建，SHA1只计算一次；执行时RedisTemplate先用EVALSHA，Redis返回NOSCRIPT时自动回退为EVAL
+ * 启动时由RedisScriptRegistry统一SCRIPT LOAD预加载
+ */
+@Configuration
+public class RedisScriptConfig {
+    
+    public static final String DECR_STOCK_SCRIPT = "decrStockScript";
+    public static final String INCR_STOCK_SCRIPT = "incrStockScript";
+    public static final String RESERVE_STOCKS_SCRIPT = "reserveStocksScript";
+    public static final String RELEASE_RESERVATION_SCRIPT = "releaseReservationScript";
+    
+    // Lua脚本：原子减库存
+    // KEYS[1]为车次/日期/席别的区段库存Hash，field为区段起点站序；KEYS[2]为待同步库存key集合
+    // ARGV[1]、ARGV[2]为出发、到达站序，区间覆盖区段[ARGV[1], ARGV[2])，每个区段都必须有足够余票
+    private static final String DECR_STOCK_LUA = 
+        "local key = KEYS[1] " +
+        "local from = tonumber(ARGV[1]) " +
+        "local to = tonumber(ARGV[2]) " +
+        "local quantity = tonumber(ARGV[3]) " +
+        "if from == nil or to == nil or from >= to or quantity == nil then " +
+        "    return -2 " +
+        "end " +
+        "for s = from, to - 1 do " +
+        "    local current = redis.call('hget', key, tostring(s)) " +
+        "    if not current then " +
+        "        return -1 " +
+        "    end " +
+        "    current = tonumber(current) " +
+        "    if current == nil then " +
+        "        return -3 " +
+        "    end " +
+        "    if current < quantity then " +
+        "        return 0 " +
+        "    end " +
+        "end " +
+        "for s = from, to - 1 do " +
+        "    redis.call('hincrby', key, tostring(s), -quantity) " +
+        "end " +
+        "redis.call('sadd', KEYS[2], key) " +
+        "return 1";
+    
+    // Lua脚本：原子加库存，区间覆盖的每个区段都加回，KEYS与减库存脚本相同
+    private static final String INCR_STOCK_LUA = 
+        "local key = KEYS[1] " +
+        "local from = tonumber(ARGV[1]) " +
+        "local to = tonumber(ARGV[2]) " +
+        "local quantity = tonumber(ARGV[3]) " +
+        "if from == nil or to == nil or from >= to or quantity == nil then " +
+        "    return -1 " +
+        "end " +
+        "for s = from, to - 1 do " +
+        "    redis.call('hincrby', key, tostring(s), quantity) " +
+        "end " +
+        "redis.call('sadd', KEYS[2], key) " +
+        "return 1";
+    
+    // Lua脚本：以订单号为幂等键原子地一次扣减多个席别的区段库存，先检查全部席别的全部区段，全部满足后再统一扣减
+    // 返回 {状态码, 失败key的下标(从1开始)}，扣减失败的状态码含义与减库存脚本一致
+    // KEYS[1..n]为各席别的区段库存Hash，KEYS[n+1]为待同步库存key集合，KEYS[n+2]为订单号的预留记录，KEYS[n+3]为待确认预留集合
+    // ARGV[1]、ARGV[2]为出发、到达站序，ARGV[i+2]为第i个席别的扣减数量，ARGV[n+3]为用户ID，ARGV[n+4]为预留记录过期秒数，
+    // ARGV[n+5]为预留时间（毫秒），ARGV[n+6]为订单号，ARGV[n+7]、ARGV[n+8]为出发、到达停靠点ID
+    // 预留记录已存在时不再扣减：同一用户返回 {2, 0}，其他用户返回 {3, 0}
+    // 扣减成功后在同一脚本内写入预留记录（用户、区段范围、各库存key的扣减数量）并把订单号加入待确认集合，返回 {1, 0}
+    private static final String RESERVE_STOCKS_LUA = 
+        "local n = #KEYS - 3 " +
+        "local marker = KEYS[n + 2] " +
+        "local owner = redis.call('hget', marker, 'owner') " +
+        "if owner then " +
+        "    if owner == ARGV[n + 3] then " +
+        "        return {2, 0} " +
+        "    end " +
+        "    return {3, 0} " +
+        "end " +
+        "local from = tonumber(ARGV[1]) " +
+        "local to = tonumber(ARGV[2]) " +
+        "if from == nil or to == nil or from >= to then " +
+        "    return {-2, 1} " +
+        "end " +
+        "for i = 1, n do " +
+        "    local quantity = tonumber(ARGV[i + 2]) " +
+        "    if quantity == nil then " +
+        "        return {-2, i} " +
+        "    end " +
+        "    for s = from, to - 1 do " +
+        "        local current = redis.call('hget', KEYS[i], tostring(s)) " +
+        "        if not current then " +
+        "            return {-1, i} " +
+        "        end " +
+        "        current = tonumber(current) " +
+        "        if current == nil then " +
+        "            return {-3, i} " +
+        "        end " +
+        "        if current < quantity then " +
+        "            return {0, i} " +
+        "        end " +
+        "    end " +
+        "end " +
+        "for i = 1, n do " +
+        "    local quantity = tonumber(ARGV[i + 2]) " +
+        "    for s = from, to - 1 do " +
+        "        redis.call('hincrby', KEYS[i], tostring(s), -quantity) " +
+        "    end " +
+        "    redis.call('sadd', KEYS[n + 1], KEYS[i]) " +
+        "end " +
+        "local record = {'owner', ARGV[n + 3], 'from', ARGV[1], 'to', ARGV[2], 'departure', ARGV[n + 7], 'arrival', ARGV[n + 8]} " +
+        "for i = 1, n do " +
+        "    table.insert(record, KEYS[i]) " +
+        "    table.insert(record, ARGV[i + 2]) " +
+        "end " +
+        "redis.call('hset', marker, unpack(record)) " +
+        "redis.call('expire', marker, tonumber(ARGV[n + 4])) " +
+        "redis.call('zadd', KEYS[n + 3], ARGV[n + 5], ARGV[n + 6]) " +
+        "return {1, 0}";
+    
+    // Lua脚本：归还一个待确认预留扣减的库存
+    // KEYS[1]为订单号的预留记录，KEYS[2]为待确认预留集合，KEYS[3]为待同步库存key集合，ARGV[1]为订单号
+    // 订单号不在待确认集合中（已确认或已归还）时不做任何操作，返回空列表，保证同一预留只归还一次
+    // 否则按预留记录中各库存key（stock:开头的field）的数量加回区段库存，删除预留记录，返回预留记录的field/value列表
+    private static final String RELEASE_RESERVATION_LUA = 
+        "if redis.call('zrem', KEYS[2], ARGV[1]) == 0 then " +
+        "    return {} " +
+        "end " +
+        "local record = redis.call('hgetall', KEYS[1]) " +
+        "local from = tonumber(redis.call('hget', KEYS[1], 'from')) " +
+        "local to = tonumber(redis.call('hget', KEYS[1], 'to')) " +
+        "redis.call('del', KEYS[1]) " +
+        "if from == nil or to == nil or from >= to then " +
+        "    return {} " +
+        "end " +
+        "for i = 1, #record, 2 do " +
+        "    if string.sub(record[i], 1, 6) == 'stock:' then " +
+        "        local quantity = tonumber(record[i + 1]) " +
+        "        for s = from, to - 1 do " +
+        "            redis.call('hincrby', record[i], tostring(s), quantity) " +
+        "        end " +
+        "        redis.call('sadd', KEYS[3], record[i]) " +
+        "    end " +
+        "end " +
+        "return record";
+    
+    @Bean(DECR_STOCK_SCRIPT)
+    public RedisScript<Long> decrStockScript() {
+        return new DefaultRedisScript<>(DECR_STOCK_LUA, Long.class);
+    }
+    
+    @Bean(INCR_STOCK_SCRIPT)
+    public RedisScript<Long> incrStockScript() {
+        return new DefaultRedisScript<>(INCR_STOCK_LUA, Long.class);
+    }
+    
+    @Bean(RESERVE_STOCKS_SCRIPT)
+    @SuppressWarnings("rawtypes")
+    public RedisScript<List> reserveStocksScript() {
+        return new DefaultRedisScript<>(RESERVE_STOCKS_LUA, List.class);
+    }
+    
+    @Bean(RELEASE_RESERVATION_SCRIPT)
+    @SuppressWarnings("rawtypes")
+    public RedisScript<List> releaseReservationScript() {
+        return new DefaultRedisScript<>(RELEASE_RESERVATION_LUA, List.class);
+    }
+}
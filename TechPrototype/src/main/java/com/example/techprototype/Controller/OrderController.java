@@ -13,8 +13,11 @@ import com.example.techprototype.Repository.OrderRepository;
 import com.example.techprototype.Service.OrderService;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import java.time.LocalDate;
 import java.time.LocalDateTime;
@@ -50,11 +53,26 @@ public class OrderController {
     }
     
     /**
-     * 获取我的订单
+     * 分页获取我的订单，下一页传入上一页返回的nextCursor
+     * 不传cursor和size时返回全部记录，与分页前的接口一致
      */
     @GetMapping("/my")
-    public MyOrderResponse getMyOrders(@RequestParam Long userId) {
-        return orderService.getMyOrders(userId);
+    public MyOrderResponse getMyOrders(@RequestParam Long userId,
+                                       @RequestParam(required = false) String cursor,
+                                       @RequestParam(required = false) Integer size) {
+        return orderService.getMyOrders(userId, cursor, size);
+    }
+    
+    /**
+     * 导出我的全部订单（JSON数组，边查询边写出）
+     */
+    @GetMapping("/my/export")
+    public ResponseEntity<StreamingResponseBody> exportMyOrders(@RequestParam Long userId) {
+        StreamingResponseBody body = out -> orderService.exportMyOrders(userId, out);
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_JSON)
+                .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"orders-" + userId + ".json\"")
+                .body(body);
     }
     
     /**
@@ -3,8 +3,11 @@ package com.example.techprototype.Controller;
 import com.example.techprototype.DTO.*;
 import com.example.techprototype.Service.TicketService;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import jakarta.validation.Valid;
 import java.time.LocalDate;
@@ -61,11 +64,14 @@ public class TicketController {
      */
     
     /**
-     * 获取本人车票
+     * 分页获取本人车票，下一页传入上一页返回的nextCursor
+     * 不传cursor和size时返回全部记录，与分页前的接口一致
      */
     @GetMapping("/my-tickets")
-    public ResponseEntity<MyTicketResponse> getMyTickets(@RequestParam Long userId) {
-        MyTicketResponse response = ticketService.getMyTickets(userId);
+    public ResponseEntity<MyTicketResponse> getMyTickets(@RequestParam Long userId,
+                                                         @RequestParam(required = false) String cursor,
+                                                         @RequestParam(required = false) Integer size) {
+        MyTicketResponse response = ticketService.getMyTickets(userId, cursor, size);
         if ("SUCCESS".equals(response.getStatus())) {
             return ResponseEntity.ok(response);
         } else {
@@ -73,6 +79,18 @@ public class TicketController {
         }
     }
     
+    /**
+     * 导出本人全部车票（JSON数组，边查询边写出）
+     */
+    @GetMapping("/my-tickets/export")
+    public ResponseEntity<StreamingResponseBody> exportMyTickets(@RequestParam Long userId) {
+        StreamingResponseBody body = out -> ticketService.exportMyTickets(userId, out);
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_JSON)
+                .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"tickets-" + userId + ".json\"")
+                .body(body);
+    }
+    
     /**
      * 根据状态获取本人车票
      */
@@ -1,10 +1,17 @@
 package com.example.techprototype.Controller;
 
+import com.example.techprototype.Component.SearchResultCache;
+import com.example.techprototype.Component.TimetableCache;
+import com.example.techprototype.DTO.SearchCacheStats;
 import com.example.techprototype.Entity.Train;
 import com.example.techprototype.Service.TrainService;
-import com.example.techprototype.DTO.TrainListDTO;
+import com.example.techprototype.DTO.TrainListPayload;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
@@ -17,6 +24,10 @@ import java.util.Map;
 public class TrainController {
     @Autowired
     private TrainService trainService;
+    @Autowired
+    private SearchResultCache searchResultCache;
+    @Autowired
+    private TimetableCache timetableCache;
 
     @GetMapping("/search")
     public ResponseEntity<?> searchTrains(
@@ -31,6 +42,26 @@ public class TrainController {
         }
     }
 
+    /**
+     * 车次查询结果缓存的命中率和陈旧度指标
+     */
+    @GetMapping("/search/stats")
+    public ResponseEntity<SearchCacheStats> getSearchCacheStats() {
+        return ResponseEntity.ok(searchResultCache.getStats());
+    }
+
+    /**
+     * 修改时刻表后立即重新加载时刻表缓存，返回新快照的版本号
+     */
+    @PostMapping("/timetable/reload")
+    public ResponseEntity<Map<String, Object>> reloadTimetable() {
+        try {
+            return ResponseEntity.ok(Map.of("version", timetableCache.reload()));
+        } catch (Exception e) {
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(Map.of("error", e.getMessage()));
+        }
+    }
+
     @GetMapping("/direct")
     public List<Train> getDirectTrains(@RequestParam Integer startStationId, @RequestParam Integer endStationId) {
         return trainService.findDirectTrains(startStationId, endStationId);
@@ -47,8 +78,23 @@ public class TrainController {
         return trainService.findTransferTrains(startStationId, endStationId);
     }
 
+    /**
+     * 车次列表直接返回内存中序列化好的JSON，If-None-Match与ETag一致时返回304
+     */
     @GetMapping("/list")
-    public List<TrainListDTO> getTrainListDTO() {
-        return trainService.getAllTrainListDTO();
+    public ResponseEntity<byte[]> getTrainListDTO(
+            @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
+        TrainListPayload payload = trainService.getTrainListPayload();
+        if (payload.matches(ifNoneMatch)) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED)
+                    .eTag(payload.getEtag())
+                    .cacheControl(CacheControl.noCache())
+                    .build();
+        }
+        return ResponseEntity.ok()
+                .eTag(payload.getEtag())
+                .cacheControl(CacheControl.noCache())
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(payload.getBody());
     }
 }
@@ -1,13 +1,18 @@
 package com.example.techprototype.Controller;
 
+import com.example.techprototype.Component.WaitlistFulfillmentExecutor;
 import com.example.techprototype.DTO.BookingRequest;
 import com.example.techprototype.DTO.BookingResponse;
 import com.example.techprototype.DTO.WaitlistOrderResponse;
 import com.example.techprototype.DTO.WaitlistOrderDetailResponse;
+import com.example.techprototype.DTO.WaitlistFulfillmentStats;
 import com.example.techprototype.Service.WaitlistOrderService;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 import java.util.List;
 
 @RestController
@@ -18,6 +23,9 @@ public class WaitlistOrderController {
     @Autowired
     private WaitlistOrderService waitlistOrderService;
     
+    @Autowired
+    private WaitlistFulfillmentExecutor waitlistFulfillmentExecutor;
+    
     /**
      * 创建候补订单
      */
@@ -32,11 +40,14 @@ public class WaitlistOrderController {
     }
     
     /**
-     * 获取我的候补订单
+     * 分页获取我的候补订单，下一页传入上一页返回的nextCursor
+     * 不传cursor和size时返回全部记录，与分页前的接口一致
      */
     @GetMapping("/my")
-    public ResponseEntity<WaitlistOrderResponse> getMyWaitlistOrders(@RequestParam Long userId) {
-        WaitlistOrderResponse response = waitlistOrderService.getMyWaitlistOrders(userId);
+    public ResponseEntity<WaitlistOrderResponse> getMyWaitlistOrders(@RequestParam Long userId,
+                                                                     @RequestParam(required = false) String cursor,
+                                                                     @RequestParam(required = false) Integer size) {
+        WaitlistOrderResponse response = waitlistOrderService.getMyWaitlistOrders(userId, cursor, size);
         if ("SUCCESS".equals(response.getStatus())) {
             return ResponseEntity.ok(response);
         } else {
@@ -44,6 +55,18 @@ public class WaitlistOrderController {
         }
     }
     
+    /**
+     * 导出我的全部候补订单（JSON数组，边查询边写出）
+     */
+    @GetMapping("/my/export")
+    public ResponseEntity<StreamingResponseBody> exportMyWaitlistOrders(@RequestParam Long userId) {
+        StreamingResponseBody body = out -> waitlistOrderService.exportMyWaitlistOrders(userId, out);
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_JSON)
+                .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"waitlist-orders-" + userId + ".json\"")
+                .body(body);
+    }
+    
     /**
      * 获取候补订单详情
      */
@@ -112,5 +135,13 @@ public class WaitlistOrderController {
             return ResponseEntity.badRequest().body(response);
         }
     }
+    
+    /**
+     * 候补兑现执行器指标：队列深度、入队延迟、吞吐量
+     */
+    @GetMapping("/fulfillment/stats")
+    public ResponseEntity<WaitlistFulfillmentStats> getFulfillmentStats() {
+        return ResponseEntity.ok(waitlistFulfillmentExecutor.getStats());
+    }
 } 
 
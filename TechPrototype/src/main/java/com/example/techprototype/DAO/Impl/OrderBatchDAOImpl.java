@@ -0,0 +1,139 @@
+package com.example.techprototype.DAO.Impl;
+
+import com.example.techprototype.DAO.OrderBatchDAO;
+import com.example.techprototype.Entity.Order;
+import com.example.techprototype.Entity.Ticket;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+@Repository
+public class OrderBatchDAOImpl implements OrderBatchDAO {
+
+    // IN 子句每次最多带的订单号数
+    private static final int QUERY_BATCH_SIZE = 500;
+
+    private static final String INSERT_ORDER_SQL =
+            "INSERT INTO orders (order_number, user_id, order_time, total_amount, payment_time, payment_method, order_status, ticket_count) " +
+            "VALUES (?, ?, ?, ?, ?, ?, ?, ?)";
+
+    private static final String INSERT_TICKET_SQL =
+            "INSERT INTO tickets (ticket_number, order_id, passenger_id, train_id, departure_stop_id, arrival_stop_id, travel_date, " +
+            "running_days, carriage_type_id, carriage_number, seat_number, price, ticket_status, digital_signature, created_time, ticket_type) " +
+            "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Override
+    public Set<String> findExistingOrderNumbers(Collection<String> orderNumbers) {
+        Set<String> existing = new HashSet<>();
+        List<String> numbers = new ArrayList<>(orderNumbers);
+        for (int from = 0; from < numbers.size(); from += QUERY_BATCH_SIZE) {
+            List<String> batch = numbers.subList(from, Math.min(from + QUERY_BATCH_SIZE, numbers.size()));
+            existing.addAll(jdbcTemplate.query("SELECT order_number FROM orders WHERE order_number IN (" + placeholders(batch.size()) + ")",
+                    (rs, rowNum) -> rs.getString("order_number"), batch.toArray()));
+        }
+        return existing;
+    }
+
+    @Override
+    @Transactional
+    public void insertOrdersWithTickets(List<Order> orders, Map<String, List<Ticket>> ticketsByOrderNumber) {
+        if (orders.isEmpty()) {
+            return;
+        }
+
+        List<Object[]> orderArgs = new ArrayList<>(orders.size());
+        for (Order order : orders) {
+            orderArgs.add(new Object[]{
+                    order.getOrderNumber(), order.getUserId(), order.getOrderTime(), order.getTotalAmount(),
+                    order.getPaymentTime(), order.getPaymentMethod(), order.getOrderStatus(), order.getTicketCount()
+            });
+        }
+        jdbcTemplate.batchUpdate(INSERT_ORDER_SQL, orderArgs);
+
+        // 批量插入拿不到逐行自增ID，按订单号回查一次
+        Map<String, Long> orderIds = findOrderIds(orders);
+        List<Ticket> tickets = new ArrayList<>();
+        List<Object[]> ticketArgs = new ArrayList<>();
+        for (Order order : orders) {
+            Long orderId = orderIds.get(order.getOrderNumber());
+            if (orderId == null) {
+                throw new IllegalStateException("订单插入后未找到订单ID: " + order.getOrderNumber());
+            }
+            order.setOrderId(orderId);
+            for (Ticket ticket : ticketsByOrderNumber.getOrDefault(order.getOrderNumber(), List.of())) {
+                ticket.setOrderId(orderId);
+                tickets.add(ticket);
+                ticketArgs.add(new Object[]{
+                        ticket.getTicketNumber(), orderId, ticket.getPassengerId(), ticket.getTrainId(),
+                        ticket.getDepartureStopId(), ticket.getArrivalStopId(), ticket.getTravelDate(), ticket.getRunningDays(),
+                        ticket.getCarriageTypeId(), ticket.getCarriageNumber(), ticket.getSeatNumber(), ticket.getPrice(),
+                        ticket.getTicketStatus(), ticket.getDigitalSignature(), ticket.getCreatedTime(), ticket.getTicketType()
+                });
+            }
+        }
+        if (ticketArgs.isEmpty()) {
+            return;
+        }
+        jdbcTemplate.batchUpdate(INSERT_TICKET_SQL, ticketArgs);
+
+        // 车票ID同样按车票号回查，出票后写入乘客行程索引需要
+        Map<String, Long> ticketIds = findTicketIds(tickets);
+        for (Ticket ticket : tickets) {
+            Long ticketId = ticketIds.get(ticket.getTicketNumber());
+            if (ticketId == null) {
+                throw new IllegalStateException("车票插入后未找到车票ID: " + ticket.getTicketNumber());
+            }
+            ticket.setTicketId(ticketId);
+        }
+    }
+
+    private Map<String, Long> findOrderIds(List<Order> orders) {
+        Map<String, Long> orderIds = new HashMap<>();
+        for (int from = 0; from < orders.size(); from += QUERY_BATCH_SIZE) {
+            List<Order> batch = orders.subList(from, Math.min(from + QUERY_BATCH_SIZE, orders.size()));
+            Object[] numbers = batch.stream().map(Order::getOrderNumber).toArray();
+            List<Map.Entry<String, Long>> rows = jdbcTemplate.query(
+                    "SELECT order_id, order_number FROM orders WHERE order_number IN (" + placeholders(batch.size()) + ")",
+                    (rs, rowNum) -> Map.entry(rs.getString("order_number"), rs.getLong("order_id")), numbers);
+            for (Map.Entry<String, Long> row : rows) {
+                orderIds.put(row.getKey(), row.getValue());
+            }
+        }
+        return orderIds;
+    }
+
+    private Map<String, Long> findTicketIds(List<Ticket> tickets) {
+        Map<String, Long> ticketIds = new HashMap<>();
+        for (int from = 0; from < tickets.size(); from += QUERY_BATCH_SIZE) {
+            List<Ticket> batch = tickets.subList(from, Math.min(from + QUERY_BATCH_SIZE, tickets.size()));
+            Object[] numbers = batch.stream().map(Ticket::getTicketNumber).toArray();
+            List<Map.Entry<String, Long>> rows = jdbcTemplate.query(
+                    "SELECT ticket_id, ticket_number FROM tickets WHERE ticket_number IN (" + placeholders(batch.size()) + ")",
+                    (rs, rowNum) -> Map.entry(rs.getString("ticket_number"), rs.getLong("ticket_id")), numbers);
+            for (Map.Entry<String, Long> row : rows) {
+                ticketIds.put(row.getKey(), row.getValue());
+            }
+        }
+        return ticketIds;
+    }
+
+    private String placeholders(int count) {
+        StringBuilder sql = new StringBuilder();
+        for (int i = 0; i < count; i++) {
+            sql.append(i == 0 ? "?" : ", ?");
+        }
+        return sql.toString();
+    }
+}
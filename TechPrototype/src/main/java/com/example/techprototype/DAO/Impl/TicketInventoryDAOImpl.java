@@ -4,18 +4,27 @@ import com.example.techprototype.DAO.TicketInventoryDAO;
 import com.example.techprototype.Entity.TicketInventory;
 import com.example.techprototype.Repository.TicketInventoryRepository;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.stereotype.Repository;
 import org.springframework.transaction.annotation.Transactional;
 import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 
 @Repository
 public class TicketInventoryDAOImpl implements TicketInventoryDAO {
     
+    private static final int UPDATE_BATCH_SIZE = 500;
+    
     @Autowired
     private TicketInventoryRepository ticketInventoryRepository;
     
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+    
     @Override
     public Optional<TicketInventory> findByKey(Integer trainId, Long departureStopId, Long arrivalStopId, LocalDate travelDate, Integer carriageTypeId) {
         return ticketInventoryRepository.findByKeyWithLock(trainId, departureStopId, arrivalStopId, travelDate, carriageTypeId);
@@ -57,4 +66,44 @@ public class TicketInventoryDAOImpl implements TicketInventoryDAO {
     public List<TicketInventory> findAll() {
         return ticketInventoryRepository.findAll();
     }
+    
+    @Override
+    public List<Integer> findAllTrainIds() {
+        return ticketInventoryRepository.findAllTrainIds();
+    }
+    
+    @Override
+    public List<TicketInventory> findByTrainIds(Collection<Integer> trainIds) {
+        return ticketInventoryRepository.findByTrainIdIn(trainIds);
+    }
+    
+    @Override
+    public List<TicketInventory> findByTrainIdsAndDate(Collection<Integer> trainIds, LocalDate travelDate) {
+        return ticketInventoryRepository.findByTrainIdsAndDate(trainIds, travelDate);
+    }
+    
+    @Override
+    public int batchUpdateAvailableSeats(Map<Long, Integer> availableSeatsById) {
+        List<Map.Entry<Long, Integer>> entries = new ArrayList<>(availableSeatsById.entrySet());
+        int updated = 0;
+        // 每条UPDATE ... CASE语句最多更新UPDATE_BATCH_SIZE条记录
+        for (int from = 0; from < entries.size(); from += UPDATE_BATCH_SIZE) {
+            List<Map.Entry<Long, Integer>> batch = entries.subList(from, Math.min(from + UPDATE_BATCH_SIZE, entries.size()));
+            StringBuilder sql = new StringBuilder("UPDATE ticket_inventory SET available_seats = CASE inventory_id");
+            List<Object> args = new ArrayList<>(batch.size() * 3);
+            for (Map.Entry<Long, Integer> entry : batch) {
+                sql.append(" WHEN ? THEN ?");
+                args.add(entry.getKey());
+                args.add(entry.getValue());
+            }
+            sql.append(" END, cache_version = cache_version + 1, db_version = db_version + 1, last_updated = NOW() WHERE inventory_id IN (");
+            for (int i = 0; i < batch.size(); i++) {
+                sql.append(i == 0 ? "?" : ", ?");
+                args.add(batch.get(i).getKey());
+            }
+            sql.append(")");
+            updated += jdbcTemplate.update(sql.toString(), args.toArray());
+        }
+        return updated;
+    }
 } 
\ No newline at end of file
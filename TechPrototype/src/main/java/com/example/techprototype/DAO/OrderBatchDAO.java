@@ -0,0 +1,24 @@
+package com.example.techprototype.DAO;
+
+import com.example.techprototype.Entity.Order;
+import com.example.techprototype.Entity.Ticket;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+public interface OrderBatchDAO {
+
+    /**
+     * 查询已存在的订单号，用于消息去重
+     */
+    Set<String> findExistingOrderNumbers(Collection<String> orderNumbers);
+
+    /**
+     * 在一个事务中批量插入订单及其车票，插入后回填订单ID和车票ID
+     * @param orders 待插入的订单
+     * @param ticketsByOrderNumber 订单号 -> 车票
+     */
+    void insertOrdersWithTickets(List<Order> orders, Map<String, List<Ticket>> ticketsByOrderNumber);
+}
@@ -2,7 +2,9 @@ package com.example.techprototype.DAO;
 
 import com.example.techprototype.Entity.TicketInventory;
 import java.time.LocalDate;
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 
 public interface TicketInventoryDAO {
@@ -18,4 +20,17 @@ public interface TicketInventoryDAO {
     void save(TicketInventory ticketInventory);
     
     List<TicketInventory> findAll();
+    
+    List<Integer> findAllTrainIds();
+    
+    List<TicketInventory> findByTrainIds(Collection<Integer> trainIds);
+    
+    List<TicketInventory> findByTrainIdsAndDate(Collection<Integer> trainIds, LocalDate travelDate);
+    
+    /**
+     * 批量更新可用座位数，缓存版本和数据库版本各加1
+     * @param availableSeatsById 库存ID -> 可用座位数
+     * @return 更新的记录数
+     */
+    int batchUpdateAvailableSeats(Map<Long, Integer> availableSeatsById);
 } 
\ No newline at end of file
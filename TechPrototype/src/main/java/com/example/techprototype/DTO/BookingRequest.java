@@ -34,6 +34,9 @@ public class BookingRequest {
     @NotNull(message = "乘客信息不能为空")
     private List<PassengerInfo> passengers;
     
+    // 可选，无锁购票模式下作为幂等键，重试时携带同一订单号不会重复扣减库存
+    private String orderNumber;
+    
     @Data
     @NoArgsConstructor
     @AllArgsConstructor
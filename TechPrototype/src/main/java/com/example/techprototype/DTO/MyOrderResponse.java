@@ -18,13 +18,14 @@ public class MyOrderResponse {
     private String message;
     private List<MyOrderInfo> orders;
     private LocalDateTime timestamp;
+    private String nextCursor;       // 下一页游标，没有更多订单或未分页时为null
     
     public static MyOrderResponse success(List<MyOrderInfo> orders) {
-        return new MyOrderResponse("SUCCESS", "获取成功", orders, LocalDateTime.now());
+        return new MyOrderResponse("SUCCESS", "获取成功", orders, LocalDateTime.now(), null);
     }
     
     public static MyOrderResponse failure(String message) {
-        return new MyOrderResponse("FAILURE", message, null, LocalDateTime.now());
+        return new MyOrderResponse("FAILURE", message, null, LocalDateTime.now(), null);
     }
     
     @Data
@@ -19,17 +19,18 @@ public class MyTicketResponse {
     private List<MyTicketInfo> tickets;
     private LocalDateTime timestamp;
     private UserInfo userInfo;
+    private String nextCursor;       // 下一页游标，没有更多车票或未分页时为null
     
     public static MyTicketResponse success(List<MyTicketInfo> tickets, UserInfo userInfo) {
-        return new MyTicketResponse("SUCCESS", "获取成功", tickets, LocalDateTime.now(), userInfo);
+        return new MyTicketResponse("SUCCESS", "获取成功", tickets, LocalDateTime.now(), userInfo, null);
     }
     
     public static MyTicketResponse success(List<MyTicketInfo> tickets) {
-        return new MyTicketResponse("SUCCESS", "获取成功", tickets, LocalDateTime.now(), null);
+        return new MyTicketResponse("SUCCESS", "获取成功", tickets, LocalDateTime.now(), null, null);
     }
     
     public static MyTicketResponse failure(String message) {
-        return new MyTicketResponse("FAILURE", message, null, LocalDateTime.now(), null);
+        return new MyTicketResponse("FAILURE", message, null, LocalDateTime.now(), null, null);
     }
     
     @Data
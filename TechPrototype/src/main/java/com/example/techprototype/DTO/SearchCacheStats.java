@@ -0,0 +1,27 @@
+package com.example.techprototype.DTO;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.AllArgsConstructor;
+
+/**
+ * 车次查询结果缓存运行指标
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class SearchCacheStats {
+
+    private long routeHits;              // 车次路线命中次数
+    private long routeMisses;            // 车次路线未命中（含时刻表版本变化）次数
+    private long availabilityHits;       // 余票命中次数
+    private long availabilityMisses;     // 余票未命中次数（首次查询）
+    private long versionInvalidations;   // 因库存版本变化失效的次数
+    private long expirations;            // 因超过最大陈旧时间失效的次数
+    private double hitRatio;             // 余票命中率，即整个查询结果直接取自缓存的比例
+    private int routeEntries;
+    private int availabilityEntries;
+    private long maxStalenessMillis;     // 配置的余票最大陈旧时间
+    private long lastServedAgeMillis;    // 最近一次命中时缓存余票的年龄
+    private long maxServedAgeMillis;     // 命中时缓存余票的最大年龄
+}
@@ -0,0 +1,25 @@
+package com.example.techprototype.DTO;
+
+import com.example.techprototype.Entity.TrainStop;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.AllArgsConstructor;
+import java.util.List;
+
+/**
+ * 车次查询结果中与日期、余票无关的部分，只随时刻表变化
+ * 停靠点取自时刻表快照，只读使用
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class SearchRoute {
+    
+    private Integer trainId;
+    private String trainNumber;
+    private String fromStationName;
+    private String toStationName;
+    private TrainStop departureStop;
+    private TrainStop arrivalStop;
+    private List<String> path;             // 全程途经站点
+}
@@ -0,0 +1,23 @@
+package com.example.techprototype.DTO;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.AllArgsConstructor;
+import java.time.LocalDate;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 车次/日期/席别的区段库存快照
+ * availableBySegment：区段起点站序 -> 该区段余票
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class SegmentStock {
+    
+    private Integer trainId;
+    private LocalDate travelDate;
+    private Integer carriageTypeId;
+    private Map<Integer, Integer> availableBySegment = new HashMap<>();
+}
@@ -0,0 +1,21 @@
+package com.example.techprototype.DTO;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.AllArgsConstructor;
+import java.time.LocalDate;
+
+/**
+ * 批量查询库存的一项：车次/区间/日期/席别
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class StockQuery {
+    
+    private Integer trainId;
+    private Long departureStopId;
+    private Long arrivalStopId;
+    private LocalDate travelDate;
+    private Integer carriageTypeId;
+}
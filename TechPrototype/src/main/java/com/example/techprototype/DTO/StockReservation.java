@@ -0,0 +1,27 @@
+package com.example.techprototype.DTO;
+
+import com.example.techprototype.Enums.ReservationStatus;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.AllArgsConstructor;
+
+/**
+ * 按订单号幂等预减库存的结果
+ * carriageTypeId：余票不足（或库存不存在）的席别ID，仅INSUFFICIENT时有值
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class StockReservation {
+    
+    private ReservationStatus status;
+    private Integer carriageTypeId;
+    
+    public static StockReservation of(ReservationStatus status) {
+        return new StockReservation(status, null);
+    }
+    
+    public static StockReservation insufficient(Integer carriageTypeId) {
+        return new StockReservation(ReservationStatus.INSUFFICIENT, carriageTypeId);
+    }
+}
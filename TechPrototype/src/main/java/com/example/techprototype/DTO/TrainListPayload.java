@@ -0,0 +1,39 @@
+package com.example.techprototype.DTO;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.AllArgsConstructor;
+import java.util.List;
+
+/**
+ * 车次列表投影的一个版本：序列化好的JSON、对应的ETag和列表行
+ * 由车次列表投影共享，只读使用
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class TrainListPayload {
+
+    private byte[] body;                 // 车次列表的JSON（UTF-8）
+    private String etag;                 // JSON内容的MD5，带双引号
+    private List<TrainListDTO> trains;
+
+    /**
+     * If-None-Match 是否包含当前ETag（忽略弱校验前缀W/，支持逗号分隔的多个值和*）
+     */
+    public boolean matches(String ifNoneMatch) {
+        if (ifNoneMatch == null || etag == null) {
+            return false;
+        }
+        for (String tag : ifNoneMatch.split(",")) {
+            String trimmed = tag.trim();
+            if (trimmed.startsWith("W/")) {
+                trimmed = trimmed.substring(2);
+            }
+            if (trimmed.equals("*") || trimmed.equals(etag)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
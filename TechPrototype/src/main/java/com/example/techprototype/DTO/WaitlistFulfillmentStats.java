@@ -0,0 +1,25 @@
+package com.example.techprototype.DTO;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.AllArgsConstructor;
+
+/**
+ * 候补兑现执行器运行指标
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class WaitlistFulfillmentStats {
+
+    private int partitions;
+    private int queueDepth;          // 等待执行的兑现任务数（合并后）
+    private long submitted;          // 收到的触发次数
+    private long coalesced;          // 被合并到已排队任务中的触发次数
+    private long rejected;           // 队列满被丢弃的触发次数
+    private long completed;          // 已完成的兑现轮次
+    private long failed;             // 执行异常的兑现轮次
+    private long lastLagMillis;      // 最近一轮从入队到开始执行的延迟
+    private long maxLagMillis;       // 最大入队延迟
+    private double throughputPerSecond; // 启动以来平均每秒完成的兑现轮次
+}
@@ -15,13 +15,14 @@ public class WaitlistOrderResponse {
     private String status;
     private String message;
     private List<WaitlistOrderInfo> waitlistOrders;
+    private String nextCursor;       // 下一页游标，没有更多候补订单或未分页时为null
     
     public static WaitlistOrderResponse success(List<WaitlistOrderInfo> waitlistOrders) {
-        return new WaitlistOrderResponse("SUCCESS", "获取候补订单成功", waitlistOrders);
+        return new WaitlistOrderResponse("SUCCESS", "获取候补订单成功", waitlistOrders, null);
     }
     
     public static WaitlistOrderResponse failure(String message) {
-        return new WaitlistOrderResponse("FAILURE", message, null);
+        return new WaitlistOrderResponse("FAILURE", message, null, null);
     }
     
     @Data
@@ -8,7 +8,9 @@ import java.math.BigDecimal;
 import java.time.LocalDateTime;
 
 @Entity
-@Table(name = "orders")
+@Table(name = "orders", indexes = {
+    @Index(name = "idx_user_order_time", columnList = "user_id, order_time, order_id")
+})
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
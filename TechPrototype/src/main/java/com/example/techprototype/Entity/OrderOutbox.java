@@ -0,0 +1,51 @@
+package com.example.techprototype.Entity;
+
+import jakarta.persistence.*;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.AllArgsConstructor;
+import java.time.LocalDateTime;
+
+/**
+ * 订单消息发件箱
+ * 购票事务内写入，由中继批量投递到RabbitMQ，确认后标记为已投递
+ */
+@Entity
+@Table(name = "order_outbox", indexes = {
+    @Index(name = "idx_order_outbox_status", columnList = "status, outbox_id")
+})
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class OrderOutbox {
+    
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @Column(name = "outbox_id")
+    private Long outboxId;
+    
+    @Column(name = "order_number", nullable = false, length = 32, unique = true)
+    private String orderNumber;
+    
+    @Column(name = "exchange", nullable = false, length = 64)
+    private String exchange;
+    
+    @Column(name = "routing_key", nullable = false, length = 64)
+    private String routingKey;
+    
+    @Lob
+    @Column(name = "payload", nullable = false, columnDefinition = "TEXT")
+    private String payload;
+    
+    @Column(name = "status", nullable = false)
+    private Byte status = 0; // 0-待投递, 1-已投递
+    
+    @Column(name = "attempts", nullable = false)
+    private Integer attempts = 0;
+    
+    @Column(name = "created_time", nullable = false)
+    private LocalDateTime createdTime;
+    
+    @Column(name = "sent_time")
+    private LocalDateTime sentTime;
+}
@@ -0,0 +1,37 @@
+package com.example.techprototype.Entity;
+
+import jakarta.persistence.*;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.AllArgsConstructor;
+import java.time.LocalDate;
+
+/**
+ * 座位按日期的区间占用位图
+ * 稀疏存储：只保存有占用的 座位+日期+位图字，过期日期的记录由每日滚动任务一次性删除
+ * 32站以内的车次每个座位每天只有word_index=0一条记录
+ */
+@Entity
+@Table(name = "seat_occupancy")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class SeatOccupancy {
+    
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @Column(name = "occupancy_id")
+    private Long occupancyId;
+    
+    @Column(name = "seat_id", nullable = false)
+    private Long seatId;
+    
+    @Column(name = "travel_date", nullable = false)
+    private LocalDate travelDate;
+    
+    @Column(name = "word_index", nullable = false)
+    private Integer wordIndex = 0; // 多字位图中的字下标，第k个字覆盖第32k+1到32k+32个站点
+    
+    @Column(name = "occupancy_bitmap", nullable = false)
+    private Long occupancyBitmap = 0L; // 区间占用位图，格式同SeatBitmapUtil的区间掩码
+}
@@ -9,7 +9,9 @@ import java.time.LocalDate;
 import java.time.LocalDateTime;
 
 @Entity
-@Table(name = "tickets")
+@Table(name = "tickets", indexes = {
+    @Index(name = "idx_passenger_created", columnList = "passenger_id, created_time, ticket_id")
+})
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
@@ -8,7 +8,9 @@ import java.math.BigDecimal;
 import java.time.LocalDateTime;
 
 @Entity
-@Table(name = "waitlist_orders")
+@Table(name = "waitlist_orders", indexes = {
+    @Index(name = "idx_waitlist_user_time", columnList = "user_id, order_time, waitlist_id")
+})
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
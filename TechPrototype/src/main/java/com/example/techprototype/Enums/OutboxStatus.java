@@ -0,0 +1,31 @@
+package com.example.techprototype.Enums;
+
+public enum OutboxStatus {
+    PENDING(0, "待投递"),
+    SENT(1, "已投递");
+    
+    private final int code;
+    private final String description;
+    
+    OutboxStatus(int code, String description) {
+        this.code = code;
+        this.description = description;
+    }
+    
+    public int getCode() {
+        return code;
+    }
+    
+    public String getDescription() {
+        return description;
+    }
+    
+    public static OutboxStatus fromCode(int code) {
+        for (OutboxStatus status : values()) {
+            if (status.code == code) {
+                return status;
+            }
+        }
+        throw new IllegalArgumentException("Invalid outbox status code: " + code);
+    }
+}
@@ -0,0 +1,33 @@
+package com.example.techprototype.Enums;
+
+public enum ReservationStatus {
+    INSUFFICIENT(0, "余票不足"),
+    RESERVED(1, "已预留"),
+    DUPLICATE(2, "重复预留"),
+    CONFLICT(3, "订单号已被占用");
+    
+    private final int code;
+    private final String description;
+    
+    ReservationStatus(int code, String description) {
+        this.code = code;
+        this.description = description;
+    }
+    
+    public int getCode() {
+        return code;
+    }
+    
+    public String getDescription() {
+        return description;
+    }
+    
+    public static ReservationStatus fromCode(int code) {
+        for (ReservationStatus status : values()) {
+            if (status.code == code) {
+                return status;
+            }
+        }
+        throw new IllegalArgumentException("Invalid reservation status code: " + code);
+    }
+}
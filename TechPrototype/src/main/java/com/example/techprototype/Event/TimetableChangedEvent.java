@@ -0,0 +1,21 @@
+package com.example.techprototype.Event;
+
+import org.springframework.context.ApplicationEvent;
+
+/**
+ * 车次时刻表（train_stops）变更事件
+ * 时刻表缓存重新加载后，为停靠点有变化的车次发布此事件，使区间掩码表和座位占用引擎重新加载该车次
+ */
+public class TimetableChangedEvent extends ApplicationEvent {
+    
+    private final Integer trainId;
+    
+    public TimetableChangedEvent(Object source, Integer trainId) {
+        super(source);
+        this.trainId = trainId;
+    }
+    
+    public Integer getTrainId() {
+        return trainId;
+    }
+}
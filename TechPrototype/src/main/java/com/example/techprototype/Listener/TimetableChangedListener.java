@@ -0,0 +1,35 @@
+package com.example.techprototype.Listener;
+
+import com.example.techprototype.Component.IntervalMaskCache;
+import com.example.techprototype.Component.SeatOccupancyEngine;
+import com.example.techprototype.Component.TicketPriceCache;
+import com.example.techprototype.Event.TimetableChangedEvent;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+@Component
+public class TimetableChangedListener {
+    
+    @Autowired
+    private IntervalMaskCache intervalMaskCache;
+    
+    @Autowired
+    private SeatOccupancyEngine seatOccupancyEngine;
+    
+    @Autowired
+    private TicketPriceCache ticketPriceCache;
+    
+    @EventListener
+    public void handleTimetableChanged(TimetableChangedEvent event) {
+        System.out.println("收到车次时刻表变更事件: 车次ID=" + event.getTrainId());
+        
+        // 事件在新快照替换后发布，先失效掩码表，再卸载座位占用，重新加载时按新的站点数生成
+        intervalMaskCache.evict(event.getTrainId());
+        int evicted = seatOccupancyEngine.evictTrain(event.getTrainId());
+        // 票价按停靠点区间缓存，停靠点变化后重新加载
+        ticketPriceCache.evict(event.getTrainId());
+        
+        System.out.println("车次区间掩码表已失效，卸载 " + evicted + " 个车次席别的座位占用");
+    }
+}
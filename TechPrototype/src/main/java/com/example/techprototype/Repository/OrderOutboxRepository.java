@@ -0,0 +1,52 @@
+package com.example.techprototype.Repository;
+
+import com.example.techprototype.Entity.OrderOutbox;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+
+@Repository
+public interface OrderOutboxRepository extends JpaRepository<OrderOutbox, Long> {
+    
+    /**
+     * 按写入顺序查询一批待投递消息
+     */
+    @Query("SELECT o FROM OrderOutbox o WHERE o.status = 0 ORDER BY o.outboxId ASC")
+    List<OrderOutbox> findPendingBatch(Pageable pageable);
+    
+    /**
+     * 订单号的消息是否已提交到发件箱
+     */
+    boolean existsByOrderNumber(String orderNumber);
+    
+    /**
+     * 标记消息已投递
+     */
+    @Modifying
+    @Transactional
+    @Query("UPDATE OrderOutbox o SET o.status = 1, o.sentTime = :sentTime WHERE o.outboxId IN :ids")
+    int markSent(@Param("ids") Collection<Long> ids, @Param("sentTime") LocalDateTime sentTime);
+    
+    /**
+     * 投递失败，增加尝试次数，消息保持待投递
+     */
+    @Modifying
+    @Transactional
+    @Query("UPDATE OrderOutbox o SET o.attempts = o.attempts + 1 WHERE o.outboxId IN :ids")
+    int incrementAttempts(@Param("ids") Collection<Long> ids);
+    
+    /**
+     * 删除指定时间之前已投递的消息
+     */
+    @Modifying
+    @Transactional
+    @Query("DELETE FROM OrderOutbox o WHERE o.status = 1 AND o.sentTime < :before")
+    int deleteSentBefore(@Param("before") LocalDateTime before);
+}
@@ -1,6 +1,7 @@
 package com.example.techprototype.Repository;
 
 import com.example.techprototype.Entity.Order;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
@@ -21,6 +22,23 @@ public interface OrderRepository extends JpaRepository<Order, Long> {
     
     List<Order> findByUserIdOrderByOrderTimeDesc(Long userId);
     
+    /**
+     * 用户最新的一页订单，按（下单时间，订单ID）倒序，走 idx_user_order_time
+     */
+    @Query("SELECT o FROM Order o WHERE o.userId = :userId ORDER BY o.orderTime DESC, o.orderId DESC")
+    List<Order> findFirstPageByUserId(@Param("userId") Long userId, Pageable pageable);
+    
+    /**
+     * 用户在（下单时间，订单ID）之前的一页订单
+     */
+    @Query("SELECT o FROM Order o WHERE o.userId = :userId " +
+           "AND (o.orderTime < :orderTime OR (o.orderTime = :orderTime AND o.orderId < :orderId)) " +
+           "ORDER BY o.orderTime DESC, o.orderId DESC")
+    List<Order> findPageByUserIdBefore(@Param("userId") Long userId,
+                                       @Param("orderTime") LocalDateTime orderTime,
+                                       @Param("orderId") Long orderId,
+                                       Pageable pageable);
+    
     List<Order> findByUserIdAndOrderNumberContaining(Long userId, String orderNumber);
     
     List<Order> findByUserIdAndOrderStatus(Long userId, Byte orderStatus);
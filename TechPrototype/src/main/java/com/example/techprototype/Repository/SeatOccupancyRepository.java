@@ -0,0 +1,39 @@
+package com.example.techprototype.Repository;
+
+import com.example.techprototype.Entity.SeatOccupancy;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+import java.time.LocalDate;
+import java.util.Collection;
+import java.util.List;
+
+@Repository
+public interface SeatOccupancyRepository extends JpaRepository<SeatOccupancy, Long> {
+    
+    /**
+     * 查找日期窗口内的所有占用记录
+     */
+    List<SeatOccupancy> findByTravelDateBetween(LocalDate startDate, LocalDate endDate);
+    
+    /**
+     * 查找指定座位在日期窗口内的占用记录
+     */
+    List<SeatOccupancy> findBySeatIdInAndTravelDateBetween(Collection<Long> seatIds, LocalDate startDate, LocalDate endDate);
+    
+    /**
+     * 查找指定座位在某一天的占用记录
+     */
+    List<SeatOccupancy> findBySeatIdInAndTravelDate(Collection<Long> seatIds, LocalDate travelDate);
+    
+    /**
+     * 删除已过期日期的占用记录
+     */
+    @Modifying
+    @Transactional
+    @Query("DELETE FROM SeatOccupancy so WHERE so.travelDate < :date")
+    int deleteByTravelDateBefore(@Param("date") LocalDate date);
+}
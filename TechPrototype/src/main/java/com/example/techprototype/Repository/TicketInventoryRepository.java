@@ -8,6 +8,7 @@ import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 import jakarta.persistence.LockModeType;
 import java.time.LocalDate;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -30,4 +31,16 @@ public interface TicketInventoryRepository extends JpaRepository<TicketInventory
     @Query("SELECT ti FROM TicketInventory ti WHERE ti.trainId = :trainId AND ti.travelDate = :travelDate")
     List<TicketInventory> findByTrainAndDate(@Param("trainId") Integer trainId,
                                             @Param("travelDate") LocalDate travelDate);
+    
+    @Query("SELECT ti FROM TicketInventory ti WHERE ti.trainId IN :trainIds AND ti.travelDate = :travelDate")
+    List<TicketInventory> findByTrainIdsAndDate(@Param("trainIds") Collection<Integer> trainIds,
+                                               @Param("travelDate") LocalDate travelDate);
+    
+    /**
+     * 查询有库存记录的所有车次ID，用于按车次分批加载
+     */
+    @Query("SELECT DISTINCT ti.trainId FROM TicketInventory ti ORDER BY ti.trainId")
+    List<Integer> findAllTrainIds();
+    
+    List<TicketInventory> findByTrainIdIn(Collection<Integer> trainIds);
 } 
\ No newline at end of file
@@ -1,11 +1,13 @@
 package com.example.techprototype.Repository;
 
 import com.example.techprototype.Entity.Ticket;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 import java.time.LocalDate;
+import java.time.LocalDateTime;
 import java.time.LocalTime;
 import java.util.List;
 
@@ -16,6 +18,12 @@ public interface TicketRepository extends JpaRepository<Ticket, Long> {
     
     List<Ticket> findByOrderIdAndTicketIdIn(Long orderId, List<Long> ticketIds);
     
+    /**
+     * 批量查询多个订单的车票，按订单ID、车票ID排序
+     */
+    @Query("SELECT t FROM Ticket t WHERE t.orderId IN :orderIds ORDER BY t.orderId, t.ticketId")
+    List<Ticket> findByOrderIdIn(@Param("orderIds") List<Long> orderIds);
+    
     @Query("SELECT t FROM Ticket t WHERE t.orderId = :orderId AND t.ticketStatus = 1")
     List<Ticket> findValidTicketsByOrderId(@Param("orderId") Long orderId);
     
@@ -45,6 +53,16 @@ public interface TicketRepository extends JpaRepository<Ticket, Long> {
             @Param("passengerId") Long passengerId,
             @Param("travelDate") LocalDate travelDate);
     
+    /**
+     * 查询乘客出行日期不早于指定日期的有效车票，用于加载乘客行程索引
+     */
+    @Query("SELECT t FROM Ticket t WHERE t.passengerId = :passengerId " +
+           "AND t.travelDate >= :fromDate " +
+           "AND t.ticketStatus IN (0, 1, 2)") // 0-待支付, 1-未使用, 2-已使用
+    List<Ticket> findValidTicketsByPassengerFrom(
+            @Param("passengerId") Long passengerId,
+            @Param("fromDate") LocalDate fromDate);
+
     /**
      * 根据乘客ID和车票状态查询车票
      */
@@ -62,6 +80,23 @@ public interface TicketRepository extends JpaRepository<Ticket, Long> {
     @Query("SELECT t FROM Ticket t WHERE t.passengerId = :passengerId ORDER BY t.createdTime DESC")
     List<Ticket> findValidTicketsByPassengerId(@Param("passengerId") Long passengerId);
     
+    /**
+     * 乘客最新的一页车票，按（创建时间，车票ID）倒序，走 idx_passenger_created
+     */
+    @Query("SELECT t FROM Ticket t WHERE t.passengerId = :passengerId ORDER BY t.createdTime DESC, t.ticketId DESC")
+    List<Ticket> findFirstPageByPassengerId(@Param("passengerId") Long passengerId, Pageable pageable);
+    
+    /**
+     * 乘客在（创建时间，车票ID）之前的一页车票
+     */
+    @Query("SELECT t FROM Ticket t WHERE t.passengerId = :passengerId " +
+           "AND (t.createdTime < :createdTime OR (t.createdTime = :createdTime AND t.ticketId < :ticketId)) " +
+           "ORDER BY t.createdTime DESC, t.ticketId DESC")
+    List<Ticket> findPageByPassengerIdBefore(@Param("passengerId") Long passengerId,
+                                             @Param("createdTime") LocalDateTime createdTime,
+                                             @Param("ticketId") Long ticketId,
+                                             Pageable pageable);
+    
     /**
      * 根据乘客ID和车票状态查询车票（按创建时间倒序）
      */
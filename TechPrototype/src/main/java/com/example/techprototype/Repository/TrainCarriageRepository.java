@@ -3,6 +3,7 @@ package com.example.techprototype.Repository;
 import com.example.techprototype.Entity.TrainCarriage;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.stereotype.Repository;
+import java.util.List;
 import java.util.Optional;
 
 @Repository
@@ -13,4 +14,9 @@ public interface TrainCarriageRepository extends JpaRepository<TrainCarriage, Lo
     Optional<TrainCarriage> findByCarriageNumber(String carriageNumber);
     
     Optional<TrainCarriage> findByTrainIdAndCarriageNumber(Integer trainId, String carriageNumber);
+
+    /**
+     * 查找指定车次和车厢类型的所有车厢
+     */
+    List<TrainCarriage> findByTrainIdAndTypeId(Integer trainId, Integer typeId);
 } 
\ No newline at end of file
@@ -2,6 +2,7 @@ package com.example.techprototype.Repository;
 
 import com.example.techprototype.Entity.TrainStop;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
 import org.springframework.stereotype.Repository;
 import java.util.Optional;
 import java.util.List;
@@ -27,4 +28,14 @@ public interface TrainStopRepository extends JpaRepository<TrainStop, Long> {
      * 根据站点ID查询所有停靠该站点的车次停靠信息
      */
     List<TrainStop> findByStationId(Integer stationId);
+    
+    /**
+     * 停靠点表的指纹：行数、最大ID，以及车站/站序、到发时间、停站时长、里程的合计
+     * 只做一次聚合查询，用于判断时刻表是否变化，不加载停靠点
+     */
+    @Query("SELECT COUNT(s), COALESCE(MAX(s.stopId), 0), COALESCE(SUM(s.stationId * 1000 + s.sequenceNumber), 0), " +
+           "COALESCE(SUM(HOUR(s.arrivalTime) * 60 + MINUTE(s.arrivalTime)), 0), " +
+           "COALESCE(SUM(HOUR(s.departureTime) * 60 + MINUTE(s.departureTime)), 0), " +
+           "COALESCE(SUM(s.stopMinutes), 0), COALESCE(SUM(s.distanceFromStart), 0) FROM TrainStop s")
+    List<Object[]> fingerprint();
 }
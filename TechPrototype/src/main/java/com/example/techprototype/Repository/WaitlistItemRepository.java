@@ -13,6 +13,12 @@ public interface WaitlistItemRepository extends JpaRepository<WaitlistItem, Long
     
     List<WaitlistItem> findByWaitlistId(Long waitlistId);
     
+    /**
+     * 批量查询多个候补订单的订单项，按候补订单ID、订单项ID排序
+     */
+    @Query("SELECT wi FROM WaitlistItem wi WHERE wi.waitlistId IN :waitlistIds ORDER BY wi.waitlistId, wi.itemId")
+    List<WaitlistItem> findByWaitlistIdIn(@Param("waitlistIds") List<Long> waitlistIds);
+    
     /**
      * 查询指定条件的待兑现候补订单项
      */
@@ -1,6 +1,7 @@
 package com.example.techprototype.Repository;
 
 import com.example.techprototype.Entity.WaitlistOrder;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
@@ -18,6 +19,23 @@ public interface WaitlistOrderRepository extends JpaRepository<WaitlistOrder, Lo
     
     List<WaitlistOrder> findByUserIdOrderByOrderTimeDesc(Long userId);
     
+    /**
+     * 用户最新的一页候补订单，按（下单时间，候补订单ID）倒序，走 idx_waitlist_user_time
+     */
+    @Query("SELECT wo FROM WaitlistOrder wo WHERE wo.userId = :userId ORDER BY wo.orderTime DESC, wo.waitlistId DESC")
+    List<WaitlistOrder> findFirstPageByUserId(@Param("userId") Long userId, Pageable pageable);
+    
+    /**
+     * 用户在（下单时间，候补订单ID）之前的一页候补订单
+     */
+    @Query("SELECT wo FROM WaitlistOrder wo WHERE wo.userId = :userId " +
+           "AND (wo.orderTime < :orderTime OR (wo.orderTime = :orderTime AND wo.waitlistId < :waitlistId)) " +
+           "ORDER BY wo.orderTime DESC, wo.waitlistId DESC")
+    List<WaitlistOrder> findPageByUserIdBefore(@Param("userId") Long userId,
+                                               @Param("orderTime") LocalDateTime orderTime,
+                                               @Param("waitlistId") Long waitlistId,
+                                               Pageable pageable);
+    
     List<WaitlistOrder> findByUserIdAndOrderStatus(Long userId, Byte orderStatus);
     
     /**
@@ -1,6 +1,9 @@
 package com.example.techprototype.Service.Impl;
 
+import com.example.techprototype.Component.HistoryPager;
 import com.example.techprototype.Component.OrderProcessor;
+import com.example.techprototype.Component.PassengerItineraryIndex;
+import com.example.techprototype.Component.TimetableCache;
 import com.example.techprototype.DAO.TicketInventoryDAO;
 import com.example.techprototype.DTO.BookingRequest;
 import com.example.techprototype.DTO.BookingResponse;
@@ -28,25 +31,28 @@ import com.example.techprototype.Repository.TicketRepository;
 import com.example.techprototype.Repository.UserRepository;
 import com.example.techprototype.Repository.SeatRepository;
 import com.example.techprototype.Repository.TrainCarriageRepository;
-import com.example.techprototype.Repository.TrainRepository;
-import com.example.techprototype.Repository.TrainStopRepository;
-import com.example.techprototype.Repository.StationRepository;
 import com.example.techprototype.Service.OrderService;
 import com.example.techprototype.Service.RedisService;
 import com.example.techprototype.Service.TicketService;
 import com.example.techprototype.Service.SeatService;
+import com.example.techprototype.Util.HistoryCursor;
 import com.example.techprototype.Util.TicketNumberGenerator;
 import org.springframework.amqp.rabbit.core.RabbitTemplate;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.io.IOException;
+import java.io.OutputStream;
 import java.math.BigDecimal;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.time.LocalTime;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.stream.Collectors;
 
@@ -78,16 +84,16 @@ public class OrderServiceImpl implements OrderService {
     private RabbitTemplate rabbitTemplate;
     
     @Autowired
-    private TrainRepository trainRepository;
+    private TimetableCache timetableCache;
     
     @Autowired
-    private TrainStopRepository trainStopRepository;
-    
-    @Autowired
-    private StationRepository stationRepository;
+    private HistoryPager historyPager;
     
     @Autowired
     private SeatService seatService;
+
+    @Autowired
+    private PassengerItineraryIndex passengerItineraryIndex;
     
     /**
      * 创建订单
@@ -207,6 +213,7 @@ public class OrderServiceImpl implements OrderService {
                 ticket = ticketRepository.save(ticket);
                 tickets.add(ticket);
             }
+            passengerItineraryIndex.add(tickets);
             
             // 直接操作数据库，不需要Redis缓存
             
@@ -263,6 +270,7 @@ public class OrderServiceImpl implements OrderService {
                 // 3. 更新车票状态
                 ticket.setTicketStatus((byte) 3); // 已退票
                 ticketRepository.save(ticket);
+                passengerItineraryIndex.remove(ticket);
             }
             
             // 更新订单状态和总价
@@ -326,15 +334,18 @@ public class OrderServiceImpl implements OrderService {
     }
     
     @Override
-    public MyOrderResponse getMyOrders(Long userId) {
+    public MyOrderResponse getMyOrders(Long userId, String cursor, Integer size) {
         try {
-            // 1. 根据用户ID查询所有订单
-            List<Order> orders = orderRepository.findByUserIdOrderByOrderTimeDesc(userId);
+            // 1. 从游标位置读取一页订单
+            HistoryPager.Page<Order> page = historyPager.page(cursor, size,
+                    (after, limit) -> findOrderPage(userId, after, limit), this::orderCursor);
             
             // 2. 转换为响应格式
-            List<MyOrderResponse.MyOrderInfo> orderInfos = convertToMyOrderInfo(orders);
+            List<MyOrderResponse.MyOrderInfo> orderInfos = convertToMyOrderInfo(page.getItems());
             
-            return MyOrderResponse.success(orderInfos);
+            MyOrderResponse response = MyOrderResponse.success(orderInfos);
+            response.setNextCursor(page.getNextCursor());
+            return response;
             
         } catch (Exception e) {
             System.err.println("获取我的订单失败: " + e.getMessage());
@@ -342,6 +353,26 @@ public class OrderServiceImpl implements OrderService {
         }
     }
     
+    @Override
+    public void exportMyOrders(Long userId, OutputStream out) throws IOException {
+        historyPager.export(out, (after, limit) -> findOrderPage(userId, after, limit),
+                this::orderCursor, this::convertToMyOrderInfo);
+    }
+    
+    /**
+     * 按（下单时间，订单ID）倒序读取游标之后的订单
+     */
+    private List<Order> findOrderPage(Long userId, HistoryCursor after, int limit) {
+        if (after == null) {
+            return orderRepository.findFirstPageByUserId(userId, PageRequest.of(0, limit));
+        }
+        return orderRepository.findPageByUserIdBefore(userId, after.getTime(), after.getId(), PageRequest.of(0, limit));
+    }
+    
+    private HistoryCursor orderCursor(Order order) {
+        return new HistoryCursor(order.getOrderTime(), order.getOrderId());
+    }
+    
     @Override
     public MyOrderResponse getMyOrdersByConditions(Long userId, String orderNumber, LocalDate startDate, LocalDate endDate, Byte orderStatus, String trainNumber) {
         try {
@@ -383,20 +414,27 @@ public class OrderServiceImpl implements OrderService {
     
     /**
      * 将Order实体转换为MyOrderInfo
+     * 全部订单的车票用一次IN查询取回，车次、停靠点和车站从时刻表缓存读取，查询次数与订单数量无关
      */
     private List<MyOrderResponse.MyOrderInfo> convertToMyOrderInfo(List<Order> orders) {
         List<MyOrderResponse.MyOrderInfo> orderInfos = new ArrayList<>();
+        if (orders.isEmpty()) {
+            return orderInfos;
+        }
+        
+        // 每个订单取车票ID最小的一张作为代表
+        List<Long> orderIds = orders.stream().map(Order::getOrderId).distinct().collect(Collectors.toList());
+        Map<Long, Ticket> representativeTickets = new HashMap<>();
+        for (Ticket ticket : ticketRepository.findByOrderIdIn(orderIds)) {
+            representativeTickets.putIfAbsent(ticket.getOrderId(), ticket);
+        }
         
         for (Order order : orders) {
-            // 获取订单中的任意一张车票作为代表
-            List<Ticket> tickets = ticketRepository.findByOrderId(order.getOrderId());
-            if (tickets.isEmpty()) {
+            Ticket representativeTicket = representativeTickets.get(order.getOrderId());
+            if (representativeTicket == null) {
                 continue; // 跳过没有车票的订单
             }
             
-            // 使用第一张车票作为代表
-            Ticket representativeTicket = tickets.get(0);
-            
             // 获取车次信息
             String trainNumber = getTrainNumber(representativeTicket.getTrainId());
             
@@ -445,7 +483,7 @@ public class OrderServiceImpl implements OrderService {
      */
     private String getTrainNumber(Integer trainId) {
         try {
-            Optional<Train> trainOpt = trainRepository.findById(trainId);
+            Optional<Train> trainOpt = timetableCache.getTrain(trainId);
             if (trainOpt.isPresent()) {
                 return trainOpt.get().getTrainNumber();
             }
@@ -460,13 +498,9 @@ public class OrderServiceImpl implements OrderService {
      */
     private String getStationName(Long stopId) {
         try {
-            Optional<TrainStop> trainStopOpt = trainStopRepository.findByStopId(stopId);
-            if (trainStopOpt.isPresent()) {
-                Long stationId = trainStopOpt.get().getStationId().longValue();
-                Optional<Station> stationOpt = stationRepository.findById(stationId.intValue());
-                if (stationOpt.isPresent()) {
-                    return stationOpt.get().getStationName();
-                }
+            Optional<Station> stationOpt = timetableCache.getStationOfStop(stopId);
+            if (stationOpt.isPresent()) {
+                return stationOpt.get().getStationName();
             }
         } catch (Exception e) {
             System.err.println("获取车站名称失败: " + e.getMessage());
@@ -479,7 +513,7 @@ public class OrderServiceImpl implements OrderService {
      */
     private LocalTime getDepartureTime(Integer trainId, Long stopId) {
         try {
-            Optional<TrainStop> trainStopOpt = trainStopRepository.findByStopId(stopId);
+            Optional<TrainStop> trainStopOpt = timetableCache.getStop(stopId);
             if (trainStopOpt.isPresent()) {
                 return trainStopOpt.get().getDepartureTime();
             }
@@ -494,7 +528,7 @@ public class OrderServiceImpl implements OrderService {
      */
     private LocalTime getArrivalTime(Integer trainId, Long stopId) {
         try {
-            Optional<TrainStop> trainStopOpt = trainStopRepository.findByStopId(stopId);
+            Optional<TrainStop> trainStopOpt = timetableCache.getStop(stopId);
             if (trainStopOpt.isPresent()) {
                 return trainStopOpt.get().getArrivalTime();
             }
@@ -538,7 +572,7 @@ public class OrderServiceImpl implements OrderService {
             Ticket firstTicket = tickets.get(0);
             
             // 获取车次信息
-            Optional<Train> trainOpt = trainRepository.findById(firstTicket.getTrainId());
+            Optional<Train> trainOpt = timetableCache.getTrain(firstTicket.getTrainId());
             if (trainOpt.isEmpty()) {
                 throw new RuntimeException("车次信息不存在");
             }
@@ -650,7 +684,7 @@ public class OrderServiceImpl implements OrderService {
             Ticket firstTicket = tickets.get(0);
             
             // 获取车次信息
-            Optional<Train> trainOpt = trainRepository.findById(firstTicket.getTrainId());
+            Optional<Train> trainOpt = timetableCache.getTrain(firstTicket.getTrainId());
             if (trainOpt.isEmpty()) {
                 throw new RuntimeException("车次信息不存在");
             }
@@ -1,5 +1,6 @@
 package com.example.techprototype.Service.Impl;
 
+import com.example.techprototype.Component.PassengerItineraryIndex;
 import com.example.techprototype.DTO.BookingResponse;
 import com.example.techprototype.Entity.Order;
 import com.example.techprototype.Entity.Ticket;
@@ -33,6 +34,9 @@ public class PaymentServiceImpl implements PaymentService {
     
     @Autowired
     private SeatService seatService;
+
+    @Autowired
+    private PassengerItineraryIndex passengerItineraryIndex;
     
     @Override
     @Transactional
@@ -124,6 +128,7 @@ public class PaymentServiceImpl implements PaymentService {
                                 // 1. 更新原票状态为已改签
                                 originalTicket.setTicketStatus((byte) TicketStatus.CHANGED.getCode());
                                 ticketRepository.save(originalTicket);
+                                passengerItineraryIndex.remove(originalTicket);
                                 
                                 // 2. 回滚原票的库存
                                 redisService.incrStock(originalTicket.getTrainId(), originalTicket.getDepartureStopId(),
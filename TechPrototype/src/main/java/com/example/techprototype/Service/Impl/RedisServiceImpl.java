@@ -1,11 +1,24 @@
 package com.example.techprototype.Service.Impl;
 
+import com.example.techprototype.Component.PassengerItineraryIndex;
+import com.example.techprototype.Component.RedisScriptRegistry;
+import com.example.techprototype.Component.SearchResultCache;
+import com.example.techprototype.Component.StopSequenceCache;
+import com.example.techprototype.Component.WaitlistFulfillmentExecutor;
+import com.example.techprototype.Component.WaitlistIndex;
+import com.example.techprototype.Config.RedisScriptConfig;
+import com.example.techprototype.DTO.SegmentStock;
+import com.example.techprototype.DTO.StockQuery;
+import com.example.techprototype.DTO.StockReservation;
 import com.example.techprototype.Service.RedisService;
 import org.redisson.api.RLock;
 import org.redisson.api.RedissonClient;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.redis.core.HashOperations;
+import org.springframework.data.redis.core.RedisOperations;
 import org.springframework.data.redis.core.RedisTemplate;
-import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.SessionCallback;
+import org.springframework.data.redis.core.script.RedisScript;
 import org.springframework.stereotype.Service;
 import cn.hutool.core.lang.Snowflake;
 import cn.hutool.core.util.IdUtil;
@@ -13,25 +26,30 @@ import cn.hutool.core.util.IdUtil;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
 import java.util.concurrent.TimeUnit;
 import java.util.List;
 import java.util.ArrayList;
 import com.example.techprototype.Entity.Order;
 import com.example.techprototype.Entity.Ticket;
+import com.example.techprototype.Entity.TicketInventory;
 import com.example.techprototype.Entity.WaitlistOrder;
 import com.example.techprototype.Entity.WaitlistItem;
 import com.example.techprototype.Enums.WaitlistOrderStatus;
 import com.example.techprototype.Enums.WaitlistItemStatus;
 import com.example.techprototype.Enums.OrderStatus;
 import com.example.techprototype.Enums.TicketStatus;
+import com.example.techprototype.Enums.ReservationStatus;
 import com.example.techprototype.Repository.WaitlistOrderRepository;
 import com.example.techprototype.Repository.WaitlistItemRepository;
 import com.example.techprototype.Repository.OrderRepository;
 import com.example.techprototype.Repository.TicketRepository;
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
-import org.springframework.scheduling.annotation.Async;
 import java.math.BigDecimal;
 
 @Service
@@ -55,52 +73,55 @@ public class RedisServiceImpl implements RedisService {
     @Autowired
     private TicketRepository ticketRepository;
     
+    @Autowired
+    private RedisScriptRegistry redisScriptRegistry;
+    
+    @Autowired
+    private StopSequenceCache stopSequenceCache;
+    
+    @Autowired
+    private WaitlistIndex waitlistIndex;
+    
+    @Autowired
+    private WaitlistFulfillmentExecutor waitlistFulfillmentExecutor;
+    
+    @Autowired
+    private SearchResultCache searchResultCache;
+
+    @Autowired
+    private PassengerItineraryIndex passengerItineraryIndex;
+    
     private final Snowflake snowflake = IdUtil.getSnowflake(1, 1);
     
-    // Lua脚本：原子减库存
-    private static final String DECR_STOCK_SCRIPT = 
-        "local key = KEYS[1] " +
-        "local quantity_str = ARGV[1] " +
-        "local quantity = tonumber(quantity_str) " +
-        "if quantity == nil then " +
-        "    return -2 " +
-        "end " +
-        "local current = redis.call('get', key) " +
-        "if current == nil then " +
-        "    return -1 " +
-        "end " +
-        "current = tonumber(current) " +
-        "if current == nil then " +
-        "    return -3 " +
-        "end " +
-        "if current >= quantity then " +
-        "    redis.call('decrby', key, quantity) " +
-        "    return 1 " +
-        "else " +
-        "    return 0 " +
-        "end";
-    
-    // Lua脚本：原子加库存
-    private static final String INCR_STOCK_SCRIPT = 
-        "local key = KEYS[1] " +
-        "local quantity_str = ARGV[1] " +
-        "local quantity = tonumber(quantity_str) " +
-        "if quantity == nil then " +
-        "    return -1 " +
-        "end " +
-        "redis.call('incrby', key, quantity) " +
-        "return 1";
+    // 批量加载库存时每个管道写入的key数
+    private static final int PIPELINE_BATCH_SIZE = 2000;
+    
+    // 待同步到数据库的库存key集合，由库存脚本在变更时原子写入
+    private static final String DIRTY_STOCK_KEY = "stock:dirty";
+    
+    // 订单号预留记录，保证同一订单号只扣减一次库存，并记录扣减明细用于归还
+    private static final String RESERVATION_KEY_PREFIX = "booking:reservation:";
+    
+    // 待确认预留集合：订单号 -> 预留时间（毫秒），订单事务提交后移出，回滚或超时未提交时归还库存
+    private static final String PENDING_RESERVATIONS_KEY = "booking:reservation:pending";
+    
+    // 预留记录保留时长，覆盖客户端重试窗口
+    private static final long RESERVATION_TTL_SECONDS = 86400;
+    
+    // 每次释放库存时每个区间最多检查的候补订单数
+    private static final int WAITLIST_CANDIDATE_LIMIT = 50;
     
     @Override
     public boolean decrStock(Integer trainId, Long departureStopId, Long arrivalStopId, LocalDate travelDate, Integer carriageTypeId, int quantity) {
-        String key = buildStockKey(trainId, departureStopId, arrivalStopId, travelDate, carriageTypeId);
-        System.out.println("尝试减库存，key: " + key + ", quantity: " + quantity);
-        
-        DefaultRedisScript<Long> script = new DefaultRedisScript<>();
-        script.setScriptText(DECR_STOCK_SCRIPT);
-        script.setResultType(Long.class);
+        String key = buildStockKey(trainId, travelDate, carriageTypeId);
+        int[] range = resolveSegmentRange(trainId, departureStopId, arrivalStopId);
+        if (range == null) {
+            return false;
+        }
+        System.out.println("尝试减库存，key: " + key + ", 区段: [" + range[0] + ", " + range[1] + "), quantity: " + quantity);
         
-        Long result = redisTemplate.execute(script, Arrays.asList(key), String.valueOf(quantity));
+        RedisScript<Long> script = redisScriptRegistry.get(RedisScriptConfig.DECR_STOCK_SCRIPT, Long.class);
+        Long result = redisTemplate.execute(script, Arrays.asList(key, DIRTY_STOCK_KEY), segmentArgs(range, quantity));
         System.out.println("减库存结果: " + result);
         
         if (result == null) {
@@ -109,10 +130,12 @@ public class RedisServiceImpl implements RedisService {
         }
         
         switch (result.intValue()) {
-            case 1: return true;  // 成功
+            case 1: // 成功
+                searchResultCache.onStockChanged(trainId, travelDate);
+                return true;
             case 0: return false; // 库存不足
             case -1: 
-                System.err.println("库存key不存在: " + key);
+                System.err.println("区段库存不存在: " + key);
                 return false;
             case -2: 
                 System.err.println("数量参数无效: " + quantity);
@@ -127,44 +150,285 @@ public class RedisServiceImpl implements RedisService {
     }
     
     @Override
-    public boolean incrStock(Integer trainId, Long departureStopId, Long arrivalStopId, LocalDate travelDate, Integer carriageTypeId, int quantity) {
-        String key = buildStockKey(trainId, departureStopId, arrivalStopId, travelDate, carriageTypeId);
-        System.out.println("尝试加库存，key: " + key + ", quantity: " + quantity);
+    public StockReservation reserveStocksOnce(String orderNumber, Long userId, Integer trainId, Long departureStopId, Long arrivalStopId, LocalDate travelDate, Map<Integer, Integer> quantityByCarriageType) {
+        List<Integer> carriageTypeIds = new ArrayList<>(quantityByCarriageType.keySet());
+        if (carriageTypeIds.isEmpty()) {
+            return StockReservation.of(ReservationStatus.RESERVED);
+        }
+        int[] range = resolveSegmentRange(trainId, departureStopId, arrivalStopId);
+        if (range == null) {
+            return StockReservation.insufficient(carriageTypeIds.get(0));
+        }
+        List<String> scriptKeys = new ArrayList<>(carriageTypeIds.size() + 3);
+        int[] quantities = new int[carriageTypeIds.size()];
+        for (int i = 0; i < carriageTypeIds.size(); i++) {
+            scriptKeys.add(buildStockKey(trainId, travelDate, carriageTypeIds.get(i)));
+            quantities[i] = quantityByCarriageType.get(carriageTypeIds.get(i));
+        }
+        scriptKeys.add(DIRTY_STOCK_KEY);
+        scriptKeys.add(RESERVATION_KEY_PREFIX + orderNumber);
+        scriptKeys.add(PENDING_RESERVATIONS_KEY);
         
-        DefaultRedisScript<Long> script = new DefaultRedisScript<>();
-        script.setScriptText(INCR_STOCK_SCRIPT);
-        script.setResultType(Long.class);
+        Object[] segmentArgs = segmentArgs(range, quantities);
+        Object[] args = Arrays.copyOf(segmentArgs, segmentArgs.length + 6);
+        args[segmentArgs.length] = String.valueOf(userId);
+        args[segmentArgs.length + 1] = String.valueOf(RESERVATION_TTL_SECONDS);
+        args[segmentArgs.length + 2] = String.valueOf(System.currentTimeMillis());
+        args[segmentArgs.length + 3] = orderNumber;
+        args[segmentArgs.length + 4] = String.valueOf(departureStopId);
+        args[segmentArgs.length + 5] = String.valueOf(arrivalStopId);
         
-        Long result = redisTemplate.execute(script, Arrays.asList(key), String.valueOf(quantity));
+        @SuppressWarnings("rawtypes")
+        RedisScript<List> script = redisScriptRegistry.get(RedisScriptConfig.RESERVE_STOCKS_SCRIPT, List.class);
+        List<?> result = redisTemplate.execute(script, scriptKeys, args);
+        System.out.println("订单" + orderNumber + "幂等减库存结果: " + result);
+        
+        if (result == null || result.size() < 2) {
+            System.err.println("Lua脚本执行失败，订单号: " + orderNumber);
+            return StockReservation.insufficient(carriageTypeIds.get(0));
+        }
+        
+        int status = ((Number) result.get(0)).intValue();
+        if (status == ReservationStatus.RESERVED.getCode()) {
+            searchResultCache.onStockChanged(trainId, travelDate);
+        }
+        if (status == ReservationStatus.RESERVED.getCode()
+                || status == ReservationStatus.DUPLICATE.getCode()
+                || status == ReservationStatus.CONFLICT.getCode()) {
+            return StockReservation.of(ReservationStatus.fromCode(status));
+        }
+        int index = ((Number) result.get(1)).intValue() - 1;
+        logReservationFailure(status, scriptKeys.get(index), quantities[index]);
+        return StockReservation.insufficient(carriageTypeIds.get(index));
+    }
+    
+    @Override
+    public void confirmReservation(String orderNumber) {
+        redisTemplate.opsForZSet().remove(PENDING_RESERVATIONS_KEY, orderNumber);
+    }
+    
+    @Override
+    public boolean releaseReservation(String orderNumber) {
+        @SuppressWarnings("rawtypes")
+        RedisScript<List> script = redisScriptRegistry.get(RedisScriptConfig.RELEASE_RESERVATION_SCRIPT, List.class);
+        List<?> record = redisTemplate.execute(script,
+                Arrays.asList(RESERVATION_KEY_PREFIX + orderNumber, PENDING_RESERVATIONS_KEY, DIRTY_STOCK_KEY), orderNumber);
+        if (record == null || record.isEmpty()) {
+            return false;
+        }
+        
+        Map<String, String> fields = new HashMap<>();
+        for (int i = 0; i + 1 < record.size(); i += 2) {
+            fields.put(String.valueOf(record.get(i)), String.valueOf(record.get(i + 1)));
+        }
+        Long departureStopId = Long.valueOf(fields.get("departure"));
+        Long arrivalStopId = Long.valueOf(fields.get("arrival"));
+        for (String field : fields.keySet()) {
+            SegmentStock stock = field.startsWith("stock:") ? parseStockKey(field) : null;
+            if (stock != null) {
+                onStockReleased(field, stock.getTrainId(), departureStopId, arrivalStopId, stock.getTravelDate(), stock.getCarriageTypeId());
+            }
+        }
+        System.out.println("订单" + orderNumber + "的预留库存已归还: " + fields);
+        return true;
+    }
+    
+    @Override
+    public List<String> findPendingReservations(long reservedBeforeMillis, int limit) {
+        Set<Object> orderNumbers = redisTemplate.opsForZSet().rangeByScore(PENDING_RESERVATIONS_KEY, 0, reservedBeforeMillis, 0, limit);
+        List<String> result = new ArrayList<>();
+        if (orderNumbers != null) {
+            for (Object orderNumber : orderNumbers) {
+                result.add(String.valueOf(orderNumber));
+            }
+        }
+        return result;
+    }
+    
+    private void logReservationFailure(int status, String key, int quantity) {
+        switch (status) {
+            case 0:
+                System.out.println("库存不足: " + key + ", 需要: " + quantity);
+                break;
+            case -1:
+                System.err.println("区段库存不存在: " + key);
+                break;
+            case -2:
+                System.err.println("数量参数无效: " + quantity);
+                break;
+            case -3:
+                System.err.println("库存值格式错误: " + key);
+                break;
+            default:
+                System.err.println("未知错误码: " + status);
+                break;
+        }
+    }
+    
+    @Override
+    public boolean incrStock(Integer trainId, Long departureStopId, Long arrivalStopId, LocalDate travelDate, Integer carriageTypeId, int quantity) {
+        String key = buildStockKey(trainId, travelDate, carriageTypeId);
+        int[] range = resolveSegmentRange(trainId, departureStopId, arrivalStopId);
+        if (range == null) {
+            return false;
+        }
+        System.out.println("尝试加库存，key: " + key + ", 区段: [" + range[0] + ", " + range[1] + "), quantity: " + quantity);
+        
+        RedisScript<Long> script = redisScriptRegistry.get(RedisScriptConfig.INCR_STOCK_SCRIPT, Long.class);
+        Long result = redisTemplate.execute(script, Arrays.asList(key, DIRTY_STOCK_KEY), segmentArgs(range, quantity));
         System.out.println("加库存结果: " + result);
         
         boolean success = result != null && result == 1;
         
         // 如果库存增加成功，触发候补订单兑现检查
         if (success) {
-            System.out.println("库存回滚成功，触发候补订单兑现检查: " + key);
-            // 异步触发候补订单兑现检查
-            triggerWaitlistFulfillment(trainId, departureStopId, arrivalStopId, travelDate, carriageTypeId);
+            onStockReleased(key, trainId, departureStopId, arrivalStopId, travelDate, carriageTypeId);
         }
         
         return success;
     }
     
+    /**
+     * 区间库存加回后失效查询缓存，并触发候补订单兑现检查
+     */
+    private void onStockReleased(String key, Integer trainId, Long departureStopId, Long arrivalStopId, LocalDate travelDate, Integer carriageTypeId) {
+        searchResultCache.onStockChanged(trainId, travelDate);
+        System.out.println("库存回滚成功，触发候补订单兑现检查: " + key);
+        // 提交到候补兑现执行器，同一库存key串行执行，同一区间的连续释放合并为一轮
+        String coalesceKey = key + ":" + departureStopId + ":" + arrivalStopId;
+        waitlistFulfillmentExecutor.submit(key, coalesceKey,
+                () -> triggerWaitlistFulfillment(trainId, departureStopId, arrivalStopId, travelDate, carriageTypeId));
+    }
+    
     @Override
     public Optional<Integer> getStock(Integer trainId, Long departureStopId, Long arrivalStopId, LocalDate travelDate, Integer carriageTypeId) {
-        String key = buildStockKey(trainId, departureStopId, arrivalStopId, travelDate, carriageTypeId);
-        Object value = redisTemplate.opsForValue().get(key);
-        if (value != null) {
-            return Optional.of(Integer.valueOf(value.toString()));
+        int[] range = resolveSegmentRange(trainId, departureStopId, arrivalStopId);
+        if (range == null) {
+            return Optional.empty();
         }
-        return Optional.empty();
+        String key = buildStockKey(trainId, travelDate, carriageTypeId);
+        HashOperations<String, Object, Object> hashOps = redisTemplate.opsForHash();
+        return minSegmentStock(hashOps.multiGet(key, segmentFields(range)));
+    }
+    
+    @Override
+    public List<Optional<Integer>> getStocks(List<StockQuery> queries) {
+        List<Optional<Integer>> stocks = new ArrayList<>(queries.size());
+        // 先在本地换算区段，无法换算的查询不发往Redis
+        List<int[]> ranges = new ArrayList<>(queries.size());
+        boolean anyResolved = false;
+        for (StockQuery query : queries) {
+            int[] range = resolveSegmentRange(query.getTrainId(), query.getDepartureStopId(), query.getArrivalStopId());
+            ranges.add(range);
+            anyResolved |= range != null;
+        }
+        if (!anyResolved) {
+            queries.forEach(query -> stocks.add(Optional.empty()));
+            return stocks;
+        }
+        
+        // 一次管道读取所有查询覆盖的区段余票
+        List<Object> results = redisTemplate.executePipelined(new SessionCallback<Object>() {
+            @Override
+            @SuppressWarnings("unchecked")
+            public <K, V> Object execute(RedisOperations<K, V> operations) {
+                RedisOperations<String, Object> ops = (RedisOperations<String, Object>) operations;
+                for (int i = 0; i < queries.size(); i++) {
+                    if (ranges.get(i) != null) {
+                        StockQuery query = queries.get(i);
+                        ops.opsForHash().multiGet(buildStockKey(query.getTrainId(), query.getTravelDate(), query.getCarriageTypeId()),
+                                segmentFields(ranges.get(i)));
+                    }
+                }
+                return null;
+            }
+        });
+        
+        // 管道结果只包含实际发出的命令，按顺序对应回查询
+        int next = 0;
+        for (int[] range : ranges) {
+            if (range == null) {
+                stocks.add(Optional.empty());
+                continue;
+            }
+            Object values = results != null && next < results.size() ? results.get(next) : null;
+            next++;
+            stocks.add(values instanceof List ? minSegmentStock((List<?>) values) : Optional.empty());
+        }
+        return stocks;
+    }
+    
+    /**
+     * 区间余票为覆盖区段余票的最小值，任一区段缺失时为空
+     */
+    private Optional<Integer> minSegmentStock(List<?> values) {
+        if (values == null || values.isEmpty()) {
+            return Optional.empty();
+        }
+        int available = Integer.MAX_VALUE;
+        for (Object value : values) {
+            if (value == null) {
+                return Optional.empty();
+            }
+            available = Math.min(available, Integer.parseInt(value.toString()));
+        }
+        return Optional.of(available);
     }
     
     @Override
     public void setStock(Integer trainId, Long departureStopId, Long arrivalStopId, LocalDate travelDate, Integer carriageTypeId, int quantity) {
-        String key = buildStockKey(trainId, departureStopId, arrivalStopId, travelDate, carriageTypeId);
-        System.out.println("设置库存，key: " + key + ", quantity: " + quantity);
-        redisTemplate.opsForValue().set(key, String.valueOf(quantity));
+        int[] range = resolveSegmentRange(trainId, departureStopId, arrivalStopId);
+        if (range == null) {
+            return;
+        }
+        String key = buildStockKey(trainId, travelDate, carriageTypeId);
+        System.out.println("设置库存，key: " + key + ", 区段: [" + range[0] + ", " + range[1] + "), quantity: " + quantity);
+        Map<Object, Object> segments = new HashMap<>();
+        for (Object field : segmentFields(range)) {
+            segments.put(field, String.valueOf(quantity));
+        }
+        redisTemplate.opsForHash().putAll(key, segments);
+        searchResultCache.onStockChanged(trainId, travelDate);
+    }
+    
+    @Override
+    public int loadStocks(List<TicketInventory> inventories) {
+        // key -> (区段起点站序 -> 余票)，同一区段被多条区间记录覆盖时取最小值，保证不会超卖
+        Map<String, Map<Integer, Integer>> segmentsByKey = new LinkedHashMap<>();
+        for (TicketInventory inventory : inventories) {
+            int[] range = resolveSegmentRange(inventory.getTrainId(), inventory.getDepartureStopId(), inventory.getArrivalStopId());
+            if (range == null) {
+                continue;
+            }
+            Map<Integer, Integer> segments = segmentsByKey.computeIfAbsent(
+                    buildStockKey(inventory.getTrainId(), inventory.getTravelDate(), inventory.getCarriageTypeId()),
+                    k -> new HashMap<>());
+            for (int s = range[0]; s < range[1]; s++) {
+                segments.merge(s, inventory.getAvailableSeats(), Math::min);
+            }
+            searchResultCache.onStockChanged(inventory.getTrainId(), inventory.getTravelDate());
+        }
+        
+        // 每批最多PIPELINE_BATCH_SIZE个key，通过管道一次往返写入
+        int segmentCount = 0;
+        List<Map.Entry<String, Map<Object, Object>>> batch = new ArrayList<>(PIPELINE_BATCH_SIZE);
+        for (Map.Entry<String, Map<Integer, Integer>> entry : segmentsByKey.entrySet()) {
+            Map<Object, Object> fields = new HashMap<>();
+            for (Map.Entry<Integer, Integer> segment : entry.getValue().entrySet()) {
+                fields.put(String.valueOf(segment.getKey()), String.valueOf(segment.getValue()));
+            }
+            batch.add(Map.entry(entry.getKey(), fields));
+            segmentCount += fields.size();
+            if (batch.size() == PIPELINE_BATCH_SIZE) {
+                putAllPipelined(batch);
+                batch.clear();
+            }
+        }
+        if (!batch.isEmpty()) {
+            putAllPipelined(batch);
+        }
+        System.out.println("加载区段库存: " + inventories.size() + " 条区间记录, " + segmentsByKey.size() + " 个库存key, " + segmentCount + " 个区段");
+        return segmentCount;
     }
     
     @Override
@@ -212,8 +476,133 @@ public class RedisServiceImpl implements RedisService {
         System.out.println("删除改签配对: " + mappingKey);
     }
     
-    private String buildStockKey(Integer trainId, Long departureStopId, Long arrivalStopId, LocalDate travelDate, Integer carriageTypeId) {
-        return String.format("stock:%d:%d:%d:%s:%d", trainId, departureStopId, arrivalStopId, travelDate, carriageTypeId);
+    @Override
+    public List<SegmentStock> drainDirtyStocks(int maxKeys) {
+        List<Object> popped = redisTemplate.opsForSet().pop(DIRTY_STOCK_KEY, maxKeys);
+        if (popped == null || popped.isEmpty()) {
+            return new ArrayList<>();
+        }
+        List<String> keys = new ArrayList<>(popped.size());
+        for (Object key : popped) {
+            keys.add(key.toString());
+        }
+        
+        // 一次管道读取所有变更key的区段余票
+        List<Object> results = redisTemplate.executePipelined(new SessionCallback<Object>() {
+            @Override
+            @SuppressWarnings("unchecked")
+            public <K, V> Object execute(RedisOperations<K, V> operations) {
+                RedisOperations<String, Object> ops = (RedisOperations<String, Object>) operations;
+                for (String key : keys) {
+                    ops.opsForHash().entries(key);
+                }
+                return null;
+            }
+        });
+        
+        List<SegmentStock> stocks = new ArrayList<>(keys.size());
+        for (int i = 0; i < keys.size(); i++) {
+            SegmentStock stock = parseStockKey(keys.get(i));
+            if (stock == null) {
+                System.err.println("无法解析库存key: " + keys.get(i));
+                continue;
+            }
+            Object entries = results != null && i < results.size() ? results.get(i) : null;
+            if (entries instanceof Map) {
+                for (Map.Entry<?, ?> segment : ((Map<?, ?>) entries).entrySet()) {
+                    stock.getAvailableBySegment().put(Integer.valueOf(segment.getKey().toString()), Integer.valueOf(segment.getValue().toString()));
+                }
+            }
+            stocks.add(stock);
+        }
+        return stocks;
+    }
+    
+    @Override
+    public void requeueDirtyStocks(List<SegmentStock> stocks) {
+        if (stocks.isEmpty()) {
+            return;
+        }
+        Object[] keys = new Object[stocks.size()];
+        for (int i = 0; i < stocks.size(); i++) {
+            SegmentStock stock = stocks.get(i);
+            keys[i] = buildStockKey(stock.getTrainId(), stock.getTravelDate(), stock.getCarriageTypeId());
+        }
+        redisTemplate.opsForSet().add(DIRTY_STOCK_KEY, keys);
+        System.out.println("重新标记待同步库存: " + keys.length + " 个");
+    }
+    
+    private void putAllPipelined(List<Map.Entry<String, Map<Object, Object>>> batch) {
+        redisTemplate.executePipelined(new SessionCallback<Object>() {
+            @Override
+            @SuppressWarnings("unchecked")
+            public <K, V> Object execute(RedisOperations<K, V> operations) {
+                RedisOperations<String, Object> ops = (RedisOperations<String, Object>) operations;
+                for (Map.Entry<String, Map<Object, Object>> entry : batch) {
+                    ops.opsForHash().putAll(entry.getKey(), entry.getValue());
+                }
+                return null;
+            }
+        });
+    }
+    
+    private String buildStockKey(Integer trainId, LocalDate travelDate, Integer carriageTypeId) {
+        return String.format("stock:%d:%s:%d", trainId, travelDate, carriageTypeId);
+    }
+    
+    /**
+     * 解析库存key stock:{车次}:{日期}:{席别}
+     * @return 格式不正确时返回null
+     */
+    private SegmentStock parseStockKey(String key) {
+        String[] parts = key.split(":");
+        if (parts.length != 4) {
+            return null;
+        }
+        try {
+            SegmentStock stock = new SegmentStock();
+            stock.setTrainId(Integer.valueOf(parts[1]));
+            stock.setTravelDate(LocalDate.parse(parts[2]));
+            stock.setCarriageTypeId(Integer.valueOf(parts[3]));
+            return stock;
+        } catch (RuntimeException e) {
+            return null;
+        }
+    }
+    
+    /**
+     * 把出发/到达停靠点换算为区段范围[出发站序, 到达站序)
+     * @return 无法换算时返回null
+     */
+    private int[] resolveSegmentRange(Integer trainId, Long departureStopId, Long arrivalStopId) {
+        Integer from = stopSequenceCache.getSequence(trainId, departureStopId);
+        Integer to = stopSequenceCache.getSequence(trainId, arrivalStopId);
+        if (from == null || to == null || from >= to) {
+            System.err.println("无法解析区段: 车次" + trainId + ", 出发站" + departureStopId + ", 到达站" + arrivalStopId);
+            return null;
+        }
+        return new int[]{from, to};
+    }
+    
+    private List<Object> segmentFields(int[] range) {
+        List<Object> fields = new ArrayList<>(range[1] - range[0]);
+        for (int s = range[0]; s < range[1]; s++) {
+            fields.add(String.valueOf(s));
+        }
+        return fields;
+    }
+    
+    /**
+     * 脚本参数：出发站序、到达站序，之后依次为各key的数量
+     */
+    private Object[] segmentArgs(int[] range, int... quantities) {
+        Object[] args = new Object[quantities.length + 2];
+        args[0] = String.valueOf(range[0]);
+        args[1] = String.valueOf(range[1]);
+        for (int i = 0; i < quantities.length; i++) {
+            args[i + 2] = String.valueOf(quantities[i]);
+        }
+        return args;
     }
     
     @Override
@@ -307,29 +696,34 @@ public class RedisServiceImpl implements RedisService {
     }
     
     /**
-     * 触发候补订单兑现检查
-     * 当库存回滚时，检查是否有对应的候补订单可以兑现
+     * 候补订单兑现检查，由候补兑现执行器在后台线程调用
+     * 当库存回滚时，只从候补索引中取出与释放区段重叠的候补订单，按下单时间先到先得
      */
-    @Async
     public void triggerWaitlistFulfillment(Integer trainId, Long departureStopId, Long arrivalStopId, 
                                          LocalDate travelDate, Integer carriageTypeId) {
         try {
             System.out.println("开始检查候补订单兑现: 车次" + trainId + ", 席别" + carriageTypeId);
             
-            // 查询待兑现的候补订单（按创建时间升序，早的优先）
-            List<WaitlistOrder> pendingOrders = waitlistOrderRepository.findPendingFulfillmentOrders(LocalDateTime.now());
+            List<Long> candidateIds = waitlistIndex.findCandidates(trainId, travelDate, departureStopId,
+                    arrivalStopId, carriageTypeId, WAITLIST_CANDIDATE_LIMIT);
             
             // 按时间顺序处理候补订单，确保先创建的优先兑现
-            for (WaitlistOrder order : pendingOrders) {
+            for (Long waitlistId : candidateIds) {
+                Optional<WaitlistOrder> orderOpt = waitlistOrderRepository.findById(waitlistId);
+                if (orderOpt.isEmpty() || !isPendingFulfillment(orderOpt.get())) {
+                    // 已兑现、已取消或已过期的候补订单惰性地从索引中移除
+                    waitlistIndex.remove(waitlistId, waitlistItemRepository.findByWaitlistId(waitlistId));
+                    continue;
+                }
+                
+                WaitlistOrder order = orderOpt.get();
                 // 检查这个候补订单是否可以完全兑现
                 boolean fulfilled = checkAndFulfillWaitlistOrder(order);
                 if (fulfilled) {
                     System.out.println("候补订单兑现成功: " + order.getWaitlistId() + ", 创建时间: " + order.getOrderTime());
-                    // 如果这个候补订单兑现成功，继续检查下一个
-                    continue;
                 } else {
+                    // 如果这个候补订单无法兑现，继续检查下一个（可能是其他区间的候补）
                     System.out.println("候补订单暂无法兑现: " + order.getWaitlistId() + ", 创建时间: " + order.getOrderTime());
-                    // 如果这个候补订单无法兑现，继续检查下一个（可能有其他席别的库存）
                 }
             }
         } catch (Exception e) {
@@ -337,6 +731,11 @@ public class RedisServiceImpl implements RedisService {
         }
     }
     
+    private boolean isPendingFulfillment(WaitlistOrder order) {
+        return order.getOrderStatus() == WaitlistOrderStatus.PENDING_FULFILLMENT.getCode()
+                && order.getExpireTime() != null && order.getExpireTime().isAfter(LocalDateTime.now());
+    }
+    
     /**
      * 检查并兑现候补订单
      * 只有当候补订单的所有项都有库存时，才创建完整订单
@@ -412,6 +811,7 @@ public class RedisServiceImpl implements RedisService {
                 ticket.setPrice(item.getPrice());
                 
                 ticketRepository.save(ticket);
+                passengerItineraryIndex.add(ticket);
                 
                 // 3. 扣减Redis库存
                 boolean stockReduced = decrStock(item.getTrainId(), item.getDepartureStopId(), 
@@ -432,6 +832,7 @@ public class RedisServiceImpl implements RedisService {
             // 5. 更新候补订单状态为已兑现
             order.setOrderStatus((byte) WaitlistOrderStatus.FULFILLED.getCode());
             waitlistOrderRepository.save(order);
+            waitlistIndex.remove(order.getWaitlistId(), items);
             
             System.out.println("候补订单完整兑现完成: 订单" + newOrder.getOrderNumber() + 
                              ", 包含" + items.size() + "张车票, 总金额" + totalAmount);
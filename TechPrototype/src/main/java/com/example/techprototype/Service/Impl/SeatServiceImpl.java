@@ -1,12 +1,10 @@
 package com.example.techprototype.Service.Impl;
 
+import com.example.techprototype.Component.SeatOccupancyEngine;
+import com.example.techprototype.Component.TimetableCache;
 import com.example.techprototype.Entity.Seat;
 import com.example.techprototype.Entity.Ticket;
-import com.example.techprototype.Entity.TrainCarriage;
 import com.example.techprototype.Entity.TrainStop;
-import com.example.techprototype.Repository.SeatRepository;
-import com.example.techprototype.Repository.TrainCarriageRepository;
-import com.example.techprototype.Repository.TrainStopRepository;
 import com.example.techprototype.Service.SeatService;
 import com.example.techprototype.Util.SeatBitmapUtil;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -14,28 +12,29 @@ import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 
 @Service
 public class SeatServiceImpl implements SeatService {
     
     @Autowired
-    private SeatRepository seatRepository;
+    private TimetableCache timetableCache;
     
     @Autowired
-    private TrainCarriageRepository trainCarriageRepository;
-    
-    @Autowired
-    private TrainStopRepository trainStopRepository;
+    private SeatOccupancyEngine seatOccupancyEngine;
     
     @Override
     @Transactional
     public void releaseSeat(Ticket ticket) {
         try {
             // 获取出发站和到达站的sequence_number
-            Optional<TrainStop> departureStopOpt = trainStopRepository.findByTrainIdAndStopId(ticket.getTrainId(), ticket.getDepartureStopId());
-            Optional<TrainStop> arrivalStopOpt = trainStopRepository.findByTrainIdAndStopId(ticket.getTrainId(), ticket.getArrivalStopId());
+            Optional<TrainStop> departureStopOpt = timetableCache.getStop(ticket.getTrainId(), ticket.getDepartureStopId());
+            Optional<TrainStop> arrivalStopOpt = timetableCache.getStop(ticket.getTrainId(), ticket.getArrivalStopId());
             
             if (!departureStopOpt.isPresent() || !arrivalStopOpt.isPresent()) {
                 System.err.println("未找到站点信息: 车次" + ticket.getTrainId() + ", 出发站" + ticket.getDepartureStopId() + ", 到达站" + ticket.getArrivalStopId());
@@ -45,29 +44,17 @@ public class SeatServiceImpl implements SeatService {
             int departureSequence = departureStopOpt.get().getSequenceNumber();
             int arrivalSequence = arrivalStopOpt.get().getSequenceNumber();
             
-            // 查找车厢
-            Optional<TrainCarriage> carriageOpt = trainCarriageRepository.findByTrainIdAndCarriageNumber(
-                    ticket.getTrainId(), ticket.getCarriageNumber());
-            
-            if (carriageOpt.isPresent()) {
-                TrainCarriage carriage = carriageOpt.get();
-                
-                // 查找座位
-                List<Seat> seats = seatRepository.findByCarriageIdAndSeatNumber(
-                        carriage.getCarriageId(), ticket.getSeatNumber());
-                
-                if (!seats.isEmpty()) {
-                    Seat seat = seats.get(0);
-                    // 使用位图释放座位
-                    releaseSeatBySequence(seat, ticket.getTravelDate(), departureSequence, arrivalSequence);
-                    seatRepository.save(seat);
-                    System.out.println("座位释放成功: 车次ID=" + ticket.getTrainId() + 
-                                     ", 车厢号=" + ticket.getCarriageNumber() + 
-                                     ", 座位号=" + ticket.getSeatNumber() +
-                                     ", 日期=" + ticket.getTravelDate() +
-                                     ", 出发序号=" + departureSequence + 
-                                     ", 到达序号=" + arrivalSequence);
-                }
+            // 在内存占用引擎中释放座位，数据库由引擎异步回写
+            boolean released = seatOccupancyEngine.release(ticket.getTrainId(), ticket.getCarriageTypeId(),
+                    ticket.getTravelDate(), ticket.getCarriageNumber(), ticket.getSeatNumber(),
+                    departureSequence, arrivalSequence);
+            if (released) {
+                System.out.println("座位释放成功: 车次ID=" + ticket.getTrainId() + 
+                                 ", 车厢号=" + ticket.getCarriageNumber() + 
+                                 ", 座位号=" + ticket.getSeatNumber() +
+                                 ", 日期=" + ticket.getTravelDate() +
+                                 ", 出发序号=" + departureSequence + 
+                                 ", 到达序号=" + arrivalSequence);
             }
         } catch (Exception e) {
             System.err.println("释放座位失败: " + e.getMessage());
@@ -78,8 +65,8 @@ public class SeatServiceImpl implements SeatService {
     @Transactional
     public void assignSeat(Ticket ticket) {
         // 获取出发站和到达站的sequence_number
-        Optional<TrainStop> departureStopOpt = trainStopRepository.findByTrainIdAndStopId(ticket.getTrainId(), ticket.getDepartureStopId());
-        Optional<TrainStop> arrivalStopOpt = trainStopRepository.findByTrainIdAndStopId(ticket.getTrainId(), ticket.getArrivalStopId());
+        Optional<TrainStop> departureStopOpt = timetableCache.getStop(ticket.getTrainId(), ticket.getDepartureStopId());
+        Optional<TrainStop> arrivalStopOpt = timetableCache.getStop(ticket.getTrainId(), ticket.getArrivalStopId());
         
         if (!departureStopOpt.isPresent() || !arrivalStopOpt.isPresent()) {
             System.err.println("未找到站点信息: 车次" + ticket.getTrainId() + ", 出发站" + ticket.getDepartureStopId() + ", 到达站" + ticket.getArrivalStopId());
@@ -89,8 +76,8 @@ public class SeatServiceImpl implements SeatService {
         int departureSequence = departureStopOpt.get().getSequenceNumber();
         int arrivalSequence = arrivalStopOpt.get().getSequenceNumber();
         
-        // 查找可用座位
-        Optional<Seat> availableSeat = findAvailableSeatBySequence(
+        // 在内存占用引擎中原子地选座并锁定，数据库由引擎异步回写
+        Optional<SeatOccupancyEngine.SeatSlot> slot = seatOccupancyEngine.allocate(
                 ticket.getTrainId(), 
                 ticket.getCarriageTypeId(), 
                 ticket.getTravelDate(),
@@ -98,15 +85,9 @@ public class SeatServiceImpl implements SeatService {
                 arrivalSequence
         );
         
-        if (availableSeat.isPresent()) {
-            Seat seat = availableSeat.get();
-            // 锁定座位
-            lockSeatBySequence(seat, ticket.getTravelDate(), departureSequence, arrivalSequence);
-            seatRepository.save(seat);
-            
-            // 根据车厢ID查找车厢号
-            ticket.setCarriageNumber(getCarriageNumber(seat.getCarriageId()));
-            ticket.setSeatNumber(seat.getSeatNumber());
+        if (slot.isPresent()) {
+            ticket.setCarriageNumber(slot.get().getCarriageNumber());
+            ticket.setSeatNumber(slot.get().getSeat().getSeatNumber());
             
             System.out.println("座位分配成功: 车次ID=" + ticket.getTrainId() + 
                              ", 车厢号=" + ticket.getCarriageNumber() + 
@@ -117,13 +98,60 @@ public class SeatServiceImpl implements SeatService {
         }
     }
     
+    @Override
+    @Transactional
+    public void assignSeats(List<Ticket> tickets) {
+        // 每个车次只查询一次停靠站，得到 停靠点ID -> sequence_number
+        Map<Integer, Map<Long, Integer>> sequenceByTrain = new HashMap<>();
+        // 按 车次/区间/日期/席别 分组，同组乘客一次选座
+        Map<String, List<Ticket>> groups = new LinkedHashMap<>();
+        for (Ticket ticket : tickets) {
+            String key = ticket.getTrainId() + ":" + ticket.getDepartureStopId() + ":" + ticket.getArrivalStopId() + ":" +
+                    ticket.getTravelDate() + ":" + ticket.getCarriageTypeId();
+            groups.computeIfAbsent(key, k -> new ArrayList<>()).add(ticket);
+        }
+        
+        for (List<Ticket> group : groups.values()) {
+            Ticket first = group.get(0);
+            Map<Long, Integer> sequences = sequenceByTrain.computeIfAbsent(first.getTrainId(), this::loadStopSequences);
+            Integer departureSequence = sequences.get(first.getDepartureStopId());
+            Integer arrivalSequence = sequences.get(first.getArrivalStopId());
+            
+            if (departureSequence == null || arrivalSequence == null) {
+                System.err.println("未找到站点信息: 车次" + first.getTrainId() + ", 出发站" + first.getDepartureStopId() + ", 到达站" + first.getArrivalStopId());
+                continue;
+            }
+            
+            // 在内存占用引擎中一次选出整组座位，数据库由引擎异步批量回写
+            List<SeatOccupancyEngine.SeatSlot> slots = seatOccupancyEngine.allocateBatch(
+                    first.getTrainId(),
+                    first.getCarriageTypeId(),
+                    first.getTravelDate(),
+                    departureSequence,
+                    arrivalSequence,
+                    group.size()
+            );
+            
+            for (int i = 0; i < slots.size(); i++) {
+                group.get(i).setCarriageNumber(slots.get(i).getCarriageNumber());
+                group.get(i).setSeatNumber(slots.get(i).getSeat().getSeatNumber());
+            }
+            
+            System.out.println("批量座位分配: 车次ID=" + first.getTrainId() + 
+                             ", 日期=" + first.getTravelDate() +
+                             ", 出发序号=" + departureSequence + 
+                             ", 到达序号=" + arrivalSequence +
+                             ", 请求" + group.size() + "个, 分配" + slots.size() + "个");
+        }
+    }
+    
     @Override
     @Transactional
     public Optional<Seat> findAvailableSeat(Integer trainId, Integer typeId, LocalDate travelDate, 
                                           Long departureStopId, Long arrivalStopId) {
         // 获取出发站和到达站的sequence_number
-        Optional<TrainStop> departureStopOpt = trainStopRepository.findByTrainIdAndStopId(trainId, departureStopId);
-        Optional<TrainStop> arrivalStopOpt = trainStopRepository.findByTrainIdAndStopId(trainId, arrivalStopId);
+        Optional<TrainStop> departureStopOpt = timetableCache.getStop(trainId, departureStopId);
+        Optional<TrainStop> arrivalStopOpt = timetableCache.getStop(trainId, arrivalStopId);
         
         if (!departureStopOpt.isPresent() || !arrivalStopOpt.isPresent()) {
             System.err.println("未找到站点信息: 车次" + trainId + ", 出发站" + departureStopId + ", 到达站" + arrivalStopId);
@@ -162,85 +190,42 @@ public class SeatServiceImpl implements SeatService {
     @Transactional
     public Optional<Seat> findAvailableSeatBySequence(Integer trainId, Integer typeId, LocalDate travelDate, 
                                                      int departureSequence, int arrivalSequence) {
-        // 生成区间掩码
-        long intervalMask = SeatBitmapUtil.generateIntervalMask(departureSequence, arrivalSequence);
-        
-        System.out.println("查找可用座位 - 车次:" + trainId + ", 车厢类型:" + typeId + 
-                          ", 日期:" + travelDate + ", 出发序号:" + departureSequence + 
-                          ", 到达序号:" + arrivalSequence + ", 区间掩码:" + intervalMask);
-        
-        // 查找指定车次和车厢类型的所有座位
-        List<Seat> seats = seatRepository.findByTrainAndType(trainId, typeId);
-        
-        // 遍历座位，找到第一个可用的
-        for (Seat seat : seats) {
-            if (isSeatAvailableBySequence(seat, travelDate, departureSequence, arrivalSequence)) {
-                return Optional.of(seat);
-            }
-        }
-        
-        return Optional.empty();
+        return seatOccupancyEngine.findFirstFree(trainId, typeId, travelDate, departureSequence, arrivalSequence)
+                .map(SeatOccupancyEngine.SeatSlot::getSeat);
     }
     
     @Override
     public void lockSeatBySequence(Seat seat, LocalDate travelDate, int departureSequence, int arrivalSequence) {
-        long intervalMask = SeatBitmapUtil.generateIntervalMask(departureSequence, arrivalSequence);
-        SeatBitmapUtil.lockSeat(seat, travelDate, intervalMask);
+        boolean locked = seatOccupancyEngine.occupy(seat, travelDate, departureSequence, arrivalSequence);
         
-        System.out.println("座位锁定: 座位ID=" + seat.getSeatId() + 
+        System.out.println("座位锁定" + (locked ? "" : "失败") + ": 座位ID=" + seat.getSeatId() + 
                          ", 日期=" + travelDate + 
                          ", 出发序号=" + departureSequence + 
                          ", 到达序号=" + arrivalSequence +
-                         ", 区间掩码=" + intervalMask + 
-                         ", 位图状态=" + SeatBitmapUtil.bitmapToString(getDateBitmap(seat, SeatBitmapUtil.getDateIndex(travelDate))));
+                         ", 位图状态=" + SeatBitmapUtil.bitmapToString(seatOccupancyEngine.getOccupancy(seat, travelDate)));
     }
     
     @Override
     public void releaseSeatBySequence(Seat seat, LocalDate travelDate, int departureSequence, int arrivalSequence) {
-        long intervalMask = SeatBitmapUtil.generateIntervalMask(departureSequence, arrivalSequence);
-        SeatBitmapUtil.releaseSeat(seat, travelDate, intervalMask);
+        seatOccupancyEngine.release(seat, travelDate, departureSequence, arrivalSequence);
         
         System.out.println("座位释放: 座位ID=" + seat.getSeatId() + 
                          ", 日期=" + travelDate + 
                          ", 出发序号=" + departureSequence + 
                          ", 到达序号=" + arrivalSequence +
-                         ", 区间掩码=" + intervalMask + 
-                         ", 位图状态=" + SeatBitmapUtil.bitmapToString(getDateBitmap(seat, SeatBitmapUtil.getDateIndex(travelDate))));
+                         ", 位图状态=" + SeatBitmapUtil.bitmapToString(seatOccupancyEngine.getOccupancy(seat, travelDate)));
     }
     
     @Override
     public boolean isSeatAvailableBySequence(Seat seat, LocalDate travelDate, int departureSequence, int arrivalSequence) {
-        long intervalMask = SeatBitmapUtil.generateIntervalMask(departureSequence, arrivalSequence);
-        return SeatBitmapUtil.isSeatAvailable(seat, travelDate, intervalMask);
-    }
-    
-    /**
-     * 根据车厢ID获取车厢号
-     */
-    private String getCarriageNumber(Long carriageId) {
-        Optional<TrainCarriage> carriageOpt = trainCarriageRepository.findByCarriageId(carriageId);
-        if (carriageOpt.isPresent()) {
-            return carriageOpt.get().getCarriageNumber();
-        }
-        return "1"; // 默认值
+        return seatOccupancyEngine.isAvailable(seat, travelDate, departureSequence, arrivalSequence);
     }
     
-    /**
-     * 获取指定日期的位图值
-     */
-    private long getDateBitmap(Seat seat, int dateIndex) {
-        switch (dateIndex) {
-            case 1: return seat.getDate1();
-            case 2: return seat.getDate2();
-            case 3: return seat.getDate3();
-            case 4: return seat.getDate4();
-            case 5: return seat.getDate5();
-            case 6: return seat.getDate6();
-            case 7: return seat.getDate7();
-            case 8: return seat.getDate8();
-            case 9: return seat.getDate9();
-            case 10: return seat.getDate10();
-            default: return 0L;
+    private Map<Long, Integer> loadStopSequences(Integer trainId) {
+        Map<Long, Integer> sequences = new HashMap<>();
+        for (TrainStop stop : timetableCache.getStops(trainId)) {
+            sequences.put(stop.getStopId(), stop.getSequenceNumber());
         }
+        return sequences;
     }
-} 
\ No newline at end of file
+}
@@ -1,37 +1,49 @@
 package com.example.techprototype.Service.Impl;
 
+import com.example.techprototype.Component.HistoryPager;
+import com.example.techprototype.Component.PassengerItineraryIndex;
+import com.example.techprototype.Component.TimetableCache;
 import com.example.techprototype.DAO.TicketInventoryDAO;
 import com.example.techprototype.DTO.*;
 import com.example.techprototype.Entity.*;
 import com.example.techprototype.Enums.OrderStatus;
+import com.example.techprototype.Enums.ReservationStatus;
 import com.example.techprototype.Enums.TicketStatus;
 import com.example.techprototype.Repository.OrderRepository;
 import com.example.techprototype.Repository.PassengerRepository;
 import com.example.techprototype.Repository.SeatRepository;
-import com.example.techprototype.Repository.StationRepository;
 import com.example.techprototype.Repository.TicketRepository;
 import com.example.techprototype.Repository.TrainCarriageRepository;
-import com.example.techprototype.Repository.TrainRepository;
-import com.example.techprototype.Repository.TrainStopRepository;
 import com.example.techprototype.Repository.UserPassengerRelationRepository;
 import com.example.techprototype.Repository.UserRepository;
 import com.example.techprototype.Repository.CarriageTypeRepository;
+import com.example.techprototype.Service.InventoryInitService;
+import com.example.techprototype.Service.OrderOutboxService;
 import com.example.techprototype.Service.RedisService;
 import com.example.techprototype.Service.TicketService;
 import com.example.techprototype.Service.OrderService;
 import com.example.techprototype.Service.SeatService;
 import com.example.techprototype.Service.TimeConflictService;
-import org.springframework.amqp.rabbit.core.RabbitTemplate;
+import com.example.techprototype.Util.HistoryCursor;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
 
+import java.io.IOException;
+import java.io.OutputStream;
 import java.math.BigDecimal;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.time.LocalTime;
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
@@ -48,6 +60,9 @@ public class TicketServiceImpl implements TicketService {
     @Autowired
     private TicketInventoryDAO ticketInventoryDAO;
     
+    @Autowired
+    private InventoryInitService inventoryInitService;
+    
     @Autowired
     private OrderRepository orderRepository;
     
@@ -61,13 +76,10 @@ public class TicketServiceImpl implements TicketService {
     private TrainCarriageRepository trainCarriageRepository;
     
     @Autowired
-    private RabbitTemplate rabbitTemplate;
+    private OrderOutboxService orderOutboxService;
     
     @Autowired
-    private StationRepository stationRepository;
-    
-    @Autowired
-    private TrainStopRepository trainStopRepository;
+    private TimetableCache timetableCache;
     
     @Autowired
     private UserPassengerRelationRepository userPassengerRelationRepository;
@@ -75,14 +87,14 @@ public class TicketServiceImpl implements TicketService {
     @Autowired
     private UserRepository userRepository;
     
-    @Autowired
-    private TrainRepository trainRepository;
-    
     @Autowired
     private SeatService seatService;
     
     @Autowired
     private TimeConflictService timeConflictService;
+
+    @Autowired
+    private PassengerItineraryIndex passengerItineraryIndex;
     
     @Autowired
     private PassengerRepository passengerRepository;
@@ -90,11 +102,32 @@ public class TicketServiceImpl implements TicketService {
     @Autowired
     private CarriageTypeRepository carriageTypeRepository;
     
+    @Autowired
+    private HistoryPager historyPager;
+    
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+    
     private final Random random = new Random();
     
+    // 无锁购票模式：不按席别获取分布式锁，只依赖Lua脚本原子扣减库存
+    @Value("${booking.lock-free:false}")
+    private boolean lockFree = false;
+    
+    /**
+     * 购票不在外层事务中执行：订单消息在独立事务中写入发件箱，事务提交后才返回成功并释放席别锁，
+     * 提交失败时由事务同步回调归还预减的库存
+     */
     @Override
-    @Transactional
     public BookingResponse bookTickets(BookingRequest request) {
+        // 车次库存还在后台加载时不接受购票，否则加载线程写入的区段库存会覆盖本次扣减
+        if (!inventoryInitService.isLoaded(request.getTrainId())) {
+            return BookingResponse.failure("车次余票加载中，请稍后重试");
+        }
+        if (lockFree) {
+            return bookTicketsLockFree(request);
+        }
+        
         // 按席别分组，为每个不同的席别创建独立的锁
         Set<Integer> carriageTypeIds = request.getPassengers().stream()
                 .map(BookingRequest.PassengerInfo::getCarriageTypeId)
@@ -102,30 +135,12 @@ public class TicketServiceImpl implements TicketService {
         
         List<String> lockKeys = new ArrayList<>();
         List<String> acquiredLocks = new ArrayList<>();
-        List<BookingRequest.PassengerInfo> successfulStockReductions = new ArrayList<>();
         
         try {
-            // 1. 验证乘客关系
-            for (BookingRequest.PassengerInfo passengerInfo : request.getPassengers()) {
-                if (!userPassengerRelationRepository.existsByUserIdAndPassengerId(request.getUserId(), passengerInfo.getPassengerId())) {
-                    return BookingResponse.failure("乘客ID " + passengerInfo.getPassengerId() + " 与用户无关联关系");
-                }
-            }
-            
-            // 2. 检查时间冲突
-            for (BookingRequest.PassengerInfo passengerInfo : request.getPassengers()) {
-                List<Ticket> conflictTickets = timeConflictService.checkTimeConflict(
-                        passengerInfo.getPassengerId(),
-                        request.getTravelDate(),
-                        request.getTrainId(),
-                        request.getDepartureStopId(),
-                        request.getArrivalStopId()
-                );
-                
-                if (!conflictTickets.isEmpty()) {
-                    String conflictMessage = timeConflictService.generateConflictMessage(conflictTickets);
-                    return BookingResponse.failure("乘客ID " + passengerInfo.getPassengerId() + " " + conflictMessage);
-                }
+            // 1. 验证乘客关系，2. 检查时间冲突
+            BookingResponse invalid = validatePassengers(request);
+            if (invalid != null) {
+                return invalid;
             }
             
             // 3. 获取分布式锁 - 按席别分别加锁
@@ -143,58 +158,27 @@ public class TicketServiceImpl implements TicketService {
                 acquiredLocks.add(lockKey);
             }
             
-            // 4. 预减Redis库存 - 为每个乘客的独立席别预减库存
-            for (BookingRequest.PassengerInfo passengerInfo : request.getPassengers()) {
-                if (!redisService.decrStock(request.getTrainId(), request.getDepartureStopId(), 
-                        request.getArrivalStopId(), request.getTravelDate(), passengerInfo.getCarriageTypeId(), 1)) {
-                    // 库存不足，回滚已扣减的库存
-                    rollbackStockReductions(successfulStockReductions, request);
-                    return BookingResponse.insufficientStock("乘客ID " + passengerInfo.getPassengerId() + " 选择的席别余票不足");
-                }
-                successfulStockReductions.add(passengerInfo);
-            }
-            
-            // 5. 生成订单号
+            // 4. 生成订单号
             String orderNumber = redisService.generateOrderNumber();
             
-            // 6. 发送订单消息到RabbitMQ
-            OrderMessage orderMessage = new OrderMessage();
-            orderMessage.setUserId(request.getUserId());
-            orderMessage.setTrainId(request.getTrainId());
-            orderMessage.setDepartureStopId(request.getDepartureStopId());
-            orderMessage.setArrivalStopId(request.getArrivalStopId());
-            orderMessage.setTravelDate(request.getTravelDate());
-            orderMessage.setCarriageTypeId(request.getCarriageTypeId());
-            orderMessage.setOrderNumber(orderNumber);
-            
-            List<OrderMessage.PassengerInfo> passengerInfos = new ArrayList<>();
-            for (BookingRequest.PassengerInfo passengerInfo : request.getPassengers()) {
-                OrderMessage.PassengerInfo info = new OrderMessage.PassengerInfo();
-                info.setPassengerId(passengerInfo.getPassengerId());
-                info.setTicketType(passengerInfo.getTicketType());
-                info.setCarriageTypeId(passengerInfo.getCarriageTypeId());
-                passengerInfos.add(info);
+            // 5. 预减Redis库存 - 所有乘客的席别在一次Lua调用中全部扣减或全部不扣减，同时写入订单号的预留记录
+            StockReservation reservation = redisService.reserveStocksOnce(orderNumber, request.getUserId(), request.getTrainId(),
+                    request.getDepartureStopId(), request.getArrivalStopId(), request.getTravelDate(), quantityByCarriageType(request));
+            if (reservation.getStatus() == ReservationStatus.INSUFFICIENT) {
+                // 库存不足，没有任何库存被扣减，无需回滚
+                return insufficientStockResponse(request, reservation.getCarriageTypeId());
             }
-            orderMessage.setPassengers(passengerInfos);
-            
-            try {
-                System.out.println("发送订单消息到RabbitMQ: " + orderNumber);
-                rabbitTemplate.convertAndSend("order.exchange", "order.create", orderMessage);
-                System.out.println("订单消息发送成功: " + orderNumber);
-            } catch (Exception e) {
-                // 消息发送失败，回滚库存
-                System.err.println("订单消息发送失败: " + e.getMessage());
-                rollbackStockReductions(successfulStockReductions, request);
+            if (reservation.getStatus() != ReservationStatus.RESERVED) {
+                System.err.println("新生成的订单号已存在预留记录: " + orderNumber);
                 return BookingResponse.failure("系统繁忙，请稍后重试");
             }
             
-            // 7. 返回订单号
-            return BookingResponse.successWithMessage("购票成功", orderNumber, null, null, LocalDateTime.now());
+            // 6. 订单消息写入发件箱，事务提交后返回订单号
+            return commitReservation(request, orderNumber);
             
         } catch (Exception e) {
-            // 发生异常，回滚库存
+            // 预减结果未知时预留记录仍处于待确认状态，由清理任务根据发件箱归还
             System.err.println("购票过程中发生异常: " + e.getMessage());
-            rollbackStockReductions(successfulStockReductions, request);
             return BookingResponse.failure("系统异常，请稍后重试");
         } finally {
             // 释放所有获取的锁
@@ -204,6 +188,181 @@ public class TicketServiceImpl implements TicketService {
         }
     }
     
+    /**
+     * 无锁购票：不获取分布式锁，由Lua脚本原子扣减全部席别库存作为唯一的并发控制
+     * 扣减以订单号为幂等键，客户端携带同一订单号重试时不会重复扣减库存或重复写入发件箱
+     */
+    private BookingResponse bookTicketsLockFree(BookingRequest request) {
+        String orderNumber = request.getOrderNumber() != null ? request.getOrderNumber() : redisService.generateOrderNumber();
+        
+        try {
+            // 1. 验证乘客关系，2. 检查时间冲突
+            BookingResponse invalid = validatePassengers(request);
+            if (invalid != null) {
+                return invalid;
+            }
+            
+            // 3. 按订单号幂等预减Redis库存
+            StockReservation reservation = redisService.reserveStocksOnce(orderNumber, request.getUserId(), request.getTrainId(),
+                    request.getDepartureStopId(), request.getArrivalStopId(), request.getTravelDate(), quantityByCarriageType(request));
+            switch (reservation.getStatus()) {
+                case INSUFFICIENT:
+                    return insufficientStockResponse(request, reservation.getCarriageTypeId());
+                case CONFLICT:
+                    return BookingResponse.failure("订单号无效");
+                case DUPLICATE:
+                    // 同一订单号已扣减过库存并写入发件箱，重试直接返回原订单号
+                    System.out.println("重复的购票请求，返回原订单号: " + orderNumber);
+                    return BookingResponse.successWithMessage("购票成功", orderNumber, null, null, LocalDateTime.now());
+                default:
+                    break;
+            }
+            
+            // 4. 订单消息写入发件箱，事务提交后返回订单号
+            return commitReservation(request, orderNumber);
+            
+        } catch (Exception e) {
+            // 预减结果未知时预留记录仍处于待确认状态，由清理任务根据发件箱归还
+            System.err.println("购票过程中发生异常: " + e.getMessage());
+            return BookingResponse.failure("系统异常，请稍后重试");
+        }
+    }
+    
+    /**
+     * 在独立事务中把订单消息写入发件箱，事务提交后才返回成功
+     * 提交后确认库存预留；回滚（包括提交失败）时由事务同步回调归还预减的库存并删除预留记录，同一订单号可以重试；
+     * 提交结果未知时不归还，由清理任务根据发件箱中是否有该订单决定确认或归还
+     */
+    private BookingResponse commitReservation(BookingRequest request, String orderNumber) {
+        ReservationSettlement settlement = new ReservationSettlement(orderNumber);
+        try {
+            transactionTemplate.executeWithoutResult(status -> {
+                TransactionSynchronizationManager.registerSynchronization(settlement);
+                orderOutboxService.append(buildOrderMessage(request, orderNumber));
+            });
+        } catch (Exception e) {
+            System.err.println("订单消息写入发件箱失败: " + e.getMessage());
+            if (!settlement.isCompleted()) {
+                // 事务没有开始，回调不会执行
+                settlement.release();
+            }
+            return BookingResponse.failure("系统繁忙，请稍后重试");
+        }
+        System.out.println("订单消息已写入发件箱: " + orderNumber);
+        return BookingResponse.successWithMessage("购票成功", orderNumber, null, null, LocalDateTime.now());
+    }
+    
+    /**
+     * 发件箱事务的同步回调：提交后确认库存预留，回滚后归还
+     */
+    private class ReservationSettlement implements TransactionSynchronization {
+        
+        private final String orderNumber;
+        
+        private volatile boolean completed = false;
+        
+        ReservationSettlement(String orderNumber) {
+            this.orderNumber = orderNumber;
+        }
+        
+        boolean isCompleted() {
+            return completed;
+        }
+        
+        @Override
+        public void afterCommit() {
+            try {
+                redisService.confirmReservation(orderNumber);
+            } catch (Exception e) {
+                // 未确认的预留由清理任务根据发件箱确认
+                System.err.println("确认库存预留失败: " + orderNumber + ", " + e.getMessage());
+            }
+        }
+        
+        @Override
+        public void afterCompletion(int status) {
+            completed = true;
+            if (status == STATUS_ROLLED_BACK) {
+                release();
+            }
+        }
+        
+        void release() {
+            try {
+                redisService.releaseReservation(orderNumber);
+            } catch (Exception e) {
+                // 归还失败的预留由清理任务重试
+                System.err.println("归还库存预留失败: " + orderNumber + ", " + e.getMessage());
+            }
+        }
+    }
+    
+    /**
+     * 验证乘客与用户的关系以及乘车时间冲突
+     * @return 验证失败时的响应，全部通过时返回null
+     */
+    private BookingResponse validatePassengers(BookingRequest request) {
+        for (BookingRequest.PassengerInfo passengerInfo : request.getPassengers()) {
+            if (!userPassengerRelationRepository.existsByUserIdAndPassengerId(request.getUserId(), passengerInfo.getPassengerId())) {
+                return BookingResponse.failure("乘客ID " + passengerInfo.getPassengerId() + " 与用户无关联关系");
+            }
+        }
+        
+        for (BookingRequest.PassengerInfo passengerInfo : request.getPassengers()) {
+            List<Ticket> conflictTickets = timeConflictService.checkTimeConflict(
+                    passengerInfo.getPassengerId(),
+                    request.getTravelDate(),
+                    request.getTrainId(),
+                    request.getDepartureStopId(),
+                    request.getArrivalStopId()
+            );
+            
+            if (!conflictTickets.isEmpty()) {
+                String conflictMessage = timeConflictService.generateConflictMessage(conflictTickets);
+                return BookingResponse.failure("乘客ID " + passengerInfo.getPassengerId() + " " + conflictMessage);
+            }
+        }
+        return null;
+    }
+    
+    private Map<Integer, Integer> quantityByCarriageType(BookingRequest request) {
+        Map<Integer, Integer> quantityByCarriageType = new LinkedHashMap<>();
+        for (BookingRequest.PassengerInfo passengerInfo : request.getPassengers()) {
+            quantityByCarriageType.merge(passengerInfo.getCarriageTypeId(), 1, Integer::sum);
+        }
+        return quantityByCarriageType;
+    }
+    
+    private BookingResponse insufficientStockResponse(BookingRequest request, Integer shortCarriageTypeId) {
+        BookingRequest.PassengerInfo shortPassenger = request.getPassengers().stream()
+                .filter(p -> p.getCarriageTypeId().equals(shortCarriageTypeId))
+                .findFirst()
+                .orElse(request.getPassengers().get(0));
+        return BookingResponse.insufficientStock("乘客ID " + shortPassenger.getPassengerId() + " 选择的席别余票不足");
+    }
+    
+    private OrderMessage buildOrderMessage(BookingRequest request, String orderNumber) {
+        OrderMessage orderMessage = new OrderMessage();
+        orderMessage.setUserId(request.getUserId());
+        orderMessage.setTrainId(request.getTrainId());
+        orderMessage.setDepartureStopId(request.getDepartureStopId());
+        orderMessage.setArrivalStopId(request.getArrivalStopId());
+        orderMessage.setTravelDate(request.getTravelDate());
+        orderMessage.setCarriageTypeId(request.getCarriageTypeId());
+        orderMessage.setOrderNumber(orderNumber);
+        
+        List<OrderMessage.PassengerInfo> passengerInfos = new ArrayList<>();
+        for (BookingRequest.PassengerInfo passengerInfo : request.getPassengers()) {
+            OrderMessage.PassengerInfo info = new OrderMessage.PassengerInfo();
+            info.setPassengerId(passengerInfo.getPassengerId());
+            info.setTicketType(passengerInfo.getTicketType());
+            info.setCarriageTypeId(passengerInfo.getCarriageTypeId());
+            passengerInfos.add(info);
+        }
+        orderMessage.setPassengers(passengerInfos);
+        return orderMessage;
+    }
+    
     @Override
     @Transactional
     public BookingResponse refundTickets(RefundRequest request) {
@@ -242,6 +401,7 @@ public class TicketServiceImpl implements TicketService {
             for (Ticket ticket : tickets) {
                 ticket.setTicketStatus((byte) TicketStatus.REFUNDED.getCode());
                 ticketRepository.save(ticket);
+                passengerItineraryIndex.remove(ticket);
             }
             
             // 5. 回滚Redis库存
@@ -339,7 +499,10 @@ public class TicketServiceImpl implements TicketService {
                 if (!validateChangeTicketCities(originalTickets.get(0), request.getNewDepartureStopId(), request.getNewArrivalStopId())) {
                     return BookingResponse.failure("改签的出发站和到达站城市必须与原票一致");
                 }
-                // 6. 检查新车次余票（为每个不同的席别检查）
+                // 6. 检查新车次余票（为每个不同的席别检查），新车次库存未加载到Redis时不能扣减
+                if (!inventoryInitService.isLoaded(request.getNewTrainId())) {
+                    return BookingResponse.failure("新车次余票加载中，请稍后重试");
+                }
                 Map<Integer, Integer> carriageTypeCounts = new HashMap<>();
                 if (request.getPassengers() != null && !request.getPassengers().isEmpty()) {
                     // 使用乘客信息中的席别
@@ -408,6 +571,7 @@ public class TicketServiceImpl implements TicketService {
                     // 分配座位
                     seatService.assignSeat(newTicket);
                     ticketRepository.save(newTicket);
+                    passengerItineraryIndex.add(newTicket);
                     newOrderTotalAmount = newOrderTotalAmount.add(newPrice);
                     // 记录改签配对关系：新票ID -> 原票ID:乘客ID
                     String mappingKey = "change_mapping:" + newTicket.getTicketId();
@@ -534,7 +698,10 @@ public class TicketServiceImpl implements TicketService {
         Optional<TicketInventory> inventory = getInventory(trainId, departureStopId, arrivalStopId, travelDate, carriageTypeId);
         if (inventory.isPresent()) {
             int availableSeats = inventory.get().getAvailableSeats();
-            redisService.setStock(trainId, departureStopId, arrivalStopId, travelDate, carriageTypeId, availableSeats);
+            // 车次库存还在后台加载时直接返回数据库余票，由加载线程统一写入Redis
+            if (inventoryInitService.isLoaded(trainId)) {
+                redisService.setStock(trainId, departureStopId, arrivalStopId, travelDate, carriageTypeId, availableSeats);
+            }
             return Optional.of(availableSeats);
         }
         
@@ -600,7 +767,7 @@ public class TicketServiceImpl implements TicketService {
     }
     
     @Override
-    public MyTicketResponse getMyTickets(Long userId) {
+    public MyTicketResponse getMyTickets(Long userId, String cursor, Integer size) {
         try {
             // 1. 根据用户ID查找用户信息，获取关联的乘客ID
             Optional<User> userOpt = userRepository.findById(userId);
@@ -620,11 +787,12 @@ public class TicketServiceImpl implements TicketService {
             }
             Passenger passenger = passengerOpt.get();
             
-            // 3. 根据乘客ID查询所有有效车票
-            List<Ticket> tickets = ticketRepository.findValidTicketsByPassengerId(user.getPassengerId());
+            // 3. 从游标位置读取乘客的一页车票
+            HistoryPager.Page<Ticket> page = historyPager.page(cursor, size,
+                    (after, limit) -> findTicketPage(user.getPassengerId(), after, limit), this::ticketCursor);
             
             // 4. 转换为响应格式
-            List<MyTicketResponse.MyTicketInfo> ticketInfos = convertToMyTicketInfo(tickets);
+            List<MyTicketResponse.MyTicketInfo> ticketInfos = convertToMyTicketInfo(page.getItems());
             
             // 5. 构建用户信息
             MyTicketResponse.UserInfo userInfo = new MyTicketResponse.UserInfo();
@@ -637,7 +805,9 @@ public class TicketServiceImpl implements TicketService {
             userInfo.setPassengerIdCard(passenger.getIdCardNumber());
             userInfo.setPassengerPhone(passenger.getPhoneNumber());
             
-            return MyTicketResponse.success(ticketInfos, userInfo);
+            MyTicketResponse response = MyTicketResponse.success(ticketInfos, userInfo);
+            response.setNextCursor(page.getNextCursor());
+            return response;
             
         } catch (Exception e) {
             System.err.println("获取本人车票失败: " + e.getMessage());
@@ -645,6 +815,29 @@ public class TicketServiceImpl implements TicketService {
         }
     }
     
+    @Override
+    public void exportMyTickets(Long userId, OutputStream out) throws IOException {
+        Long passengerId = userRepository.findById(userId)
+                .map(User::getPassengerId)
+                .orElseThrow(() -> new IllegalArgumentException("用户不存在或未关联乘客信息"));
+        historyPager.export(out, (after, limit) -> findTicketPage(passengerId, after, limit),
+                this::ticketCursor, this::convertToMyTicketInfo);
+    }
+    
+    /**
+     * 按（创建时间，车票ID）倒序读取游标之后的车票
+     */
+    private List<Ticket> findTicketPage(Long passengerId, HistoryCursor after, int limit) {
+        if (after == null) {
+            return ticketRepository.findFirstPageByPassengerId(passengerId, PageRequest.of(0, limit));
+        }
+        return ticketRepository.findPageByPassengerIdBefore(passengerId, after.getTime(), after.getId(), PageRequest.of(0, limit));
+    }
+    
+    private HistoryCursor ticketCursor(Ticket ticket) {
+        return new HistoryCursor(ticket.getCreatedTime(), ticket.getTicketId());
+    }
+    
     @Override
     public MyTicketResponse getMyTicketsByStatus(Long userId, Byte ticketStatus) {
         try {
@@ -886,17 +1079,35 @@ public class TicketServiceImpl implements TicketService {
     
     /**
      * 将Ticket实体转换为MyTicketInfo
+     * 先收集全部订单ID和车厢类型ID，各用一次IN查询取回，车次、停靠点和车站从时刻表缓存读取，
+     * 查询次数与车票数量无关
      */
     private List<MyTicketResponse.MyTicketInfo> convertToMyTicketInfo(List<Ticket> tickets) {
         List<MyTicketResponse.MyTicketInfo> ticketInfos = new ArrayList<>();
+        if (tickets.isEmpty()) {
+            return ticketInfos;
+        }
+        
+        Set<Long> orderIds = new LinkedHashSet<>();
+        Set<Integer> carriageTypeIds = new LinkedHashSet<>();
+        for (Ticket ticket : tickets) {
+            orderIds.add(ticket.getOrderId());
+            if (ticket.getCarriageTypeId() != null) {
+                carriageTypeIds.add(ticket.getCarriageTypeId());
+            }
+        }
+        Map<Long, Order> ordersById = new HashMap<>();
+        for (Order order : orderRepository.findAllById(new ArrayList<>(orderIds))) {
+            ordersById.put(order.getOrderId(), order);
+        }
+        Map<Integer, String> carriageTypeNames = getCarriageTypeNames(carriageTypeIds);
         
         for (Ticket ticket : tickets) {
             // 获取订单信息
-            Optional<Order> orderOpt = orderRepository.findById(ticket.getOrderId());
-            if (!orderOpt.isPresent()) {
+            Order order = ordersById.get(ticket.getOrderId());
+            if (order == null) {
                 continue;
             }
-            Order order = orderOpt.get();
             
             // 获取车站信息
             String departureStationName = getStationName(ticket.getDepartureStopId());
@@ -910,7 +1121,7 @@ public class TicketServiceImpl implements TicketService {
             LocalTime arrivalTime = getArrivalTime(ticket.getArrivalStopId());
             
             // 获取车厢类型名称
-            String carriageTypeName = getCarriageTypeName(ticket.getCarriageTypeId());
+            String carriageTypeName = carriageTypeNames.getOrDefault(ticket.getCarriageTypeId(), "未知车厢类型");
             
             MyTicketResponse.MyTicketInfo ticketInfo = new MyTicketResponse.MyTicketInfo();
             ticketInfo.setTicketId(ticket.getTicketId());
@@ -949,7 +1160,7 @@ public class TicketServiceImpl implements TicketService {
      */
     private LocalTime getDepartureTime(Long stopId) {
         try {
-            Optional<TrainStop> trainStopOpt = trainStopRepository.findByStopId(stopId);
+            Optional<TrainStop> trainStopOpt = timetableCache.getStop(stopId);
             if (trainStopOpt.isPresent()) {
                 return trainStopOpt.get().getDepartureTime();
             }
@@ -964,7 +1175,7 @@ public class TicketServiceImpl implements TicketService {
      */
     private LocalTime getArrivalTime(Long stopId) {
         try {
-            Optional<TrainStop> trainStopOpt = trainStopRepository.findByStopId(stopId);
+            Optional<TrainStop> trainStopOpt = timetableCache.getStop(stopId);
             if (trainStopOpt.isPresent()) {
                 return trainStopOpt.get().getArrivalTime();
             }
@@ -979,13 +1190,9 @@ public class TicketServiceImpl implements TicketService {
      */
     private String getStationName(Long stopId) {
         try {
-            Optional<TrainStop> trainStopOpt = trainStopRepository.findByStopId(stopId);
-            if (trainStopOpt.isPresent()) {
-                Long stationId = trainStopOpt.get().getStationId().longValue();
-                Optional<Station> stationOpt = stationRepository.findById(stationId.intValue());
-                if (stationOpt.isPresent()) {
-                    return stationOpt.get().getStationName();
-                }
+            Optional<Station> stationOpt = timetableCache.getStationOfStop(stopId);
+            if (stationOpt.isPresent()) {
+                return stationOpt.get().getStationName();
             }
         } catch (Exception e) {
             System.err.println("获取车站名称失败: " + e.getMessage());
@@ -998,7 +1205,7 @@ public class TicketServiceImpl implements TicketService {
      */
     private String getTrainNumber(Integer trainId) {
         try {
-            Optional<Train> trainOpt = trainRepository.findById(trainId);
+            Optional<Train> trainOpt = timetableCache.getTrain(trainId);
             if (trainOpt.isPresent()) {
                 return trainOpt.get().getTrainNumber();
             }
@@ -1054,13 +1261,9 @@ public class TicketServiceImpl implements TicketService {
      */
     private String getStationCity(Long stopId) {
         try {
-            Optional<TrainStop> trainStopOpt = trainStopRepository.findByStopId(stopId);
-            if (trainStopOpt.isPresent()) {
-                Long stationId = trainStopOpt.get().getStationId().longValue();
-                Optional<Station> stationOpt = stationRepository.findById(stationId.intValue());
-                if (stationOpt.isPresent()) {
-                    return stationOpt.get().getCity();
-                }
+            Optional<Station> stationOpt = timetableCache.getStationOfStop(stopId);
+            if (stationOpt.isPresent()) {
+                return stationOpt.get().getCity();
             }
         } catch (Exception e) {
             System.err.println("获取车站城市失败: " + e.getMessage());
@@ -1083,6 +1286,24 @@ public class TicketServiceImpl implements TicketService {
         return "未知车厢类型";
     }
     
+    /**
+     * 批量获取车厢类型名称，一次查询
+     */
+    private Map<Integer, String> getCarriageTypeNames(Set<Integer> carriageTypeIds) {
+        Map<Integer, String> carriageTypeNames = new HashMap<>();
+        if (carriageTypeIds.isEmpty()) {
+            return carriageTypeNames;
+        }
+        try {
+            for (CarriageType carriageType : carriageTypeRepository.findAllById(new ArrayList<>(carriageTypeIds))) {
+                carriageTypeNames.put(carriageType.getTypeId(), carriageType.getTypeName());
+            }
+        } catch (Exception e) {
+            System.err.println("获取车厢类型名称失败: " + e.getMessage());
+        }
+        return carriageTypeNames;
+    }
+    
     /**
      * 获取乘客类型文本
      */
@@ -1141,43 +1362,4 @@ public class TicketServiceImpl implements TicketService {
         System.out.println("票种:" + ticketType + ", 最终票价:" + finalPrice + "元");
         return finalPrice;
     }
-    
-    /**
-     * 回滚库存扣减 - 当购票过程中出现异常时，将已扣减的库存加回
-     */
-    private void rollbackStockReductions(List<BookingRequest.PassengerInfo> successfulReductions, BookingRequest request) {
-        if (successfulReductions.isEmpty()) {
-            return;
-        }
-        
-        System.out.println("开始回滚库存扣减，共 " + successfulReductions.size() + " 个席别");
-        
-        for (BookingRequest.PassengerInfo passengerInfo : successfulReductions) {
-            try {
-                boolean success = redisService.incrStock(
-                    request.getTrainId(),
-                    request.getDepartureStopId(),
-                    request.getArrivalStopId(),
-                    request.getTravelDate(),
-                    passengerInfo.getCarriageTypeId(),
-                    1
-                );
-                
-                if (success) {
-                    System.out.println("库存回滚成功: 车次" + request.getTrainId() + 
-                                     ", 席别" + passengerInfo.getCarriageTypeId() + 
-                                     ", 数量+1");
-                } else {
-                    System.err.println("库存回滚失败: 车次" + request.getTrainId() + 
-                                     ", 席别" + passengerInfo.getCarriageTypeId());
-                }
-            } catch (Exception e) {
-                System.err.println("库存回滚异常: 车次" + request.getTrainId() + 
-                                 ", 席别" + passengerInfo.getCarriageTypeId() + 
-                                 ", 错误: " + e.getMessage());
-            }
-        }
-        
-        System.out.println("库存回滚完成");
-    }
 } 
@@ -1,18 +1,27 @@
 package com.example.techprototype.Service.Impl;
 
+import com.example.techprototype.Component.SearchResultCache;
+import com.example.techprototype.Component.StationRouteIndex;
+import com.example.techprototype.Component.TicketPriceCache;
+import com.example.techprototype.Component.TimetableCache;
+import com.example.techprototype.Component.TimetableSnapshot;
+import com.example.techprototype.Component.TrainListProjection;
+import com.example.techprototype.Component.TransferNetwork;
+import com.example.techprototype.DAO.TicketInventoryDAO;
 import com.example.techprototype.DAO.TrainDAO;
+import com.example.techprototype.DTO.SearchRoute;
+import com.example.techprototype.DTO.StockQuery;
 import com.example.techprototype.DTO.TrainListDTO;
+import com.example.techprototype.DTO.TrainListPayload;
 import com.example.techprototype.Entity.Train;
 import com.example.techprototype.Entity.TrainStop;
 import com.example.techprototype.Entity.Station;
 import com.example.techprototype.Entity.TicketInventory;
-import com.example.techprototype.Repository.TrainRepository;
-import com.example.techprototype.Repository.TrainStopRepository;
-import com.example.techprototype.Repository.StationRepository;
-import com.example.techprototype.Repository.TicketInventoryRepository;
+import com.example.techprototype.Service.InventoryInitService;
 import com.example.techprototype.Service.TrainService;
 import com.example.techprototype.Service.RedisService;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
 import java.time.LocalTime;
@@ -27,15 +36,30 @@ public class TrainServiceImpl implements TrainService {
     @Autowired
     private TrainDAO trainDAO;
     @Autowired
-    private TrainRepository trainRepository;
+    private TimetableCache timetableCache;
     @Autowired
-    private TrainStopRepository trainStopRepository;
+    private TicketPriceCache ticketPriceCache;
     @Autowired
-    private StationRepository stationRepository;
+    private SearchResultCache searchResultCache;
     @Autowired
-    private TicketInventoryRepository ticketInventoryRepository;
+    private TrainListProjection trainListProjection;
     @Autowired
     private RedisService redisService;
+    @Autowired
+    private TicketInventoryDAO ticketInventoryDAO;
+    @Autowired
+    private InventoryInitService inventoryInitService;
+    
+    // 车次列表统一以2025-07-01为标准日期
+    private static final LocalDate TRAIN_LIST_DATE = LocalDate.of(2025, 7, 1);
+    
+    // 中转查询：最多中转次数、同站换乘的最短和最长等待分钟数
+    @Value("${transfer.max-transfers:2}")
+    private int maxTransfers = 2;
+    @Value("${transfer.min-connection-minutes:20}")
+    private int minConnectionMinutes = 20;
+    @Value("${transfer.max-wait-minutes:360}")
+    private int maxTransferWaitMinutes = 360;
 
     @Override
     public List<Train> findDirectTrains(Integer startStationId, Integer endStationId) {
@@ -49,37 +73,101 @@ public class TrainServiceImpl implements TrainService {
 
     @Override
     public List<Map<String, Object>> findTransferTrains(Integer startStationId, Integer endStationId) {
-        // 使用DAO层查询中转站
-        List<Integer> transferStations = trainDAO.findAllTransferStations(startStationId, endStationId);
-
         List<Map<String, Object>> result = new ArrayList<>();
-        // 性能优化：限制最大中转站数量
-        int maxTransferStations = Math.min(transferStations.size(), 10);
-
-        for (int i = 0; i < maxTransferStations; i++) {
-            Integer transferStationId = transferStations.get(i);
-            result.addAll(trainDAO.findTransferTrains(startStationId, transferStationId, endStationId));
+        if (startStationId == null || endStationId == null) {
+            return result;
+        }
+        // 在时刻表快照的中转网络上按轮次扫描，不访问数据库
+        TimetableSnapshot timetable = timetableCache.getSnapshot();
+        List<TransferNetwork.Itinerary> itineraries = timetable.getTransferNetwork().search(startStationId, endStationId,
+                maxTransfers, minConnectionMinutes, maxTransferWaitMinutes);
+        System.out.println("中转查询 - 出发站ID: " + startStationId + ", 到达站ID: " + endStationId + ", 方案: " + itineraries.size() + " 个");
+        
+        for (TransferNetwork.Itinerary itinerary : itineraries) {
+            Map<String, Object> transferInfo = new HashMap<>();
+            List<Map<String, Object>> legs = new ArrayList<>();
+            List<String> transferStations = new ArrayList<>();
+            int previousArrival = itinerary.getDepartureMinute();
+            for (TransferNetwork.Leg leg : itinerary.getLegs()) {
+                Train train = timetable.getTrain(leg.getTrainId());
+                String fromStationName = stationName(timetable, leg.getDepartureStop());
+                Map<String, Object> legInfo = new HashMap<>();
+                legInfo.put("train_id", train != null ? train.getTrainNumber() : null);
+                legInfo.put("trainId", leg.getTrainId());
+                legInfo.put("t_from", fromStationName);
+                legInfo.put("t_to", stationName(timetable, leg.getArrivalStop()));
+                legInfo.put("from_stop_id", leg.getDepartureStop().getStopId());
+                legInfo.put("to_stop_id", leg.getArrivalStop().getStopId());
+                legInfo.put("t_start_time", formatMinute(leg.getDepartureMinute()));
+                legInfo.put("t_start_day", leg.getDepartureMinute() / 1440);
+                legInfo.put("t_end_time", formatMinute(leg.getArrivalMinute()));
+                legInfo.put("t_end_day", leg.getArrivalMinute() / 1440);
+                legInfo.put("wait_minutes", leg.getDepartureMinute() - previousArrival);
+                if (!legs.isEmpty()) {
+                    transferStations.add(fromStationName);
+                }
+                legs.add(legInfo);
+                previousArrival = leg.getArrivalMinute();
+            }
+            transferInfo.put("transfer_count", itinerary.getTransfers());
+            transferInfo.put("transfer_stations", transferStations);
+            transferInfo.put("t_start_time", formatMinute(itinerary.getDepartureMinute()));
+            transferInfo.put("t_end_time", formatMinute(itinerary.getArrivalMinute()));
+            transferInfo.put("t_end_day", itinerary.getArrivalMinute() / 1440);
+            transferInfo.put("duration_minutes", itinerary.getDurationMinutes());
+            transferInfo.put("legs", legs);
+            result.add(transferInfo);
         }
         return result;
     }
+    
+    private String stationName(TimetableSnapshot timetable, TrainStop stop) {
+        Station station = timetable.getStation(stop.getStationId());
+        return station != null ? station.getStationName() : null;
+    }
+    
+    /**
+     * 相对出发当天零点的分钟数格式化为 HH:mm
+     */
+    private String formatMinute(int minute) {
+        return LocalTime.of(minute % 1440 / 60, minute % 60).format(DateTimeFormatter.ofPattern("HH:mm"));
+    }
 
     @Override
     public List<TrainListDTO> getAllTrainListDTO() {
-        List<Train> trains = trainRepository.findAll();
-        List<TrainListDTO> result = new ArrayList<>();
+        return getTrainListPayload().getTrains();
+    }
+
+    @Override
+    public TrainListPayload getTrainListPayload() {
+        // 车次列表投影常驻内存，只重建时刻表或库存有变化的行
+        TimetableSnapshot timetable = timetableCache.getSnapshot();
+        return trainListProjection.get(timetable, TRAIN_LIST_DATE,
+                trainIds -> buildTrainListRows(timetable, trainIds, TRAIN_LIST_DATE));
+    }
+
+    /**
+     * 生成车次列表行，返回值与trainIds下标对齐
+     * 停靠点和站名取自时刻表快照，全部车次的座位信息一次批量获取（首站到末站作为代表性路线）
+     */
+    private List<TrainListDTO> buildTrainListRows(TimetableSnapshot timetable, List<Integer> trainIds, LocalDate listDate) {
         DateTimeFormatter dtf = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
-        // 强制以2025-07-01为标准日期
-        LocalDate today = LocalDate.of(2025, 7, 1);
+        List<TrainListDTO> result = new ArrayList<>(trainIds.size());
+        List<SearchRoute> routes = new ArrayList<>();
+        List<Integer> routeRows = new ArrayList<>();
         
-        for (Train train : trains) {
+        for (Integer trainId : trainIds) {
+            Train train = timetable.getTrain(trainId);
+            List<TrainStop> stops = timetable.getStops(trainId);
             TrainListDTO dto = new TrainListDTO();
             dto.setTrain_id(train.getTrainNumber());
             
-            // 查询所有停靠站
-            List<TrainStop> stops = trainStopRepository.findByTrainIdOrderBySequenceNumberAsc(train.getTrainId());
             List<String> path = new ArrayList<>();
             for (TrainStop stop : stops) {
-                stationRepository.findById(stop.getStationId()).ifPresent(station -> path.add(station.getStationName()));
+                Station station = timetable.getStation(stop.getStationId());
+                if (station != null) {
+                    path.add(station.getStationName());
+                }
             }
             dto.setT_path(path);
             
@@ -100,37 +188,45 @@ public class TrainServiceImpl implements TrainService {
                 dto.setT_station_number(0);
             }
             
-            dto.setT_start_time(train.getDepartureTime().atDate(today).format(dtf));
-            dto.setT_end_time(train.getArrivalTime().atDate(today).format(dtf));
+            dto.setT_start_time(train.getDepartureTime().atDate(listDate).format(dtf));
+            dto.setT_end_time(train.getArrivalTime().atDate(listDate).format(dtf));
             
-            // 获取真实的座位信息（使用首站到末站作为代表性路线）
+            if (stops.size() >= 2) {
+                routeRows.add(result.size());
+                routes.add(new SearchRoute(trainId, train.getTrainNumber(), dto.getT_from(), dto.getT_to(),
+                        stops.get(0), stops.get(stops.size() - 1), path));
+            }
+            result.add(dto);
+        }
+        
+        // 获取真实的座位信息：一次票价预加载，一次Redis管道
+        List<List<Map<String, Object>>> seatInfos = getBatchSeatInfo(routes, listDate);
+        Map<Integer, List<Map<String, Object>>> seatInfoByRow = new HashMap<>();
+        for (int i = 0; i < routes.size(); i++) {
+            seatInfoByRow.put(routeRows.get(i), seatInfos.get(i));
+        }
+        
+        for (int row = 0; row < result.size(); row++) {
             List<Integer> seatTypes = new ArrayList<>();
             List<Integer> seatNumbers = new ArrayList<>();
             List<Integer> seatPrices = new ArrayList<>();
             
-            if (stops.size() >= 2) {
-                TrainStop firstStop = stops.get(0);
-                TrainStop lastStop = stops.get(stops.size() - 1);
-                
-                List<Map<String, Object>> seatInfo = getRealSeatInfo(train.getTrainId(), firstStop.getStopId(), lastStop.getStopId(), today);
-                
-                for (Map<String, Object> seat : seatInfo) {
-                    seatTypes.add((Integer) seat.get("type"));
-                    seatNumbers.add((Integer) seat.get("available"));
-                    // 正确处理BigDecimal价格，转换为Integer（价格以分为单位）
-                    Object priceObj = seat.get("price");
-                    Integer price;
-                    if (priceObj instanceof BigDecimal) {
-                        price = ((BigDecimal) priceObj).intValue();
-                    } else if (priceObj instanceof Double) {
-                        price = ((Double) priceObj).intValue();
-                    } else if (priceObj instanceof Integer) {
-                        price = (Integer) priceObj;
-                    } else {
-                        price = 150; // 默认价格
-                    }
-                    seatPrices.add(price);
+            for (Map<String, Object> seat : seatInfoByRow.getOrDefault(row, Collections.emptyList())) {
+                seatTypes.add((Integer) seat.get("type"));
+                seatNumbers.add((Integer) seat.get("available"));
+                // 正确处理BigDecimal价格，转换为Integer（价格以分为单位）
+                Object priceObj = seat.get("price");
+                Integer price;
+                if (priceObj instanceof BigDecimal) {
+                    price = ((BigDecimal) priceObj).intValue();
+                } else if (priceObj instanceof Double) {
+                    price = ((Double) priceObj).intValue();
+                } else if (priceObj instanceof Integer) {
+                    price = (Integer) priceObj;
+                } else {
+                    price = 150; // 默认价格
                 }
+                seatPrices.add(price);
             }
             
             // 如果没有找到真实数据，或者只找到了默认数据（只有一个类型为3的座位），使用完整的默认数据
@@ -140,11 +236,10 @@ public class TrainServiceImpl implements TrainService {
                 seatPrices = Arrays.asList(200, 150, 80);
             }
             
+            TrainListDTO dto = result.get(row);
             dto.setSeat(seatTypes);
             dto.setSeat_number(seatNumbers);
             dto.setSeat_price(seatPrices);
-            
-            result.add(dto);
         }
         return result;
     }
@@ -156,95 +251,62 @@ public class TrainServiceImpl implements TrainService {
         System.out.println("搜索车次 - 出发站: " + fromStation + ", 到达站: " + toStation + ", 日期: " + travelDate);
         
         try {
-            // 1. 根据站点名称查找站点ID
-            List<Station> fromStations = stationRepository.findByStationNameContainingOrCityContaining(fromStation, fromStation);
-            List<Station> toStations = stationRepository.findByStationNameContainingOrCityContaining(toStation, toStation);
-            
-            System.out.println("找到出发站: " + fromStations.size() + " 个");
-            System.out.println("找到到达站: " + toStations.size() + " 个");
-            
-            if (fromStations.isEmpty() || toStations.isEmpty()) {
-                System.out.println("未找到匹配的站点，返回空结果");
+            // 整个查询使用同一版本的时刻表，车次路线按时刻表版本缓存
+            TimetableSnapshot timetable = timetableCache.getSnapshot();
+            String fromKey = SearchResultCache.normalize(fromStation);
+            String toKey = SearchResultCache.normalize(toStation);
+            List<SearchRoute> routes = searchResultCache.getRoutes(fromKey, toKey, timetable.getVersion(),
+                    () -> findSearchRoutes(timetable, fromKey, toKey));
+            if (routes.isEmpty()) {
                 return result;
             }
             
             LocalDate travelDateObj = LocalDate.parse(travelDate);
+            DateTimeFormatter dtf = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
             
-            // 2. 查找包含这些站点的车次
-            for (Station fromStationObj : fromStations) {
-                for (Station toStationObj : toStations) {
-                    System.out.println("检查路线: " + fromStationObj.getStationName() + " -> " + toStationObj.getStationName());
-                    
-                    // 查找从fromStation到toStation的车次
-                    List<TrainStop> fromStops = trainStopRepository.findByStationId(fromStationObj.getStationId());
-                    List<TrainStop> toStops = trainStopRepository.findByStationId(toStationObj.getStationId());
-                    
-                    System.out.println("出发站停靠车次: " + fromStops.size() + " 个");
-                    System.out.println("到达站停靠车次: " + toStops.size() + " 个");
-                    
-                    // 找到同时包含两个站点的车次
-                    Set<Integer> commonTrainIds = new HashSet<>();
-                    for (TrainStop fromStop : fromStops) {
-                        for (TrainStop toStop : toStops) {
-                            if (fromStop.getTrainId().equals(toStop.getTrainId()) && 
-                                fromStop.getSequenceNumber() < toStop.getSequenceNumber()) {
-                                commonTrainIds.add(fromStop.getTrainId());
-                            }
-                        }
-                    }
-                    
-                    System.out.println("找到符合条件的车次: " + commonTrainIds.size() + " 个");
-                    
-                    // 3. 为每个车次构建详细信息
-                    for (Integer trainId : commonTrainIds) {
-                        Train train = trainRepository.findById(trainId).orElse(null);
-                        if (train == null) continue;
-                        
-                        TrainStop fromStop = trainStopRepository.findByTrainIdAndStationId(trainId, fromStationObj.getStationId());
-                        TrainStop toStop = trainStopRepository.findByTrainIdAndStationId(trainId, toStationObj.getStationId());
-                        
-                        if (fromStop == null || toStop == null) continue;
-                        
-                        System.out.println("构建车次信息: " + train.getTrainNumber());
-                        
-                        // 构建与TrainListDTO格式一致的数据
-                        Map<String, Object> trainInfo = new HashMap<>();
-                        trainInfo.put("train_id", train.getTrainNumber());
-                        trainInfo.put("trainId", train.getTrainId());
-                        trainInfo.put("t_from", fromStationObj.getStationName());
-                        trainInfo.put("t_to", toStationObj.getStationName());
-                        trainInfo.put("t_start_time", fromStop.getDepartureTime().atDate(travelDateObj).format(DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss")));
-                        trainInfo.put("t_end_time", toStop.getArrivalTime().atDate(travelDateObj).format(DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss")));
-                        trainInfo.put("travelDate", travelDate);
-                        
-                        // 构建途经站点信息
-                        List<TrainStop> allStops = trainStopRepository.findByTrainIdOrderBySequenceNumberAsc(trainId);
-                        List<String> path = new ArrayList<>();
-                        for (TrainStop stop : allStops) {
-                            stationRepository.findById(stop.getStationId()).ifPresent(station -> path.add(station.getStationName()));
-                        }
-                        trainInfo.put("t_path", path);
-                        
-                        // 计算当前区间的站数（从出发站到到达站）
-                        int stationCount = toStop.getSequenceNumber() - fromStop.getSequenceNumber() + 1;
-                        trainInfo.put("t_station_number", stationCount);
-                        
-                        // 从ticket_inventory获取真实票价和从Redis获取库存
-                        List<Map<String, Object>> seatInfo = getRealSeatInfo(trainId, fromStop.getStopId(), toStop.getStopId(), travelDateObj);
-                        trainInfo.put("seat", seatInfo.stream().map(seat -> seat.get("type")).collect(Collectors.toList()));
-                        trainInfo.put("seat_number", seatInfo.stream().map(seat -> seat.get("available")).collect(Collectors.toList()));
-                        trainInfo.put("seat_price", seatInfo.stream().map(seat -> seat.get("price")).collect(Collectors.toList()));
-                        
-                        // 添加库存ID列表
-                        List<Long> inventoryIds = seatInfo.stream()
-                            .map(seat -> (Long) seat.get("inventoryId"))
-                            .filter(id -> id != null)
-                            .collect(Collectors.toList());
-                        trainInfo.put("inventory_ids", inventoryIds);
-                        
-                        result.add(trainInfo);
-                    }
-                }
+            // 4. 所有车次的票价和库存批量获取：一次票价预加载，一次Redis管道；结果短期缓存，库存变更即失效
+            List<List<Map<String, Object>>> seatInfos;
+            try {
+                seatInfos = searchResultCache.getSeatInfos(fromKey, toKey, travelDateObj,
+                        timetable.getVersion(), routes, pending -> loadBatchSeatInfo(pending, travelDateObj));
+            } catch (Exception e) {
+                // 读取失败时本次返回默认数据，不写入缓存，下次查询重新读取
+                System.out.println("批量获取座位信息时发生错误: " + e.getMessage());
+                seatInfos = defaultSeatInfos(routes.size());
+            }
+            for (int i = 0; i < routes.size(); i++) {
+                SearchRoute route = routes.get(i);
+                TrainStop fromStop = route.getDepartureStop();
+                TrainStop toStop = route.getArrivalStop();
+                
+                // 构建与TrainListDTO格式一致的数据
+                Map<String, Object> trainInfo = new HashMap<>();
+                trainInfo.put("train_id", route.getTrainNumber());
+                trainInfo.put("trainId", route.getTrainId());
+                trainInfo.put("t_from", route.getFromStationName());
+                trainInfo.put("t_to", route.getToStationName());
+                trainInfo.put("t_start_time", fromStop.getDepartureTime().atDate(travelDateObj).format(dtf));
+                trainInfo.put("t_end_time", toStop.getArrivalTime().atDate(travelDateObj).format(dtf));
+                trainInfo.put("travelDate", travelDate);
+                trainInfo.put("t_path", new ArrayList<>(route.getPath()));
+                
+                // 计算当前区间的站数（从出发站到到达站）
+                int stationCount = toStop.getSequenceNumber() - fromStop.getSequenceNumber() + 1;
+                trainInfo.put("t_station_number", stationCount);
+                
+                List<Map<String, Object>> seatInfo = seatInfos.get(i);
+                trainInfo.put("seat", seatInfo.stream().map(seat -> seat.get("type")).collect(Collectors.toList()));
+                trainInfo.put("seat_number", seatInfo.stream().map(seat -> seat.get("available")).collect(Collectors.toList()));
+                trainInfo.put("seat_price", seatInfo.stream().map(seat -> seat.get("price")).collect(Collectors.toList()));
+                
+                // 添加库存ID列表
+                List<Long> inventoryIds = seatInfo.stream()
+                    .map(seat -> (Long) seat.get("inventoryId"))
+                    .filter(id -> id != null)
+                    .collect(Collectors.toList());
+                trainInfo.put("inventory_ids", inventoryIds);
+                
+                result.add(trainInfo);
             }
             
             // 按车次号排序
@@ -264,65 +326,185 @@ public class TrainServiceImpl implements TrainService {
         return result;
     }
     
-    private List<Map<String, Object>> getRealSeatInfo(Integer trainId, Long fromStopId, Long toStopId, LocalDate travelDate) {
-        List<Map<String, Object>> seatInfo = new ArrayList<>();
+    /**
+     * 在时刻表快照中匹配站点、归并车次、构建途经站点，结果与日期和余票无关
+     */
+    private List<SearchRoute> findSearchRoutes(TimetableSnapshot timetable, String fromStation, String toStation) {
+        List<SearchRoute> routes = new ArrayList<>();
+        StationRouteIndex routeIndex = timetable.getRouteIndex();
         
-        try {
-            System.out.println("查询座位信息 - 车次ID: " + trainId + ", 出发站ID: " + fromStopId + ", 到达站ID: " + toStopId + ", 日期: " + travelDate);
-            
-            // 查询ticket_inventory表获取票价信息
-            List<TicketInventory> inventories = ticketInventoryRepository.findByTrainAndDate(trainId, travelDate);
-            
-            System.out.println("找到库存记录: " + inventories.size() + " 条");
-            
-            for (TicketInventory inventory : inventories) {
-                System.out.println("检查库存记录 - 出发站ID: " + inventory.getDepartureStopId() + ", 到达站ID: " + inventory.getArrivalStopId() + 
-                                 ", 车厢类型: " + inventory.getCarriageTypeId() + ", 票价: " + inventory.getPrice());
+        // 1. 根据站点名称或城市查找站点ID
+        int[] fromStationIds = routeIndex.findStations(fromStation);
+        int[] toStationIds = routeIndex.findStations(toStation);
+        
+        System.out.println("找到出发站: " + fromStationIds.length + " 个");
+        System.out.println("找到到达站: " + toStationIds.length + " 个");
+        
+        if (fromStationIds.length == 0 || toStationIds.length == 0) {
+            System.out.println("未找到匹配的站点，返回空结果");
+            return routes;
+        }
+        
+        // 2. 归并两站的倒排表，找到先经过出发站、后经过到达站的车次
+        for (int fromStationId : fromStationIds) {
+            for (int toStationId : toStationIds) {
+                List<StationRouteIndex.RouteMatch> matches = routeIndex.findDirect(fromStationId, toStationId);
+                if (matches.isEmpty()) {
+                    continue;
+                }
+                String fromStationName = timetable.getStation(fromStationId).getStationName();
+                String toStationName = timetable.getStation(toStationId).getStationName();
+                System.out.println("路线 " + fromStationName + " -> " + toStationName + " 找到符合条件的车次: " + matches.size() + " 个");
                 
-                // 只处理匹配的出发站和到达站
-                if (inventory.getDepartureStopId().equals(fromStopId) && inventory.getArrivalStopId().equals(toStopId)) {
-                    Map<String, Object> seat = new HashMap<>();
-                    
-                    // 获取席别类型名称
-                    String seatTypeName = getSeatTypeName(inventory.getCarriageTypeId());
-                    seat.put("type", inventory.getCarriageTypeId());
-                    seat.put("typeName", seatTypeName);
-                    seat.put("price", inventory.getPrice());
-                    seat.put("inventoryId", inventory.getInventoryId()); // 添加库存ID
+                // 3. 为每个车次构建途经站点信息
+                for (StationRouteIndex.RouteMatch match : matches) {
+                    Integer trainId = match.getTrainId();
+                    Train train = timetable.getTrain(trainId);
+                    if (train == null) continue;
                     
-                    // 从Redis获取库存
-                    Optional<Integer> available = redisService.getStock(trainId, fromStopId, toStopId, travelDate, inventory.getCarriageTypeId());
-                    int stockCount = available.orElse(inventory.getAvailableSeats()); // 如果Redis没有，使用数据库中的值
-                    seat.put("available", stockCount);
-                    
-                    System.out.println("添加座位信息 - 类型: " + seatTypeName + ", 票价: " + inventory.getPrice() + ", 库存: " + stockCount);
-                    seatInfo.add(seat);
+                    List<String> path = new ArrayList<>();
+                    for (TrainStop stop : timetable.getStops(trainId)) {
+                        Station station = timetable.getStation(stop.getStationId());
+                        if (station != null) {
+                            path.add(station.getStationName());
+                        }
+                    }
+                    routes.add(new SearchRoute(trainId, train.getTrainNumber(), fromStationName, toStationName,
+                            match.getDepartureStop(), match.getArrivalStop(), Collections.unmodifiableList(path)));
                 }
             }
-            
-            if (seatInfo.isEmpty()) {
-                System.out.println("未找到匹配的座位信息，返回默认数据");
-                // 如果没找到匹配的记录，返回默认数据
-                Map<String, Object> defaultSeat = new HashMap<>();
-                defaultSeat.put("type", 3);
-                defaultSeat.put("typeName", "二等座");
-                defaultSeat.put("price", 150.0);
-                defaultSeat.put("available", 0);
-                seatInfo.add(defaultSeat);
-            }
-            
+        }
+        return routes;
+    }
+    
+    /**
+     * 批量获取查询结果的座位信息，返回值与routes下标对齐，出错时所有车次返回默认数据
+     */
+    private List<List<Map<String, Object>>> getBatchSeatInfo(List<SearchRoute> routes, LocalDate travelDate) {
+        try {
+            return loadBatchSeatInfo(routes, travelDate);
         } catch (Exception e) {
-            System.out.println("获取座位信息时发生错误: " + e.getMessage());
+            System.out.println("批量获取座位信息时发生错误: " + e.getMessage());
             e.printStackTrace();
-            // 如果出错，返回默认数据
-            Map<String, Object> defaultSeat = new HashMap<>();
-            defaultSeat.put("type", 3);
-            defaultSeat.put("typeName", "二等座");
-            defaultSeat.put("price", 150.0);
-            defaultSeat.put("available", 0);
-            seatInfo.add(defaultSeat);
+            return defaultSeatInfos(routes.size());
+        }
+    }
+    
+    /**
+     * 批量读取查询结果的座位信息，返回值与routes下标对齐，读取失败时抛出异常
+     * 票价取自票价缓存（缺失的车次一次查询补齐），库存在一次Redis管道中读取，往返次数与车次数无关
+     */
+    private List<List<Map<String, Object>>> loadBatchSeatInfo(List<SearchRoute> routes, LocalDate travelDate) {
+        List<List<Map<String, Object>>> seatInfos = new ArrayList<>(routes.size());
+        if (routes.isEmpty()) {
+            return seatInfos;
+        }
+        
+        Set<Integer> trainIds = new LinkedHashSet<>();
+        for (SearchRoute route : routes) {
+            trainIds.add(route.getTrainId());
+        }
+        ticketPriceCache.preload(trainIds, travelDate);
+        
+        // 库存还未加载到Redis的车次不查Redis，与Redis中缺失库存的车次一起，一次查询从数据库读取余票
+        Set<Integer> unloadedTrainIds = new LinkedHashSet<>();
+        for (Integer trainId : trainIds) {
+            if (!inventoryInitService.isLoaded(trainId)) {
+                unloadedTrainIds.add(trainId);
+            }
+        }
+        
+        List<List<TicketInventory>> faresByRoute = new ArrayList<>(routes.size());
+        List<StockQuery> queries = new ArrayList<>();
+        for (SearchRoute route : routes) {
+            Long fromStopId = route.getDepartureStop().getStopId();
+            Long toStopId = route.getArrivalStop().getStopId();
+            List<TicketInventory> fares = ticketPriceCache.getFares(route.getTrainId(), fromStopId, toStopId, travelDate);
+            faresByRoute.add(fares);
+            if (unloadedTrainIds.contains(route.getTrainId())) {
+                continue;
+            }
+            for (TicketInventory fare : fares) {
+                queries.add(new StockQuery(route.getTrainId(), fromStopId, toStopId, travelDate, fare.getCarriageTypeId()));
+            }
+        }
+        
+        List<Optional<Integer>> stocks = queries.isEmpty() ? List.of() : redisService.getStocks(queries);
+        Set<Integer> databaseTrainIds = new LinkedHashSet<>(unloadedTrainIds);
+        for (int i = 0; i < queries.size(); i++) {
+            if (i >= stocks.size() || stocks.get(i).isEmpty()) {
+                databaseTrainIds.add(queries.get(i).getTrainId());
+            }
+        }
+        Map<String, Integer> databaseStocks = loadDatabaseStocks(databaseTrainIds, travelDate);
+        System.out.println("批量查询座位信息 - 车次: " + trainIds.size() + " 个, 库存查询: " + queries.size() + " 项, 数据库读取车次: " + databaseTrainIds.size() + " 个");
+        
+        int next = 0;
+        for (int i = 0; i < routes.size(); i++) {
+            SearchRoute route = routes.get(i);
+            List<TicketInventory> fares = faresByRoute.get(i);
+            boolean loaded = !unloadedTrainIds.contains(route.getTrainId());
+            List<Map<String, Object>> seatInfo = new ArrayList<>();
+            for (TicketInventory fare : fares) {
+                Optional<Integer> stock = Optional.empty();
+                if (loaded) {
+                    stock = next < stocks.size() ? stocks.get(next) : Optional.empty();
+                    next++;
+                }
+                if (stock.isEmpty()) {
+                    stock = Optional.ofNullable(databaseStocks.get(databaseStockKey(route.getTrainId(),
+                            route.getDepartureStop().getStopId(), route.getArrivalStop().getStopId(), fare.getCarriageTypeId())));
+                }
+                Map<String, Object> seat = new HashMap<>();
+                seat.put("type", fare.getCarriageTypeId());
+                seat.put("typeName", getSeatTypeName(fare.getCarriageTypeId()));
+                seat.put("price", fare.getPrice());
+                seat.put("inventoryId", fare.getInventoryId());
+                // Redis没有时使用数据库中的当前值，不使用票价缓存加载时的余票快照
+                seat.put("available", stock.orElse(0));
+                seatInfo.add(seat);
+            }
+            seatInfos.add(seatInfo.isEmpty() ? defaultSeatInfo() : seatInfo);
         }
         
+        return seatInfos;
+    }
+    
+    private List<List<Map<String, Object>>> defaultSeatInfos(int count) {
+        List<List<Map<String, Object>>> seatInfos = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            seatInfos.add(defaultSeatInfo());
+        }
+        return seatInfos;
+    }
+    
+    /**
+     * 一次查询读取车次当天的数据库余票，按 车次:出发停靠点:到达停靠点:席别 索引
+     */
+    private Map<String, Integer> loadDatabaseStocks(Set<Integer> trainIds, LocalDate travelDate) {
+        Map<String, Integer> stocks = new HashMap<>();
+        if (trainIds.isEmpty()) {
+            return stocks;
+        }
+        for (TicketInventory inventory : ticketInventoryDAO.findByTrainIdsAndDate(trainIds, travelDate)) {
+            stocks.put(databaseStockKey(inventory.getTrainId(), inventory.getDepartureStopId(), inventory.getArrivalStopId(),
+                    inventory.getCarriageTypeId()), inventory.getAvailableSeats());
+        }
+        return stocks;
+    }
+    
+    private String databaseStockKey(Integer trainId, Long departureStopId, Long arrivalStopId, Integer carriageTypeId) {
+        return trainId + ":" + departureStopId + ":" + arrivalStopId + ":" + carriageTypeId;
+    }
+    
+    private List<Map<String, Object>> defaultSeatInfo() {
+        List<Map<String, Object>> seatInfo = new ArrayList<>();
+        Map<String, Object> defaultSeat = new HashMap<>();
+        defaultSeat.put("type", 3);
+        defaultSeat.put("typeName", "二等座");
+        defaultSeat.put("price", 150.0);
+        defaultSeat.put("available", 0);
+        seatInfo.add(defaultSeat);
         return seatInfo;
     }
     
@@ -1,5 +1,9 @@
 package com.example.techprototype.Service.Impl;
 
+import com.example.techprototype.Component.HistoryPager;
+import com.example.techprototype.Component.PassengerItineraryIndex;
+import com.example.techprototype.Component.TimetableCache;
+import com.example.techprototype.Component.WaitlistIndex;
 import com.example.techprototype.DTO.*;
 import com.example.techprototype.Entity.*;
 import com.example.techprototype.Enums.WaitlistOrderStatus;
@@ -7,17 +11,22 @@ import com.example.techprototype.Enums.WaitlistItemStatus;
 import com.example.techprototype.Repository.*;
 import com.example.techprototype.Service.WaitlistOrderService;
 import com.example.techprototype.Service.RedisService;
+import com.example.techprototype.Util.HistoryCursor;
 import com.example.techprototype.Util.TicketNumberGenerator;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.io.IOException;
+import java.io.OutputStream;
 import java.math.BigDecimal;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.time.LocalTime;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.stream.Collectors;
 
@@ -37,13 +46,7 @@ public class WaitlistOrderServiceImpl implements WaitlistOrderService {
     private PassengerRepository passengerRepository;
     
     @Autowired
-    private TrainRepository trainRepository;
-    
-    @Autowired
-    private TrainStopRepository trainStopRepository;
-    
-    @Autowired
-    private StationRepository stationRepository;
+    private TimetableCache timetableCache;
     
     @Autowired
     private CarriageTypeRepository carriageTypeRepository;
@@ -57,9 +60,18 @@ public class WaitlistOrderServiceImpl implements WaitlistOrderService {
     @Autowired
     private TicketInventoryRepository ticketInventoryRepository;
     
+    @Autowired
+    private WaitlistIndex waitlistIndex;
+    
     @Autowired
     private RedisService redisService;
     
+    @Autowired
+    private HistoryPager historyPager;
+
+    @Autowired
+    private PassengerItineraryIndex passengerItineraryIndex;
+    
     @Override
     @Transactional
     public BookingResponse createWaitlistOrder(BookingRequest request) {
@@ -131,17 +143,40 @@ public class WaitlistOrderServiceImpl implements WaitlistOrderService {
     }
     
     @Override
-    public WaitlistOrderResponse getMyWaitlistOrders(Long userId) {
+    public WaitlistOrderResponse getMyWaitlistOrders(Long userId, String cursor, Integer size) {
         try {
-            List<WaitlistOrder> waitlistOrders = waitlistOrderRepository.findByUserIdOrderByOrderTimeDesc(userId);
-            List<WaitlistOrderResponse.WaitlistOrderInfo> orderInfos = convertToWaitlistOrderInfo(waitlistOrders);
-            return WaitlistOrderResponse.success(orderInfos);
+            HistoryPager.Page<WaitlistOrder> page = historyPager.page(cursor, size,
+                    (after, limit) -> findWaitlistOrderPage(userId, after, limit), this::waitlistOrderCursor);
+            List<WaitlistOrderResponse.WaitlistOrderInfo> orderInfos = convertToWaitlistOrderInfo(page.getItems());
+            WaitlistOrderResponse response = WaitlistOrderResponse.success(orderInfos);
+            response.setNextCursor(page.getNextCursor());
+            return response;
         } catch (Exception e) {
             System.err.println("获取候补订单失败: " + e.getMessage());
             return WaitlistOrderResponse.failure("获取候补订单失败: " + e.getMessage());
         }
     }
     
+    @Override
+    public void exportMyWaitlistOrders(Long userId, OutputStream out) throws IOException {
+        historyPager.export(out, (after, limit) -> findWaitlistOrderPage(userId, after, limit),
+                this::waitlistOrderCursor, this::convertToWaitlistOrderInfo);
+    }
+    
+    /**
+     * 按（下单时间，候补订单ID）倒序读取游标之后的候补订单
+     */
+    private List<WaitlistOrder> findWaitlistOrderPage(Long userId, HistoryCursor after, int limit) {
+        if (after == null) {
+            return waitlistOrderRepository.findFirstPageByUserId(userId, PageRequest.of(0, limit));
+        }
+        return waitlistOrderRepository.findPageByUserIdBefore(userId, after.getTime(), after.getId(), PageRequest.of(0, limit));
+    }
+    
+    private HistoryCursor waitlistOrderCursor(WaitlistOrder order) {
+        return new HistoryCursor(order.getOrderTime(), order.getWaitlistId());
+    }
+    
     @Override
     public WaitlistOrderDetailResponse getWaitlistOrderDetail(Long userId, Long waitlistId) {
         try {
@@ -194,6 +229,9 @@ public class WaitlistOrderServiceImpl implements WaitlistOrderService {
             }
             waitlistItemRepository.saveAll(items);
             
+            // 加入候补索引，释放库存时按区间匹配
+            waitlistIndex.add(order, items);
+            
             return BookingResponse.successWithMessage("候补订单支付成功", order.getOrderNumber(), waitlistId, order.getTotalAmount(), LocalDateTime.now());
             
         } catch (Exception e) {
@@ -226,6 +264,7 @@ public class WaitlistOrderServiceImpl implements WaitlistOrderService {
                 item.setItemStatus((byte) WaitlistItemStatus.CANCELLED.getCode());
             }
             waitlistItemRepository.saveAll(items);
+            waitlistIndex.remove(waitlistId, items);
             
             return BookingResponse.successWithMessage("候补订单取消成功", order.getOrderNumber(), waitlistId, BigDecimal.ZERO, LocalDateTime.now());
             
@@ -313,6 +352,7 @@ public class WaitlistOrderServiceImpl implements WaitlistOrderService {
                     // 更新车票状态为已退票
                     ticket.setTicketStatus((byte) 3); // 已退票
                     ticketRepository.save(ticket);
+                    passengerItineraryIndex.remove(ticket);
                     
                     // 回滚库存
                     redisService.incrStock(ticket.getTrainId(), ticket.getDepartureStopId(),
@@ -348,6 +388,7 @@ public class WaitlistOrderServiceImpl implements WaitlistOrderService {
             // 更新候补订单状态为已取消
             order.setOrderStatus((byte) 3); // 已取消
             waitlistOrderRepository.save(order);
+            waitlistIndex.remove(waitlistId, allItems);
             
             return BookingResponse.successWithMessage("候补订单退款成功", order.getOrderNumber(), waitlistId, order.getTotalAmount(), order.getOrderTime());
             
@@ -419,6 +460,12 @@ public class WaitlistOrderServiceImpl implements WaitlistOrderService {
                 order.setItemCount(0); // 所有项都退了
             }
             
+            // 退掉的区间移出候补索引，同一区间仍有其他待兑现项时重新加入
+            waitlistIndex.remove(waitlistId, selectedItems);
+            if (!allCancelled) {
+                waitlistIndex.add(order, allItems);
+            }
+            
             waitlistOrderRepository.save(order);
             
             return BookingResponse.successWithMessage("候补订单项退款成功", order.getOrderNumber(), waitlistId, refundAmount, order.getOrderTime());
@@ -453,7 +500,7 @@ public class WaitlistOrderServiceImpl implements WaitlistOrderService {
     
     private LocalDateTime calculateExpireTime(LocalDate travelDate, Integer trainId) {
         // 获取发车时间，然后减去2小时
-        Optional<Train> trainOpt = trainRepository.findById(trainId);
+        Optional<Train> trainOpt = timetableCache.getTrain(trainId);
         if (trainOpt.isPresent()) {
             LocalTime departureTime = trainOpt.get().getDepartureTime();
             return LocalDateTime.of(travelDate, departureTime).minusHours(2);
@@ -463,9 +510,17 @@ public class WaitlistOrderServiceImpl implements WaitlistOrderService {
     
     private List<WaitlistOrderResponse.WaitlistOrderInfo> convertToWaitlistOrderInfo(List<WaitlistOrder> orders) {
         List<WaitlistOrderResponse.WaitlistOrderInfo> orderInfos = new ArrayList<>();
+        if (orders.isEmpty()) {
+            return orderInfos;
+        }
+        
+        // 一次查询取回这一批候补订单的全部订单项
+        List<Long> waitlistIds = orders.stream().map(WaitlistOrder::getWaitlistId).collect(Collectors.toList());
+        Map<Long, List<WaitlistItem>> itemsByWaitlistId = waitlistItemRepository.findByWaitlistIdIn(waitlistIds).stream()
+                .collect(Collectors.groupingBy(WaitlistItem::getWaitlistId));
         
         for (WaitlistOrder order : orders) {
-            List<WaitlistItem> items = waitlistItemRepository.findByWaitlistId(order.getWaitlistId());
+            List<WaitlistItem> items = itemsByWaitlistId.getOrDefault(order.getWaitlistId(), List.of());
             if (items.isEmpty()) continue;
             
             WaitlistItem representativeItem = items.get(0);
@@ -482,7 +537,7 @@ public class WaitlistOrderServiceImpl implements WaitlistOrderService {
             orderInfo.setTicketCount(order.getItemCount() != null ? order.getItemCount() : items.size());
             
             // 获取车次信息
-            Optional<Train> trainOpt = trainRepository.findById(representativeItem.getTrainId());
+            Optional<Train> trainOpt = timetableCache.getTrain(representativeItem.getTrainId());
             if (trainOpt.isPresent()) {
                 orderInfo.setTrainNumber(trainOpt.get().getTrainNumber());
             }
@@ -529,7 +584,7 @@ public class WaitlistOrderServiceImpl implements WaitlistOrderService {
             detail.setTravelDate(representativeItem.getTravelDate());
             
             // 获取车次信息
-            Optional<Train> trainOpt = trainRepository.findById(representativeItem.getTrainId());
+            Optional<Train> trainOpt = timetableCache.getTrain(representativeItem.getTrainId());
             if (trainOpt.isPresent()) {
                 detail.setTrainNumber(trainOpt.get().getTrainNumber());
             }
@@ -575,7 +630,7 @@ public class WaitlistOrderServiceImpl implements WaitlistOrderService {
             }
             
             // 获取车次信息
-            Optional<Train> trainOpt = trainRepository.findById(item.getTrainId());
+            Optional<Train> trainOpt = timetableCache.getTrain(item.getTrainId());
             if (trainOpt.isPresent()) {
                 itemInfo.setTrainNumber(trainOpt.get().getTrainNumber());
             }
@@ -623,12 +678,9 @@ public class WaitlistOrderServiceImpl implements WaitlistOrderService {
     
     private String getStationName(Long stopId) {
         try {
-            Optional<TrainStop> trainStopOpt = trainStopRepository.findByStopId(stopId);
-            if (trainStopOpt.isPresent()) {
-                Optional<Station> stationOpt = stationRepository.findById(trainStopOpt.get().getStationId());
-                if (stationOpt.isPresent()) {
-                    return stationOpt.get().getStationName();
-                }
+            Optional<Station> stationOpt = timetableCache.getStationOfStop(stopId);
+            if (stationOpt.isPresent()) {
+                return stationOpt.get().getStationName();
             }
         } catch (Exception e) {
             System.err.println("获取车站名称失败: " + e.getMessage());
@@ -638,7 +690,7 @@ public class WaitlistOrderServiceImpl implements WaitlistOrderService {
     
     private LocalTime getDepartureTime(Integer trainId, Long stopId) {
         try {
-            Optional<TrainStop> trainStopOpt = trainStopRepository.findByStopId(stopId);
+            Optional<TrainStop> trainStopOpt = timetableCache.getStop(stopId);
             if (trainStopOpt.isPresent()) {
                 return trainStopOpt.get().getDepartureTime();
             }
@@ -650,7 +702,7 @@ public class WaitlistOrderServiceImpl implements WaitlistOrderService {
     
     private LocalTime getArrivalTime(Integer trainId, Long stopId) {
         try {
-            Optional<TrainStop> trainStopOpt = trainStopRepository.findByStopId(stopId);
+            Optional<TrainStop> trainStopOpt = timetableCache.getStop(stopId);
             if (trainStopOpt.isPresent()) {
                 return trainStopOpt.get().getArrivalTime();
             }
@@ -4,12 +4,16 @@ import com.example.techprototype.DAO.TicketInventoryDAO;
 import com.example.techprototype.Entity.TicketInventory;
 import com.example.techprototype.Service.RedisService;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.CommandLineRunner;
 import org.springframework.stereotype.Service;
 
 import java.math.BigDecimal;
 import java.time.LocalDate;
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
 
 @Service
 public class InventoryInitService implements CommandLineRunner {
@@ -20,52 +24,102 @@ public class InventoryInitService implements CommandLineRunner {
     @Autowired
     private RedisService redisService;
     
+    // 每批加载的车次数，同一车次的库存记录总在同一批内，保证区段折叠完整
+    @Value("${inventory.init.trains-per-chunk:20}")
+    private int trainsPerChunk = 20;
+    
+    // 后台加载线程，启动不必等待全部库存加载完成
+    private Executor loaderExecutor = task -> {
+        Thread thread = new Thread(task, "inventory-loader");
+        thread.setDaemon(true);
+        thread.start();
+    };
+    
+    // 已加载到Redis的车次
+    private final Set<Integer> loadedTrainIds = ConcurrentHashMap.newKeySet();
+    
+    private volatile boolean completed = false;
+    
     @Override
     public void run(String... args) throws Exception {
         System.out.println("开始初始化Redis库存...");
         
-        // 直接用数据库数据覆盖Redis
-        loadAllInventoryFromDatabase();
-        
-        System.out.println("Redis库存初始化完成");
+        // 直接用数据库数据覆盖Redis，在后台按车次分批加载，已加载的车次可以立即提供服务
+        // 加载失败时不标记完成，未加载的车次继续拒绝购票、查询回退到数据库
+        loaderExecutor.execute(() -> {
+            if (loadAllInventoryFromDatabase()) {
+                completed = true;
+                System.out.println("Redis库存初始化完成");
+            }
+        });
+    }
+    
+    /**
+     * 车次库存是否已加载到Redis，未加载时查询应回退到数据库，购票应拒绝
+     * 加载线程以整体写入的方式覆盖区段库存，未加载车次上的扣减会被覆盖而导致超卖
+     */
+    public boolean isLoaded(Integer trainId) {
+        return completed || loadedTrainIds.contains(trainId);
+    }
+    
+    public boolean isCompleted() {
+        return completed;
+    }
+    
+    public int getLoadedTrainCount() {
+        return loadedTrainIds.size();
     }
     
     /**
      * 从数据库加载所有库存数据到Redis
+     * @return 是否全部加载成功
      */
-    private void loadAllInventoryFromDatabase() {
+    private boolean loadAllInventoryFromDatabase() {
         try {
-            // 获取数据库中的所有库存数据
-            List<TicketInventory> allInventories = ticketInventoryDAO.findAll();
-            
-            if (allInventories.isEmpty()) {
+            if (ticketInventoryDAO.findAllTrainIds().isEmpty()) {
                 System.out.println("数据库中没有库存数据，创建默认测试数据...");
                 createDefaultTestData();
-                // 重新获取所有数据
-                allInventories = ticketInventoryDAO.findAll();
-            }
-            
-            int loadedCount = 0;
-            for (TicketInventory inventory : allInventories) {
-                redisService.setStock(
-                    inventory.getTrainId(),
-                    inventory.getDepartureStopId(),
-                    inventory.getArrivalStopId(),
-                    inventory.getTravelDate(),
-                    inventory.getCarriageTypeId(),
-                    inventory.getAvailableSeats()
-                );
-                loadedCount++;
             }
             
-            System.out.println("成功加载 " + loadedCount + " 条库存数据到Redis");
+            loadInventoryInChunks();
+            return true;
             
         } catch (Exception e) {
             System.err.println("加载库存数据失败: " + e.getMessage());
             e.printStackTrace();
+            return false;
         }
     }
     
+    /**
+     * 按车次分批从数据库读取库存记录并批量写入Redis，每批打印一次进度
+     * @return 加载的库存记录数
+     */
+    public int loadInventoryInChunks() {
+        long startTime = System.currentTimeMillis();
+        List<Integer> trainIds = ticketInventoryDAO.findAllTrainIds();
+        int chunkSize = Math.max(1, trainsPerChunk);
+        int rowCount = 0;
+        int segmentCount = 0;
+        
+        for (int from = 0; from < trainIds.size(); from += chunkSize) {
+            List<Integer> chunk = trainIds.subList(from, Math.min(from + chunkSize, trainIds.size()));
+            List<TicketInventory> inventories = ticketInventoryDAO.findByTrainIds(chunk);
+            
+            // 按车次/日期/席别折叠为区段库存写入Redis
+            segmentCount += redisService.loadStocks(inventories);
+            rowCount += inventories.size();
+            loadedTrainIds.addAll(chunk);
+            
+            System.out.println("库存加载进度: " + (from + chunk.size()) + "/" + trainIds.size() + " 个车次, " + 
+                             rowCount + " 条库存数据, " + segmentCount + " 个区段, 用时 " + 
+                             (System.currentTimeMillis() - startTime) + "ms");
+        }
+        
+        System.out.println("成功加载 " + rowCount + " 条库存数据到Redis, 共 " + segmentCount + " 个区段");
+        return rowCount;
+    }
+    
     private void createDefaultTestData() {
         LocalDate startDate = LocalDate.now().plusDays(1); // 从明天开始
         LocalDate endDate = LocalDate.now().plusDays(31); // 扩展到31天后
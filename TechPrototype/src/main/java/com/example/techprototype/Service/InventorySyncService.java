@@ -1,16 +1,18 @@
 package com.example.techprototype.Service;
 
+import com.example.techprototype.Component.StopSequenceCache;
 import com.example.techprototype.DAO.TicketInventoryDAO;
+import com.example.techprototype.DTO.SegmentStock;
 import com.example.techprototype.Entity.TicketInventory;
 import com.example.techprototype.Service.RedisService;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
 
 import java.time.LocalDate;
+import java.util.HashMap;
 import java.util.List;
-import java.util.Optional;
+import java.util.Map;
 
 @Service
 public class InventorySyncService {
@@ -21,76 +23,85 @@ public class InventorySyncService {
     @Autowired
     private RedisService redisService;
     
+    @Autowired
+    private InventoryInitService inventoryInitService;
+    
+    @Autowired
+    private StopSequenceCache stopSequenceCache;
+    
+    // 每批取出的变更库存key数
+    private static final int SYNC_BATCH_SIZE = 1000;
+    
     /**
-     * 每30秒同步一次Redis库存到MySQL
-     * Redis作为主数据源，数据库作为备份
+     * 增量同步Redis库存到MySQL，只回写自上次同步以来变更过的库存key
+     * Redis作为主数据源，数据库作为备份；由ScheduledTaskService在数据初始化完成后每30秒调度
+     * 每批单独提交，某批回写失败时把该批key重新标记为待同步，不影响已提交的批次
      */
-    @Scheduled(fixedRate = 30000) // 30秒
-    @Transactional
     public void syncInventoryToDatabase() {
         try {
-            // 获取所有库存数据
-            List<TicketInventory> allInventories = ticketInventoryDAO.findAll();
-            
+            int keyCount = 0;
             int syncCount = 0;
-            for (TicketInventory inventory : allInventories) {
-                // 从Redis获取当前库存
-                Optional<Integer> redisStock = redisService.getStock(
-                    inventory.getTrainId(),
-                    inventory.getDepartureStopId(),
-                    inventory.getArrivalStopId(),
-                    inventory.getTravelDate(),
-                    inventory.getCarriageTypeId()
-                );
-                
-                if (redisStock.isPresent()) {
-                    int currentRedisStock = redisStock.get();
-                    int currentDbStock = inventory.getAvailableSeats();
-                    
-                    // 直接同步Redis库存到数据库，Redis作为主数据源
-                    if (currentRedisStock != currentDbStock) {
-                        inventory.setAvailableSeats(currentRedisStock);
-                        inventory.setCacheVersion(inventory.getCacheVersion() + 1);
-                        inventory.setDbVersion(inventory.getDbVersion() + 1);
-                        ticketInventoryDAO.save(inventory);
-                        syncCount++;
-                        System.out.println("同步库存到数据库: " + inventory.getTrainId() + ":" + 
-                                         inventory.getDepartureStopId() + ":" + inventory.getArrivalStopId() + 
-                                         ":" + inventory.getTravelDate() + ":" + inventory.getCarriageTypeId() + 
-                                         " 从 " + currentDbStock + " 更新为 " + currentRedisStock);
+            List<SegmentStock> stocks = redisService.drainDirtyStocks(SYNC_BATCH_SIZE);
+            while (!stocks.isEmpty()) {
+                try {
+                    Map<Long, Integer> updates = new HashMap<>();
+                    for (SegmentStock stock : stocks) {
+                        collectChangedInventories(stock, updates);
+                    }
+                    if (!updates.isEmpty()) {
+                        syncCount += ticketInventoryDAO.batchUpdateAvailableSeats(updates);
                     }
+                    keyCount += stocks.size();
+                } catch (RuntimeException e) {
+                    redisService.requeueDirtyStocks(stocks);
+                    throw e;
                 }
+                stocks = redisService.drainDirtyStocks(SYNC_BATCH_SIZE);
             }
             
             if (syncCount > 0) {
-                System.out.println("库存同步完成: " + LocalDate.now() + ", 同步了 " + syncCount + " 条记录");
+                System.out.println("库存同步完成: " + LocalDate.now() + ", 变更库存key " + keyCount + " 个, 同步了 " + syncCount + " 条记录");
             }
         } catch (Exception e) {
             System.err.println("库存同步失败: " + e.getMessage());
         }
     }
     
+    /**
+     * 计算库存key下每条区间记录的当前余票（覆盖区段的最小值），与数据库不一致的加入待更新
+     */
+    private void collectChangedInventories(SegmentStock stock, Map<Long, Integer> updates) {
+        List<TicketInventory> inventories = ticketInventoryDAO.findByTrainAndDateAndType(
+                stock.getTrainId(), stock.getTravelDate(), stock.getCarriageTypeId());
+        for (TicketInventory inventory : inventories) {
+            Integer from = stopSequenceCache.getSequence(inventory.getTrainId(), inventory.getDepartureStopId());
+            Integer to = stopSequenceCache.getSequence(inventory.getTrainId(), inventory.getArrivalStopId());
+            if (from == null || to == null || from >= to) {
+                continue;
+            }
+            Integer available = null;
+            for (int s = from; s < to; s++) {
+                Integer segment = stock.getAvailableBySegment().get(s);
+                if (segment == null) {
+                    available = null; // 区段缺失，不回写
+                    break;
+                }
+                available = available == null ? segment : Math.min(available, segment);
+            }
+            if (available != null && available.intValue() != inventory.getAvailableSeats()) {
+                updates.put(inventory.getInventoryId(), available);
+            }
+        }
+    }
+    
     /**
      * 每天凌晨2点同步一次MySQL库存到Redis（作为备份和恢复）
      */
     @Scheduled(cron = "0 0 2 * * ?") // 每天凌晨2点
     public void syncDatabaseToRedis() {
         try {
-            // 获取所有库存数据
-            List<TicketInventory> allInventories = ticketInventoryDAO.findAll();
-            
-            int backupCount = 0;
-            for (TicketInventory inventory : allInventories) {
-                redisService.setStock(
-                    inventory.getTrainId(),
-                    inventory.getDepartureStopId(),
-                    inventory.getArrivalStopId(),
-                    inventory.getTravelDate(),
-                    inventory.getCarriageTypeId(),
-                    inventory.getAvailableSeats()
-                );
-                backupCount++;
-            }
+            // 按车次分批读取并批量写入Redis
+            int backupCount = inventoryInitService.loadInventoryInChunks();
             
             System.out.println("Redis库存备份完成: " + LocalDate.now() + ", 备份了 " + backupCount + " 条记录");
         } catch (Exception e) {
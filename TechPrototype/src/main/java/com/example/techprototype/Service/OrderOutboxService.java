@@ -0,0 +1,151 @@
+package com.example.techprototype.Service;
+
+import com.example.techprototype.Component.OrderPartitioner;
+import com.example.techprototype.Config.RabbitMQConfig;
+import com.example.techprototype.DTO.OrderMessage;
+import com.example.techprototype.Entity.OrderOutbox;
+import com.example.techprototype.Enums.OutboxStatus;
+import com.example.techprototype.Repository.OrderOutboxRepository;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import org.springframework.amqp.rabbit.core.RabbitTemplate;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Collectors;
+
+/**
+ * 订单消息发件箱
+ * 购票请求只在本地事务内写入发件箱，不再同步等待RabbitMQ；
+ * 中继按写入顺序批量投递到 order.exchange 上车次日期所属的分区，等待发布确认后标记为已投递，失败的批次保留下次重试。
+ * 投递语义为至少一次，消费端按订单号去重
+ */
+@Service
+public class OrderOutboxService {
+
+    @Autowired
+    private OrderOutboxRepository orderOutboxRepository;
+
+    @Autowired
+    private RabbitTemplate rabbitTemplate;
+
+    @Autowired
+    private OrderPartitioner orderPartitioner;
+
+    // 每批投递的消息数
+    @Value("${order.outbox.batch-size:100}")
+    private int batchSize = 100;
+
+    // 等待一批消息发布确认的超时时间
+    @Value("${order.outbox.confirm-timeout-ms:5000}")
+    private long confirmTimeoutMillis = 5000;
+
+    // 已投递消息的保留时长
+    @Value("${order.outbox.retention-hours:24}")
+    private int retentionHours = 24;
+
+    private final ObjectMapper objectMapper = new ObjectMapper().registerModule(new JavaTimeModule());
+
+    private final AtomicBoolean relaying = new AtomicBoolean(false);
+
+    /**
+     * 在当前事务中写入订单消息，事务提交后由中继投递
+     */
+    @Transactional
+    public void append(OrderMessage orderMessage) {
+        OrderOutbox outbox = new OrderOutbox();
+        outbox.setOrderNumber(orderMessage.getOrderNumber());
+        outbox.setExchange(RabbitMQConfig.ORDER_EXCHANGE);
+        outbox.setRoutingKey(orderPartitioner.routingKey(orderMessage.getTrainId(), orderMessage.getTravelDate()));
+        outbox.setPayload(toPayload(orderMessage));
+        outbox.setStatus((byte) OutboxStatus.PENDING.getCode());
+        outbox.setAttempts(0);
+        outbox.setCreatedTime(LocalDateTime.now());
+        orderOutboxRepository.save(outbox);
+    }
+
+    /**
+     * 投递发件箱中的待投递消息，直到没有满批的积压
+     */
+    @Scheduled(fixedDelayString = "${order.outbox.relay-interval-ms:100}")
+    public void relayPendingMessages() {
+        if (!relaying.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            int relayed;
+            do {
+                relayed = relayBatch();
+            } while (relayed == batchSize);
+        } catch (Exception e) {
+            System.err.println("订单发件箱投递失败: " + e.getMessage());
+        } finally {
+            relaying.set(false);
+        }
+    }
+
+    /**
+     * 投递一批消息：同一信道上连续发布，整批等待一次发布确认
+     * @return 成功投递的消息数，投递失败时返回0
+     */
+    public int relayBatch() {
+        List<OrderOutbox> batch = orderOutboxRepository.findPendingBatch(PageRequest.of(0, batchSize));
+        if (batch.isEmpty()) {
+            return 0;
+        }
+        List<Long> ids = batch.stream().map(OrderOutbox::getOutboxId).collect(Collectors.toList());
+
+        try {
+            rabbitTemplate.invoke(operations -> {
+                for (OrderOutbox outbox : batch) {
+                    operations.convertAndSend(outbox.getExchange(), outbox.getRoutingKey(), toMessage(outbox));
+                }
+                operations.waitForConfirmsOrDie(confirmTimeoutMillis);
+                return null;
+            });
+        } catch (Exception e) {
+            System.err.println("订单消息批量投递未确认，保留重试: " + batch.size() + "条, " + e.getMessage());
+            orderOutboxRepository.incrementAttempts(ids);
+            return 0;
+        }
+
+        orderOutboxRepository.markSent(ids, LocalDateTime.now());
+        System.out.println("订单消息批量投递成功: " + batch.size() + "条");
+        return batch.size();
+    }
+
+    /**
+     * 每小时清理保留期之前已投递的消息
+     */
+    @Scheduled(fixedRate = 3600000)
+    public void purgeSentMessages() {
+        int deleted = orderOutboxRepository.deleteSentBefore(LocalDateTime.now().minusHours(retentionHours));
+        if (deleted > 0) {
+            System.out.println("清理已投递的订单消息: " + deleted + "条");
+        }
+    }
+
+    private String toPayload(OrderMessage orderMessage) {
+        try {
+            return objectMapper.writeValueAsString(orderMessage);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("订单消息序列化失败: " + orderMessage.getOrderNumber(), e);
+        }
+    }
+
+    private OrderMessage toMessage(OrderOutbox outbox) {
+        try {
+            return objectMapper.readValue(outbox.getPayload(), OrderMessage.class);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("订单消息反序列化失败: " + outbox.getOrderNumber(), e);
+        }
+    }
+}
@@ -9,6 +9,8 @@ import com.example.techprototype.DTO.RefundPreparationResponse;
 import com.example.techprototype.Entity.Order;
 import com.example.techprototype.DTO.OrderMessage;
 
+import java.io.IOException;
+import java.io.OutputStream;
 import java.time.LocalDate;
 import java.util.List;
 
@@ -30,9 +32,16 @@ public interface OrderService {
     BookingResponse cancelOrder(CancelOrderRequest request);
     
     /**
-     * 获取我的订单
+     * 分页获取我的订单，按下单时间倒序
+     * @param cursor 上一页返回的游标，为空时返回第一页
+     * @param size 页大小，为空时取默认值；游标和页大小都为空时返回全部记录
      */
-    MyOrderResponse getMyOrders(Long userId);
+    MyOrderResponse getMyOrders(Long userId, String cursor, Integer size);
+    
+    /**
+     * 导出我的全部订单，逐批写出JSON数组
+     */
+    void exportMyOrders(Long userId, OutputStream out) throws IOException;
     
     /**
      * 根据条件获取我的订单
@@ -1,5 +1,6 @@
 package com.example.techprototype.Service;
 
+import com.example.techprototype.Component.PassengerItineraryIndex;
 import com.example.techprototype.Entity.Order;
 import com.example.techprototype.Entity.Ticket;
 import com.example.techprototype.Entity.WaitlistOrder;
@@ -39,6 +40,9 @@ public class OrderTimeoutService {
     
     @Autowired
     private WaitlistItemRepository waitlistItemRepository;
+
+    @Autowired
+    private PassengerItineraryIndex passengerItineraryIndex;
     
     /**
      * 每30秒检查一次超时订单
@@ -83,6 +87,7 @@ public class OrderTimeoutService {
                 // 更新车票状态为已取消
             ticket.setTicketStatus((byte) 3); // 已退票状态
             ticketRepository.save(ticket);
+            passengerItineraryIndex.remove(ticket);
             
             // 释放座位（使用新的位图管理方式）
                 if (ticket.getSeatNumber() != null && ticket.getCarriageNumber() != null) {
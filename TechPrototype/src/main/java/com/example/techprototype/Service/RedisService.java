@@ -1,32 +1,85 @@
 package com.example.techprototype.Service;
 
 import java.time.LocalDate;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import com.example.techprototype.DTO.SegmentStock;
+import com.example.techprototype.DTO.StockQuery;
+import com.example.techprototype.DTO.StockReservation;
 import com.example.techprototype.Entity.Order;
 import com.example.techprototype.Entity.Ticket;
+import com.example.techprototype.Entity.TicketInventory;
 
 public interface RedisService {
     
     /**
      * 预减库存（原子操作）
+     * 库存按区段存储，区间覆盖的每个区段都扣减，任一区段不足则不扣减
      */
     boolean decrStock(Integer trainId, Long departureStopId, Long arrivalStopId, LocalDate travelDate, Integer carriageTypeId, int quantity);
     
+    /**
+     * 以订单号为幂等键一次性预减多个席别库存（原子操作，全部成功或全部不扣减）
+     * 同一订单号只扣减一次，重试时返回DUPLICATE；订单号已被其他用户使用时返回CONFLICT
+     * 扣减成功时在同一脚本内写入预留记录并加入待确认集合，订单事务提交后确认，回滚后归还
+     * @param quantityByCarriageType 席别ID -> 扣减数量
+     */
+    StockReservation reserveStocksOnce(String orderNumber, Long userId, Integer trainId, Long departureStopId, Long arrivalStopId, LocalDate travelDate, Map<Integer, Integer> quantityByCarriageType);
+    
+    /**
+     * 确认订单号的预留：订单消息已提交，移出待确认集合，保留预留记录用于重试去重
+     */
+    void confirmReservation(String orderNumber);
+    
+    /**
+     * 归还订单号待确认预留扣减的库存并删除预留记录，允许同一订单号重新预减（原子操作，只归还一次）
+     * @return 是否归还了库存，已确认或已归还的预留返回false
+     */
+    boolean releaseReservation(String orderNumber);
+    
+    /**
+     * 查询预留时间早于指定时间仍未确认的订单号，按预留时间从早到晚
+     */
+    List<String> findPendingReservations(long reservedBeforeMillis, int limit);
+    
     /**
      * 增加库存（原子操作）
      */
     boolean incrStock(Integer trainId, Long departureStopId, Long arrivalStopId, LocalDate travelDate, Integer carriageTypeId, int quantity);
     
     /**
-     * 获取库存
+     * 获取库存，区间余票为覆盖区段余票的最小值
      */
     Optional<Integer> getStock(Integer trainId, Long departureStopId, Long arrivalStopId, LocalDate travelDate, Integer carriageTypeId);
     
     /**
-     * 设置库存
+     * 批量获取库存，所有查询在一次管道中完成
+     * @return 与queries下标对齐，库存不存在或区间无法解析时为空
+     */
+    List<Optional<Integer>> getStocks(List<StockQuery> queries);
+    
+    /**
+     * 设置库存，区间覆盖的每个区段余票都设置为quantity
      */
     void setStock(Integer trainId, Long departureStopId, Long arrivalStopId, LocalDate travelDate, Integer carriageTypeId, int quantity);
     
+    /**
+     * 由区间库存记录批量生成区段库存，同一区段取覆盖它的记录中余票最小的值
+     * @return 写入的区段数
+     */
+    int loadStocks(List<TicketInventory> inventories);
+    
+    /**
+     * 取出并移除最多maxKeys个自上次同步以来变更过的库存，连同当前区段余票一起返回
+     */
+    List<SegmentStock> drainDirtyStocks(int maxKeys);
+    
+    /**
+     * 把回写失败的库存重新标记为待同步
+     */
+    void requeueDirtyStocks(List<SegmentStock> stocks);
+    
     /**
      * 获取分布式锁
      */
@@ -0,0 +1,56 @@
+package com.example.techprototype.Service;
+
+import com.example.techprototype.Repository.OrderOutboxRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.util.List;
+
+/**
+ * 清理未确认的库存预留
+ * 购票时Redis库存与预留记录在同一脚本内写入，订单消息随后在数据库事务中写入发件箱；
+ * 事务提交后确认预留，回滚时归还库存。进程在两者之间退出、或提交结果未知时预留会一直处于待确认状态，
+ * 由本任务按发件箱判断：订单消息已提交则确认，否则归还库存
+ */
+@Service
+public class ReservationSweepService {
+    
+    @Autowired
+    private RedisService redisService;
+    
+    @Autowired
+    private OrderOutboxRepository orderOutboxRepository;
+    
+    // 预留超过该时长仍未确认才检查发件箱，须远大于购票事务的最长耗时，避免归还仍在提交中的订单库存
+    @Value("${booking.reservation.sweep-grace-seconds:600}")
+    private long graceSeconds = 600;
+    
+    // 每轮最多检查的预留数
+    @Value("${booking.reservation.sweep-batch-size:100}")
+    private int batchSize = 100;
+    
+    @Scheduled(fixedDelayString = "${booking.reservation.sweep-interval-ms:60000}")
+    public void sweepPendingReservations() {
+        List<String> orderNumbers = redisService.findPendingReservations(System.currentTimeMillis() - graceSeconds * 1000, batchSize);
+        if (orderNumbers.isEmpty()) {
+            return;
+        }
+        int confirmed = 0;
+        int released = 0;
+        for (String orderNumber : orderNumbers) {
+            try {
+                if (orderOutboxRepository.existsByOrderNumber(orderNumber)) {
+                    redisService.confirmReservation(orderNumber);
+                    confirmed++;
+                } else if (redisService.releaseReservation(orderNumber)) {
+                    released++;
+                }
+            } catch (Exception e) {
+                System.err.println("清理库存预留失败: " + orderNumber + ", " + e.getMessage());
+            }
+        }
+        System.out.println("清理未确认的库存预留: 检查 " + orderNumbers.size() + " 个, 确认 " + confirmed + " 个, 归还 " + released + " 个");
+    }
+}
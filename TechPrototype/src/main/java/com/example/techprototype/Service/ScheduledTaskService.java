@@ -24,7 +24,7 @@ public class ScheduledTaskService {
     }
     
     /**
-     * 每30秒同步一次Redis库存到数据库
+     * 每30秒增量同步一次Redis库存到数据库（唯一的库存同步调度）
      */
     @Scheduled(fixedRate = 30000) // 30秒
     public void scheduledInventorySync() {
@@ -19,6 +19,13 @@ public interface SeatService {
      */
     void assignSeat(Ticket ticket);
     
+    /**
+     * 批量分配座位（同一订单的多名乘客）
+     * 站点序号每个车次只查询一次，同一区间的乘客一次选座，优先分配同一车厢的相邻座位
+     * @param tickets 待分配座位的车票
+     */
+    void assignSeats(List<Ticket> tickets);
+    
     /**
      * 查找可用座位（基于位图）
      * @param trainId 车次ID
@@ -6,6 +6,8 @@ import com.example.techprototype.DTO.RefundRequest;
 import com.example.techprototype.DTO.ChangeTicketRequest;
 import com.example.techprototype.DTO.MyTicketResponse;
 import com.example.techprototype.DTO.TicketDetailResponse;
+import java.io.IOException;
+import java.io.OutputStream;
 import java.time.LocalDate;
 
 public interface TicketService {
@@ -26,9 +28,16 @@ public interface TicketService {
     BookingResponse changeTickets(ChangeTicketRequest request);
     
     /**
-     * 获取本人车票
+     * 分页获取本人车票，按创建时间倒序
+     * @param cursor 上一页返回的游标，为空时返回第一页
+     * @param size 页大小，为空时取默认值；游标和页大小都为空时返回全部记录
      */
-    MyTicketResponse getMyTickets(Long userId);
+    MyTicketResponse getMyTickets(Long userId, String cursor, Integer size);
+    
+    /**
+     * 导出本人全部车票，逐批写出JSON数组
+     */
+    void exportMyTickets(Long userId, OutputStream out) throws IOException;
     
     /**
      * 根据车票状态获取本人车票
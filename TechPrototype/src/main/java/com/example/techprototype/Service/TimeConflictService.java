@@ -1,15 +1,16 @@
 package com.example.techprototype.Service;
 
+import com.example.techprototype.Component.PassengerItineraryIndex;
+import com.example.techprototype.Component.TimetableCache;
 import com.example.techprototype.Entity.Ticket;
 import com.example.techprototype.Entity.TrainStop;
+import com.example.techprototype.Enums.TicketStatus;
 import com.example.techprototype.Repository.TicketRepository;
-import com.example.techprototype.Repository.TrainStopRepository;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
 import java.time.LocalDate;
 import java.time.LocalTime;
-import java.time.LocalDateTime;
 import java.util.List;
 import java.util.ArrayList;
 import java.util.Optional;
@@ -21,7 +22,10 @@ public class TimeConflictService {
     private TicketRepository ticketRepository;
     
     @Autowired
-    private TrainStopRepository trainStopRepository;
+    private TimetableCache timetableCache;
+    
+    @Autowired
+    private PassengerItineraryIndex passengerItineraryIndex;
     
     /**
      * 检查乘客在指定时间段内是否有时间冲突的车票
@@ -42,65 +46,39 @@ public class TimeConflictService {
                           ", 出发站: " + departureStopId + ", 到达站: " + arrivalStopId + 
                           ", 日期: " + travelDate);
         
-        // 获取新票的时间段
-        LocalTime newDepartureTime = getDepartureTime(trainId, departureStopId);
-        LocalTime newArrivalTime = getArrivalTime(trainId, arrivalStopId);
-        
-        System.out.println("新票时间 - 出发: " + newDepartureTime + ", 到达: " + newArrivalTime);
-        
-        // 对于区间票，使用出发站的出发时间和到达站的到达时间
-        if (newDepartureTime == null) {
-            System.out.println("无法获取出发时间，跳过时间冲突检测");
+        // 获取新票的时间段，对于区间票，使用出发站的出发时间和到达站的到达时间，跨天时到达时间顺延一天
+        PassengerItineraryIndex.Interval newInterval = passengerItineraryIndex.intervalOf(
+                travelDate, departureStopId, arrivalStopId);
+        if (newInterval == null) {
+            System.out.println("无法获取出发或到达时间，跳过时间冲突检测");
             return List.of();
         }
         
-        if (newArrivalTime == null) {
-            System.out.println("无法获取到达时间，跳过时间冲突检测");
-            return List.of();
-        }
+        System.out.println("新票时间 - 出发: " + newInterval.getDeparture() + ", 到达: " + newInterval.getArrival());
         
-        // 计算新票的实际出发和到达日期时间
-        LocalDateTime newDepartureDateTime = LocalDateTime.of(travelDate, newDepartureTime);
-        LocalDateTime newArrivalDateTime = LocalDateTime.of(travelDate, newArrivalTime);
-        
-        // 如果到达时间早于出发时间，说明跨天了
-        if (newArrivalTime.isBefore(newDepartureTime)) {
-            newArrivalDateTime = newArrivalDateTime.plusDays(1);
-            System.out.println("检测到跨天车票，到达时间调整为: " + newArrivalDateTime);
+        // 在乘客行程索引上一次范围查询，取出时间重叠的车票
+        List<Long> overlappingTicketIds = passengerItineraryIndex.findOverlapping(passengerId, newInterval);
+        if (excludeTicketId != null) {
+            overlappingTicketIds.removeIf(excludeTicketId::equals);
+        }
+        if (overlappingTicketIds.isEmpty()) {
+            System.out.println("检测到 0 张冲突车票");
+            return List.of();
         }
         
-        // 获取需要检查的日期范围（新票出发日期前后各1天，以覆盖跨天情况）
-        LocalDate checkStartDate = travelDate.minusDays(1);
-        LocalDate checkEndDate = newArrivalDateTime.toLocalDate();
-        
-        System.out.println("检查日期范围: " + checkStartDate + " 到 " + checkEndDate);
-        
-        // 查询乘客在日期范围内的所有有效车票
-        List<Ticket> allExistingTickets = new ArrayList<>();
-        for (LocalDate date = checkStartDate; !date.isAfter(checkEndDate); date = date.plusDays(1)) {
-            List<Ticket> ticketsForDate;
-            if (excludeTicketId != null) {
-                ticketsForDate = ticketRepository.findValidTicketsByPassengerAndDate(
-                        passengerId, date, excludeTicketId);
-            } else {
-                ticketsForDate = ticketRepository.findValidTicketsByPassengerAndDate(
-                        passengerId, date);
+        // 索引可能滞后于数据库（如其他实例上的退票），回表确认车票仍然有效且时间重叠
+        List<Ticket> conflictTickets = new ArrayList<>();
+        for (Ticket ticket : ticketRepository.findAllById(overlappingTicketIds)) {
+            if (!isValid(ticket)) {
+                passengerItineraryIndex.remove(ticket);
+                continue;
+            }
+            PassengerItineraryIndex.Interval interval = passengerItineraryIndex.intervalOf(ticket);
+            if (passengerId.equals(ticket.getPassengerId()) && interval != null && interval.overlaps(newInterval)) {
+                conflictTickets.add(ticket);
             }
-            System.out.println("日期 " + date + " 找到 " + ticketsForDate.size() + " 张车票");
-            allExistingTickets.addAll(ticketsForDate);
         }
         
-        System.out.println("总共找到 " + allExistingTickets.size() + " 张现有车票");
-        
-        // 创建final变量用于lambda表达式
-        final LocalDateTime finalNewDepartureDateTime = newDepartureDateTime;
-        final LocalDateTime finalNewArrivalDateTime = newArrivalDateTime;
-        
-        // 检查时间冲突
-        List<Ticket> conflictTickets = allExistingTickets.stream()
-                .filter(ticket -> hasTimeConflict(ticket, finalNewDepartureDateTime, finalNewArrivalDateTime))
-                .toList();
-        
         System.out.println("检测到 " + conflictTickets.size() + " 张冲突车票");
         
         return conflictTickets;
@@ -115,56 +93,20 @@ public class TimeConflictService {
     }
     
     /**
-     * 检查两个时间段是否有冲突
-     * 冲突条件：两个时间段有重叠
+     * 待支付、未使用、已使用的车票占用乘客的时间
      */
-    private boolean hasTimeConflict(Ticket existingTicket, LocalDateTime newDepartureDateTime, LocalDateTime newArrivalDateTime) {
-        // 获取现有车票的时间段
-        LocalTime existingDepartureTime = getDepartureTime(existingTicket.getTrainId(), existingTicket.getDepartureStopId());
-        LocalTime existingArrivalTime = getArrivalTime(existingTicket.getTrainId(), existingTicket.getArrivalStopId());
-        
-        if (existingDepartureTime == null || existingArrivalTime == null) {
-            return false; // 无法获取时间信息，不阻止
-        }
-        
-        // 计算现有车票的实际出发和到达日期时间
-        LocalDateTime existingDepartureDateTime = LocalDateTime.of(existingTicket.getTravelDate(), existingDepartureTime);
-        LocalDateTime existingArrivalDateTime = LocalDateTime.of(existingTicket.getTravelDate(), existingArrivalTime);
-        
-        // 如果到达时间早于出发时间，说明跨天了
-        if (existingArrivalTime.isBefore(existingDepartureTime)) {
-            existingArrivalDateTime = existingArrivalDateTime.plusDays(1);
-        }
-        
-        // 检查时间重叠
-        // 情况1：新票的出发时间在现有票的时间段内
-        if (newDepartureDateTime.isAfter(existingDepartureDateTime) && newDepartureDateTime.isBefore(existingArrivalDateTime)) {
-            return true;
-        }
-        
-        // 情况2：新票的到达时间在现有票的时间段内
-        if (newArrivalDateTime.isAfter(existingDepartureDateTime) && newArrivalDateTime.isBefore(existingArrivalDateTime)) {
-            return true;
-        }
-        
-        // 情况3：新票的时间段完全包含现有票的时间段
-        if (newDepartureDateTime.isBefore(existingDepartureDateTime) && newArrivalDateTime.isAfter(existingArrivalDateTime)) {
-            return true;
-        }
-        
-        // 情况4：新票的时间段与现有票的时间段完全重叠
-        if (newDepartureDateTime.equals(existingDepartureDateTime) && newArrivalDateTime.equals(existingArrivalDateTime)) {
-            return true;
-        }
-        
-        return false;
+    private boolean isValid(Ticket ticket) {
+        Byte status = ticket.getTicketStatus();
+        return status != null && (status == TicketStatus.PENDING.getCode()
+                || status == TicketStatus.UNUSED.getCode()
+                || status == TicketStatus.USED.getCode());
     }
     
     /**
      * 获取车次在指定站的出发时间
      */
     private LocalTime getDepartureTime(Integer trainId, Long stopId) {
-        Optional<TrainStop> trainStopOpt = trainStopRepository.findByStopId(stopId);
+        Optional<TrainStop> trainStopOpt = timetableCache.getStop(stopId);
         LocalTime departureTime = trainStopOpt.map(TrainStop::getDepartureTime).orElse(null);
         System.out.println("查询出发时间 - stopId: " + stopId + ", 结果: " + departureTime);
         return departureTime;
@@ -174,7 +116,7 @@ public class TimeConflictService {
      * 获取车次在指定站的到达时间
      */
     private LocalTime getArrivalTime(Integer trainId, Long stopId) {
-        Optional<TrainStop> trainStopOpt = trainStopRepository.findByStopId(stopId);
+        Optional<TrainStop> trainStopOpt = timetableCache.getStop(stopId);
         LocalTime arrivalTime = trainStopOpt.map(TrainStop::getArrivalTime).orElse(null);
         System.out.println("查询到达时间 - stopId: " + stopId + ", 结果: " + arrivalTime);
         return arrivalTime;
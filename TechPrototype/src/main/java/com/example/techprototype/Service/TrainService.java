@@ -2,6 +2,7 @@ package com.example.techprototype.Service;
 
 import com.example.techprototype.Entity.Train;
 import com.example.techprototype.DTO.TrainListDTO;
+import com.example.techprototype.DTO.TrainListPayload;
 import java.time.LocalTime;
 import java.util.List;
 import java.util.Map;
@@ -11,5 +12,6 @@ public interface TrainService {
     List<Train> findTrainsByDepartureTime(LocalTime start, LocalTime end);
     List<Map<String, Object>> findTransferTrains(Integer startStationId, Integer endStationId);
     List<TrainListDTO> getAllTrainListDTO();
+    TrainListPayload getTrainListPayload();
     List<Map<String, Object>> searchTrainsByStations(String fromStation, String toStation, String travelDate);
 }
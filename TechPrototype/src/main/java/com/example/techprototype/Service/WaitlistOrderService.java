@@ -4,6 +4,8 @@ import com.example.techprototype.DTO.BookingRequest;
 import com.example.techprototype.DTO.BookingResponse;
 import com.example.techprototype.DTO.WaitlistOrderResponse;
 import com.example.techprototype.DTO.WaitlistOrderDetailResponse;
+import java.io.IOException;
+import java.io.OutputStream;
 import java.util.List;
 
 public interface WaitlistOrderService {
@@ -14,9 +16,16 @@ public interface WaitlistOrderService {
     BookingResponse createWaitlistOrder(BookingRequest request);
     
     /**
-     * 获取用户的候补订单列表
+     * 分页获取用户的候补订单列表，按下单时间倒序
+     * @param cursor 上一页返回的游标，为空时返回第一页
+     * @param size 页大小，为空时取默认值；游标和页大小都为空时返回全部记录
      */
-    WaitlistOrderResponse getMyWaitlistOrders(Long userId);
+    WaitlistOrderResponse getMyWaitlistOrders(Long userId, String cursor, Integer size);
+    
+    /**
+     * 导出用户的全部候补订单，逐批写出JSON数组
+     */
+    void exportMyWaitlistOrders(Long userId, OutputStream out) throws IOException;
     
     /**
      * 获取候补订单详情
@@ -0,0 +1,62 @@
+package com.example.techprototype.Util;
+
+/**
+ * 单个车次的区间掩码表（不可变）
+ * 按站点数预先生成所有 出发站序号 × 到达站序号 的区间掩码，热路径上查询只是一次数组读取，不分配内存也不打印日志
+ * 返回的掩码数组是共享的，调用方不能修改
+ */
+public final class IntervalMaskTable {
+    
+    private final int stationCount;
+    private final int words;
+    private final long[][] masks;      // 下标 (dep-1)*stationCount + (arr-1)，只有 dep<arr 的位置有值
+    private final long[] emptyMask;    // 无效区间返回的全0掩码
+    
+    private IntervalMaskTable(int stationCount) {
+        this.stationCount = stationCount;
+        this.words = SeatBitmapUtil.wordCount(stationCount);
+        this.masks = new long[stationCount * stationCount][];
+        this.emptyMask = new long[words];
+        for (int dep = 1; dep < stationCount; dep++) {
+            for (int arr = dep + 1; arr <= stationCount; arr++) {
+                masks[(dep - 1) * stationCount + (arr - 1)] = SeatBitmapUtil.generateIntervalMask(dep, arr, words);
+            }
+        }
+    }
+    
+    /**
+     * 根据站点数生成区间掩码表
+     * @param stationCount 车次站点数（最大的sequence_number）
+     */
+    public static IntervalMaskTable build(int stationCount) {
+        return new IntervalMaskTable(Math.max(stationCount, 0));
+    }
+    
+    public int getStationCount() {
+        return stationCount;
+    }
+    
+    /**
+     * 每个掩码的long个数，32站以内为1
+     */
+    public int getWords() {
+        return words;
+    }
+    
+    /**
+     * 查询区间掩码
+     * @param departureSequence 出发站序号
+     * @param arrivalSequence 到达站序号
+     * @return 区间掩码，出发站不早于到达站时返回全0掩码
+     * @throws IllegalArgumentException 站点序号超出车次站点范围
+     */
+    public long[] getMask(int departureSequence, int arrivalSequence) {
+        if (departureSequence >= arrivalSequence) {
+            return emptyMask; // 无效区间
+        }
+        if (departureSequence < 1 || arrivalSequence > stationCount) {
+            throw new IllegalArgumentException("站点序号超出车次站点范围: " + departureSequence + "-" + arrivalSequence + ", 站点数" + stationCount);
+        }
+        return masks[(departureSequence - 1) * stationCount + (arrivalSequence - 1)];
+    }
+}
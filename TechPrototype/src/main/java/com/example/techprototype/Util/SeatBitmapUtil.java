@@ -1,13 +1,15 @@
 package com.example.techprototype.Util;
 
 import java.time.LocalDate;
+import java.util.Arrays;
 
 /**
  * 座位位图管理工具类
  * 用于处理日期和区间的位图操作
- * 全局基准日期：当前日期+1天
- * 日期范围：基准日期 到 基准日期+9天 (date_1 到 date_10)
- * 区间位图：使用最后10位表示区间占用，每个站点用2个bit表示
+ * 日期窗口：今天 到 今天+horizonDays-1，每天自动滚动，不再依赖启动时刻
+ * 日期槽位：按epochDay对horizonDays取模，窗口内每个日期对应唯一的环形缓冲槽位
+ * 区间位图：每个站点用2个bit表示，一个long最多表示32个站点
+ * 超过32个站点的车次使用多字位图 long[]，第k个站点的bit位于全局位置 2*(k-1) 和 2*(k-1)+1
  * 从最低位开始，每2个bit表示一个站点：
  * - 低位：1表示到达该站点
  * - 高位：1表示离开该站点
@@ -15,23 +17,34 @@ import java.time.LocalDate;
  */
 public class SeatBitmapUtil {
     
-    // 全局基准日期 - 动态设置为当前日期加1天
-    public static final LocalDate BASE_DATE = LocalDate.now().plusDays(1);
+    // 单个long能表示的最大站点数
+    public static final int STATIONS_PER_WORD = Long.SIZE / 2;
     
     /**
-     * 将日期转换为对应的日期索引 (1-10)
+     * 判断日期是否在可售窗口内
      * @param date 目标日期
-     * @return 日期索引，如果超出范围返回-1
+     * @param today 当前日期
+     * @param horizonDays 窗口天数
+     * @return true表示在窗口内
      */
-    public static int getDateIndex(LocalDate date) {
-        if (date.isBefore(BASE_DATE) || date.isAfter(BASE_DATE.plusDays(9))) {
-            return -1; // 超出范围
-        }
-        return (int) (date.toEpochDay() - BASE_DATE.toEpochDay() + 1);
+    public static boolean isWithinWindow(LocalDate date, LocalDate today, int horizonDays) {
+        return !date.isBefore(today) && date.isBefore(today.plusDays(horizonDays));
+    }
+    
+    /**
+     * 将日期转换为环形缓冲中的槽位下标 (0 到 horizonDays-1)
+     * 窗口内的日期两两不同槽，过期日期与 过期日期+horizonDays 共用同一槽位
+     * @param date 目标日期
+     * @param horizonDays 窗口天数
+     * @return 槽位下标
+     */
+    public static int getSlotIndex(LocalDate date, int horizonDays) {
+        return (int) Math.floorMod(date.toEpochDay(), (long) horizonDays);
     }
     
     /**
      * 根据出发站和到达站的sequence_number生成区间掩码
+     * 热路径请使用车次的IntervalMaskTable，避免重复计算
      * @param departureSequence 出发站序号
      * @param arrivalSequence 到达站序号
      * @return 区间掩码
@@ -40,128 +53,110 @@ public class SeatBitmapUtil {
         if (departureSequence >= arrivalSequence) {
             return 0L; // 无效区间
         }
-        
-        long mask = 0L;
-        
-        // 设置出发站：高位为1（离开）
-        // 出发站的bit位置：2*(departureSequence-1) 和 2*(departureSequence-1)+1
-        int departureLowBit = 2 * (departureSequence - 1);
-        int departureHighBit = 2 * (departureSequence - 1) + 1;
-        mask |= (1L << departureHighBit); // 高位为1（离开）
-        
-        // 设置到达站：低位为1（到达）
-        // 到达站的bit位置：2*(arrivalSequence-1) 和 2*(arrivalSequence-1)+1
-        int arrivalLowBit = 2 * (arrivalSequence - 1);
-        int arrivalHighBit = 2 * (arrivalSequence - 1) + 1;
-        mask |= (1L << arrivalLowBit); // 低位为1（到达）
-        
-        // 设置中间站点：两个bit都为1（经过）
-        for (int i = departureSequence + 1; i < arrivalSequence; i++) {
-            int lowBit = 2 * (i - 1);
-            int highBit = 2 * (i - 1) + 1;
-            mask |= (1L << lowBit);     // 低位（到达）
-            mask |= (1L << highBit);    // 高位（离开）
+        if (arrivalSequence > STATIONS_PER_WORD) {
+            throw new IllegalArgumentException("站点序号超过" + STATIONS_PER_WORD + "，请使用多字区间掩码: " + arrivalSequence);
         }
         
-        System.out.println("生成区间掩码 - 出发序号:" + departureSequence + 
-                         ", 到达序号:" + arrivalSequence + 
-                         ", 掩码:" + mask + 
-                         ", 二进制:" + Long.toBinaryString(mask));
-        
+        // 区间bit连续：出发站高位 2*dep-1 到到达站低位 2*arr-2，含中间站点的两个bit
+        int lowBit = 2 * departureSequence - 1;
+        int highBit = 2 * arrivalSequence - 2;
+        return (-1L << lowBit) & (-1L >>> (Long.SIZE - 1 - highBit));
+    }
+    
+    /**
+     * 计算表示指定站点数所需的long个数，至少为1
+     * @param stationCount 车次站点数
+     * @return 位图字数
+     */
+    public static int wordCount(int stationCount) {
+        return Math.max(1, (2 * stationCount + Long.SIZE - 1) / Long.SIZE);
+    }
+    
+    /**
+     * 生成多字区间掩码
+     * @param departureSequence 出发站序号
+     * @param arrivalSequence 到达站序号
+     * @param words 位图字数
+     * @return 区间掩码
+     */
+    public static long[] generateIntervalMask(int departureSequence, int arrivalSequence, int words) {
+        long[] mask = new long[words];
+        fillIntervalMask(mask, departureSequence, arrivalSequence);
         return mask;
     }
     
     /**
-     * 检查座位在指定日期和区间是否可用
-     * @param seat 座位对象
-     * @param date 目标日期
-     * @param intervalMask 区间掩码
-     * @return true表示可用，false表示不可用
+     * 将区间掩码写入已有数组，不分配内存
+     * 区间掩码的bit是连续的：从出发站的高位 2*dep-1 到到达站的低位 2*arr-2，按字整块填充
+     * @param target 目标数组，长度即位图字数
+     * @param departureSequence 出发站序号
+     * @param arrivalSequence 到达站序号
      */
-    public static boolean isSeatAvailable(com.example.techprototype.Entity.Seat seat, LocalDate date, long intervalMask) {
-        int dateIndex = getDateIndex(date);
-        if (dateIndex == -1) {
-            return false; // 日期超出范围
+    public static void fillIntervalMask(long[] target, int departureSequence, int arrivalSequence) {
+        Arrays.fill(target, 0L);
+        if (departureSequence >= arrivalSequence) {
+            return; // 无效区间
+        }
+        int lowBit = 2 * departureSequence - 1;   // 出发站高位（离开）
+        int highBit = 2 * arrivalSequence - 2;    // 到达站低位（到达）
+        int lowWord = lowBit / Long.SIZE;
+        int highWord = highBit / Long.SIZE;
+        if (highWord >= target.length) {
+            throw new IllegalArgumentException("站点序号超过位图容量: " + arrivalSequence + " > " + target.length * STATIONS_PER_WORD);
+        }
+        for (int w = lowWord; w <= highWord; w++) {
+            long word = -1L;
+            if (w == lowWord) {
+                word &= -1L << (lowBit % Long.SIZE);
+            }
+            if (w == highWord) {
+                word &= -1L >>> (Long.SIZE - 1 - highBit % Long.SIZE);
+            }
+            target[w] = word;
         }
-        
-        long currentBitmap = getDateBitmap(seat, dateIndex);
-        return (currentBitmap & intervalMask) == 0; // 没有冲突
     }
     
     /**
-     * 锁定座位（设置区间占用）
-     * @param seat 座位对象
-     * @param date 目标日期
+     * 检查位图在区间上是否可用
+     * @param bitmap 座位当天的占用位图
      * @param intervalMask 区间掩码
+     * @return true表示可用，false表示不可用
      */
-    public static void lockSeat(com.example.techprototype.Entity.Seat seat, LocalDate date, long intervalMask) {
-        int dateIndex = getDateIndex(date);
-        if (dateIndex == -1) {
-            return; // 日期超出范围
-        }
-        
-        long currentBitmap = getDateBitmap(seat, dateIndex);
-        long newBitmap = currentBitmap | intervalMask; // OR操作设置占用
-        setDateBitmap(seat, dateIndex, newBitmap);
+    public static boolean isAvailable(long bitmap, long intervalMask) {
+        return (bitmap & intervalMask) == 0; // 没有冲突
     }
     
     /**
-     * 释放座位（清除区间占用）
-     * @param seat 座位对象
-     * @param date 目标日期
+     * 检查多字位图在区间上是否可用
+     * 按字做AND，32站以内只比较一次
+     * @param bitmap 位图数组
+     * @param offset 座位位图在数组中的起始下标
      * @param intervalMask 区间掩码
+     * @return true表示可用，false表示不可用
      */
-    public static void releaseSeat(com.example.techprototype.Entity.Seat seat, LocalDate date, long intervalMask) {
-        int dateIndex = getDateIndex(date);
-        if (dateIndex == -1) {
-            return; // 日期超出范围
+    public static boolean isAvailable(long[] bitmap, int offset, long[] intervalMask) {
+        long conflict = 0L;
+        for (int w = 0; w < intervalMask.length; w++) {
+            conflict |= bitmap[offset + w] & intervalMask[w];
         }
-        
-        long currentBitmap = getDateBitmap(seat, dateIndex);
-        long newBitmap = currentBitmap & (~intervalMask); // AND操作清除占用
-        setDateBitmap(seat, dateIndex, newBitmap);
+        return conflict == 0;
     }
     
     /**
-     * 获取指定日期的位图值
-     * @param seat 座位对象
-     * @param dateIndex 日期索引 (1-10)
-     * @return 位图值
+     * 锁定多字位图的区间（OR操作设置占用）
      */
-    private static long getDateBitmap(com.example.techprototype.Entity.Seat seat, int dateIndex) {
-        switch (dateIndex) {
-            case 1: return seat.getDate1();
-            case 2: return seat.getDate2();
-            case 3: return seat.getDate3();
-            case 4: return seat.getDate4();
-            case 5: return seat.getDate5();
-            case 6: return seat.getDate6();
-            case 7: return seat.getDate7();
-            case 8: return seat.getDate8();
-            case 9: return seat.getDate9();
-            case 10: return seat.getDate10();
-            default: return 0L;
+    public static void lock(long[] bitmap, int offset, long[] intervalMask) {
+        for (int w = 0; w < intervalMask.length; w++) {
+            bitmap[offset + w] |= intervalMask[w];
         }
     }
     
     /**
-     * 设置指定日期的位图值
-     * @param seat 座位对象
-     * @param dateIndex 日期索引 (1-10)
-     * @param bitmap 位图值
+     * 释放多字位图的区间（AND操作清除占用）
      */
-    private static void setDateBitmap(com.example.techprototype.Entity.Seat seat, int dateIndex, long bitmap) {
-        switch (dateIndex) {
-            case 1: seat.setDate1(bitmap); break;
-            case 2: seat.setDate2(bitmap); break;
-            case 3: seat.setDate3(bitmap); break;
-            case 4: seat.setDate4(bitmap); break;
-            case 5: seat.setDate5(bitmap); break;
-            case 6: seat.setDate6(bitmap); break;
-            case 7: seat.setDate7(bitmap); break;
-            case 8: seat.setDate8(bitmap); break;
-            case 9: seat.setDate9(bitmap); break;
-            case 10: seat.setDate10(bitmap); break;
+    public static void release(long[] bitmap, int offset, long[] intervalMask) {
+        for (int w = 0; w < intervalMask.length; w++) {
+            bitmap[offset + w] &= ~intervalMask[w];
         }
     }
     
@@ -171,30 +166,36 @@ public class SeatBitmapUtil {
      * @return 可读的字符串，如 "站点1离开,站点2到达"
      */
     public static String bitmapToString(long bitmap) {
+        return bitmapToString(new long[]{bitmap});
+    }
+    
+    /**
+     * 将多字位图转换为可读的字符串
+     * @param bitmap 位图数组
+     * @return 可读的字符串，如 "站点1离开,站点2经过,站点3到达"
+     */
+    public static String bitmapToString(long[] bitmap) {
         StringBuilder sb = new StringBuilder();
-        boolean first = true;
         
         // 检查每个站点的2个bit
-        for (int i = 1; i <= 5; i++) { // 假设最多5个站点
-            int lowBit = 2 * i - 1;
-            int highBit = 2 * i;
-            
-            boolean hasArrival = (bitmap & (1L << lowBit)) != 0;
-            boolean hasDeparture = (bitmap & (1L << highBit)) != 0;
+        for (int station = 1; station <= bitmap.length * STATIONS_PER_WORD; station++) {
+            int lowBit = 2 * (station - 1);
+            long word = bitmap[lowBit / Long.SIZE];
+            boolean hasArrival = (word & (1L << (lowBit % Long.SIZE))) != 0;
+            boolean hasDeparture = (word & (1L << (lowBit % Long.SIZE + 1))) != 0;
             
             if (hasArrival || hasDeparture) {
-                if (!first) sb.append(",");
+                if (sb.length() > 0) sb.append(",");
                 if (hasArrival && hasDeparture) {
-                    sb.append("站点").append(i).append("经过");
+                    sb.append("站点").append(station).append("经过");
                 } else if (hasArrival) {
-                    sb.append("站点").append(i).append("到达");
-                } else if (hasDeparture) {
-                    sb.append("站点").append(i).append("离开");
+                    sb.append("站点").append(station).append("到达");
+                } else {
+                    sb.append("站点").append(station).append("离开");
                 }
-                first = false;
             }
         }
         
         return sb.length() == 0 ? "无占用" : sb.toString();
     }
-} 
\ No newline at end of file
+}
@@ -0,0 +1,160 @@
+package com.example.techprototype.Component;
+
+import com.example.techprototype.Util.HistoryCursor;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class HistoryPagerTest {
+
+    private HistoryPager historyPager;
+
+    // 按（时间，ID）倒序排列的历史记录，其中两条时间相同
+    private final List<Row> rows = new ArrayList<>();
+    // 每次查询的起始位置和行数
+    private final List<String> queries = new ArrayList<>();
+
+    private record Row(LocalDateTime time, long id) {
+    }
+
+    @BeforeEach
+    void setUp() {
+        historyPager = new HistoryPager();
+        ReflectionTestUtils.setField(historyPager, "objectMapper", new ObjectMapper());
+        LocalDateTime base = LocalDateTime.of(2025, 7, 1, 8, 0);
+        for (long id = 7; id >= 1; id--) {
+            LocalDateTime time = id == 4 ? base.plusMinutes(3) : base.plusMinutes(id);
+            rows.add(new Row(time, id));
+        }
+        rows.sort((a, b) -> a.time().equals(b.time()) ? Long.compare(b.id(), a.id()) : b.time().compareTo(a.time()));
+    }
+
+    private List<Row> fetch(HistoryCursor after, int limit) {
+        queries.add((after == null ? "first" : "after" + after.getId()) + ":" + limit);
+        return rows.stream()
+                .filter(row -> after == null || row.time().isBefore(after.getTime())
+                        || (row.time().equals(after.getTime()) && row.id() < after.getId()))
+                .limit(limit)
+                .collect(Collectors.toList());
+    }
+
+    private HistoryCursor keyOf(Row row) {
+        return new HistoryCursor(row.time(), row.id());
+    }
+
+    private List<Long> ids(List<Row> page) {
+        return page.stream().map(Row::id).collect(Collectors.toList());
+    }
+
+    @Test
+    void testPage_WalksHistoryWithCursor() {
+        HistoryPager.Page<Row> first = historyPager.page(null, 3, this::fetch, this::keyOf);
+        assertEquals(List.of(7L, 6L, 5L), ids(first.getItems()));
+        assertNotNull(first.getNextCursor());
+
+        // 车票4和3的时间相同，按ID区分先后，翻页不重复也不遗漏
+        HistoryPager.Page<Row> second = historyPager.page(first.getNextCursor(), 3, this::fetch, this::keyOf);
+        assertEquals(List.of(4L, 3L, 2L), ids(second.getItems()));
+
+        HistoryPager.Page<Row> last = historyPager.page(second.getNextCursor(), 3, this::fetch, this::keyOf);
+        assertEquals(List.of(1L), ids(last.getItems()));
+        assertNull(last.getNextCursor());
+
+        // 每页只多读一行
+        assertEquals(List.of("first:4", "after5:4", "after2:4"), queries);
+    }
+
+    @Test
+    void testPage_NoCursorOrSizeReturnsAllRows() {
+        ReflectionTestUtils.setField(historyPager, "exportBatchSize", 3);
+
+        HistoryPager.Page<Row> all = historyPager.page(null, null, this::fetch, this::keyOf);
+
+        assertEquals(List.of(7L, 6L, 5L, 4L, 3L, 2L, 1L), ids(all.getItems()));
+        assertNull(all.getNextCursor());
+        assertEquals(List.of("first:3", "after5:3", "after2:3"), queries);
+    }
+
+    @Test
+    void testPage_CursorWithoutSizeUsesDefaultSize() {
+        ReflectionTestUtils.setField(historyPager, "defaultPageSize", 2);
+        HistoryPager.Page<Row> first = historyPager.page(null, 2, this::fetch, this::keyOf);
+
+        HistoryPager.Page<Row> second = historyPager.page(first.getNextCursor(), null, this::fetch, this::keyOf);
+
+        assertEquals(List.of(5L, 4L), ids(second.getItems()));
+        assertNotNull(second.getNextCursor());
+    }
+
+    @Test
+    void testPage_ExactlyOnePageHasNoNextCursor() {
+        HistoryPager.Page<Row> page = historyPager.page(null, 7, this::fetch, this::keyOf);
+
+        assertEquals(7, page.getItems().size());
+        assertNull(page.getNextCursor());
+    }
+
+    @Test
+    void testPage_InvalidCursor() {
+        assertThrows(IllegalArgumentException.class,
+                () -> historyPager.page("not-a-cursor", 3, this::fetch, this::keyOf));
+        assertTrue(queries.isEmpty());
+    }
+
+    @Test
+    void testPageSize_DefaultAndLimit() {
+        assertEquals(20, historyPager.pageSize(null));
+        assertEquals(20, historyPager.pageSize(0));
+        assertEquals(5, historyPager.pageSize(5));
+        assertEquals(100, historyPager.pageSize(10000));
+    }
+
+    @Test
+    void testCursor_RoundTrip() {
+        HistoryCursor cursor = new HistoryCursor(LocalDateTime.of(2025, 7, 1, 8, 30, 15, 123000000), 42L);
+
+        HistoryCursor decoded = HistoryCursor.decode(cursor.encode());
+
+        assertEquals(cursor.getTime(), decoded.getTime());
+        assertEquals(42L, decoded.getId());
+        assertNull(HistoryCursor.decode(null));
+        assertNull(HistoryCursor.decode(" "));
+    }
+
+    @Test
+    void testExport_WritesAllRowsBatchByBatch() throws Exception {
+        ReflectionTestUtils.setField(historyPager, "exportBatchSize", 3);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        // 转换时跳过车票5，模拟没有订单的车票
+        historyPager.export(out, this::fetch, this::keyOf, batch -> batch.stream()
+                .filter(row -> row.id() != 5)
+                .map(row -> "row" + row.id())
+                .collect(Collectors.toList()));
+
+        assertEquals("[\"row7\",\"row6\",\"row4\",\"row3\",\"row2\",\"row1\"]",
+                new String(out.toByteArray(), StandardCharsets.UTF_8));
+        assertEquals(List.of("first:3", "after5:3", "after2:3"), queries);
+    }
+
+    @Test
+    void testExport_EmptyHistory() throws Exception {
+        rows.clear();
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        historyPager.export(out, this::fetch, this::keyOf, batch -> batch);
+
+        assertEquals("[]", new String(out.toByteArray(), StandardCharsets.UTF_8));
+        assertEquals(List.of("first:500"), queries);
+    }
+}
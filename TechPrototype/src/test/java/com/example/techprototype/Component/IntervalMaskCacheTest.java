@@ -0,0 +1,109 @@
+package com.example.techprototype.Component;
+
+import com.example.techprototype.Entity.Station;
+import com.example.techprototype.Entity.Train;
+import com.example.techprototype.Entity.TrainStop;
+import com.example.techprototype.Util.IntervalMaskTable;
+import com.example.techprototype.Util.SeatBitmapUtil;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class IntervalMaskCacheTest {
+
+    @InjectMocks
+    private IntervalMaskCache intervalMaskCache;
+
+    @Mock
+    private TimetableCache timetableCache;
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.openMocks(this);
+    }
+
+    private List<TrainStop> createStops(Integer trainId, int count) {
+        List<TrainStop> stops = new ArrayList<>();
+        for (int i = 1; i <= count; i++) {
+            TrainStop stop = new TrainStop();
+            stop.setStopId((long) trainId * 100 + i);
+            stop.setTrainId(trainId);
+            stop.setStationId(i);
+            stop.setSequenceNumber(i);
+            stops.add(stop);
+        }
+        return stops;
+    }
+
+    private Train createTrain(Integer trainId) {
+        Train train = new Train();
+        train.setTrainId(trainId);
+        return train;
+    }
+
+    @Test
+    void testGetTable_LoadsOnce() {
+        // Given
+        when(timetableCache.getStops(1)).thenReturn(createStops(1, 5));
+
+        // When
+        IntervalMaskTable first = intervalMaskCache.getTable(1);
+        IntervalMaskTable second = intervalMaskCache.getTable(1);
+
+        // Then
+        assertSame(first, second);
+        assertEquals(5, first.getStationCount());
+        assertEquals(SeatBitmapUtil.generateIntervalMask(1, 3), intervalMaskCache.getMask(1, 1, 3)[0]);
+        verify(timetableCache, times(1)).getStops(1);
+    }
+
+    @Test
+    void testEvict_ReloadsChangedTimetable() {
+        // Given - 时刻表从5站改为40站
+        when(timetableCache.getStops(1))
+                .thenReturn(createStops(1, 5))
+                .thenReturn(createStops(1, 40));
+        assertEquals(1, intervalMaskCache.getTable(1).getWords());
+
+        // When
+        intervalMaskCache.evict(1);
+
+        // Then
+        IntervalMaskTable table = intervalMaskCache.getTable(1);
+        assertEquals(40, table.getStationCount());
+        assertEquals(2, table.getWords());
+    }
+
+    @Test
+    void testLoadAll_GroupsStopsByTrain() {
+        // Given
+        List<TrainStop> stops = new ArrayList<>(createStops(1, 5));
+        stops.addAll(createStops(2, 40));
+        List<Station> stations = new ArrayList<>();
+        for (int i = 1; i <= 40; i++) {
+            Station station = new Station();
+            station.setStationId(i);
+            stations.add(station);
+        }
+        TimetableSnapshot snapshot = TimetableSnapshot.build(1,
+                List.of(createTrain(1), createTrain(2), createTrain(3)), stops, stations);
+        when(timetableCache.getSnapshot()).thenReturn(snapshot);
+
+        // When
+        int loaded = intervalMaskCache.loadAll();
+
+        // Then - 没有停靠站的车次不生成，全部命中缓存，不再逐个车次查询
+        assertEquals(2, loaded);
+        assertEquals(5, intervalMaskCache.getTable(1).getStationCount());
+        assertEquals(40, intervalMaskCache.getTable(2).getStationCount());
+        verify(timetableCache, never()).getStops(any());
+    }
+}
@@ -0,0 +1,102 @@
+package com.example.techprototype.Component;
+
+import com.example.techprototype.DTO.OrderMessage;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.amqp.core.Message;
+import org.springframework.amqp.rabbit.core.RabbitOperations;
+import org.springframework.amqp.rabbit.core.RabbitTemplate;
+import org.springframework.amqp.support.converter.MessageConverter;
+
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class OrderPartitionConsumersTest {
+
+    @InjectMocks
+    private OrderPartitionConsumers orderPartitionConsumers;
+
+    @Mock
+    private MessageConverter jsonMessageConverter;
+
+    @Mock
+    private RabbitTemplate rabbitTemplate;
+
+    @Mock
+    private RabbitOperations rabbitOperations;
+
+    @Mock
+    private OrderPartitioner orderPartitioner;
+
+    @Mock
+    private OrderProcessor orderProcessor;
+
+    private final LocalDate travelDate = LocalDate.of(2025, 7, 1);
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.openMocks(this);
+        // 车次1属于分区0，车次2属于分区1
+        when(orderPartitioner.partitionOf(1, travelDate)).thenReturn(0);
+        when(orderPartitioner.partitionOf(2, travelDate)).thenReturn(1);
+        when(orderPartitioner.routingKey(2, travelDate)).thenReturn("order.create.1");
+        when(rabbitTemplate.invoke(any())).thenAnswer(invocation -> {
+            RabbitOperations.OperationsCallback<?> callback = invocation.getArgument(0);
+            return callback.doInRabbit(rabbitOperations);
+        });
+    }
+
+    private Message createMessage(String orderNumber, Integer trainId) {
+        Message message = new Message(orderNumber.getBytes());
+        OrderMessage orderMessage = new OrderMessage();
+        orderMessage.setOrderNumber(orderNumber);
+        orderMessage.setTrainId(trainId);
+        orderMessage.setTravelDate(travelDate);
+        when(jsonMessageConverter.fromMessage(message)).thenReturn(orderMessage);
+        return message;
+    }
+
+    @Test
+    void testOnMessages_OwnedMessagesProcessed() {
+        orderPartitionConsumers.onMessages(0, Arrays.asList(createMessage("O1", 1), createMessage("O2", 1)));
+
+        verify(orderProcessor).processOrders(argThat(orders -> orders.size() == 2));
+        verifyNoInteractions(rabbitTemplate);
+    }
+
+    @Test
+    void testOnMessages_MisroutedMessagesForwardedToOwningPartition() {
+        orderPartitionConsumers.onMessages(0, Arrays.asList(createMessage("O1", 1), createMessage("O2", 2)));
+
+        verify(rabbitOperations).convertAndSend(eq("order.exchange"), eq("order.create.1"),
+                (Object) argThat(message -> "O2".equals(((OrderMessage) message).getOrderNumber())));
+        verify(rabbitOperations).waitForConfirmsOrDie(anyLong());
+        verify(orderProcessor).processOrders(argThat(orders -> orders.size() == 1 && "O1".equals(orders.get(0).getOrderNumber())));
+    }
+
+    @Test
+    void testOnMessages_LegacyQueueForwardsEverything() {
+        orderPartitionConsumers.onMessages(OrderPartitionConsumers.LEGACY_PARTITION, List.of(createMessage("O2", 2)));
+
+        verify(rabbitOperations).convertAndSend(eq("order.exchange"), eq("order.create.1"), any(Object.class));
+        verify(orderProcessor, never()).processOrders(anyList());
+    }
+
+    @Test
+    void testOnMessages_ForwardUnconfirmed_BatchRejected() {
+        doThrow(new RuntimeException("nack")).when(rabbitOperations).waitForConfirmsOrDie(anyLong());
+
+        // 转发未确认时整批抛出，由容器重新入队
+        assertThrows(RuntimeException.class,
+                () -> orderPartitionConsumers.onMessages(0, Arrays.asList(createMessage("O1", 1), createMessage("O2", 2))));
+        verify(orderProcessor, never()).processOrders(anyList());
+    }
+}
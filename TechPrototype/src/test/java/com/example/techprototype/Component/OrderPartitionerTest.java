@@ -0,0 +1,78 @@
+package com.example.techprototype.Component;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.LocalDate;
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class OrderPartitionerTest {
+
+    private OrderPartitioner createPartitioner(int partitionCount, int drainCount) {
+        OrderPartitioner partitioner = new OrderPartitioner();
+        ReflectionTestUtils.setField(partitioner, "partitionCount", partitionCount);
+        ReflectionTestUtils.setField(partitioner, "drainCount", drainCount);
+        partitioner.init();
+        return partitioner;
+    }
+
+    @Test
+    void testPartitionOf_StableAndInRange() {
+        OrderPartitioner partitioner = createPartitioner(8, 0);
+        LocalDate date = LocalDate.of(2025, 7, 1);
+
+        int partition = partitioner.partitionOf(1, date);
+
+        assertEquals(partition, partitioner.partitionOf(1, date));
+        assertEquals(partition, createPartitioner(8, 0).partitionOf(1, date));
+        assertTrue(partition >= 0 && partition < 8);
+        assertEquals("order.create." + partition, partitioner.routingKey(1, date));
+        assertEquals("order.queue." + partition, partitioner.queueName(partition));
+    }
+
+    @Test
+    void testPartitionOf_SpreadsTrainsAcrossPartitions() {
+        OrderPartitioner partitioner = createPartitioner(8, 0);
+        Set<Integer> used = new HashSet<>();
+
+        for (int trainId = 1; trainId <= 200; trainId++) {
+            used.add(partitioner.partitionOf(trainId, LocalDate.of(2025, 7, 1)));
+        }
+
+        assertEquals(8, used.size());
+    }
+
+    @Test
+    void testPartitionOf_AddingPartitionMovesFewKeys() {
+        OrderPartitioner before = createPartitioner(8, 0);
+        OrderPartitioner after = createPartitioner(9, 0);
+        int moved = 0;
+        int total = 0;
+
+        for (int trainId = 1; trainId <= 500; trainId++) {
+            for (int day = 1; day <= 4; day++) {
+                LocalDate date = LocalDate.of(2025, 7, day);
+                int oldPartition = before.partitionOf(trainId, date);
+                int newPartition = after.partitionOf(trainId, date);
+                if (oldPartition != newPartition) {
+                    moved++;
+                    // 一致性哈希下只会迁移到新增的分区
+                    assertEquals(8, newPartition);
+                }
+                total++;
+            }
+        }
+
+        // 期望迁移约 1/9
+        assertTrue(moved < total / 5, "迁移的车次日期过多: " + moved + "/" + total);
+    }
+
+    @Test
+    void testGetConsumedPartitionCount_IncludesDrainingPartitions() {
+        assertEquals(8, createPartitioner(8, 0).getConsumedPartitionCount());
+        assertEquals(8, createPartitioner(6, 8).getConsumedPartitionCount());
+    }
+}
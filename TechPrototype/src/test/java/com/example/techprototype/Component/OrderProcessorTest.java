@@ -3,12 +3,9 @@ package com.example.techprototype.Component;
 import com.example.techprototype.DTO.OrderMessage;
 import com.example.techprototype.Entity.Order;
 import com.example.techprototype.Entity.Ticket;
-import com.example.techprototype.Entity.TicketInventory;
-import com.example.techprototype.Repository.OrderRepository;
-import com.example.techprototype.Repository.TicketRepository;
 import com.example.techprototype.Service.SeatService;
 import com.example.techprototype.Service.RedisService;
-import com.example.techprototype.DAO.TicketInventoryDAO;
+import com.example.techprototype.DAO.OrderBatchDAO;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.mockito.InjectMocks;
@@ -17,8 +14,9 @@ import org.mockito.MockitoAnnotations;
 
 import java.math.BigDecimal;
 import java.time.LocalDate;
-import java.time.LocalDateTime;
 import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
 import java.util.Optional;
 
 import static org.junit.jupiter.api.Assertions.*;
@@ -31,23 +29,21 @@ class OrderProcessorTest {
     private OrderProcessor orderProcessor;
     
     @Mock
-    private OrderRepository orderRepository;
-    
-    @Mock
-    private TicketRepository ticketRepository;
+    private SeatService seatService;
     
     @Mock
-    private SeatService seatService;
+    private TicketPriceCache ticketPriceCache;
     
     @Mock
-    private TicketInventoryDAO ticketInventoryDAO;
+    private OrderBatchDAO orderBatchDAO;
     
     @Mock
     private RedisService redisService;
+
+    @Mock
+    private PassengerItineraryIndex passengerItineraryIndex;
     
     private OrderMessage orderMessage;
-    private Order savedOrder;
-    private TicketInventory inventory;
     
     @BeforeEach
     void setUp() {
@@ -66,125 +62,158 @@ class OrderProcessorTest {
         passengerInfo.setTicketType((byte) 1);
         passengerInfo.setCarriageTypeId(1);
         orderMessage.setPassengers(Arrays.asList(passengerInfo));
+    }
+    
+    private void givenNewOrders() {
+        when(ticketPriceCache.getBasePrice(anyInt(), anyLong(), anyLong(), any(LocalDate.class), anyInt()))
+            .thenReturn(Optional.of(new BigDecimal(100)));
+        when(orderBatchDAO.findExistingOrderNumbers(anyCollection())).thenReturn(new HashSet<>());
+    }
+    
+    @Test
+    void testProcessOrders_InventoryNotFound_UseDefaultPrice() {
+        when(ticketPriceCache.getBasePrice(anyInt(), anyLong(), anyLong(), any(LocalDate.class), anyInt()))
+            .thenReturn(Optional.empty());
+        when(orderBatchDAO.findExistingOrderNumbers(anyCollection())).thenReturn(new HashSet<>());
         
-        savedOrder = new Order();
-        savedOrder.setOrderId(1L);
-        savedOrder.setOrderNumber("ORD123456");
-        savedOrder.setUserId(1L);
-        savedOrder.setOrderStatus((byte)0);
-        savedOrder.setTotalAmount(new BigDecimal(100));
-        savedOrder.setTicketCount(1);
-        
-        inventory = new TicketInventory();
-        inventory.setPrice(new BigDecimal(100));
-        inventory.setAvailableSeats(50);
+        assertDoesNotThrow(() -> orderProcessor.processOrders(Arrays.asList(orderMessage)));
+        
+        verify(orderBatchDAO).insertOrdersWithTickets(
+            argThat(orders -> orders.get(0).getTotalAmount().compareTo(new BigDecimal(100)) == 0), anyMap());
     }
     
     @Test
-    void testProcessOrder_Success() {
-        when(orderRepository.save(any(Order.class))).thenReturn(savedOrder);
-        when(ticketInventoryDAO.findByKey(anyInt(), anyLong(), anyLong(), any(LocalDate.class), anyInt()))
-            .thenReturn(Optional.of(inventory));
-        when(ticketRepository.saveAll(anyList())).thenReturn(Arrays.asList(new Ticket()));
-        doNothing().when(seatService).assignSeat(any(Ticket.class));
-        
-        assertDoesNotThrow(() -> orderProcessor.processOrder(orderMessage));
-        
-        verify(orderRepository).save(any(Order.class));
-        verify(ticketRepository).saveAll(anyList());
-        verify(seatService).assignSeat(any(Ticket.class));
+    void testProcessOrders_StudentTicket_DiscountApplied() {
+        orderMessage.setPassengers(Arrays.asList(new OrderMessage.PassengerInfo(102L, (byte) 3, 1)));
+        givenNewOrders();
+        
+        orderProcessor.processOrders(Arrays.asList(orderMessage));
+        
+        verify(orderBatchDAO).insertOrdersWithTickets(
+            argThat(orders -> orders.get(0).getTotalAmount().compareTo(new BigDecimal(80)) == 0), anyMap());
+    }
+    
+    @Test
+    void testProcessOrders_MultiplePassengers_CalculateTotalCorrectly() {
+        orderMessage.setPassengers(Arrays.asList(
+            new OrderMessage.PassengerInfo(100L, (byte) 1, 1),
+            new OrderMessage.PassengerInfo(101L, (byte) 2, 1)));
+        givenNewOrders();
+        
+        orderProcessor.processOrders(Arrays.asList(orderMessage));
+        
+        // 多名乘客一次批量选座
+        verify(seatService, times(1)).assignSeats(argThat(tickets -> tickets.size() == 2));
+        verify(seatService, never()).assignSeat(any(Ticket.class));
+        // 成人票100 + 儿童票50，每名乘客只查一次票价
+        verify(orderBatchDAO).insertOrdersWithTickets(
+            argThat(orders -> orders.get(0).getTotalAmount().compareTo(new BigDecimal(150)) == 0
+                && orders.get(0).getTicketCount() == 2), anyMap());
+        verify(ticketPriceCache, times(2)).getBasePrice(anyInt(), anyLong(), anyLong(), any(LocalDate.class), anyInt());
+    }
+    
+    private OrderMessage createOrderMessage(String orderNumber) {
+        OrderMessage message = new OrderMessage();
+        message.setUserId(1L);
+        message.setTrainId(1);
+        message.setDepartureStopId(100L);
+        message.setArrivalStopId(200L);
+        message.setTravelDate(LocalDate.of(2025, 1, 1));
+        message.setOrderNumber(orderNumber);
+        message.setPassengers(Arrays.asList(new OrderMessage.PassengerInfo(100L, (byte) 1, 1)));
+        return message;
+    }
+    
+    @Test
+    void testProcessOrders_BatchInsertedOnce() {
+        when(ticketPriceCache.getBasePrice(anyInt(), anyLong(), anyLong(), any(LocalDate.class), anyInt()))
+            .thenReturn(Optional.of(new BigDecimal(100)));
+        when(orderBatchDAO.findExistingOrderNumbers(anyCollection())).thenReturn(new HashSet<>());
+        
+        orderProcessor.processOrders(Arrays.asList(createOrderMessage("O1"), createOrderMessage("O2"), createOrderMessage("O3")));
+        
+        // 整批一次选座、一次插入
+        verify(seatService, times(1)).assignSeats(argThat(tickets -> tickets.size() == 3));
+        verify(orderBatchDAO, times(1)).insertOrdersWithTickets(argThat(orders -> orders.size() == 3), anyMap());
+        // 提交后整批车票写入行程索引
+        verify(passengerItineraryIndex).add(argThat((List<Ticket> tickets) -> tickets.size() == 3));
         verify(redisService, never()).incrStock(anyInt(), anyLong(), anyLong(), any(LocalDate.class), anyInt(), anyInt());
     }
     
     @Test
-    void testProcessOrder_InventoryNotFound_UseDefaultPrice() {
-        when(orderRepository.save(any(Order.class))).thenReturn(savedOrder);
-        when(ticketInventoryDAO.findByKey(anyInt(), anyLong(), anyLong(), any(LocalDate.class), anyInt()))
-            .thenReturn(Optional.empty());
-        when(ticketRepository.saveAll(anyList())).thenReturn(Arrays.asList(new Ticket()));
-        doNothing().when(seatService).assignSeat(any(Ticket.class));
+    void testProcessOrders_DuplicatesSkipped() {
+        when(ticketPriceCache.getBasePrice(anyInt(), anyLong(), anyLong(), any(LocalDate.class), anyInt()))
+            .thenReturn(Optional.of(new BigDecimal(100)));
+        when(orderBatchDAO.findExistingOrderNumbers(anyCollection())).thenReturn(new HashSet<>(List.of("O1")));
         
-        assertDoesNotThrow(() -> orderProcessor.processOrder(orderMessage));
+        // O1已创建，O2在批内重复
+        orderProcessor.processOrders(Arrays.asList(createOrderMessage("O1"), createOrderMessage("O2"), createOrderMessage("O2")));
         
-        verify(orderRepository).save(any(Order.class));
-        verify(ticketRepository).saveAll(anyList());
+        verify(orderBatchDAO).insertOrdersWithTickets(
+            argThat(orders -> orders.size() == 1 && "O2".equals(orders.get(0).getOrderNumber())), anyMap());
     }
     
     @Test
-    void testProcessOrder_Exception_RollbackInventory() {
-        when(orderRepository.save(any(Order.class))).thenThrow(new RuntimeException("Database error"));
-        when(redisService.incrStock(anyInt(), anyLong(), anyLong(), any(LocalDate.class), anyInt(), anyInt()))
-            .thenReturn(true);
+    void testProcessOrders_AllDuplicates_NothingInserted() {
+        when(orderBatchDAO.findExistingOrderNumbers(anyCollection())).thenReturn(new HashSet<>(List.of("O1")));
         
-        assertThrows(RuntimeException.class, () -> orderProcessor.processOrder(orderMessage));
+        orderProcessor.processOrders(Arrays.asList(createOrderMessage("O1")));
         
-        verify(redisService).incrStock(anyInt(), anyLong(), anyLong(), any(LocalDate.class), anyInt(), anyInt());
+        verify(seatService, never()).assignSeats(anyList());
+        verify(orderBatchDAO, never()).insertOrdersWithTickets(anyList(), anyMap());
     }
     
     @Test
-    void testProcessOrder_ChildTicket_DiscountApplied() {
-        OrderMessage.PassengerInfo childPassenger = new OrderMessage.PassengerInfo();
-        childPassenger.setPassengerId(101L);
-        childPassenger.setTicketType((byte) 2);
-        childPassenger.setCarriageTypeId(1);
-        orderMessage.setPassengers(Arrays.asList(childPassenger));
-        
-        when(orderRepository.save(any(Order.class))).thenReturn(savedOrder);
-        when(ticketInventoryDAO.findByKey(anyInt(), anyLong(), anyLong(), any(LocalDate.class), anyInt()))
-            .thenReturn(Optional.of(inventory));
-        when(ticketRepository.saveAll(anyList())).thenReturn(Arrays.asList(new Ticket()));
-        doNothing().when(seatService).assignSeat(any(Ticket.class));
-        
-        assertDoesNotThrow(() -> orderProcessor.processOrder(orderMessage));
-        
-        verify(orderRepository).save(any(Order.class));
-        verify(ticketRepository).saveAll(anyList());
+    void testProcessOrders_BatchFails_FallsBackPerOrderAndCompensatesFailedOrder() {
+        when(ticketPriceCache.getBasePrice(anyInt(), anyLong(), anyLong(), any(LocalDate.class), anyInt()))
+            .thenReturn(Optional.of(new BigDecimal(100)));
+        when(orderBatchDAO.findExistingOrderNumbers(anyCollection())).thenReturn(new HashSet<>());
+        doAnswer(invocation -> {
+            List<Ticket> tickets = invocation.getArgument(0);
+            for (Ticket ticket : tickets) {
+                ticket.setCarriageNumber("01");
+                ticket.setSeatNumber("01A");
+            }
+            return null;
+        }).when(seatService).assignSeats(anyList());
+        // 整批失败，逐个重试时只有O2失败
+        doThrow(new RuntimeException("Duplicate entry"))
+            .when(orderBatchDAO).insertOrdersWithTickets(argThat(orders -> orders != null && orders.size() == 2), anyMap());
+        doThrow(new RuntimeException("Data too long"))
+            .when(orderBatchDAO).insertOrdersWithTickets(
+                argThat(orders -> orders != null && orders.size() == 1 && "O2".equals(orders.get(0).getOrderNumber())), anyMap());
+        
+        assertDoesNotThrow(() -> orderProcessor.processOrders(Arrays.asList(createOrderMessage("O1"), createOrderMessage("O2"))));
+        
+        verify(orderBatchDAO, times(3)).insertOrdersWithTickets(anyList(), anyMap());
+        // 只有重试成功的O1写入行程索引
+        verify(passengerItineraryIndex, times(1)).add(anyList());
+        verify(seatService, times(1)).releaseSeat(any(Ticket.class));
+        verify(redisService, times(1)).incrStock(eq(1), eq(100L), eq(200L), any(LocalDate.class), eq(1), eq(1));
     }
     
     @Test
-    void testProcessOrder_StudentTicket_DiscountApplied() {
-        OrderMessage.PassengerInfo studentPassenger = new OrderMessage.PassengerInfo();
-        studentPassenger.setPassengerId(102L);
-        studentPassenger.setTicketType((byte) 3);
-        studentPassenger.setCarriageTypeId(1);
-        orderMessage.setPassengers(Arrays.asList(studentPassenger));
-        
-        when(orderRepository.save(any(Order.class))).thenReturn(savedOrder);
-        when(ticketInventoryDAO.findByKey(anyInt(), anyLong(), anyLong(), any(LocalDate.class), anyInt()))
-            .thenReturn(Optional.of(inventory));
-        when(ticketRepository.saveAll(anyList())).thenReturn(Arrays.asList(new Ticket()));
-        doNothing().when(seatService).assignSeat(any(Ticket.class));
-        
-        assertDoesNotThrow(() -> orderProcessor.processOrder(orderMessage));
-        
-        verify(orderRepository).save(any(Order.class));
-        verify(ticketRepository).saveAll(anyList());
+    void testProcessOrders_SeatAssignmentFails_RollbackWholeBatch() {
+        when(ticketPriceCache.getBasePrice(anyInt(), anyLong(), anyLong(), any(LocalDate.class), anyInt()))
+            .thenReturn(Optional.of(new BigDecimal(100)));
+        when(orderBatchDAO.findExistingOrderNumbers(anyCollection())).thenReturn(new HashSet<>());
+        doThrow(new RuntimeException("no seat")).when(seatService).assignSeats(anyList());
+        
+        assertDoesNotThrow(() -> orderProcessor.processOrders(Arrays.asList(createOrderMessage("O1"), createOrderMessage("O2"))));
+        
+        verify(orderBatchDAO, never()).insertOrdersWithTickets(anyList(), anyMap());
+        verify(redisService, times(2)).incrStock(anyInt(), anyLong(), anyLong(), any(LocalDate.class), anyInt(), anyInt());
     }
     
     @Test
-    void testProcessOrder_MultiplePassengers_CalculateTotalCorrectly() {
-        OrderMessage.PassengerInfo passenger1 = new OrderMessage.PassengerInfo();
-        passenger1.setPassengerId(100L);
-        passenger1.setTicketType((byte) 1);
-        passenger1.setCarriageTypeId(1);
-        
-        OrderMessage.PassengerInfo passenger2 = new OrderMessage.PassengerInfo();
-        passenger2.setPassengerId(101L);
-        passenger2.setTicketType((byte) 2);
-        passenger2.setCarriageTypeId(1);
-        
-        orderMessage.setPassengers(Arrays.asList(passenger1, passenger2));
-        
-        when(orderRepository.save(any(Order.class))).thenReturn(savedOrder);
-        when(ticketInventoryDAO.findByKey(anyInt(), anyLong(), anyLong(), any(LocalDate.class), anyInt()))
-            .thenReturn(Optional.of(inventory));
-        when(ticketRepository.saveAll(anyList())).thenReturn(Arrays.asList(new Ticket(), new Ticket()));
-        doNothing().when(seatService).assignSeat(any(Ticket.class));
-        
-        assertDoesNotThrow(() -> orderProcessor.processOrder(orderMessage));
-        
-        verify(orderRepository).save(any(Order.class));
-        verify(ticketRepository).saveAll(anyList());
-        verify(seatService, times(2)).assignSeat(any(Ticket.class));
+    void testProcessOrders_IndexFailureDoesNotRetryOrCompensate() {
+        givenNewOrders();
+        doThrow(new RuntimeException("Redis unavailable")).when(passengerItineraryIndex).add(anyList());
+        
+        assertDoesNotThrow(() -> orderProcessor.processOrders(Arrays.asList(createOrderMessage("O1"), createOrderMessage("O2"))));
+        
+        verify(orderBatchDAO, times(1)).insertOrdersWithTickets(anyList(), anyMap());
+        verify(seatService, never()).releaseSeat(any(Ticket.class));
+        verify(redisService, never()).incrStock(anyInt(), anyLong(), anyLong(), any(LocalDate.class), anyInt(), anyInt());
     }
 } 
\ No newline at end of file
@@ -0,0 +1,151 @@
+package com.example.techprototype.Component;
+
+import com.example.techprototype.Entity.Ticket;
+import com.example.techprototype.Entity.TrainStop;
+import com.example.techprototype.Repository.TicketRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.ZSetOperations;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.ZoneId;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class PassengerItineraryIndexTest {
+
+    private static final LocalDate TRAVEL_DATE = LocalDate.of(2025, 7, 1);
+
+    @InjectMocks
+    private PassengerItineraryIndex passengerItineraryIndex;
+
+    @Mock
+    private RedisTemplate<String, Object> redisTemplate;
+
+    @Mock
+    private ZSetOperations<String, Object> zSetOperations;
+
+    @Mock
+    private TimetableCache timetableCache;
+
+    @Mock
+    private TicketRepository ticketRepository;
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.openMocks(this);
+        when(redisTemplate.opsForZSet()).thenReturn(zSetOperations);
+        // 停靠点1 08:00出发，停靠点2 10:00到达，停靠点3 22:00出发，停靠点4 06:00到达
+        givenStop(1L, LocalTime.of(8, 0), null);
+        givenStop(2L, null, LocalTime.of(10, 0));
+        givenStop(3L, LocalTime.of(22, 0), null);
+        givenStop(4L, null, LocalTime.of(6, 0));
+    }
+
+    private void givenStop(Long stopId, LocalTime departureTime, LocalTime arrivalTime) {
+        TrainStop stop = new TrainStop();
+        stop.setDepartureTime(departureTime);
+        stop.setArrivalTime(arrivalTime);
+        when(timetableCache.getStop(stopId)).thenReturn(Optional.of(stop));
+    }
+
+    private Ticket createTicket(Long ticketId, Long departureStopId, Long arrivalStopId) {
+        Ticket ticket = new Ticket();
+        ticket.setTicketId(ticketId);
+        ticket.setPassengerId(100L);
+        ticket.setTravelDate(TRAVEL_DATE);
+        ticket.setDepartureStopId(departureStopId);
+        ticket.setArrivalStopId(arrivalStopId);
+        return ticket;
+    }
+
+    private long millis(LocalDateTime time) {
+        return time.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+    }
+
+    @Test
+    void testIntervalOf_OvernightTrip() {
+        PassengerItineraryIndex.Interval interval = passengerItineraryIndex.intervalOf(TRAVEL_DATE, 3L, 4L);
+
+        assertEquals(TRAVEL_DATE.atTime(22, 0), interval.getDeparture());
+        assertEquals(TRAVEL_DATE.plusDays(1).atTime(6, 0), interval.getArrival());
+    }
+
+    @Test
+    void testIntervalOf_UnknownStop() {
+        when(timetableCache.getStop(9L)).thenReturn(Optional.empty());
+
+        assertNull(passengerItineraryIndex.intervalOf(TRAVEL_DATE, 1L, 9L));
+    }
+
+    @Test
+    void testAdd_ScoreIsDepartureAndMemberCarriesArrival() {
+        passengerItineraryIndex.add(createTicket(5L, 1L, 2L));
+
+        verify(zSetOperations).add("itinerary:100", "5:" + millis(TRAVEL_DATE.atTime(10, 0)),
+                (double) millis(TRAVEL_DATE.atTime(8, 0)));
+        verify(zSetOperations).removeRangeByScore(eq("itinerary:100"), eq(0.0), anyDouble());
+        verify(redisTemplate).expire("itinerary:100", 24L, TimeUnit.HOURS);
+    }
+
+    @Test
+    void testAdd_SkipsUnsavedTicket() {
+        passengerItineraryIndex.add(createTicket(null, 1L, 2L));
+
+        verifyNoInteractions(redisTemplate);
+    }
+
+    @Test
+    void testRemove() {
+        passengerItineraryIndex.remove(createTicket(5L, 3L, 4L));
+
+        verify(zSetOperations).remove("itinerary:100", "5:" + millis(TRAVEL_DATE.plusDays(1).atTime(6, 0)));
+    }
+
+    @Test
+    void testFindOverlapping_LoadsOnceAndFiltersByArrival() {
+        PassengerItineraryIndex.Interval interval = new PassengerItineraryIndex.Interval(
+                TRAVEL_DATE.atTime(9, 0), TRAVEL_DATE.atTime(12, 0));
+        long departure = millis(interval.getDeparture());
+        when(zSetOperations.score("itinerary:100", "loaded")).thenReturn(null);
+        when(ticketRepository.findValidTicketsByPassengerFrom(eq(100L), any(LocalDate.class)))
+                .thenReturn(List.of(createTicket(5L, 1L, 2L)));
+        // 前一张票在新行程出发时已到达，后一张票跨越新行程出发时间
+        Set<Object> members = new LinkedHashSet<>();
+        members.add("6:" + departure);
+        members.add("7:" + (departure + 1));
+        when(zSetOperations.rangeByScore("itinerary:100", departure - 2 * 24 * 3600 * 1000L,
+                millis(interval.getArrival()) - 1)).thenReturn(members);
+
+        List<Long> ticketIds = passengerItineraryIndex.findOverlapping(100L, interval);
+
+        assertEquals(List.of(7L), ticketIds);
+        verify(zSetOperations).add(eq("itinerary:100"), anySet());
+        verify(redisTemplate).expire("itinerary:100", 24L, TimeUnit.HOURS);
+    }
+
+    @Test
+    void testFindOverlapping_AlreadyLoaded() {
+        PassengerItineraryIndex.Interval interval = new PassengerItineraryIndex.Interval(
+                TRAVEL_DATE.atTime(9, 0), TRAVEL_DATE.atTime(12, 0));
+        when(zSetOperations.score("itinerary:100", "loaded")).thenReturn(-1.0);
+        when(zSetOperations.rangeByScore(anyString(), anyDouble(), anyDouble())).thenReturn(Collections.emptySet());
+
+        assertTrue(passengerItineraryIndex.findOverlapping(100L, interval).isEmpty());
+        verify(ticketRepository, never()).findValidTicketsByPassengerFrom(anyLong(), any(LocalDate.class));
+    }
+}
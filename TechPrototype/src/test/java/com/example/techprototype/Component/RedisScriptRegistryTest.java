@@ -0,0 +1,84 @@
+package com.example.techprototype.Component;
+
+import com.example.techprototype.Config.RedisScriptConfig;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.script.RedisScript;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class RedisScriptRegistryTest {
+
+    @InjectMocks
+    private RedisScriptRegistry redisScriptRegistry;
+
+    @Mock
+    private RedisTemplate<String, Object> redisTemplate;
+
+    private RedisScriptConfig scriptConfig;
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.openMocks(this);
+        scriptConfig = new RedisScriptConfig();
+        Map<String, RedisScript<?>> beans = new HashMap<>();
+        beans.put(RedisScriptConfig.DECR_STOCK_SCRIPT, scriptConfig.decrStockScript());
+        beans.put(RedisScriptConfig.RESERVE_STOCKS_SCRIPT, scriptConfig.reserveStocksScript());
+        redisScriptRegistry.setScriptBeans(beans);
+    }
+
+    @Test
+    void testGet_ReturnsSameInstance() {
+        // When
+        RedisScript<Long> first = redisScriptRegistry.get(RedisScriptConfig.DECR_STOCK_SCRIPT, Long.class);
+        RedisScript<Long> second = redisScriptRegistry.get(RedisScriptConfig.DECR_STOCK_SCRIPT, Long.class);
+
+        // Then - 单例脚本，SHA1只计算一次
+        assertSame(first, second);
+        assertEquals(first.getSha1(), second.getSha1());
+        assertNotNull(redisScriptRegistry.get(RedisScriptConfig.RESERVE_STOCKS_SCRIPT, List.class));
+    }
+
+    @Test
+    void testGet_UnknownOrMismatchedScript() {
+        assertThrows(IllegalArgumentException.class, () -> redisScriptRegistry.get("unknownScript", Long.class));
+        assertThrows(IllegalArgumentException.class, () -> redisScriptRegistry.get(RedisScriptConfig.DECR_STOCK_SCRIPT, List.class));
+    }
+
+    @Test
+    void testRegister_KeepsFirstRegistration() {
+        // When
+        RedisScript<Long> registered = redisScriptRegistry.register("waitlistScript", "return 1", Long.class);
+        RedisScript<Long> again = redisScriptRegistry.register("waitlistScript", "return 2", Long.class);
+
+        // Then
+        assertSame(registered, again);
+        assertSame(registered, redisScriptRegistry.get("waitlistScript", Long.class));
+        verify(redisTemplate, times(1)).execute(any(RedisCallback.class));
+    }
+
+    @Test
+    void testRun_PreloadsAllScripts() throws Exception {
+        // Given - 第一个脚本预加载失败不影响其余脚本
+        when(redisTemplate.execute(any(RedisCallback.class)))
+                .thenThrow(new RuntimeException("connection refused"))
+                .thenReturn("sha1");
+
+        // When
+        redisScriptRegistry.run();
+
+        // Then
+        verify(redisTemplate, times(2)).execute(any(RedisCallback.class));
+    }
+}
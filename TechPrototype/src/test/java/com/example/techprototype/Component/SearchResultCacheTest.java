@@ -0,0 +1,176 @@
+package com.example.techprototype.Component;
+
+import com.example.techprototype.DTO.SearchCacheStats;
+import com.example.techprototype.DTO.SearchRoute;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SearchResultCacheTest {
+
+    private SearchResultCache cache;
+
+    private final LocalDate travelDate = LocalDate.now().plusDays(1);
+
+    private final List<SearchRoute> routes = List.of(
+            new SearchRoute(1, "G1", "北京南", "上海虹桥", null, null, List.of()),
+            new SearchRoute(2, "G2", "北京南", "上海虹桥", null, null, List.of()));
+
+    private final AtomicInteger seatLoads = new AtomicInteger();
+
+    @BeforeEach
+    void setUp() {
+        cache = new SearchResultCache();
+    }
+
+    private List<List<Map<String, Object>>> loadSeats(List<SearchRoute> pending) {
+        seatLoads.incrementAndGet();
+        List<List<Map<String, Object>>> seatInfos = new ArrayList<>();
+        for (SearchRoute route : pending) {
+            seatInfos.add(List.of(Map.of("type", 3, "available", seatLoads.get())));
+        }
+        return seatInfos;
+    }
+
+    private List<List<Map<String, Object>>> getSeatInfos(long timetableVersion) {
+        return cache.getSeatInfos("北京", "上海", travelDate, timetableVersion, routes, this::loadSeats);
+    }
+
+    @Test
+    void testNormalize() {
+        assertEquals("shanghai", SearchResultCache.normalize("  ShangHai "));
+        assertEquals("北京", SearchResultCache.normalize("北京\t"));
+        assertNull(SearchResultCache.normalize(null));
+    }
+
+    @Test
+    void testGetRoutes_ReloadedWhenTimetableChanges() {
+        AtomicInteger loads = new AtomicInteger();
+
+        cache.getRoutes("北京", "上海", 1, () -> { loads.incrementAndGet(); return routes; });
+        List<SearchRoute> cached = cache.getRoutes("北京", "上海", 1, () -> { loads.incrementAndGet(); return routes; });
+        cache.getRoutes("北京", "上海", 2, () -> { loads.incrementAndGet(); return List.of(); });
+
+        assertEquals(routes, cached);
+        assertEquals(2, loads.get());
+        assertEquals(1, cache.getStats().getRouteHits());
+        assertEquals(2, cache.getStats().getRouteMisses());
+    }
+
+    @Test
+    void testGetSeatInfos_HitUntilStockVersionChanges() {
+        getSeatInfos(1);
+        List<List<Map<String, Object>>> cached = getSeatInfos(1);
+        assertEquals(1, seatLoads.get());
+        assertEquals(1, cached.get(1).get(0).get("available"));
+
+        // 其他日期的库存变更不影响
+        cache.onStockChanged(2, travelDate.plusDays(1));
+        getSeatInfos(1);
+        assertEquals(1, seatLoads.get());
+
+        cache.onStockChanged(2, travelDate);
+        List<List<Map<String, Object>>> reloaded = getSeatInfos(1);
+        assertEquals(2, seatLoads.get());
+        assertEquals(2, reloaded.get(1).get(0).get("available"));
+
+        // 时刻表版本变化同样失效
+        getSeatInfos(2);
+        assertEquals(3, seatLoads.get());
+
+        SearchCacheStats stats = cache.getStats();
+        assertEquals(2, stats.getAvailabilityHits());
+        assertEquals(1, stats.getAvailabilityMisses());
+        assertEquals(2, stats.getVersionInvalidations());
+        assertEquals(0.4, stats.getHitRatio(), 1e-9);
+        assertEquals(1, stats.getAvailabilityEntries());
+    }
+
+    @Test
+    void testGetSeatInfos_ExpiresAfterMaxStaleness() {
+        ReflectionTestUtils.setField(cache, "maxStalenessMillis", -1L);
+
+        getSeatInfos(1);
+        getSeatInfos(1);
+
+        assertEquals(2, seatLoads.get());
+        assertEquals(1, cache.getStats().getExpirations());
+        assertEquals(0, cache.getStats().getAvailabilityHits());
+
+        cache.evictExpired();
+        assertEquals(0, cache.getStats().getAvailabilityEntries());
+    }
+
+    @Test
+    void testMaxEntries_EvictsLeastRecentlyUsed() {
+        ReflectionTestUtils.setField(cache, "maxEntries", 2);
+        AtomicInteger loads = new AtomicInteger();
+
+        cache.getRoutes("北京", "上海", 1, () -> { loads.incrementAndGet(); return routes; });
+        cache.getRoutes("上海", "北京", 1, () -> { loads.incrementAndGet(); return List.of(); });
+        // 访问北京->上海后，最久未访问的是上海->北京，加入新条件时被淘汰
+        cache.getRoutes("北京", "上海", 1, () -> { loads.incrementAndGet(); return routes; });
+        cache.getRoutes("北京", "广州", 1, () -> { loads.incrementAndGet(); return List.of(); });
+        assertEquals(3, loads.get());
+        assertEquals(2, cache.getStats().getRouteEntries());
+
+        cache.getRoutes("北京", "上海", 1, () -> { loads.incrementAndGet(); return routes; });
+        assertEquals(3, loads.get());
+        cache.getRoutes("上海", "北京", 1, () -> { loads.incrementAndGet(); return List.of(); });
+        assertEquals(4, loads.get());
+        assertEquals(2, cache.getStats().getRouteEntries());
+    }
+
+    @Test
+    void testMaxEntries_AvailabilityKeepsAcceptingNewKeys() {
+        ReflectionTestUtils.setField(cache, "maxEntries", 1);
+
+        getSeatInfos(1);
+        cache.getSeatInfos("上海", "北京", travelDate, 1, routes, this::loadSeats);
+        cache.getSeatInfos("上海", "北京", travelDate, 1, routes, this::loadSeats);
+
+        assertEquals(2, seatLoads.get());
+        assertEquals(1, cache.getStats().getAvailabilityHits());
+        assertEquals(1, cache.getStats().getAvailabilityEntries());
+    }
+
+    @Test
+    void testGetSeatInfos_LoaderFailureNotCached() {
+        assertThrows(IllegalStateException.class, () -> cache.getSeatInfos("北京", "上海", travelDate, 1, routes,
+                pending -> { throw new IllegalStateException("Redis不可用"); }));
+        assertEquals(0, cache.getStats().getAvailabilityEntries());
+
+        getSeatInfos(1);
+        assertEquals(1, seatLoads.get());
+    }
+
+    @Test
+    void testStockVersion() {
+        assertEquals(0, cache.getStockVersion(1, travelDate));
+
+        cache.onStockChanged(1, travelDate);
+        cache.onStockChanged(1, travelDate);
+
+        assertEquals(2, cache.getStockVersion(1, travelDate));
+        assertEquals(0, cache.getStockVersion(1, travelDate.plusDays(1)));
+    }
+
+    @Test
+    void testStockChangeCount_PerDate() {
+        cache.onStockChanged(1, travelDate);
+        cache.onStockChanged(2, travelDate);
+        cache.onStockChanged(1, travelDate.plusDays(1));
+
+        assertEquals(2, cache.getStockChangeCount(travelDate));
+        assertEquals(1, cache.getStockChangeCount(travelDate.plusDays(1)));
+        assertEquals(0, cache.getStockChangeCount(travelDate.plusDays(2)));
+    }
+}
@@ -0,0 +1,477 @@
+package com.example.techprototype.Component;
+
+import com.example.techprototype.Entity.Seat;
+import com.example.techprototype.Entity.SeatOccupancy;
+import com.example.techprototype.Entity.TrainCarriage;
+import com.example.techprototype.Entity.TrainStop;
+import com.example.techprototype.Repository.SeatOccupancyRepository;
+import com.example.techprototype.Repository.SeatRepository;
+import com.example.techprototype.Repository.TrainCarriageRepository;
+import com.example.techprototype.Util.SeatBitmapUtil;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class SeatOccupancyEngineTest {
+
+    @InjectMocks
+    private SeatOccupancyEngine seatOccupancyEngine;
+
+    @InjectMocks
+    private IntervalMaskCache intervalMaskCache;
+
+    @Mock
+    private SeatRepository seatRepository;
+
+    @Mock
+    private TrainCarriageRepository trainCarriageRepository;
+
+    @Mock
+    private SeatOccupancyRepository seatOccupancyRepository;
+
+    @Mock
+    private TimetableCache timetableCache;
+
+    private LocalDate testDate;
+    private TrainCarriage carriage1;
+    private TrainCarriage carriage2;
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.openMocks(this);
+        ReflectionTestUtils.setField(seatOccupancyEngine, "intervalMaskCache", intervalMaskCache);
+
+        testDate = LocalDate.now().plusDays(1);
+
+        carriage1 = new TrainCarriage();
+        carriage1.setCarriageId(1L);
+        carriage1.setCarriageNumber("1");
+        carriage1.setTrainId(1);
+        carriage1.setTypeId(1);
+
+        carriage2 = new TrainCarriage();
+        carriage2.setCarriageId(2L);
+        carriage2.setCarriageNumber("2");
+        carriage2.setTrainId(1);
+        carriage2.setTypeId(1);
+    }
+
+    private Seat createSeat(Long seatId, Long carriageId, String seatNumber) {
+        Seat seat = new Seat();
+        seat.setSeatId(seatId);
+        seat.setCarriageId(carriageId);
+        seat.setSeatNumber(seatNumber);
+        return seat;
+    }
+
+    private SeatOccupancy createOccupancy(Long seatId, LocalDate travelDate, long bitmap) {
+        return new SeatOccupancy(null, seatId, travelDate, 0, bitmap);
+    }
+
+    private List<TrainStop> createStops(int count) {
+        List<TrainStop> stops = new ArrayList<>();
+        for (int i = 1; i <= count; i++) {
+            TrainStop stop = new TrainStop();
+            stop.setTrainId(1);
+            stop.setSequenceNumber(i);
+            stops.add(stop);
+        }
+        return stops;
+    }
+
+    private void mockLayout(List<Seat> seats, List<SeatOccupancy> occupancies) {
+        when(trainCarriageRepository.findByTrainIdAndTypeId(1, 1)).thenReturn(Arrays.asList(carriage1, carriage2));
+        when(seatRepository.findByTrainAndType(1, 1)).thenReturn(seats);
+        when(seatOccupancyRepository.findBySeatIdInAndTravelDateBetween(any(), any(), any())).thenReturn(occupancies);
+    }
+
+    @Test
+    void testFindFirstFree_SkipsOccupiedSeats() {
+        // Given - 第一个座位1-2区间已占用
+        mockLayout(Arrays.asList(createSeat(1L, 1L, "1A"), createSeat(2L, 1L, "1B")),
+                Arrays.asList(createOccupancy(1L, testDate, SeatBitmapUtil.generateIntervalMask(1, 2))));
+
+        // When
+        Optional<SeatOccupancyEngine.SeatSlot> result = seatOccupancyEngine.findFirstFree(1, 1, testDate, 1, 3);
+
+        // Then
+        assertTrue(result.isPresent());
+        assertEquals(2L, result.get().getSeat().getSeatId());
+        assertEquals("1", result.get().getCarriageNumber());
+    }
+
+    @Test
+    void testFindFirstFree_NonOverlappingIntervalIsFree() {
+        // Given - 1-2区间已占用，不影响2-4区间
+        mockLayout(Arrays.asList(createSeat(1L, 1L, "1A")),
+                Arrays.asList(createOccupancy(1L, testDate, SeatBitmapUtil.generateIntervalMask(1, 2))));
+
+        // When
+        Optional<SeatOccupancyEngine.SeatSlot> result = seatOccupancyEngine.findFirstFree(1, 1, testDate, 2, 4);
+
+        // Then
+        assertTrue(result.isPresent());
+        assertEquals(1L, result.get().getSeat().getSeatId());
+    }
+
+    @Test
+    void testFindFirstFree_OtherDateNotAffected() {
+        // Given - 占用记录只属于另一天
+        mockLayout(Arrays.asList(createSeat(1L, 1L, "1A")),
+                Arrays.asList(createOccupancy(1L, testDate.plusDays(1), SeatBitmapUtil.generateIntervalMask(1, 3))));
+
+        // When & Then
+        assertTrue(seatOccupancyEngine.findFirstFree(1, 1, testDate, 1, 3).isPresent());
+        assertFalse(seatOccupancyEngine.findFirstFree(1, 1, testDate.plusDays(1), 1, 3).isPresent());
+    }
+
+    @Test
+    void testAllocate_OccupiesSeat() {
+        // Given
+        mockLayout(Arrays.asList(createSeat(1L, 1L, "1A"), createSeat(2L, 2L, "2A")), Collections.emptyList());
+
+        // When
+        Optional<SeatOccupancyEngine.SeatSlot> first = seatOccupancyEngine.allocate(1, 1, testDate, 1, 3);
+        Optional<SeatOccupancyEngine.SeatSlot> second = seatOccupancyEngine.allocate(1, 1, testDate, 1, 3);
+        Optional<SeatOccupancyEngine.SeatSlot> third = seatOccupancyEngine.allocate(1, 1, testDate, 1, 3);
+
+        // Then
+        assertEquals(1L, first.get().getSeat().getSeatId());
+        assertEquals(2L, second.get().getSeat().getSeatId());
+        assertEquals("2", second.get().getCarriageNumber());
+        assertFalse(third.isPresent());
+        // 只加载一次布局
+        verify(seatRepository, times(1)).findByTrainAndType(1, 1);
+        // 选座不同步写库
+        verify(seatOccupancyRepository, never()).saveAll(any());
+    }
+
+    @Test
+    void testRelease_MakesSeatAvailableAgain() {
+        // Given
+        mockLayout(Arrays.asList(createSeat(1L, 1L, "1A")), Collections.emptyList());
+        seatOccupancyEngine.allocate(1, 1, testDate, 1, 3);
+        assertFalse(seatOccupancyEngine.findFirstFree(1, 1, testDate, 1, 3).isPresent());
+
+        // When
+        boolean released = seatOccupancyEngine.release(1, 1, testDate, "1", "1A", 1, 3);
+
+        // Then
+        assertTrue(released);
+        assertTrue(seatOccupancyEngine.findFirstFree(1, 1, testDate, 1, 3).isPresent());
+    }
+
+    @Test
+    void testRelease_SeatNotFound() {
+        // Given
+        mockLayout(Arrays.asList(createSeat(1L, 1L, "1A")), Collections.emptyList());
+
+        // When & Then
+        assertFalse(seatOccupancyEngine.release(1, 1, testDate, "9", "9Z", 1, 3));
+    }
+
+    @Test
+    void testFindFirstFree_DateOutOfWindow() {
+        // When
+        Optional<SeatOccupancyEngine.SeatSlot> past = seatOccupancyEngine.findFirstFree(1, 1, LocalDate.now().minusDays(1), 1, 3);
+        Optional<SeatOccupancyEngine.SeatSlot> tooFar = seatOccupancyEngine.findFirstFree(1, 1, LocalDate.now().plusDays(30), 1, 3);
+
+        // Then
+        assertFalse(past.isPresent());
+        assertFalse(tooFar.isPresent());
+        verify(seatRepository, never()).findByTrainAndType(any(), any());
+    }
+
+    @Test
+    void testFindFirstFree_LastDayOfWindow() {
+        // Given
+        mockLayout(Arrays.asList(createSeat(1L, 1L, "1A")), Collections.emptyList());
+
+        // When & Then - 默认窗口30天
+        assertTrue(seatOccupancyEngine.findFirstFree(1, 1, LocalDate.now().plusDays(29), 1, 3).isPresent());
+    }
+
+    @Test
+    void testAllocate_MoreThan64Seats() {
+        // Given - 前100个座位已占用，跨越多个64位字
+        List<Seat> seats = new ArrayList<>();
+        List<SeatOccupancy> occupancies = new ArrayList<>();
+        long occupied = SeatBitmapUtil.generateIntervalMask(1, 3);
+        for (long i = 1; i <= 130; i++) {
+            seats.add(createSeat(i, 1L, "S" + i));
+            if (i <= 100) {
+                occupancies.add(createOccupancy(i, testDate, occupied));
+            }
+        }
+        mockLayout(seats, occupancies);
+
+        // When
+        Optional<SeatOccupancyEngine.SeatSlot> result = seatOccupancyEngine.allocate(1, 1, testDate, 1, 3);
+
+        // Then
+        assertTrue(result.isPresent());
+        assertEquals(101L, result.get().getSeat().getSeatId());
+    }
+
+    @Test
+    void testAllocateBatch_PrefersAdjacentSeatsInSameCarriage() {
+        // Given - 1车厢: 1A空 1B占 1C空 1D空; 2车厢: 2A空 2B空 2C空
+        mockLayout(Arrays.asList(createSeat(1L, 1L, "1A"), createSeat(2L, 1L, "1B"), createSeat(3L, 1L, "1C"),
+                        createSeat(4L, 1L, "1D"), createSeat(5L, 2L, "2A"), createSeat(6L, 2L, "2B"), createSeat(7L, 2L, "2C")),
+                Arrays.asList(createOccupancy(2L, testDate, SeatBitmapUtil.generateIntervalMask(1, 3))));
+
+        // When - 3人需要连续座位，1车厢只有2个连续空座
+        List<SeatOccupancyEngine.SeatSlot> slots = seatOccupancyEngine.allocateBatch(1, 1, testDate, 1, 3, 3);
+
+        // Then
+        assertEquals(3, slots.size());
+        assertEquals(5L, slots.get(0).getSeat().getSeatId());
+        assertEquals(6L, slots.get(1).getSeat().getSeatId());
+        assertEquals(7L, slots.get(2).getSeat().getSeatId());
+        assertEquals("2", slots.get(0).getCarriageNumber());
+        assertFalse(seatOccupancyEngine.isAvailable(slots.get(2).getSeat(), testDate, 1, 3));
+    }
+
+    @Test
+    void testAllocateBatch_FallsBackAcrossCarriages() {
+        // Given - 每节车厢只有1个空座
+        mockLayout(Arrays.asList(createSeat(1L, 1L, "1A"), createSeat(2L, 1L, "1B"), createSeat(3L, 2L, "2A")),
+                Arrays.asList(createOccupancy(2L, testDate, SeatBitmapUtil.generateIntervalMask(1, 3))));
+
+        // When
+        List<SeatOccupancyEngine.SeatSlot> slots = seatOccupancyEngine.allocateBatch(1, 1, testDate, 1, 3, 3);
+
+        // Then - 空闲座位不足时分配全部剩余座位
+        assertEquals(2, slots.size());
+        assertEquals(1L, slots.get(0).getSeat().getSeatId());
+        assertEquals(3L, slots.get(1).getSeat().getSeatId());
+        assertFalse(seatOccupancyEngine.findFirstFree(1, 1, testDate, 1, 3).isPresent());
+    }
+
+    @Test
+    void testAllocate_LongTrainMoreThan32Stops() {
+        // Given - 40个站点的长途车次，座位1在33-40站区间已占用（位于第二个字）
+        when(timetableCache.getStops(1)).thenReturn(createStops(40));
+        long[] occupied = SeatBitmapUtil.generateIntervalMask(33, 40, 2);
+        mockLayout(Arrays.asList(createSeat(1L, 1L, "1A"), createSeat(2L, 1L, "1B")),
+                Arrays.asList(new SeatOccupancy(null, 1L, testDate, 1, occupied[1])));
+
+        // When & Then - 前半程不冲突，跨越32站的区间冲突
+        assertEquals(1L, seatOccupancyEngine.findFirstFree(1, 1, testDate, 1, 20).get().getSeat().getSeatId());
+        assertEquals(2L, seatOccupancyEngine.findFirstFree(1, 1, testDate, 30, 35).get().getSeat().getSeatId());
+        assertEquals(2L, seatOccupancyEngine.allocate(1, 1, testDate, 1, 40).get().getSeat().getSeatId());
+        assertFalse(seatOccupancyEngine.findFirstFree(1, 1, testDate, 38, 40).isPresent());
+    }
+
+    @Test
+    void testEvictTrain_ReloadsWithChangedTimetable() {
+        // Given - 车次由5站延长为40站
+        when(timetableCache.getStops(1))
+                .thenReturn(createStops(5))
+                .thenReturn(createStops(40));
+        mockLayout(Arrays.asList(createSeat(1L, 1L, "1A")), Collections.emptyList());
+        assertTrue(seatOccupancyEngine.allocate(1, 1, testDate, 1, 5).isPresent());
+        when(seatOccupancyRepository.findBySeatIdInAndTravelDate(any(), eq(testDate))).thenReturn(Collections.emptyList());
+
+        // When
+        intervalMaskCache.evict(1);
+        int evicted = seatOccupancyEngine.evictTrain(1);
+
+        // Then - 卸载前的占用已回写，重新加载后支持新增的站点
+        assertEquals(1, evicted);
+        verify(seatOccupancyRepository).saveAll(any());
+        assertTrue(seatOccupancyEngine.findFirstFree(1, 1, testDate, 5, 40).isPresent());
+        verify(trainCarriageRepository, times(2)).findByTrainIdAndTypeId(1, 1);
+    }
+
+    @Test
+    void testFlushDirtySeats_LongTrainWritesEachWord() {
+        // Given
+        when(timetableCache.getStops(1)).thenReturn(createStops(40));
+        mockLayout(Arrays.asList(createSeat(1L, 1L, "1A")), Collections.emptyList());
+        seatOccupancyEngine.allocate(1, 1, testDate, 30, 40);
+        when(seatOccupancyRepository.findBySeatIdInAndTravelDate(any(), eq(testDate))).thenReturn(Collections.emptyList());
+
+        // When
+        seatOccupancyEngine.flushDirtySeats();
+
+        // Then - 两个字分别写入
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<List<SeatOccupancy>> savedCaptor = ArgumentCaptor.forClass(List.class);
+        verify(seatOccupancyRepository).saveAll(savedCaptor.capture());
+        long[] expected = SeatBitmapUtil.generateIntervalMask(30, 40, 2);
+        List<SeatOccupancy> saved = savedCaptor.getValue();
+        assertEquals(2, saved.size());
+        for (SeatOccupancy occupancy : saved) {
+            assertEquals(expected[occupancy.getWordIndex()], occupancy.getOccupancyBitmap());
+        }
+    }
+
+    @Test
+    void testSeatOperations_LockAndReleaseMultipleIntervals() {
+        // Given
+        Seat seat = createSeat(1L, 1L, "1A");
+        mockLayout(Arrays.asList(seat), Collections.emptyList());
+        when(trainCarriageRepository.findByCarriageId(1L)).thenReturn(Optional.of(carriage1));
+
+        // When - 锁定区间1:2和3:4
+        assertTrue(seatOccupancyEngine.occupy(seat, testDate, 1, 2));
+        assertTrue(seatOccupancyEngine.occupy(seat, testDate, 3, 4));
+
+        // Then
+        assertFalse(seatOccupancyEngine.isAvailable(seat, testDate, 1, 2));
+        assertFalse(seatOccupancyEngine.isAvailable(seat, testDate, 3, 4));
+        assertFalse(seatOccupancyEngine.occupy(seat, testDate, 1, 2)); // 重复占用失败
+
+        // 释放区间1:2，区间3:4仍被锁定
+        assertTrue(seatOccupancyEngine.release(seat, testDate, 1, 2));
+        assertTrue(seatOccupancyEngine.isAvailable(seat, testDate, 1, 2));
+        assertFalse(seatOccupancyEngine.isAvailable(seat, testDate, 3, 4));
+        assertArrayEquals(new long[]{SeatBitmapUtil.generateIntervalMask(3, 4)}, seatOccupancyEngine.getOccupancy(seat, testDate));
+    }
+
+    @Test
+    void testSeatOperations_DateOutOfWindow() {
+        // Given
+        Seat seat = createSeat(1L, 1L, "1A");
+
+        // When & Then
+        assertFalse(seatOccupancyEngine.isAvailable(seat, LocalDate.now().minusDays(1), 1, 2));
+        assertFalse(seatOccupancyEngine.occupy(seat, LocalDate.now().minusDays(1), 1, 2));
+        verify(trainCarriageRepository, never()).findByCarriageId(any());
+    }
+
+    @Test
+    void testFlushDirtySeats_WritesBackChangedBitmaps() {
+        // Given - 座位1新占用，座位2释放后位图为0
+        mockLayout(Arrays.asList(createSeat(1L, 1L, "1A"), createSeat(2L, 1L, "1B"), createSeat(3L, 1L, "1C")),
+                Arrays.asList(createOccupancy(2L, testDate, SeatBitmapUtil.generateIntervalMask(1, 3))));
+        seatOccupancyEngine.allocate(1, 1, testDate, 1, 3);
+        seatOccupancyEngine.release(1, 1, testDate, "1", "1B", 1, 3);
+
+        SeatOccupancy persisted = createOccupancy(2L, testDate, SeatBitmapUtil.generateIntervalMask(1, 3));
+        persisted.setOccupancyId(10L);
+        when(seatOccupancyRepository.findBySeatIdInAndTravelDate(any(), eq(testDate))).thenReturn(Arrays.asList(persisted));
+
+        // When
+        seatOccupancyEngine.flushDirtySeats();
+
+        // Then
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<List<SeatOccupancy>> savedCaptor = ArgumentCaptor.forClass(List.class);
+        verify(seatOccupancyRepository).saveAll(savedCaptor.capture());
+        List<SeatOccupancy> saved = savedCaptor.getValue();
+        assertEquals(1, saved.size());
+        assertEquals(0, saved.get(0).getWordIndex());
+        assertEquals(1L, saved.get(0).getSeatId());
+        assertEquals(testDate, saved.get(0).getTravelDate());
+        assertEquals(SeatBitmapUtil.generateIntervalMask(1, 3), saved.get(0).getOccupancyBitmap());
+        // 位图为0的记录被删除，保持稀疏
+        verify(seatOccupancyRepository).deleteAll(Arrays.asList(persisted));
+
+        // 没有新的变更时不再回写
+        seatOccupancyEngine.flushDirtySeats();
+        verify(seatOccupancyRepository, times(1)).saveAll(any());
+    }
+
+    @Test
+    void testFlushDirtySeats_RetriesOnFailure() {
+        // Given
+        mockLayout(Arrays.asList(createSeat(1L, 1L, "1A")), Collections.emptyList());
+        seatOccupancyEngine.allocate(1, 1, testDate, 1, 3);
+        when(seatOccupancyRepository.findBySeatIdInAndTravelDate(any(), any()))
+                .thenThrow(new RuntimeException("db error"))
+                .thenReturn(Collections.emptyList());
+
+        // When
+        seatOccupancyEngine.flushDirtySeats();
+        seatOccupancyEngine.flushDirtySeats();
+
+        // Then
+        verify(seatOccupancyRepository, times(2)).findBySeatIdInAndTravelDate(any(), any());
+        verify(seatOccupancyRepository, times(1)).saveAll(any());
+    }
+
+    @Test
+    void testWarmUp_LoadsAllLayouts() {
+        // Given
+        when(timetableCache.getSnapshot()).thenReturn(TimetableSnapshot.build(1, List.of(), List.of(), List.of()));
+        when(trainCarriageRepository.findAll()).thenReturn(Arrays.asList(carriage1, carriage2));
+        when(seatRepository.findAll()).thenReturn(Arrays.asList(createSeat(1L, 1L, "1A"), createSeat(2L, 2L, "2A")));
+        when(seatOccupancyRepository.findByTravelDateBetween(LocalDate.now(), LocalDate.now().plusDays(29)))
+                .thenReturn(Arrays.asList(createOccupancy(1L, testDate, SeatBitmapUtil.generateIntervalMask(1, 3))));
+
+        // When
+        seatOccupancyEngine.warmUp();
+        Optional<SeatOccupancyEngine.SeatSlot> result = seatOccupancyEngine.findFirstFree(1, 1, testDate, 1, 2);
+
+        // Then
+        assertTrue(result.isPresent());
+        assertEquals(2L, result.get().getSeat().getSeatId());
+        verify(seatRepository, never()).findByTrainAndType(any(), any());
+    }
+
+    @Test
+    void testRollOver_DeletesExpiredOccupancies() {
+        // Given
+        mockLayout(Arrays.asList(createSeat(1L, 1L, "1A")), Collections.emptyList());
+        seatOccupancyEngine.allocate(1, 1, testDate, 1, 3);
+        when(seatOccupancyRepository.deleteByTravelDateBefore(LocalDate.now())).thenReturn(5);
+
+        // When
+        seatOccupancyEngine.rollOver();
+
+        // Then - 只删除过期记录，窗口内的占用保留
+        verify(seatOccupancyRepository).deleteByTravelDateBefore(LocalDate.now());
+        assertFalse(seatOccupancyEngine.findFirstFree(1, 1, testDate, 1, 3).isPresent());
+    }
+
+    @Test
+    void testSeatOccupancyRing_ExpiredSlotReusedByNewDate() {
+        // Given
+        SeatLayout layout = new SeatLayout(1, 1, 5, Arrays.asList(carriage1), Arrays.asList(createSeat(1L, 1L, "1A")));
+        SeatOccupancyRing ring = new SeatOccupancyRing(layout, 30);
+        LocalDate yesterday = LocalDate.now().minusDays(1);
+        ring.getOrCreate(yesterday).allocate(SeatBitmapUtil.generateIntervalMask(1, 3, 1));
+
+        // When - 过期日期与 过期日期+30天 共用槽位
+        SeatOccupancyMap newest = ring.getOrCreate(yesterday.plusDays(30));
+
+        // Then - 新日期拿到的是空位图，不会继承过期日期的占用
+        assertEquals(yesterday.plusDays(30), newest.getTravelDate());
+        assertEquals(0, newest.findFirstFree(SeatBitmapUtil.generateIntervalMask(1, 3, 1)));
+        assertEquals(0, ring.rollOver(LocalDate.now()));
+    }
+
+    @Test
+    void testSeatOccupancyRing_RollOverClearsExpiredSlots() {
+        // Given
+        SeatLayout layout = new SeatLayout(1, 1, 5, Arrays.asList(carriage1), Arrays.asList(createSeat(1L, 1L, "1A")));
+        SeatOccupancyRing ring = new SeatOccupancyRing(layout, 30);
+        LocalDate today = LocalDate.now();
+        ring.getOrCreate(today.minusDays(1)).allocate(SeatBitmapUtil.generateIntervalMask(1, 3, 1));
+        ring.getOrCreate(today).allocate(SeatBitmapUtil.generateIntervalMask(1, 3, 1));
+
+        // When
+        int expired = ring.rollOver(today);
+
+        // Then
+        assertEquals(1, expired);
+        assertEquals(-1, ring.getOrCreate(today).findFirstFree(SeatBitmapUtil.generateIntervalMask(1, 3, 1)));
+    }
+}
@@ -0,0 +1,93 @@
+package com.example.techprototype.Component;
+
+import com.example.techprototype.Entity.Station;
+import com.example.techprototype.Entity.TrainStop;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class StationRouteIndexTest {
+
+    private StationRouteIndex routeIndex;
+
+    @BeforeEach
+    void setUp() {
+        List<Station> stations = List.of(
+                new Station(1, "北京南", "北京"),
+                new Station(2, "北京西", "北京"),
+                new Station(3, "济南西", "济南"),
+                new Station(4, "上海虹桥", "上海"),
+                new Station(5, "Shenzhen North", "Shenzhen"));
+        List<TrainStop> stops = new ArrayList<>();
+        // 车次1：北京南 -> 济南西 -> 上海虹桥
+        stops.add(createStop(10L, 1, 1, 1));
+        stops.add(createStop(11L, 1, 2, 3));
+        stops.add(createStop(12L, 1, 3, 4));
+        // 车次2：上海虹桥 -> 济南西 -> 北京西
+        stops.add(createStop(20L, 2, 1, 4));
+        stops.add(createStop(21L, 2, 2, 3));
+        stops.add(createStop(22L, 2, 3, 2));
+        // 车次3：环线 济南西 -> 北京南 -> 济南西
+        stops.add(createStop(30L, 3, 1, 3));
+        stops.add(createStop(31L, 3, 2, 1));
+        stops.add(createStop(32L, 3, 3, 3));
+        routeIndex = StationRouteIndex.build(stops, stations, 6);
+    }
+
+    private TrainStop createStop(Long stopId, Integer trainId, Integer sequence, Integer stationId) {
+        TrainStop stop = new TrainStop();
+        stop.setStopId(stopId);
+        stop.setTrainId(trainId);
+        stop.setSequenceNumber(sequence);
+        stop.setStationId(stationId);
+        return stop;
+    }
+
+    @Test
+    void testFindStations_MatchesNameOrCitySubstring() {
+        assertArrayEquals(new int[]{1, 2}, routeIndex.findStations("北京"));
+        assertArrayEquals(new int[]{2, 3}, routeIndex.findStations("西"));
+        assertArrayEquals(new int[]{4}, routeIndex.findStations("虹桥"));
+        assertArrayEquals(new int[]{5}, routeIndex.findStations("shenzhen"));
+        assertArrayEquals(new int[0], routeIndex.findStations("广州"));
+        assertArrayEquals(new int[0], routeIndex.findStations(null));
+        // 空关键字与 LIKE '%%' 一致，匹配全部车站
+        assertEquals(5, routeIndex.findStations("").length);
+    }
+
+    @Test
+    void testFindDirect_OnlyTrainsInTravelDirection() {
+        List<StationRouteIndex.RouteMatch> matches = routeIndex.findDirect(3, 4);
+
+        assertEquals(1, matches.size());
+        assertEquals(1, matches.get(0).getTrainId());
+        assertEquals(11L, matches.get(0).getDepartureStop().getStopId());
+        assertEquals(12L, matches.get(0).getArrivalStop().getStopId());
+
+        matches = routeIndex.findDirect(4, 3);
+        assertEquals(1, matches.size());
+        assertEquals(2, matches.get(0).getTrainId());
+    }
+
+    @Test
+    void testFindDirect_LoopTrainUsesLaterStop() {
+        List<StationRouteIndex.RouteMatch> matches = routeIndex.findDirect(1, 3);
+
+        // 车次1 北京南(1) -> 济南西(2)；车次3 北京南(2) -> 济南西(3)
+        assertEquals(2, matches.size());
+        assertEquals(11L, matches.get(0).getArrivalStop().getStopId());
+        assertEquals(31L, matches.get(1).getDepartureStop().getStopId());
+        assertEquals(32L, matches.get(1).getArrivalStop().getStopId());
+    }
+
+    @Test
+    void testFindDirect_UnknownStation() {
+        assertTrue(routeIndex.findDirect(1, 99).isEmpty());
+        assertTrue(routeIndex.findDirect(-1, 3).isEmpty());
+        assertTrue(routeIndex.findDirect(5, 1).isEmpty());
+    }
+}
@@ -0,0 +1,62 @@
+package com.example.techprototype.Component;
+
+import com.example.techprototype.Entity.TrainStop;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class StopSequenceCacheTest {
+
+    @InjectMocks
+    private StopSequenceCache stopSequenceCache;
+
+    @Mock
+    private TimetableCache timetableCache;
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.openMocks(this);
+        when(timetableCache.getStop(anyInt(), anyLong())).thenReturn(Optional.empty());
+    }
+
+    private TrainStop createStop(Integer trainId, Long stopId, int sequence) {
+        TrainStop stop = new TrainStop();
+        stop.setStopId(stopId);
+        stop.setTrainId(trainId);
+        stop.setSequenceNumber(sequence);
+        return stop;
+    }
+
+    @Test
+    void testGetSequence_FromTimetableSnapshot() {
+        // Given
+        when(timetableCache.getStop(1, 10L)).thenReturn(Optional.of(createStop(1, 10L, 1)));
+        when(timetableCache.getStop(1, 13L)).thenReturn(Optional.of(createStop(1, 13L, 4)));
+
+        // When & Then
+        assertEquals(1, stopSequenceCache.getSequence(1, 10L));
+        assertEquals(4, stopSequenceCache.getSequence(1, 13L));
+        // 停靠点不属于该车次
+        assertNull(stopSequenceCache.getSequence(1, 99L));
+    }
+
+    @Test
+    void testGetSequence_FollowsReloadedTimetable() {
+        // Given - 时刻表重新加载后新增经停站，原停靠点站序后移
+        when(timetableCache.getStop(1, 11L))
+                .thenReturn(Optional.of(createStop(1, 11L, 2)))
+                .thenReturn(Optional.of(createStop(1, 11L, 3)));
+
+        // When & Then - 不需要失效，直接读取新快照
+        assertEquals(2, stopSequenceCache.getSequence(1, 11L));
+        assertEquals(3, stopSequenceCache.getSequence(1, 11L));
+    }
+}
@@ -0,0 +1,156 @@
+package com.example.techprototype.Component;
+
+import com.example.techprototype.DAO.TicketInventoryDAO;
+import com.example.techprototype.Entity.TicketInventory;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class TicketPriceCacheTest {
+
+    @InjectMocks
+    private TicketPriceCache ticketPriceCache;
+
+    @Mock
+    private TicketInventoryDAO ticketInventoryDAO;
+
+    private final LocalDate travelDate = LocalDate.now().plusDays(1);
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.openMocks(this);
+        TicketInventory inventory = new TicketInventory();
+        inventory.setTrainId(1);
+        inventory.setDepartureStopId(1L);
+        inventory.setArrivalStopId(3L);
+        inventory.setCarriageTypeId(2);
+        inventory.setPrice(new BigDecimal("120.50"));
+        when(ticketInventoryDAO.findByTrainAndDate(1, travelDate)).thenReturn(List.of(inventory));
+    }
+
+    @Test
+    void testGetBasePrice_LoadedOncePerTrainDate() {
+        Optional<BigDecimal> first = ticketPriceCache.getBasePrice(1, 1L, 3L, travelDate, 2);
+        Optional<BigDecimal> second = ticketPriceCache.getBasePrice(1, 1L, 3L, travelDate, 2);
+
+        assertEquals(new BigDecimal("120.50"), first.get());
+        assertEquals(first, second);
+        verify(ticketInventoryDAO, times(1)).findByTrainAndDate(1, travelDate);
+    }
+
+    @Test
+    void testGetBasePrice_UnknownIntervalEmpty() {
+        assertTrue(ticketPriceCache.getBasePrice(1, 1L, 2L, travelDate, 2).isEmpty());
+    }
+
+    @Test
+    void testPreload_OneQueryForMissingTrains() {
+        TicketInventory other = new TicketInventory();
+        other.setTrainId(2);
+        other.setDepartureStopId(5L);
+        other.setArrivalStopId(6L);
+        other.setCarriageTypeId(3);
+        other.setPrice(new BigDecimal("60.00"));
+        other.setAvailableSeats(80);
+        // 车次1已缓存，只查询车次2、3
+        ticketPriceCache.getBasePrice(1, 1L, 3L, travelDate, 2);
+        when(ticketInventoryDAO.findByTrainIdsAndDate(anyCollection(), eq(travelDate))).thenReturn(List.of(other));
+
+        ticketPriceCache.preload(List.of(1, 2, 3), travelDate);
+        ticketPriceCache.preload(List.of(2, 3), travelDate);
+        List<TicketInventory> fares = ticketPriceCache.getFares(2, 5L, 6L, travelDate);
+
+        assertEquals(1, fares.size());
+        assertEquals(80, fares.get(0).getAvailableSeats());
+        assertTrue(ticketPriceCache.getFares(3, 5L, 6L, travelDate).isEmpty());
+        verify(ticketInventoryDAO, times(1)).findByTrainIdsAndDate(Set.of(2, 3), travelDate);
+        verify(ticketInventoryDAO, never()).findByTrainAndDate(2, travelDate);
+        verify(ticketInventoryDAO, never()).findByTrainAndDate(3, travelDate);
+    }
+
+    @Test
+    void testGetFares_ReturnsCopies() {
+        List<TicketInventory> fares = ticketPriceCache.getFares(1, 1L, 3L, travelDate);
+
+        assertEquals(1, fares.size());
+        assertEquals(2, fares.get(0).getCarriageTypeId());
+        assertThrows(UnsupportedOperationException.class, () -> fares.add(new TicketInventory()));
+        assertTrue(ticketPriceCache.getFares(1, 1L, 2L, travelDate).isEmpty());
+    }
+
+    @Test
+    void testEvict_ReloadsOnNextLookup() {
+        ticketPriceCache.getBasePrice(1, 1L, 3L, travelDate, 2);
+
+        ticketPriceCache.evict(1);
+        ticketPriceCache.getBasePrice(1, 1L, 3L, travelDate, 2);
+
+        verify(ticketInventoryDAO, times(2)).findByTrainAndDate(1, travelDate);
+    }
+
+    @Test
+    void testGetFares_ReloadsAfterTtl() {
+        ticketPriceCache.getBasePrice(1, 1L, 3L, travelDate, 2);
+        ticketPriceCache.getBasePrice(1, 1L, 3L, travelDate, 2);
+        verify(ticketInventoryDAO, times(1)).findByTrainAndDate(1, travelDate);
+
+        ReflectionTestUtils.setField(ticketPriceCache, "ttlMillis", -1L);
+        ticketPriceCache.evict(1);
+        ticketPriceCache.getBasePrice(1, 1L, 3L, travelDate, 2);
+        ticketPriceCache.getBasePrice(1, 1L, 3L, travelDate, 2);
+
+        verify(ticketInventoryDAO, times(3)).findByTrainAndDate(1, travelDate);
+    }
+
+    @Test
+    void testPreload_EmptyResultExpiresSooner() {
+        // 没有库存记录的车次缓存空结果，空结果过期后库存记录补建即可见
+        when(ticketInventoryDAO.findByTrainIdsAndDate(anyCollection(), eq(travelDate))).thenReturn(List.of());
+        ReflectionTestUtils.setField(ticketPriceCache, "emptyTtlMillis", 60000L);
+        ticketPriceCache.preload(List.of(2), travelDate);
+        ticketPriceCache.preload(List.of(2), travelDate);
+        verify(ticketInventoryDAO, times(1)).findByTrainIdsAndDate(Set.of(2), travelDate);
+
+        ReflectionTestUtils.setField(ticketPriceCache, "emptyTtlMillis", -1L);
+        ticketPriceCache.evictExpired();
+        ticketPriceCache.preload(List.of(2), travelDate);
+        TicketInventory created = new TicketInventory();
+        created.setTrainId(2);
+        created.setDepartureStopId(5L);
+        created.setArrivalStopId(6L);
+        created.setCarriageTypeId(3);
+        created.setPrice(new BigDecimal("60.00"));
+        when(ticketInventoryDAO.findByTrainIdsAndDate(anyCollection(), eq(travelDate))).thenReturn(List.of(created));
+        ticketPriceCache.preload(List.of(2), travelDate);
+
+        assertEquals(new BigDecimal("60.00"), ticketPriceCache.getBasePrice(2, 5L, 6L, travelDate, 3).get());
+        verify(ticketInventoryDAO, times(3)).findByTrainIdsAndDate(Set.of(2), travelDate);
+    }
+
+    @Test
+    void testEvictExpired_KeepsFutureDates() {
+        LocalDate yesterday = LocalDate.now().minusDays(1);
+        when(ticketInventoryDAO.findByTrainAndDate(1, yesterday)).thenReturn(List.of());
+        ticketPriceCache.getBasePrice(1, 1L, 3L, travelDate, 2);
+        ticketPriceCache.getBasePrice(1, 1L, 3L, yesterday, 2);
+
+        ticketPriceCache.evictExpired();
+        ticketPriceCache.getBasePrice(1, 1L, 3L, travelDate, 2);
+        ticketPriceCache.getBasePrice(1, 1L, 3L, yesterday, 2);
+
+        verify(ticketInventoryDAO, times(1)).findByTrainAndDate(1, travelDate);
+        verify(ticketInventoryDAO, times(2)).findByTrainAndDate(1, yesterday);
+    }
+}
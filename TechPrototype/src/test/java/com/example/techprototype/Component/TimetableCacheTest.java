@@ -0,0 +1,248 @@
+package com.example.techprototype.Component;
+
+import com.example.techprototype.Entity.Station;
+import com.example.techprototype.Entity.Train;
+import com.example.techprototype.Entity.TrainStop;
+import com.example.techprototype.Event.TimetableChangedEvent;
+import com.example.techprototype.Repository.StationRepository;
+import com.example.techprototype.Repository.TrainRepository;
+import com.example.techprototype.Repository.TrainStopRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.context.ApplicationEventPublisher;
+
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class TimetableCacheTest {
+
+    @InjectMocks
+    private TimetableCache timetableCache;
+
+    @Mock
+    private TrainRepository trainRepository;
+
+    @Mock
+    private TrainStopRepository trainStopRepository;
+
+    @Mock
+    private StationRepository stationRepository;
+
+    @Mock
+    private ApplicationEventPublisher eventPublisher;
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.openMocks(this);
+        Train train = new Train();
+        train.setTrainId(1);
+        train.setTrainNumber("G101");
+        when(trainRepository.findAll()).thenReturn(List.of(train));
+        // 停靠点故意乱序返回
+        when(trainStopRepository.findAll()).thenReturn(Arrays.asList(
+                createStop(12L, 1, 3, 30),
+                createStop(10L, 1, 1, 10),
+                createStop(11L, 1, 2, 20)));
+        when(stationRepository.findAll()).thenReturn(Arrays.asList(
+                createStation(10, "北京南", "北京"),
+                createStation(20, "济南西", "济南"),
+                createStation(30, "上海虹桥", "上海")));
+    }
+
+    private TrainStop createStop(Long stopId, Integer trainId, Integer sequence, Integer stationId) {
+        TrainStop stop = new TrainStop();
+        stop.setStopId(stopId);
+        stop.setTrainId(trainId);
+        stop.setSequenceNumber(sequence);
+        stop.setStationId(stationId);
+        stop.setDepartureTime(LocalTime.of(8, sequence));
+        return stop;
+    }
+
+    private Station createStation(Integer stationId, String name, String city) {
+        Station station = new Station();
+        station.setStationId(stationId);
+        station.setStationName(name);
+        station.setCity(city);
+        return station;
+    }
+
+    @Test
+    void testLookups_AfterReload() {
+        timetableCache.reload();
+
+        assertEquals("G101", timetableCache.getTrain(1).get().getTrainNumber());
+        assertEquals(LocalTime.of(8, 2), timetableCache.getStop(11L).get().getDepartureTime());
+        assertEquals("济南西", timetableCache.getStationOfStop(11L).get().getStationName());
+        assertEquals("上海", timetableCache.getStation(30).get().getCity());
+        assertEquals(Arrays.asList(10L, 11L, 12L),
+                timetableCache.getStops(1).stream().map(TrainStop::getStopId).toList());
+    }
+
+    @Test
+    void testLookups_MissingIds() {
+        timetableCache.reload();
+
+        assertTrue(timetableCache.getTrain(2).isEmpty());
+        assertTrue(timetableCache.getStop(99L).isEmpty());
+        assertTrue(timetableCache.getStop((Long) null).isEmpty());
+        assertTrue(timetableCache.getStationOfStop(-1L).isEmpty());
+        assertTrue(timetableCache.getStops(7).isEmpty());
+        // 停靠点不属于该车次
+        assertTrue(timetableCache.getStop(2, 11L).isEmpty());
+        assertTrue(timetableCache.getStop(1, 11L).isPresent());
+    }
+
+    @Test
+    void testGetSnapshot_LoadsOnFirstUse() {
+        assertEquals(1, timetableCache.getVersion());
+        assertTrue(timetableCache.getTrain(1).isPresent());
+
+        verify(trainStopRepository, times(1)).findAll();
+    }
+
+    @Test
+    void testReload_ReplacesSnapshotWithNewVersion() {
+        timetableCache.reload();
+        TimetableSnapshot before = timetableCache.getSnapshot();
+
+        // 时刻表变更：车次新增一个经停站
+        when(trainStopRepository.findAll()).thenReturn(Arrays.asList(
+                createStop(10L, 1, 1, 10),
+                createStop(11L, 1, 2, 20),
+                createStop(13L, 1, 3, 20),
+                createStop(12L, 1, 4, 30)));
+        long version = timetableCache.reload();
+
+        assertEquals(2, version);
+        assertEquals(4, timetableCache.getStops(1).size());
+        // 已取得的旧快照保持不变
+        assertEquals(1, before.getVersion());
+        assertEquals(3, before.getStops(1).size());
+        assertNull(before.getStop(13L));
+    }
+
+    @Test
+    void testReload_PublishesEventForChangedTrainOnly() {
+        when(trainRepository.findAll()).thenReturn(List.of(trainOf(1), trainOf(2)));
+        List<TrainStop> otherStops = Arrays.asList(createStop(20L, 2, 1, 10), createStop(21L, 2, 2, 30));
+        when(trainStopRepository.findAll()).thenReturn(concat(Arrays.asList(
+                createStop(10L, 1, 1, 10), createStop(11L, 1, 2, 20), createStop(12L, 1, 3, 30)), otherStops));
+        timetableCache.reload();
+        verify(eventPublisher, never()).publishEvent(any());
+
+        // 车次1的济南西停靠点到发时间调整，车次2不变
+        TrainStop changed = createStop(11L, 1, 2, 20);
+        changed.setDepartureTime(LocalTime.of(9, 0));
+        when(trainStopRepository.findAll()).thenReturn(concat(Arrays.asList(
+                createStop(10L, 1, 1, 10), changed, createStop(12L, 1, 3, 30)), otherStops));
+        timetableCache.reload();
+
+        ArgumentCaptor<TimetableChangedEvent> event = ArgumentCaptor.forClass(TimetableChangedEvent.class);
+        verify(eventPublisher, times(1)).publishEvent(event.capture());
+        assertEquals(1, event.getValue().getTrainId());
+        // 事件发布时新快照已生效
+        assertEquals(LocalTime.of(9, 0), timetableCache.getStop(11L).get().getDepartureTime());
+    }
+
+    @Test
+    void testReload_UnchangedTimetablePublishesNothing() {
+        timetableCache.reload();
+        long version = timetableCache.reload();
+
+        assertEquals(2, version);
+        verify(eventPublisher, never()).publishEvent(any());
+    }
+
+    private Train trainOf(Integer trainId) {
+        Train train = new Train();
+        train.setTrainId(trainId);
+        train.setTrainNumber("G10" + trainId);
+        return train;
+    }
+
+    private List<TrainStop> concat(List<TrainStop> first, List<TrainStop> second) {
+        List<TrainStop> all = new ArrayList<>(first);
+        all.addAll(second);
+        return all;
+    }
+
+    @Test
+    void testReloadIfChanged_UnchangedFingerprintSkipsReload() {
+        when(trainStopRepository.fingerprint()).thenReturn(fingerprintRow(3L, 12L));
+        timetableCache.reload();
+
+        assertFalse(timetableCache.reloadIfChanged());
+        assertEquals(1, timetableCache.getVersion());
+        verify(trainStopRepository, times(1)).findAll();
+    }
+
+    @Test
+    void testReloadIfChanged_ChangedFingerprintReloads() {
+        when(trainStopRepository.fingerprint()).thenReturn(fingerprintRow(3L, 12L));
+        timetableCache.reload();
+
+        // 新增停靠点后指纹变化，重新加载并发布变更事件
+        when(trainStopRepository.fingerprint()).thenReturn(fingerprintRow(4L, 13L));
+        List<TrainStop> stops = new ArrayList<>(trainStopRepository.findAll());
+        stops.add(createStop(13L, 1, 4, 30));
+        when(trainStopRepository.findAll()).thenReturn(stops);
+
+        assertTrue(timetableCache.reloadIfChanged());
+        assertEquals(2, timetableCache.getVersion());
+        assertEquals(4, timetableCache.getStops(1).size());
+        verify(eventPublisher).publishEvent(any(TimetableChangedEvent.class));
+
+        // 下一次检查指纹未变，不再加载
+        assertFalse(timetableCache.reloadIfChanged());
+        assertEquals(2, timetableCache.getVersion());
+    }
+
+    @Test
+    void testReloadIfChanged_CountChangeReloads() {
+        when(trainStopRepository.fingerprint()).thenReturn(fingerprintRow(3L, 12L));
+        when(stationRepository.count()).thenReturn(3L);
+        timetableCache.reload();
+
+        when(stationRepository.count()).thenReturn(4L);
+
+        assertTrue(timetableCache.reloadIfChanged());
+        assertEquals(2, timetableCache.getVersion());
+    }
+
+    @Test
+    void testReloadIfChanged_KeepsSnapshotOnFailure() {
+        when(trainStopRepository.fingerprint()).thenReturn(fingerprintRow(3L, 12L));
+        timetableCache.reload();
+        when(trainStopRepository.fingerprint()).thenThrow(new RuntimeException("数据库异常"));
+
+        assertFalse(timetableCache.reloadIfChanged());
+        assertEquals(1, timetableCache.getVersion());
+    }
+
+    private List<Object[]> fingerprintRow(long count, long maxStopId) {
+        List<Object[]> rows = new ArrayList<>();
+        rows.add(new Object[]{count, maxStopId, 60L, 0L, 486L, 0L, 0L});
+        return rows;
+    }
+
+    @Test
+    void testScheduledReload_KeepsSnapshotOnFailure() {
+        timetableCache.reload();
+        when(trainStopRepository.findAll()).thenThrow(new RuntimeException("数据库异常"));
+
+        assertDoesNotThrow(() -> timetableCache.scheduledReload());
+        assertEquals(1, timetableCache.getVersion());
+        assertTrue(timetableCache.getStop(10L).isPresent());
+    }
+}
@@ -0,0 +1,150 @@
+package com.example.techprototype.Component;
+
+import com.example.techprototype.DTO.TrainListDTO;
+import com.example.techprototype.DTO.TrainListPayload;
+import com.example.techprototype.Entity.Station;
+import com.example.techprototype.Entity.Train;
+import com.example.techprototype.Entity.TrainStop;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TrainListProjectionTest {
+
+    private TrainListProjection projection;
+    private SearchResultCache searchResultCache;
+
+    private final LocalDate listDate = LocalDate.of(2025, 7, 1);
+
+    // 每次调用loader时传入的车次ID
+    private final List<List<Integer>> loads = new ArrayList<>();
+    private int seats = 100;
+
+    @BeforeEach
+    void setUp() {
+        searchResultCache = new SearchResultCache();
+        projection = new TrainListProjection();
+        ReflectionTestUtils.setField(projection, "searchResultCache", searchResultCache);
+    }
+
+    private TimetableSnapshot timetable(long version, String secondStationName) {
+        List<Train> trains = List.of(
+                new Train(1, "G1", "G", 1, 2, LocalTime.of(8, 0), LocalTime.of(12, 0), 240),
+                new Train(2, "G2", "G", 1, 2, LocalTime.of(9, 0), LocalTime.of(13, 0), 240));
+        List<TrainStop> stops = List.of(
+                new TrainStop(10L, 1, 1, 1, null, LocalTime.of(8, 0), 0, 0),
+                new TrainStop(11L, 1, 2, 2, LocalTime.of(12, 0), null, 0, 1000),
+                new TrainStop(20L, 2, 1, 1, null, LocalTime.of(9, 0), 0, 0),
+                new TrainStop(21L, 2, 3, 2, LocalTime.of(13, 0), null, 0, 1000));
+        List<Station> stations = List.of(
+                new Station(1, "北京南", "北京"),
+                new Station(2, secondStationName, "上海"),
+                new Station(3, "杭州东", "杭州"));
+        return TimetableSnapshot.build(version, trains, stops, stations);
+    }
+
+    private TrainListPayload get(TimetableSnapshot timetable) {
+        return projection.get(timetable, listDate, trainIds -> {
+            loads.add(trainIds);
+            List<TrainListDTO> rows = new ArrayList<>();
+            for (Integer trainId : trainIds) {
+                TrainListDTO dto = new TrainListDTO();
+                dto.setTrain_id("G" + trainId);
+                dto.setSeat_number(List.of(seats));
+                rows.add(dto);
+            }
+            return rows;
+        });
+    }
+
+    @Test
+    void testGet_SerializedOnceAndServedUntilChanged() {
+        TimetableSnapshot timetable = timetable(1, "上海虹桥");
+
+        TrainListPayload first = get(timetable);
+        TrainListPayload second = get(timetable);
+
+        assertSame(first, second);
+        assertEquals(List.of(List.of(1, 2)), loads);
+        String json = new String(first.getBody(), StandardCharsets.UTF_8);
+        assertTrue(json.startsWith("[{") && json.contains("\"train_id\":\"G1\""));
+        assertTrue(first.getEtag().startsWith("\"") && first.getEtag().endsWith("\""));
+        assertEquals(2, first.getTrains().size());
+    }
+
+    @Test
+    void testGet_StockChangeRebuildsOnlyThatTrain() {
+        TimetableSnapshot timetable = timetable(1, "上海虹桥");
+        TrainListPayload first = get(timetable);
+
+        // 其他日期的库存变更不影响车次列表
+        searchResultCache.onStockChanged(1, listDate.plusDays(1));
+        seats = 99;
+        searchResultCache.onStockChanged(1, listDate);
+        TrainListPayload second = get(timetable);
+
+        assertEquals(List.of(List.of(1, 2), List.of(1)), loads);
+        assertSame(first.getTrains().get(1), second.getTrains().get(1));
+        assertEquals(List.of(99), second.getTrains().get(0).getSeat_number());
+        assertNotEquals(first.getEtag(), second.getEtag());
+    }
+
+    @Test
+    void testGet_OtherDateStockChangeKeepsProjection() {
+        TimetableSnapshot timetable = timetable(1, "上海虹桥");
+        TrainListPayload first = get(timetable);
+
+        searchResultCache.onStockChanged(1, listDate.plusDays(1));
+        searchResultCache.onStockChanged(2, listDate.minusDays(1));
+
+        assertSame(first, get(timetable));
+        assertEquals(1, loads.size());
+    }
+
+    @Test
+    void testGet_TimetableChangeRebuildsChangedRoutesOnly() {
+        TrainListPayload first = get(timetable(1, "上海虹桥"));
+
+        // 新版本时刻表内容不变，不重建任何行，沿用已序列化的内容
+        TrainListPayload same = get(timetable(2, "上海虹桥"));
+        assertEquals(1, loads.size());
+        assertSame(first, same);
+
+        // 车次1经过的车站改名，只重建车次1
+        TrainListPayload renamed = get(timetable(3, "上海"));
+        assertEquals(List.of(1), loads.get(1));
+        assertSame(same.getTrains().get(1), renamed.getTrains().get(1));
+    }
+
+    @Test
+    void testGet_ReloadsAllRowsAfterMaxStaleness() {
+        ReflectionTestUtils.setField(projection, "maxStalenessMillis", -1L);
+        TimetableSnapshot timetable = timetable(1, "上海虹桥");
+
+        get(timetable);
+        TrainListPayload reloaded = get(timetable);
+
+        assertEquals(List.of(List.of(1, 2), List.of(1, 2)), loads);
+        assertEquals(2, reloaded.getTrains().size());
+    }
+
+    @Test
+    void testPayloadMatches() {
+        TrainListPayload payload = new TrainListPayload(new byte[0], "\"abc\"", List.of());
+
+        assertTrue(payload.matches("\"abc\""));
+        assertTrue(payload.matches("W/\"abc\""));
+        assertTrue(payload.matches("\"x\", \"abc\""));
+        assertTrue(payload.matches("*"));
+        assertFalse(payload.matches("\"x\""));
+        assertFalse(payload.matches(null));
+    }
+}
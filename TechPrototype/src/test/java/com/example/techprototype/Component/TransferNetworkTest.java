@@ -0,0 +1,192 @@
+package com.example.techprototype.Component;
+
+import com.example.techprototype.Entity.TrainStop;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TransferNetworkTest {
+
+    private static final int STATION_SLOTS = 7;
+
+    private long nextStopId = 1;
+
+    private TrainStop stop(Integer trainId, Integer sequence, Integer stationId, String arrival, String departure) {
+        return new TrainStop(nextStopId++, trainId, stationId, sequence,
+                arrival != null ? LocalTime.parse(arrival) : null,
+                departure != null ? LocalTime.parse(departure) : null, null, null);
+    }
+
+    @SuppressWarnings("unchecked")
+    private TransferNetwork network(List<TrainStop> stops) {
+        int trainSlots = stops.stream().mapToInt(TrainStop::getTrainId).max().orElse(-1) + 1;
+        List<TrainStop>[] grouped = new List[trainSlots];
+        for (TrainStop stop : stops) {
+            if (grouped[stop.getTrainId()] == null) {
+                grouped[stop.getTrainId()] = new ArrayList<>();
+            }
+            grouped[stop.getTrainId()].add(stop);
+        }
+        for (List<TrainStop> trainStops : grouped) {
+            if (trainStops != null) {
+                trainStops.sort(Comparator.comparing(TrainStop::getSequenceNumber));
+            }
+        }
+        return TransferNetwork.build(grouped, STATION_SLOTS);
+    }
+
+    private List<Integer> trainIds(TransferNetwork.Itinerary itinerary) {
+        return itinerary.getLegs().stream().map(TransferNetwork.Leg::getTrainId).toList();
+    }
+
+    @Test
+    void testSearch_OneTransferRespectsMinConnection() {
+        List<TrainStop> stops = new ArrayList<>();
+        // 车次1：1 08:00 -> 2 10:00/10:05 -> 3 12:00
+        stops.add(stop(1, 1, 1, null, "08:00"));
+        stops.add(stop(1, 2, 2, "10:00", "10:05"));
+        stops.add(stop(1, 3, 3, "12:00", null));
+        // 车次2：2 10:30 -> 4 13:00
+        stops.add(stop(2, 1, 2, null, "10:30"));
+        stops.add(stop(2, 2, 4, "13:00", null));
+        // 车次3：2 10:10 -> 4 12:00，只有10分钟换乘时间
+        stops.add(stop(3, 1, 2, null, "10:10"));
+        stops.add(stop(3, 2, 4, "12:00", null));
+        TransferNetwork network = network(stops);
+
+        List<TransferNetwork.Itinerary> itineraries = network.search(1, 4, 2, 20, 360);
+        assertEquals(1, itineraries.size());
+        TransferNetwork.Itinerary itinerary = itineraries.get(0);
+        assertEquals(List.of(1, 2), trainIds(itinerary));
+        assertEquals(1, itinerary.getTransfers());
+        assertEquals(8 * 60, itinerary.getDepartureMinute());
+        assertEquals(13 * 60, itinerary.getArrivalMinute());
+        assertEquals(300, itinerary.getDurationMinutes());
+        assertEquals(2, itinerary.getLegs().get(0).getArrivalStop().getStationId());
+        assertEquals(2, itinerary.getLegs().get(1).getDepartureStop().getStationId());
+
+        // 换乘时间要求降低后车次3更早到达，车次2的方案被支配
+        itineraries = network.search(1, 4, 2, 5, 360);
+        assertEquals(1, itineraries.size());
+        assertEquals(List.of(1, 3), trainIds(itineraries.get(0)));
+        assertEquals(12 * 60, itineraries.get(0).getArrivalMinute());
+    }
+
+    @Test
+    void testSearch_NoConnectionWithinWaitWindow() {
+        List<TrainStop> stops = new ArrayList<>();
+        stops.add(stop(1, 1, 1, null, "08:00"));
+        stops.add(stop(1, 2, 2, "09:00", null));
+        // 等待7小时，超过最长等待；次日同一班次更晚
+        stops.add(stop(2, 1, 2, null, "16:00"));
+        stops.add(stop(2, 2, 4, "18:00", null));
+        TransferNetwork network = network(stops);
+
+        assertTrue(network.search(1, 4, 2, 20, 360).isEmpty());
+        assertEquals(1, network.search(1, 4, 2, 20, 480).size());
+    }
+
+    @Test
+    void testSearch_OvernightConnectionBoardsNextDay() {
+        List<TrainStop> stops = new ArrayList<>();
+        // 车次1：1 22:00 -> 5 23:50
+        stops.add(stop(1, 1, 1, null, "22:00"));
+        stops.add(stop(1, 2, 5, "23:50", null));
+        // 车次2：5 00:30 -> 4 03:00，次日这一班可以换乘
+        stops.add(stop(2, 1, 5, null, "00:30"));
+        stops.add(stop(2, 2, 4, "03:00", null));
+        TransferNetwork network = network(stops);
+
+        List<TransferNetwork.Itinerary> itineraries = network.search(1, 4, 1, 20, 360);
+        assertEquals(1, itineraries.size());
+        TransferNetwork.Leg second = itineraries.get(0).getLegs().get(1);
+        assertEquals(1440 + 30, second.getDepartureMinute());
+        assertEquals(1440 + 180, second.getArrivalMinute());
+        assertEquals(22 * 60, itineraries.get(0).getDepartureMinute());
+    }
+
+    @Test
+    void testSearch_TrainCrossingMidnight() {
+        List<TrainStop> stops = new ArrayList<>();
+        // 车次1：1 23:30 -> 2 次日01:00
+        stops.add(stop(1, 1, 1, null, "23:30"));
+        stops.add(stop(1, 2, 2, "01:00", null));
+        stops.add(stop(2, 1, 2, null, "01:30"));
+        stops.add(stop(2, 2, 4, "02:30", null));
+        TransferNetwork network = network(stops);
+
+        List<TransferNetwork.Itinerary> itineraries = network.search(1, 4, 1, 20, 360);
+        assertEquals(1, itineraries.size());
+        assertEquals(1440 + 60, itineraries.get(0).getLegs().get(0).getArrivalMinute());
+        assertEquals(1440 + 150, itineraries.get(0).getArrivalMinute());
+    }
+
+    @Test
+    void testSearch_TwoTransfers() {
+        List<TrainStop> stops = new ArrayList<>();
+        stops.add(stop(1, 1, 1, null, "08:00"));
+        stops.add(stop(1, 2, 2, "09:00", null));
+        stops.add(stop(2, 1, 2, null, "09:30"));
+        stops.add(stop(2, 2, 3, "10:30", null));
+        stops.add(stop(3, 1, 3, null, "11:00"));
+        stops.add(stop(3, 2, 4, "12:00", null));
+        TransferNetwork network = network(stops);
+
+        List<TransferNetwork.Itinerary> itineraries = network.search(1, 4, 2, 20, 360);
+        assertEquals(1, itineraries.size());
+        assertEquals(List.of(1, 2, 3), trainIds(itineraries.get(0)));
+        assertEquals(2, itineraries.get(0).getTransfers());
+
+        assertTrue(network.search(1, 4, 1, 20, 360).isEmpty());
+    }
+
+    @Test
+    void testSearch_DirectFirstTrainStillTransfers() {
+        List<TrainStop> stops = new ArrayList<>();
+        // 车次1直达：1 -> 2 -> 4，11:00到达
+        stops.add(stop(1, 1, 1, null, "08:00"));
+        stops.add(stop(1, 2, 2, "09:00", "09:05"));
+        stops.add(stop(1, 3, 4, "11:00", null));
+        // 车次2：2 09:30 -> 4 11:30，比直达更晚到达仍作为中转方案返回
+        stops.add(stop(2, 1, 2, null, "09:30"));
+        stops.add(stop(2, 2, 4, "11:30", null));
+        TransferNetwork network = network(stops);
+
+        List<TransferNetwork.Itinerary> itineraries = network.search(1, 4, 2, 20, 360);
+        assertEquals(1, itineraries.size());
+        assertEquals(List.of(1, 2), trainIds(itineraries.get(0)));
+        assertEquals(2, itineraries.get(0).getLegs().get(0).getArrivalStop().getStationId());
+        assertEquals(11 * 60 + 30, itineraries.get(0).getArrivalMinute());
+        assertTrue(network.search(1, 1, 2, 20, 360).isEmpty());
+        assertTrue(network.search(1, 99, 2, 20, 360).isEmpty());
+    }
+
+    @Test
+    void testSearch_ParetoOrdering() {
+        List<TrainStop> stops = new ArrayList<>();
+        // 车次1、2都能换乘车次3，车次2出发更晚
+        stops.add(stop(1, 1, 1, null, "08:00"));
+        stops.add(stop(1, 2, 2, "09:00", null));
+        stops.add(stop(2, 1, 1, null, "08:30"));
+        stops.add(stop(2, 2, 2, "09:10", null));
+        stops.add(stop(3, 1, 2, null, "09:40"));
+        stops.add(stop(3, 2, 4, "11:00", null));
+        // 车次4换乘车次5，出发和到达都更晚
+        stops.add(stop(4, 1, 1, null, "12:00"));
+        stops.add(stop(4, 2, 2, "13:00", null));
+        stops.add(stop(5, 1, 2, null, "13:30"));
+        stops.add(stop(5, 2, 4, "15:00", null));
+        TransferNetwork network = network(stops);
+
+        List<TransferNetwork.Itinerary> itineraries = network.search(1, 4, 2, 20, 360);
+        assertEquals(2, itineraries.size());
+        assertEquals(List.of(2, 3), trainIds(itineraries.get(0)));
+        assertEquals(List.of(4, 5), trainIds(itineraries.get(1)));
+        assertTrue(itineraries.get(0).getArrivalMinute() < itineraries.get(1).getArrivalMinute());
+    }
+}
@@ -0,0 +1,117 @@
+package com.example.techprototype.Component;
+
+import com.example.techprototype.DTO.WaitlistFulfillmentStats;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class WaitlistFulfillmentExecutorTest {
+
+    private WaitlistFulfillmentExecutor executor;
+
+    @BeforeEach
+    void setUp() {
+        executor = new WaitlistFulfillmentExecutor();
+        ReflectionTestUtils.setField(executor, "partitions", 2);
+        ReflectionTestUtils.setField(executor, "queueCapacity", 2);
+        ReflectionTestUtils.setField(executor, "coalesceWindowMillis", 100L);
+        executor.start();
+    }
+
+    @AfterEach
+    void tearDown() {
+        executor.shutdown();
+    }
+
+    @Test
+    void testSubmit_CoalescesTriggersWithinWindow() throws Exception {
+        // Given
+        AtomicInteger passes = new AtomicInteger();
+        CountDownLatch done = new CountDownLatch(1);
+        Runnable pass = () -> {
+            passes.incrementAndGet();
+            done.countDown();
+        };
+
+        // When: 合并窗口内对同一区间触发多次
+        for (int i = 0; i < 5; i++) {
+            assertTrue(executor.submit("stock:1:2025-07-01:2", "stock:1:2025-07-01:2:1:3", pass));
+        }
+
+        // Then
+        assertTrue(done.await(2, TimeUnit.SECONDS));
+        Thread.sleep(150);
+        assertEquals(1, passes.get());
+        WaitlistFulfillmentStats stats = executor.getStats();
+        assertEquals(5, stats.getSubmitted());
+        assertEquals(4, stats.getCoalesced());
+        assertEquals(1, stats.getCompleted());
+        assertEquals(0, stats.getQueueDepth());
+        assertTrue(stats.getLastLagMillis() >= 100);
+    }
+
+    @Test
+    void testSubmit_RejectsWhenQueueFull() {
+        // Given
+        Runnable pass = () -> { };
+        assertTrue(executor.submit("p", "k1", pass));
+        assertTrue(executor.submit("p", "k2", pass));
+
+        // When
+        boolean accepted = executor.submit("p", "k3", pass);
+
+        // Then
+        assertFalse(accepted);
+        assertEquals(2, executor.getQueueDepth());
+        assertEquals(1, executor.getStats().getRejected());
+    }
+
+    @Test
+    void testSubmit_SamePartitionRunsOnSingleWorker() throws Exception {
+        // Given
+        ReflectionTestUtils.setField(executor, "queueCapacity", 100);
+        Set<String> threadNames = Collections.synchronizedSet(new HashSet<>());
+        CountDownLatch done = new CountDownLatch(10);
+
+        // When: 同一分区键的不同区间
+        for (int i = 0; i < 10; i++) {
+            executor.submit("stock:1:2025-07-01:2", "stock:1:2025-07-01:2:" + i, () -> {
+                threadNames.add(Thread.currentThread().getName());
+                done.countDown();
+            });
+        }
+
+        // Then
+        assertTrue(done.await(2, TimeUnit.SECONDS));
+        assertEquals(1, threadNames.size());
+        assertTrue(threadNames.iterator().next().startsWith("waitlist-fulfillment-"));
+    }
+
+    @Test
+    void testSubmit_FailedPassCounted() throws Exception {
+        // Given
+        CountDownLatch done = new CountDownLatch(1);
+
+        // When
+        executor.submit("p", "k", () -> {
+            done.countDown();
+            throw new RuntimeException("boom");
+        });
+
+        // Then
+        assertTrue(done.await(2, TimeUnit.SECONDS));
+        Thread.sleep(50);
+        assertEquals(1, executor.getStats().getFailed());
+        assertEquals(0, executor.getQueueDepth());
+    }
+}
@@ -0,0 +1,181 @@
+package com.example.techprototype.Component;
+
+import com.example.techprototype.Entity.WaitlistItem;
+import com.example.techprototype.Entity.WaitlistOrder;
+import com.example.techprototype.Enums.WaitlistItemStatus;
+import com.example.techprototype.Repository.WaitlistItemRepository;
+import com.example.techprototype.Repository.WaitlistOrderRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.data.redis.core.DefaultTypedTuple;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.SetOperations;
+import org.springframework.data.redis.core.ZSetOperations;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class WaitlistIndexTest {
+
+    private static final LocalDate TRAVEL_DATE = LocalDate.of(2025, 7, 1);
+    private static final String ROUTES_KEY = "waitlist:routes:1:2025-07-01:2";
+
+    @InjectMocks
+    private WaitlistIndex waitlistIndex;
+
+    @Mock
+    private RedisTemplate<String, Object> redisTemplate;
+
+    @Mock
+    private ZSetOperations<String, Object> zSetOperations;
+
+    @Mock
+    private SetOperations<String, Object> setOperations;
+
+    @Mock
+    private StopSequenceCache stopSequenceCache;
+
+    @Mock
+    private WaitlistOrderRepository waitlistOrderRepository;
+
+    @Mock
+    private WaitlistItemRepository waitlistItemRepository;
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.openMocks(this);
+        when(redisTemplate.opsForZSet()).thenReturn(zSetOperations);
+        when(redisTemplate.opsForSet()).thenReturn(setOperations);
+        // 测试中停靠点ID即站序
+        when(stopSequenceCache.getSequence(anyInt(), anyLong())).thenAnswer(invocation -> ((Long) invocation.getArgument(1)).intValue());
+    }
+
+    private WaitlistOrder createOrder(Long waitlistId, LocalDateTime orderTime) {
+        WaitlistOrder order = new WaitlistOrder();
+        order.setWaitlistId(waitlistId);
+        order.setOrderTime(orderTime);
+        return order;
+    }
+
+    private WaitlistItem createItem(Long departureStopId, Long arrivalStopId, WaitlistItemStatus status) {
+        WaitlistItem item = new WaitlistItem();
+        item.setTrainId(1);
+        item.setTravelDate(TRAVEL_DATE);
+        item.setDepartureStopId(departureStopId);
+        item.setArrivalStopId(arrivalStopId);
+        item.setCarriageTypeId(2);
+        item.setItemStatus((byte) status.getCode());
+        return item;
+    }
+
+    private Set<ZSetOperations.TypedTuple<Object>> tuples(Object... memberAndScore) {
+        Set<ZSetOperations.TypedTuple<Object>> result = new LinkedHashSet<>();
+        for (int i = 0; i < memberAndScore.length; i += 2) {
+            result.add(new DefaultTypedTuple<>(memberAndScore[i], (Double) memberAndScore[i + 1]));
+        }
+        return result;
+    }
+
+    @Test
+    void testAdd_IndexesPendingItemsByOrderTime() {
+        // Given
+        LocalDateTime orderTime = LocalDateTime.of(2025, 6, 20, 10, 0);
+        WaitlistOrder order = createOrder(7L, orderTime);
+        List<WaitlistItem> items = Arrays.asList(
+                createItem(1L, 3L, WaitlistItemStatus.PENDING_FULFILLMENT),
+                createItem(2L, 4L, WaitlistItemStatus.CANCELLED));
+
+        // When
+        waitlistIndex.add(order, items);
+
+        // Then
+        double score = orderTime.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+        verify(zSetOperations).add("waitlist:1:2025-07-01:1:3:2", "7", score);
+        verify(setOperations).add(ROUTES_KEY, "1:3");
+        verify(zSetOperations, never()).add(eq("waitlist:1:2025-07-01:2:4:2"), any(), anyDouble());
+        verify(redisTemplate).expireAt(eq("waitlist:1:2025-07-01:1:3:2"), any(Date.class));
+        verify(redisTemplate).expireAt(eq(ROUTES_KEY), any(Date.class));
+    }
+
+    @Test
+    void testRemove() {
+        // When
+        waitlistIndex.remove(7L, List.of(createItem(1L, 3L, WaitlistItemStatus.CANCELLED)));
+
+        // Then
+        verify(zSetOperations).remove("waitlist:1:2025-07-01:1:3:2", "7");
+    }
+
+    @Test
+    void testFindCandidates_OnlyOverlappingRoutesInFifoOrder() {
+        // Given: 释放区段[2, 4)，区间1-3和3-5与之重叠，区间4-6不重叠
+        when(setOperations.members(ROUTES_KEY)).thenReturn(new LinkedHashSet<>(Arrays.asList("1:3", "3:5", "4:6")));
+        when(zSetOperations.rangeWithScores("waitlist:1:2025-07-01:1:3:2", 0, 49))
+                .thenReturn(tuples("20", 200.0, "10", 300.0));
+        when(zSetOperations.rangeWithScores("waitlist:1:2025-07-01:3:5:2", 0, 49))
+                .thenReturn(tuples("30", 100.0, "10", 300.0));
+
+        // When
+        List<Long> candidates = waitlistIndex.findCandidates(1, TRAVEL_DATE, 2L, 4L, 2, 50);
+
+        // Then
+        assertEquals(Arrays.asList(30L, 20L, 10L), candidates);
+        verify(zSetOperations, never()).rangeWithScores(eq("waitlist:1:2025-07-01:4:6:2"), anyLong(), anyLong());
+    }
+
+    @Test
+    void testFindCandidates_EmptyRouteRemoved() {
+        // Given
+        when(setOperations.members(ROUTES_KEY)).thenReturn(new LinkedHashSet<>(List.of("1:3")));
+        when(zSetOperations.rangeWithScores("waitlist:1:2025-07-01:1:3:2", 0, 9)).thenReturn(Collections.emptySet());
+
+        // When
+        List<Long> candidates = waitlistIndex.findCandidates(1, TRAVEL_DATE, 1L, 3L, 2, 10);
+
+        // Then
+        assertTrue(candidates.isEmpty());
+        verify(setOperations).remove(ROUTES_KEY, "1:3");
+    }
+
+    @Test
+    void testFindCandidates_UnknownStop() {
+        // Given
+        when(stopSequenceCache.getSequence(1, 99L)).thenReturn(null);
+
+        // When
+        List<Long> candidates = waitlistIndex.findCandidates(1, TRAVEL_DATE, 99L, 3L, 2, 10);
+
+        // Then
+        assertTrue(candidates.isEmpty());
+        verify(setOperations, never()).members(anyString());
+    }
+
+    @Test
+    void testRun_RebuildsFromPendingOrders() throws Exception {
+        // Given
+        WaitlistOrder order = createOrder(7L, LocalDateTime.of(2025, 6, 20, 10, 0));
+        when(waitlistOrderRepository.findPendingFulfillmentOrders(any(LocalDateTime.class))).thenReturn(List.of(order));
+        when(waitlistItemRepository.findPendingItemsByWaitlistId(7L))
+                .thenReturn(List.of(createItem(1L, 3L, WaitlistItemStatus.PENDING_FULFILLMENT)));
+
+        // When
+        waitlistIndex.run();
+
+        // Then
+        verify(zSetOperations).add(eq("waitlist:1:2025-07-01:1:3:2"), eq("7"), anyDouble());
+    }
+}
@@ -96,7 +96,7 @@ class OrderControllerTest {
 
         MyOrderResponse successResponse = MyOrderResponse.success(Arrays.asList(orderInfo));
 
-        when(orderService.getMyOrders(anyLong())).thenReturn(successResponse);
+        when(orderService.getMyOrders(anyLong(), isNull(), isNull())).thenReturn(successResponse);
 
         mockMvc.perform(get("/api/orders/my")
                 .param("userId", "1"))
@@ -110,7 +110,7 @@ class OrderControllerTest {
     void testGetMyOrders_Failure() throws Exception {
         MyOrderResponse failureResponse = MyOrderResponse.failure("获取失败");
 
-        when(orderService.getMyOrders(anyLong())).thenReturn(failureResponse);
+        when(orderService.getMyOrders(anyLong(), isNull(), isNull())).thenReturn(failureResponse);
 
         mockMvc.perform(get("/api/orders/my")
                 .param("userId", "1"))
@@ -214,7 +214,7 @@ class TicketControllerTest {
 
         MyTicketResponse successResponse = MyTicketResponse.success(Arrays.asList(ticketInfo));
 
-        when(ticketService.getMyTickets(anyLong())).thenReturn(successResponse);
+        when(ticketService.getMyTickets(anyLong(), isNull(), isNull())).thenReturn(successResponse);
 
         mockMvc.perform(get("/api/ticket/my-tickets")
                 .param("userId", "1"))
@@ -228,7 +228,7 @@ class TicketControllerTest {
     void testGetMyTickets_Failure() throws Exception {
         MyTicketResponse failureResponse = MyTicketResponse.failure("获取失败");
 
-        when(ticketService.getMyTickets(anyLong())).thenReturn(failureResponse);
+        when(ticketService.getMyTickets(anyLong(), isNull(), isNull())).thenReturn(failureResponse);
 
         mockMvc.perform(get("/api/ticket/my-tickets")
                 .param("userId", "1"))
@@ -9,9 +9,17 @@ import org.springframework.boot.test.mock.mockito.MockBean;
 import org.springframework.test.web.servlet.MockMvc;
 import org.springframework.test.web.servlet.MvcResult;
 
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import com.example.techprototype.Component.SearchResultCache;
+import com.example.techprototype.DTO.SearchCacheStats;
+import com.example.techprototype.DTO.TrainListPayload;
 import com.example.techprototype.Service.TrainService;
 import static org.mockito.Mockito.when;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -24,15 +32,27 @@ class TrainControllerTest {
     private ObjectMapper objectMapper;
     @MockBean
     private TrainService trainService;
+    @MockBean
+    private SearchResultCache searchResultCache;
 
     @Test
     void testGetTrainListDTO() throws Exception {
+        byte[] body = "[{\"train_id\":\"G1\"}]".getBytes(StandardCharsets.UTF_8);
+        when(trainService.getTrainListPayload()).thenReturn(new TrainListPayload(body, "\"abc\"", List.of()));
+
         MvcResult result = mockMvc.perform(get("/api/trains/list"))
                 .andExpect(status().isOk())
+                .andExpect(header().string("ETag", "\"abc\""))
+                .andExpect(jsonPath("$[0].train_id").value("G1"))
                 .andReturn();
         String json = result.getResponse().getContentAsString();
         assertNotNull(json);
-        // 可进一步断言json结构
+
+        // ETag未变化时不返回内容
+        MvcResult notModified = mockMvc.perform(get("/api/trains/list").header("If-None-Match", "\"abc\""))
+                .andExpect(status().isNotModified())
+                .andReturn();
+        assertEquals(0, notModified.getResponse().getContentAsByteArray().length);
     }
 
     @Test
@@ -90,4 +110,16 @@ class TrainControllerTest {
         String json = result.getResponse().getContentAsString();
         assertTrue(json.contains("error"));
     }
+
+    @Test
+    void testGetSearchCacheStats() throws Exception {
+        SearchCacheStats stats = new SearchCacheStats(90, 10, 75, 10, 10, 5, 0.75, 10, 8, 3000, 120, 2900);
+        when(searchResultCache.getStats()).thenReturn(stats);
+
+        mockMvc.perform(get("/api/trains/search/stats"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.hitRatio").value(0.75))
+                .andExpect(jsonPath("$.versionInvalidations").value(10))
+                .andExpect(jsonPath("$.maxServedAgeMillis").value(2900));
+    }
 }
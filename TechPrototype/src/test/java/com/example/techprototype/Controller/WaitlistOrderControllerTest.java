@@ -1,5 +1,6 @@
 package com.example.techprototype.Controller;
 
+import com.example.techprototype.Component.WaitlistFulfillmentExecutor;
 import com.example.techprototype.DTO.*;
 import com.example.techprototype.Service.WaitlistOrderService;
 import com.fasterxml.jackson.databind.ObjectMapper;
@@ -37,6 +38,9 @@ class WaitlistOrderControllerTest {
     @Mock
     private WaitlistOrderService waitlistOrderService;
 
+    @Mock
+    private WaitlistFulfillmentExecutor waitlistFulfillmentExecutor;
+
     @InjectMocks
     private WaitlistOrderController waitlistOrderController;
 
@@ -114,7 +118,7 @@ class WaitlistOrderControllerTest {
 
         WaitlistOrderResponse successResponse = WaitlistOrderResponse.success(Arrays.asList(orderInfo));
 
-        when(waitlistOrderService.getMyWaitlistOrders(anyLong())).thenReturn(successResponse);
+        when(waitlistOrderService.getMyWaitlistOrders(anyLong(), isNull(), isNull())).thenReturn(successResponse);
 
         mockMvc.perform(get("/api/waitlist/my")
                 .param("userId", "1"))
@@ -128,7 +132,7 @@ class WaitlistOrderControllerTest {
     void testGetMyWaitlistOrders_Failure() throws Exception {
         WaitlistOrderResponse failureResponse = WaitlistOrderResponse.failure("获取失败");
 
-        when(waitlistOrderService.getMyWaitlistOrders(anyLong())).thenReturn(failureResponse);
+        when(waitlistOrderService.getMyWaitlistOrders(anyLong(), isNull(), isNull())).thenReturn(failureResponse);
 
         mockMvc.perform(get("/api/waitlist/my")
                 .param("userId", "1"))
@@ -297,4 +301,16 @@ class WaitlistOrderControllerTest {
                 .andExpect(jsonPath("$.status").value("FAILED"))
                 .andExpect(jsonPath("$.message").value("候补订单项退款失败"));
     }
+
+    @Test
+    void testGetFulfillmentStats() throws Exception {
+        WaitlistFulfillmentStats stats = new WaitlistFulfillmentStats(4, 2, 10, 6, 0, 2, 0, 15, 30, 0.5);
+        when(waitlistFulfillmentExecutor.getStats()).thenReturn(stats);
+
+        mockMvc.perform(get("/api/waitlist/fulfillment/stats"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.queueDepth").value(2))
+                .andExpect(jsonPath("$.coalesced").value(6))
+                .andExpect(jsonPath("$.maxLagMillis").value(30));
+    }
 } 
\ No newline at end of file
@@ -0,0 +1,120 @@
+package com.example.techprototype.DAO.Impl;
+
+import com.example.techprototype.Entity.Order;
+import com.example.techprototype.Entity.Ticket;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+
+import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class OrderBatchDAOImplTest {
+
+    @Mock
+    private JdbcTemplate jdbcTemplate;
+
+    @InjectMocks
+    private OrderBatchDAOImpl orderBatchDAO;
+
+    private Order createOrder(String orderNumber) {
+        Order order = new Order();
+        order.setOrderNumber(orderNumber);
+        order.setUserId(1L);
+        order.setTotalAmount(new BigDecimal(100));
+        order.setOrderStatus((byte) 0);
+        order.setTicketCount(1);
+        return order;
+    }
+
+    private Ticket createTicket(String ticketNumber) {
+        Ticket ticket = new Ticket();
+        ticket.setTicketNumber(ticketNumber);
+        ticket.setPassengerId(100L);
+        ticket.setPrice(new BigDecimal(100));
+        return ticket;
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void testInsertOrdersWithTickets_TwoBatchStatementsAndIdsBackfilled() {
+        Order first = createOrder("O1");
+        Order second = createOrder("O2");
+        Ticket firstTicket = createTicket("T1");
+        Ticket secondTicket = createTicket("T2");
+        Map<String, List<Ticket>> tickets = new HashMap<>();
+        tickets.put("O1", List.of(firstTicket));
+        tickets.put("O2", List.of(secondTicket));
+        when(jdbcTemplate.query(contains("SELECT order_id"), any(RowMapper.class), any(Object[].class)))
+                .thenReturn(Arrays.asList(Map.entry("O1", 10L), Map.entry("O2", 11L)));
+        when(jdbcTemplate.query(contains("SELECT ticket_id"), any(RowMapper.class), any(Object[].class)))
+                .thenReturn(Arrays.asList(Map.entry("T1", 20L), Map.entry("T2", 21L)));
+
+        orderBatchDAO.insertOrdersWithTickets(Arrays.asList(first, second), tickets);
+
+        ArgumentCaptor<List<Object[]>> ticketArgs = ArgumentCaptor.forClass(List.class);
+        verify(jdbcTemplate).batchUpdate(startsWith("INSERT INTO orders"), anyList());
+        verify(jdbcTemplate).batchUpdate(startsWith("INSERT INTO tickets"), ticketArgs.capture());
+        assertEquals(10L, first.getOrderId());
+        assertEquals(11L, secondTicket.getOrderId());
+        assertEquals(2, ticketArgs.getValue().size());
+        assertEquals(10L, ticketArgs.getValue().get(0)[1]);
+        assertEquals(20L, firstTicket.getTicketId());
+        assertEquals(21L, secondTicket.getTicketId());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void testInsertOrdersWithTickets_MissingTicketIdFails() {
+        when(jdbcTemplate.query(contains("SELECT order_id"), any(RowMapper.class), any(Object[].class)))
+                .thenReturn(List.of(Map.entry("O1", 10L)));
+        when(jdbcTemplate.query(contains("SELECT ticket_id"), any(RowMapper.class), any(Object[].class)))
+                .thenReturn(List.of());
+
+        assertThrows(IllegalStateException.class,
+                () -> orderBatchDAO.insertOrdersWithTickets(List.of(createOrder("O1")), Map.of("O1", List.of(createTicket("T1")))));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void testInsertOrdersWithTickets_MissingIdFails() {
+        when(jdbcTemplate.query(contains("SELECT order_id"), any(RowMapper.class), any(Object[].class)))
+                .thenReturn(List.of());
+
+        assertThrows(IllegalStateException.class,
+                () -> orderBatchDAO.insertOrdersWithTickets(List.of(createOrder("O1")), Map.of("O1", List.of(createTicket("T1")))));
+        verify(jdbcTemplate, never()).batchUpdate(startsWith("INSERT INTO tickets"), anyList());
+    }
+
+    @Test
+    void testInsertOrdersWithTickets_Empty() {
+        orderBatchDAO.insertOrdersWithTickets(List.of(), Map.of());
+
+        verifyNoInteractions(jdbcTemplate);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void testFindExistingOrderNumbers() {
+        when(jdbcTemplate.query(contains("SELECT order_number"), any(RowMapper.class), any(Object[].class)))
+                .thenReturn(List.of("O1"));
+
+        Set<String> existing = orderBatchDAO.findExistingOrderNumbers(Arrays.asList("O1", "O2"));
+
+        assertEquals(Set.of("O1"), existing);
+    }
+}
@@ -0,0 +1,63 @@
+package com.example.techprototype.DAO.Impl;
+
+import com.example.techprototype.Repository.TicketInventoryRepository;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class TicketInventoryDAOImplTest {
+
+    @Mock
+    private TicketInventoryRepository ticketInventoryRepository;
+
+    @Mock
+    private JdbcTemplate jdbcTemplate;
+
+    @InjectMocks
+    private TicketInventoryDAOImpl ticketInventoryDAO;
+
+    @Test
+    void testBatchUpdateAvailableSeats_SingleStatement() {
+        Map<Long, Integer> updates = new LinkedHashMap<>();
+        updates.put(1L, 80);
+        updates.put(2L, 79);
+        when(jdbcTemplate.update(anyString(), any(Object[].class))).thenReturn(2);
+
+        int updated = ticketInventoryDAO.batchUpdateAvailableSeats(updates);
+
+        assertEquals(2, updated);
+        ArgumentCaptor<String> sql = ArgumentCaptor.forClass(String.class);
+        verify(jdbcTemplate).update(sql.capture(), eq(new Object[]{1L, 80, 2L, 79, 1L, 2L}));
+        assertTrue(sql.getValue().contains("CASE inventory_id WHEN ? THEN ? WHEN ? THEN ? END"));
+        assertTrue(sql.getValue().contains("cache_version = cache_version + 1"));
+        assertTrue(sql.getValue().endsWith("WHERE inventory_id IN (?, ?)"));
+    }
+
+    @Test
+    void testBatchUpdateAvailableSeats_SplitsLargeBatches() {
+        Map<Long, Integer> updates = new HashMap<>();
+        for (long id = 1; id <= 1200; id++) {
+            updates.put(id, 10);
+        }
+        when(jdbcTemplate.update(anyString(), any(Object[].class))).thenReturn(500, 500, 200);
+
+        int updated = ticketInventoryDAO.batchUpdateAvailableSeats(updates);
+
+        // 每条语句最多500条记录
+        assertEquals(1200, updated);
+        verify(jdbcTemplate, times(3)).update(anyString(), any(Object[].class));
+    }
+}
@@ -197,12 +197,13 @@ class MyTicketResponseTest {
         MyTicketResponse.UserInfo userInfo = new MyTicketResponse.UserInfo();
         
         MyTicketResponse response = new MyTicketResponse("SUCCESS", "测试消息", 
-                Arrays.asList(ticketInfo), timestamp, userInfo);
+                Arrays.asList(ticketInfo), timestamp, userInfo, "cursor");
         
         assertEquals("SUCCESS", response.getStatus());
         assertEquals("测试消息", response.getMessage());
         assertEquals(1, response.getTickets().size());
         assertEquals(timestamp, response.getTimestamp());
         assertEquals(userInfo, response.getUserInfo());
+        assertEquals("cursor", response.getNextCursor());
     }
 } 
\ No newline at end of file
@@ -0,0 +1,294 @@
+package com.example.techprototype.Service.Impl;
+
+import com.example.techprototype.DTO.BookingRequest;
+import com.example.techprototype.DTO.BookingResponse;
+import com.example.techprototype.DTO.OrderMessage;
+import com.example.techprototype.DTO.StockReservation;
+import com.example.techprototype.Entity.Ticket;
+import com.example.techprototype.Enums.ReservationStatus;
+import com.example.techprototype.Repository.UserPassengerRelationRepository;
+import com.example.techprototype.Service.InventoryInitService;
+import com.example.techprototype.Service.OrderOutboxService;
+import com.example.techprototype.Service.RedisService;
+import com.example.techprototype.Service.TimeConflictService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.AbstractPlatformTransactionManager;
+import org.springframework.transaction.support.DefaultTransactionStatus;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.lang.reflect.Proxy;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * 购票并发控制基准测试：按席别分布式锁 与 无锁（Lua原子扣减 + 订单号幂等）
+ * 每次调用让users个用户同时对同一车次同一天同一席别下单，测量全部请求返回的耗时，吞吐量 = users / 耗时
+ * Redis和数据库用内存实现代替，每次往返固定延迟：Redis往返REDIS_RTT_MICROS，数据库访问DB_MICROS；
+ * 分布式锁等待时间与租期同线上（5s/30s），Lua脚本在Redis中串行执行
+ * 运行方式：执行main方法，或 mvn test-compile 后用 org.openjdk.jmh.Main 指定本类
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 1)
+@Measurement(iterations = 3)
+@Fork(1)
+public class BookingConcurrencyBenchmark {
+
+    private static final long REDIS_RTT_MICROS = 300;
+    private static final long DB_MICROS = 1500;
+    private static final LocalDate TRAVEL_DATE = LocalDate.of(2025, 7, 1);
+
+    @Param({"1000", "5000", "10000"})
+    private int users;
+
+    @Param({"lock", "lock-free"})
+    private String mode;
+
+    private TicketServiceImpl ticketService;
+    private ExecutorService executor;
+
+    // 模拟Redis中的库存、分布式锁和预留标记
+    private final AtomicLong stock = new AtomicLong();
+    private final Object luaLock = new Object();
+    private final Map<String, ReentrantLock> locks = new ConcurrentHashMap<>();
+    private final Map<String, Long> reservations = new ConcurrentHashMap<>();
+
+    private final AtomicLong succeeded = new AtomicLong();
+    private final AtomicLong busy = new AtomicLong();
+    private final AtomicLong orderSequence = new AtomicLong();
+    private long startNanos;
+
+    @Setup(Level.Trial)
+    public void setUpTrial() {
+        ticketService = new TicketServiceImpl();
+        ReflectionTestUtils.setField(ticketService, "lockFree", "lock-free".equals(mode));
+        ReflectionTestUtils.setField(ticketService, "redisService", fakeRedisService());
+        ReflectionTestUtils.setField(ticketService, "userPassengerRelationRepository", fakeRelationRepository());
+        ReflectionTestUtils.setField(ticketService, "inventoryInitService", new InventoryInitService() {
+            @Override
+            public boolean isLoaded(Integer trainId) {
+                return true;
+            }
+        });
+        ReflectionTestUtils.setField(ticketService, "timeConflictService", new TimeConflictService() {
+            @Override
+            public List<Ticket> checkTimeConflict(Long passengerId, LocalDate travelDate, Integer trainId,
+                                                  Long departureStopId, Long arrivalStopId) {
+                pause(DB_MICROS);
+                return new ArrayList<>();
+            }
+        });
+        ReflectionTestUtils.setField(ticketService, "orderOutboxService", new OrderOutboxService() {
+            @Override
+            public void append(OrderMessage orderMessage) {
+                pause(DB_MICROS);
+            }
+        });
+        // 发件箱事务只执行同步回调，耗时计入append
+        ReflectionTestUtils.setField(ticketService, "transactionTemplate", new TransactionTemplate(new AbstractPlatformTransactionManager() {
+            @Override
+            protected Object doGetTransaction() {
+                return new Object();
+            }
+
+            @Override
+            protected void doBegin(Object transaction, TransactionDefinition definition) {
+            }
+
+            @Override
+            protected void doCommit(DefaultTransactionStatus status) {
+            }
+
+            @Override
+            protected void doRollback(DefaultTransactionStatus status) {
+            }
+        }));
+        executor = Executors.newVirtualThreadPerTaskExecutor();
+    }
+
+    @Setup(Level.Invocation)
+    public void setUpInvocation() {
+        // 库存充足，失败只来自并发控制
+        stock.set(users * 2L);
+        reservations.clear();
+        succeeded.set(0);
+        busy.set(0);
+        startNanos = System.nanoTime();
+    }
+
+    @Benchmark
+    public long bookConcurrently() throws InterruptedException {
+        CountDownLatch start = new CountDownLatch(1);
+        CountDownLatch done = new CountDownLatch(users);
+        for (int i = 0; i < users; i++) {
+            long userId = i + 1;
+            executor.submit(() -> {
+                try {
+                    start.await();
+                    BookingResponse response = ticketService.bookTickets(createRequest(userId));
+                    if ("SUCCESS".equals(response.getStatus())) {
+                        succeeded.incrementAndGet();
+                    } else {
+                        busy.incrementAndGet();
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } finally {
+                    done.countDown();
+                }
+            });
+        }
+        start.countDown();
+        done.await();
+        return succeeded.get();
+    }
+
+    @TearDown(Level.Invocation)
+    public void report() {
+        double seconds = (System.nanoTime() - startNanos) / 1_000_000_000.0;
+        System.out.printf("%n[%s, %d用户] 成功%d, 失败%d, 吞吐量%.0f单/秒%n",
+                mode, users, succeeded.get(), busy.get(), succeeded.get() / seconds);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDownTrial() {
+        executor.shutdownNow();
+    }
+
+    private BookingRequest createRequest(long userId) {
+        BookingRequest request = new BookingRequest();
+        request.setUserId(userId);
+        request.setTrainId(1);
+        request.setDepartureStopId(1L);
+        request.setArrivalStopId(3L);
+        request.setTravelDate(TRAVEL_DATE);
+        request.setCarriageTypeId(1);
+        request.setPassengers(List.of(new BookingRequest.PassengerInfo(userId, (byte) 1, 1)));
+        return request;
+    }
+
+    private RedisService fakeRedisService() {
+        return (RedisService) Proxy.newProxyInstance(RedisService.class.getClassLoader(), new Class<?>[]{RedisService.class},
+                (proxy, method, args) -> {
+                    switch (method.getName()) {
+                        case "tryLock": {
+                            pause(REDIS_RTT_MICROS);
+                            ReentrantLock lock = locks.computeIfAbsent((String) args[0], k -> new ReentrantLock());
+                            return lock.tryLock((Long) args[1], TimeUnit.SECONDS);
+                        }
+                        case "unlock": {
+                            pause(REDIS_RTT_MICROS);
+                            ReentrantLock lock = locks.get((String) args[0]);
+                            if (lock != null && lock.isHeldByCurrentThread()) {
+                                lock.unlock();
+                            }
+                            return null;
+                        }
+                        case "reserveStocksOnce": {
+                            pause(REDIS_RTT_MICROS);
+                            return reserveOnce((String) args[0], (Long) args[1]);
+                        }
+                        case "incrStock":
+                            pause(REDIS_RTT_MICROS);
+                            stock.incrementAndGet();
+                            return true;
+                        case "confirmReservation":
+                            pause(REDIS_RTT_MICROS);
+                            return null;
+                        case "releaseReservation":
+                            pause(REDIS_RTT_MICROS);
+                            if (reservations.remove((String) args[0]) != null) {
+                                stock.incrementAndGet();
+                                return true;
+                            }
+                            return false;
+                        case "generateOrderNumber":
+                            return String.valueOf(orderSequence.incrementAndGet());
+                        default:
+                            throw new UnsupportedOperationException(method.getName());
+                    }
+                });
+    }
+
+    private UserPassengerRelationRepository fakeRelationRepository() {
+        return (UserPassengerRelationRepository) Proxy.newProxyInstance(UserPassengerRelationRepository.class.getClassLoader(),
+                new Class<?>[]{UserPassengerRelationRepository.class},
+                (proxy, method, args) -> {
+                    if ("existsByUserIdAndPassengerId".equals(method.getName())) {
+                        pause(DB_MICROS);
+                        return true;
+                    }
+                    throw new UnsupportedOperationException(method.getName());
+                });
+    }
+
+    /**
+     * Lua脚本在Redis中单线程执行：检查并扣减库存
+     */
+    private boolean reserve() {
+        synchronized (luaLock) {
+            if (stock.get() <= 0) {
+                return false;
+            }
+            stock.decrementAndGet();
+            return true;
+        }
+    }
+
+    /**
+     * 幂等扣减脚本：预留标记存在时不扣减，扣减成功后写入预留标记
+     */
+    private StockReservation reserveOnce(String orderNumber, Long userId) {
+        synchronized (luaLock) {
+            Long owner = reservations.get(orderNumber);
+            if (owner != null) {
+                return StockReservation.of(owner.equals(userId) ? ReservationStatus.DUPLICATE : ReservationStatus.CONFLICT);
+            }
+            if (!reserve()) {
+                return StockReservation.insufficient(1);
+            }
+            reservations.put(orderNumber, userId);
+            return StockReservation.of(ReservationStatus.RESERVED);
+        }
+    }
+
+    private static void pause(long micros) {
+        LockSupport.parkNanos(micros * 1000);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options options = new OptionsBuilder()
+                .include(BookingConcurrencyBenchmark.class.getSimpleName())
+                .build();
+        new Runner(options).run();
+    }
+}
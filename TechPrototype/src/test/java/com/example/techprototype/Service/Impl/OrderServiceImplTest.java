@@ -1,5 +1,8 @@
 package com.example.techprototype.Service.Impl;
 
+import com.example.techprototype.Component.HistoryPager;
+import com.example.techprototype.Component.PassengerItineraryIndex;
+import com.example.techprototype.Component.TimetableCache;
 import com.example.techprototype.DTO.BookingRequest;
 import com.example.techprototype.DTO.BookingResponse;
 import com.example.techprototype.DTO.CancelOrderRequest;
@@ -23,7 +26,10 @@ import org.junit.jupiter.api.Test;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
+import org.mockito.Spy;
+import org.springframework.data.domain.Pageable;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.util.ReflectionTestUtils;
 import org.springframework.test.context.ActiveProfiles;
 
 import java.time.LocalDate;
@@ -63,19 +69,22 @@ class OrderServiceImplTest {
     @Mock
     private TicketInventoryDAO ticketInventoryDAO;
     @Mock
-    private TrainRepository trainRepository;
-    @Mock
-    private TrainStopRepository trainStopRepository;
-    @Mock
-    private StationRepository stationRepository;
+    private TimetableCache timetableCache;
     @Mock
     private SeatService seatService;
     @Mock
     private org.springframework.amqp.rabbit.core.RabbitTemplate rabbitTemplate;
+    @Mock
+    private PassengerItineraryIndex passengerItineraryIndex;
+    @Spy
+    private HistoryPager historyPager;
 
     @BeforeEach
     void setUp() {
         MockitoAnnotations.openMocks(this);
+        // 按停靠点查车站时沿用各用例对停靠点和车站的打桩
+        when(timetableCache.getStationOfStop(any())).thenAnswer(invocation ->
+                timetableCache.getStop(invocation.<Long>getArgument(0)).flatMap(stop -> timetableCache.getStation(stop.getStationId())));
     }
 
     @Test
@@ -152,7 +161,7 @@ class OrderServiceImplTest {
         com.example.techprototype.Entity.TrainStop trainStop = new com.example.techprototype.Entity.TrainStop();
         trainStop.setArrivalTime(java.time.LocalTime.of(14, 30));
         
-        when(trainStopRepository.findByStopId(1L)).thenReturn(Optional.of(trainStop));
+        when(timetableCache.getStop(1L)).thenReturn(Optional.of(trainStop));
         
         // 执行测试
         java.time.LocalTime result = (java.time.LocalTime) getArrivalTimeMethod.invoke(orderService, 1, 1L);
@@ -161,7 +170,7 @@ class OrderServiceImplTest {
         assertEquals(java.time.LocalTime.of(14, 30), result);
         
         // 测试异常情况
-        when(trainStopRepository.findByStopId(2L)).thenReturn(Optional.empty());
+        when(timetableCache.getStop(2L)).thenReturn(Optional.empty());
         java.time.LocalTime result2 = (java.time.LocalTime) getArrivalTimeMethod.invoke(orderService, 1, 2L);
         assertNull(result2);
     }
@@ -176,7 +185,7 @@ class OrderServiceImplTest {
         com.example.techprototype.Entity.TrainStop trainStop = new com.example.techprototype.Entity.TrainStop();
         trainStop.setDepartureTime(java.time.LocalTime.of(10, 30));
         
-        when(trainStopRepository.findByStopId(1L)).thenReturn(Optional.of(trainStop));
+        when(timetableCache.getStop(1L)).thenReturn(Optional.of(trainStop));
         
         // 执行测试
         java.time.LocalTime result = (java.time.LocalTime) getDepartureTimeMethod.invoke(orderService, 1, 1L);
@@ -185,7 +194,7 @@ class OrderServiceImplTest {
         assertEquals(java.time.LocalTime.of(10, 30), result);
         
         // 测试异常情况
-        when(trainStopRepository.findByStopId(2L)).thenReturn(Optional.empty());
+        when(timetableCache.getStop(2L)).thenReturn(Optional.empty());
         java.time.LocalTime result2 = (java.time.LocalTime) getDepartureTimeMethod.invoke(orderService, 1, 2L);
         assertNull(result2);
     }
@@ -200,7 +209,7 @@ class OrderServiceImplTest {
         com.example.techprototype.Entity.Train train = new com.example.techprototype.Entity.Train();
         train.setTrainNumber("G101");
         
-        when(trainRepository.findById(1)).thenReturn(Optional.of(train));
+        when(timetableCache.getTrain(1)).thenReturn(Optional.of(train));
         
         // 执行测试
         String result = (String) getTrainNumberMethod.invoke(orderService, 1);
@@ -209,7 +218,7 @@ class OrderServiceImplTest {
         assertEquals("G101", result);
         
         // 测试异常情况
-        when(trainRepository.findById(2)).thenReturn(Optional.empty());
+        when(timetableCache.getTrain(2)).thenReturn(Optional.empty());
         String result2 = (String) getTrainNumberMethod.invoke(orderService, 2);
         assertEquals("未知车次", result2);
     }
@@ -250,15 +259,15 @@ class OrderServiceImplTest {
         station.setStationName("北京站");
         
         // Mock Repository调用
-        when(orderRepository.findByUserIdOrderByOrderTimeDesc(1L)).thenReturn(java.util.Arrays.asList(order));
-        when(ticketRepository.findByOrderId(1L)).thenReturn(java.util.Arrays.asList(ticket));
-        when(trainRepository.findById(1)).thenReturn(Optional.of(train));
-        when(trainStopRepository.findByStopId(1L)).thenReturn(Optional.of(trainStop));
-        when(trainStopRepository.findByStopId(2L)).thenReturn(Optional.of(trainStop));
-        when(stationRepository.findById(1)).thenReturn(Optional.of(station));
+        when(orderRepository.findFirstPageByUserId(eq(1L), any(Pageable.class))).thenReturn(java.util.Arrays.asList(order));
+        when(ticketRepository.findByOrderIdIn(List.of(1L))).thenReturn(java.util.Arrays.asList(ticket));
+        when(timetableCache.getTrain(1)).thenReturn(Optional.of(train));
+        when(timetableCache.getStop(1L)).thenReturn(Optional.of(trainStop));
+        when(timetableCache.getStop(2L)).thenReturn(Optional.of(trainStop));
+        when(timetableCache.getStation(1)).thenReturn(Optional.of(station));
         
         // 执行测试
-        com.example.techprototype.DTO.MyOrderResponse response = orderService.getMyOrders(1L);
+        com.example.techprototype.DTO.MyOrderResponse response = orderService.getMyOrders(1L, null, null);
         
         // 验证结果
         assertEquals("SUCCESS", response.getStatus());
@@ -272,17 +281,17 @@ class OrderServiceImplTest {
         assertEquals("已支付", orderInfo.getOrderStatusText());
         
         // 验证Repository调用
-        verify(orderRepository).findByUserIdOrderByOrderTimeDesc(1L);
-        verify(ticketRepository).findByOrderId(1L);
+        verify(orderRepository).findFirstPageByUserId(eq(1L), any(Pageable.class));
+        verify(ticketRepository).findByOrderIdIn(List.of(1L));
     }
     
     @Test
     void testGetMyOrders_Exception() {
         // Mock Repository抛出异常
-        when(orderRepository.findByUserIdOrderByOrderTimeDesc(1L)).thenThrow(new RuntimeException("数据库异常"));
+        when(orderRepository.findFirstPageByUserId(eq(1L), any(Pageable.class))).thenThrow(new RuntimeException("数据库异常"));
         
         // 执行测试
-        com.example.techprototype.DTO.MyOrderResponse response = orderService.getMyOrders(1L);
+        com.example.techprototype.DTO.MyOrderResponse response = orderService.getMyOrders(1L, null, null);
         
         // 验证结果
         assertEquals("FAILURE", response.getStatus());
@@ -292,10 +301,10 @@ class OrderServiceImplTest {
     @Test
     void testGetMyOrders_EmptyOrders() {
         // Mock Repository返回空列表
-        when(orderRepository.findByUserIdOrderByOrderTimeDesc(1L)).thenReturn(Collections.emptyList());
+        when(orderRepository.findFirstPageByUserId(eq(1L), any(Pageable.class))).thenReturn(Collections.emptyList());
         
         // 执行测试
-        com.example.techprototype.DTO.MyOrderResponse response = orderService.getMyOrders(1L);
+        com.example.techprototype.DTO.MyOrderResponse response = orderService.getMyOrders(1L, null, null);
         
         // 验证结果
         assertEquals("SUCCESS", response.getStatus());
@@ -312,11 +321,11 @@ class OrderServiceImplTest {
         order.setUserId(1L);
         
         // Mock Repository调用
-        when(orderRepository.findByUserIdOrderByOrderTimeDesc(1L)).thenReturn(java.util.Arrays.asList(order));
-        when(ticketRepository.findByOrderId(1L)).thenReturn(Collections.emptyList());
+        when(orderRepository.findFirstPageByUserId(eq(1L), any(Pageable.class))).thenReturn(java.util.Arrays.asList(order));
+        when(ticketRepository.findByOrderIdIn(List.of(1L))).thenReturn(Collections.emptyList());
         
         // 执行测试
-        com.example.techprototype.DTO.MyOrderResponse response = orderService.getMyOrders(1L);
+        com.example.techprototype.DTO.MyOrderResponse response = orderService.getMyOrders(1L, null, null);
         
         // 验证结果
         assertEquals("SUCCESS", response.getStatus());
@@ -324,6 +333,121 @@ class OrderServiceImplTest {
         assertEquals(0, response.getOrders().size()); // 没有车票的订单会被跳过
     }
     
+    @Test
+    void testGetMyOrders_QueryCountIndependentOfOrderCount() {
+        // 50个订单、每个订单2张车票，只查询一次订单和一次车票
+        List<Order> orders = new ArrayList<>();
+        List<Ticket> tickets = new ArrayList<>();
+        List<Long> orderIds = new ArrayList<>();
+        for (long orderId = 1; orderId <= 50; orderId++) {
+            orders.add(createMockOrder(orderId, "ORDER" + orderId));
+            orderIds.add(orderId);
+            for (long seat = 0; seat < 2; seat++) {
+                Ticket ticket = createMockTicket();
+                ticket.setTicketId(orderId * 10 + seat);
+                ticket.setOrderId(orderId);
+                tickets.add(ticket);
+            }
+        }
+        when(orderRepository.findFirstPageByUserId(eq(1L), any(Pageable.class))).thenReturn(orders);
+        when(ticketRepository.findByOrderIdIn(orderIds)).thenReturn(tickets);
+        when(timetableCache.getTrain(1)).thenReturn(Optional.of(createMockTrain("G123")));
+        when(timetableCache.getStop(anyLong())).thenReturn(Optional.of(createMockTrainStop()));
+        when(timetableCache.getStation(1)).thenReturn(Optional.of(createMockStation()));
+        
+        MyOrderResponse response = orderService.getMyOrders(1L, null, 50);
+        
+        assertEquals("SUCCESS", response.getStatus());
+        assertEquals(50, response.getOrders().size());
+        assertEquals("ORDER50", response.getOrders().get(49).getOrderNumber());
+        assertEquals("G123", response.getOrders().get(49).getTrainNumber());
+        verify(orderRepository).findFirstPageByUserId(eq(1L), any(Pageable.class));
+        verify(ticketRepository).findByOrderIdIn(orderIds);
+        verifyNoMoreInteractions(orderRepository, ticketRepository);
+    }
+    
+    @Test
+    void testGetMyOrders_NextPageStartsAfterCursor() {
+        LocalDateTime orderTime = LocalDateTime.of(2025, 7, 1, 8, 0);
+        List<Order> orders = new ArrayList<>();
+        for (long orderId = 3; orderId >= 1; orderId--) {
+            Order order = createMockOrder(orderId, "ORDER" + orderId);
+            order.setOrderTime(orderTime);
+            orders.add(order);
+        }
+        when(orderRepository.findFirstPageByUserId(eq(1L), any(Pageable.class))).thenReturn(orders);
+        when(orderRepository.findPageByUserIdBefore(eq(1L), eq(orderTime), eq(2L), any(Pageable.class)))
+                .thenReturn(orders.subList(2, 3));
+        when(ticketRepository.findByOrderIdIn(any())).thenAnswer(invocation -> {
+            List<Ticket> tickets = new ArrayList<>();
+            for (Long orderId : invocation.<List<Long>>getArgument(0)) {
+                Ticket ticket = createMockTicket();
+                ticket.setOrderId(orderId);
+                tickets.add(ticket);
+            }
+            return tickets;
+        });
+        when(timetableCache.getTrain(1)).thenReturn(Optional.of(createMockTrain("G123")));
+        when(timetableCache.getStop(anyLong())).thenReturn(Optional.of(createMockTrainStop()));
+        when(timetableCache.getStation(1)).thenReturn(Optional.of(createMockStation()));
+        
+        // 第一页多读一行，返回最后一行的游标
+        MyOrderResponse first = orderService.getMyOrders(1L, null, 2);
+        assertEquals(2, first.getOrders().size());
+        assertNotNull(first.getNextCursor());
+        verify(orderRepository).findFirstPageByUserId(1L, org.springframework.data.domain.PageRequest.of(0, 3));
+        
+        // 下单时间相同，按订单ID继续向后读取
+        MyOrderResponse second = orderService.getMyOrders(1L, first.getNextCursor(), 2);
+        assertEquals(1, second.getOrders().size());
+        assertEquals("ORDER1", second.getOrders().get(0).getOrderNumber());
+        assertNull(second.getNextCursor());
+    }
+    
+    @Test
+    void testGetMyOrders_NoCursorOrSizeReturnsAllOrders() {
+        // 不分页的调用方（不传cursor和size）拿到全部订单，超过默认页大小也不截断
+        ReflectionTestUtils.setField(historyPager, "exportBatchSize", 20);
+        LocalDateTime orderTime = LocalDateTime.of(2025, 7, 1, 8, 0);
+        List<Order> orders = new ArrayList<>();
+        for (long orderId = 25; orderId >= 1; orderId--) {
+            Order order = createMockOrder(orderId, "ORDER" + orderId);
+            order.setOrderTime(orderTime);
+            orders.add(order);
+        }
+        when(orderRepository.findFirstPageByUserId(eq(1L), any(Pageable.class))).thenReturn(orders.subList(0, 20));
+        when(orderRepository.findPageByUserIdBefore(eq(1L), eq(orderTime), eq(6L), any(Pageable.class)))
+                .thenReturn(orders.subList(20, 25));
+        when(ticketRepository.findByOrderIdIn(any())).thenAnswer(invocation -> {
+            List<Ticket> tickets = new ArrayList<>();
+            for (Long orderId : invocation.<List<Long>>getArgument(0)) {
+                Ticket ticket = createMockTicket();
+                ticket.setOrderId(orderId);
+                tickets.add(ticket);
+            }
+            return tickets;
+        });
+        when(timetableCache.getTrain(1)).thenReturn(Optional.of(createMockTrain("G123")));
+        when(timetableCache.getStop(anyLong())).thenReturn(Optional.of(createMockTrainStop()));
+        when(timetableCache.getStation(1)).thenReturn(Optional.of(createMockStation()));
+        
+        MyOrderResponse response = orderService.getMyOrders(1L, null, null);
+        
+        assertEquals("SUCCESS", response.getStatus());
+        assertEquals(25, response.getOrders().size());
+        assertEquals("ORDER1", response.getOrders().get(24).getOrderNumber());
+        assertNull(response.getNextCursor());
+        verify(orderRepository).findFirstPageByUserId(1L, org.springframework.data.domain.PageRequest.of(0, 20));
+    }
+    
+    @Test
+    void testGetMyOrders_InvalidCursor() {
+        MyOrderResponse response = orderService.getMyOrders(1L, "not-a-cursor", 2);
+        
+        assertEquals("FAILURE", response.getStatus());
+        verifyNoInteractions(orderRepository);
+    }
+    
     @Test
     void testGetStationName_Exception() throws Exception {
         // 使用反射测试私有方法
@@ -331,7 +455,7 @@ class OrderServiceImplTest {
         getStationNameMethod.setAccessible(true);
         
         // Mock Repository抛出异常
-        when(trainStopRepository.findByStopId(1L)).thenThrow(new RuntimeException("数据库异常"));
+        when(timetableCache.getStop(1L)).thenThrow(new RuntimeException("数据库异常"));
         
         // 执行测试
         String result = (String) getStationNameMethod.invoke(orderService, 1L);
@@ -347,7 +471,7 @@ class OrderServiceImplTest {
         getStationNameMethod.setAccessible(true);
         
         // Mock Repository返回空
-        when(trainStopRepository.findByStopId(1L)).thenReturn(Optional.empty());
+        when(timetableCache.getStop(1L)).thenReturn(Optional.empty());
         
         // 执行测试
         String result = (String) getStationNameMethod.invoke(orderService, 1L);
@@ -368,8 +492,8 @@ class OrderServiceImplTest {
         trainStop.setStationId(1);
         
         // Mock Repository调用
-        when(trainStopRepository.findByStopId(1L)).thenReturn(Optional.of(trainStop));
-        when(stationRepository.findById(1)).thenReturn(Optional.empty());
+        when(timetableCache.getStop(1L)).thenReturn(Optional.of(trainStop));
+        when(timetableCache.getStation(1)).thenReturn(Optional.empty());
         
         // 执行测试
         String result = (String) getStationNameMethod.invoke(orderService, 1L);
@@ -385,7 +509,7 @@ class OrderServiceImplTest {
         getTrainNumberMethod.setAccessible(true);
         
         // Mock Repository抛出异常
-        when(trainRepository.findById(1)).thenThrow(new RuntimeException("数据库异常"));
+        when(timetableCache.getTrain(1)).thenThrow(new RuntimeException("数据库异常"));
         
         // 执行测试
         String result = (String) getTrainNumberMethod.invoke(orderService, 1);
@@ -401,7 +525,7 @@ class OrderServiceImplTest {
         getArrivalTimeMethod.setAccessible(true);
         
         // Mock Repository抛出异常
-        when(trainStopRepository.findByStopId(1L)).thenThrow(new RuntimeException("数据库异常"));
+        when(timetableCache.getStop(1L)).thenThrow(new RuntimeException("数据库异常"));
         
         // 执行测试
         java.time.LocalTime result = (java.time.LocalTime) getArrivalTimeMethod.invoke(orderService, 1, 1L);
@@ -417,7 +541,7 @@ class OrderServiceImplTest {
         getDepartureTimeMethod.setAccessible(true);
         
         // Mock Repository抛出异常
-        when(trainStopRepository.findByStopId(1L)).thenThrow(new RuntimeException("数据库异常"));
+        when(timetableCache.getStop(1L)).thenThrow(new RuntimeException("数据库异常"));
         
         // 执行测试
         java.time.LocalTime result = (java.time.LocalTime) getDepartureTimeMethod.invoke(orderService, 1, 1L);
@@ -442,8 +566,8 @@ class OrderServiceImplTest {
         station.setStationName("北京站");
         
         // Mock Repository调用
-        when(trainStopRepository.findByStopId(1L)).thenReturn(Optional.of(trainStop));
-        when(stationRepository.findById(1)).thenReturn(Optional.of(station));
+        when(timetableCache.getStop(1L)).thenReturn(Optional.of(trainStop));
+        when(timetableCache.getStation(1)).thenReturn(Optional.of(station));
         
         // 执行测试
         String result = (String) getStationNameMethod.invoke(orderService, 1L);
@@ -496,16 +620,16 @@ class OrderServiceImplTest {
         arrivalStation.setStationName("上海站");
         
         // Mock Repository调用
-        when(orderRepository.findByUserIdOrderByOrderTimeDesc(1L)).thenReturn(java.util.Arrays.asList(order));
-        when(ticketRepository.findByOrderId(1L)).thenReturn(java.util.Arrays.asList(ticket));
-        when(trainRepository.findById(1)).thenReturn(Optional.of(train));
-        when(trainStopRepository.findByStopId(1L)).thenReturn(Optional.of(departureStop));
-        when(trainStopRepository.findByStopId(2L)).thenReturn(Optional.of(arrivalStop));
-        when(stationRepository.findById(1)).thenReturn(Optional.of(departureStation));
-        when(stationRepository.findById(2)).thenReturn(Optional.of(arrivalStation));
+        when(orderRepository.findFirstPageByUserId(eq(1L), any(Pageable.class))).thenReturn(java.util.Arrays.asList(order));
+        when(ticketRepository.findByOrderIdIn(List.of(1L))).thenReturn(java.util.Arrays.asList(ticket));
+        when(timetableCache.getTrain(1)).thenReturn(Optional.of(train));
+        when(timetableCache.getStop(1L)).thenReturn(Optional.of(departureStop));
+        when(timetableCache.getStop(2L)).thenReturn(Optional.of(arrivalStop));
+        when(timetableCache.getStation(1)).thenReturn(Optional.of(departureStation));
+        when(timetableCache.getStation(2)).thenReturn(Optional.of(arrivalStation));
         
         // 执行测试
-        com.example.techprototype.DTO.MyOrderResponse response = orderService.getMyOrders(1L);
+        com.example.techprototype.DTO.MyOrderResponse response = orderService.getMyOrders(1L, null, null);
         
         // 验证结果
         assertEquals("SUCCESS", response.getStatus());
@@ -694,7 +818,7 @@ class OrderServiceImplTest {
         com.example.techprototype.Entity.TrainStop trainStop = new com.example.techprototype.Entity.TrainStop();
         trainStop.setDepartureTime(java.time.LocalTime.of(10, 30));
         
-        when(trainStopRepository.findByStopId(1L)).thenReturn(Optional.of(trainStop));
+        when(timetableCache.getStop(1L)).thenReturn(Optional.of(trainStop));
         
         // 执行测试
         Boolean result = (Boolean) canRefundTicketMethod.invoke(orderService, ticket, order);
@@ -746,7 +870,7 @@ class OrderServiceImplTest {
         com.example.techprototype.Entity.TrainStop trainStop = new com.example.techprototype.Entity.TrainStop();
         trainStop.setDepartureTime(java.time.LocalTime.of(18, 0)); // 下午6点
         
-        when(trainStopRepository.findByStopId(1L)).thenReturn(Optional.of(trainStop));
+        when(timetableCache.getStop(1L)).thenReturn(Optional.of(trainStop));
         
         // 执行测试
         Boolean result = (Boolean) canRefundTicketMethod.invoke(orderService, ticket, order);
@@ -798,7 +922,7 @@ class OrderServiceImplTest {
         com.example.techprototype.Entity.TrainStop trainStop = new com.example.techprototype.Entity.TrainStop();
         trainStop.setDepartureTime(java.time.LocalTime.of(18, 0)); // 下午6点
         
-        when(trainStopRepository.findByStopId(1L)).thenReturn(Optional.of(trainStop));
+        when(timetableCache.getStop(1L)).thenReturn(Optional.of(trainStop));
         
         // 执行测试
         String result = (String) getRefundReasonMethod.invoke(orderService, ticket, order);
@@ -827,7 +951,7 @@ class OrderServiceImplTest {
         com.example.techprototype.Entity.TrainStop trainStop = new com.example.techprototype.Entity.TrainStop();
         trainStop.setDepartureTime(java.time.LocalTime.of(10, 30));
         
-        when(trainStopRepository.findByStopId(1L)).thenReturn(Optional.of(trainStop));
+        when(timetableCache.getStop(1L)).thenReturn(Optional.of(trainStop));
         
         // 执行测试
         String result = (String) getRefundReasonMethod.invoke(orderService, ticket, order);
@@ -856,7 +980,7 @@ class OrderServiceImplTest {
         com.example.techprototype.Entity.TrainStop trainStop = new com.example.techprototype.Entity.TrainStop();
         trainStop.setDepartureTime(java.time.LocalTime.of(10, 30));
         
-        when(trainStopRepository.findByStopId(1L)).thenReturn(Optional.of(trainStop));
+        when(timetableCache.getStop(1L)).thenReturn(Optional.of(trainStop));
         
         // 执行测试
         Boolean result = (Boolean) canRefundTicketMethod.invoke(orderService, ticket, order);
@@ -885,7 +1009,7 @@ class OrderServiceImplTest {
         com.example.techprototype.Entity.TrainStop trainStop = new com.example.techprototype.Entity.TrainStop();
         trainStop.setDepartureTime(java.time.LocalTime.of(10, 30));
         
-        when(trainStopRepository.findByStopId(1L)).thenReturn(Optional.of(trainStop));
+        when(timetableCache.getStop(1L)).thenReturn(Optional.of(trainStop));
         
         // 执行测试
         String result = (String) getRefundReasonMethod.invoke(orderService, ticket, order);
@@ -1204,10 +1328,10 @@ class OrderServiceImplTest {
         // Mock repository 调用
         when(orderRepository.findByUserIdAndOrderNumberContaining(eq(userId), eq("ORDER123")))
                 .thenReturn(mockOrders);
-        when(ticketRepository.findByOrderId(1L)).thenReturn(Arrays.asList(createMockTicket()));
-        when(trainRepository.findById(1)).thenReturn(Optional.of(createMockTrain()));
-        when(trainStopRepository.findByStopId(1L)).thenReturn(Optional.of(createMockTrainStop()));
-        when(stationRepository.findById(1)).thenReturn(Optional.of(createMockStation()));
+        when(ticketRepository.findByOrderIdIn(List.of(1L))).thenReturn(Arrays.asList(createMockTicket()));
+        when(timetableCache.getTrain(1)).thenReturn(Optional.of(createMockTrain()));
+        when(timetableCache.getStop(1L)).thenReturn(Optional.of(createMockTrainStop()));
+        when(timetableCache.getStation(1)).thenReturn(Optional.of(createMockStation()));
         
         // 执行测试
         MyOrderResponse response = orderService.getMyOrdersByConditions(userId, orderNumber, null, null, null, null);
@@ -1232,10 +1356,10 @@ class OrderServiceImplTest {
         // Mock repository 调用
         when(orderRepository.findByUserIdAndOrderStatus(eq(userId), eq(orderStatus)))
                 .thenReturn(mockOrders);
-        when(ticketRepository.findByOrderId(1L)).thenReturn(Arrays.asList(createMockTicket()));
-        when(trainRepository.findById(1)).thenReturn(Optional.of(createMockTrain()));
-        when(trainStopRepository.findByStopId(1L)).thenReturn(Optional.of(createMockTrainStop()));
-        when(stationRepository.findById(1)).thenReturn(Optional.of(createMockStation()));
+        when(ticketRepository.findByOrderIdIn(List.of(1L))).thenReturn(Arrays.asList(createMockTicket()));
+        when(timetableCache.getTrain(1)).thenReturn(Optional.of(createMockTrain()));
+        when(timetableCache.getStop(1L)).thenReturn(Optional.of(createMockTrainStop()));
+        when(timetableCache.getStation(1)).thenReturn(Optional.of(createMockStation()));
         
         // 执行测试
         MyOrderResponse response = orderService.getMyOrdersByConditions(userId, null, null, null, orderStatus, null);
@@ -1260,10 +1384,10 @@ class OrderServiceImplTest {
         // Mock repository 调用
         when(orderRepository.findByUserIdAndTicketTravelDateBetween(eq(userId), eq(startDate), eq(endDate)))
                 .thenReturn(mockOrders);
-        when(ticketRepository.findByOrderId(1L)).thenReturn(Arrays.asList(createMockTicket()));
-        when(trainRepository.findById(1)).thenReturn(Optional.of(createMockTrain()));
-        when(trainStopRepository.findByStopId(1L)).thenReturn(Optional.of(createMockTrainStop()));
-        when(stationRepository.findById(1)).thenReturn(Optional.of(createMockStation()));
+        when(ticketRepository.findByOrderIdIn(List.of(1L))).thenReturn(Arrays.asList(createMockTicket()));
+        when(timetableCache.getTrain(1)).thenReturn(Optional.of(createMockTrain()));
+        when(timetableCache.getStop(1L)).thenReturn(Optional.of(createMockTrainStop()));
+        when(timetableCache.getStation(1)).thenReturn(Optional.of(createMockStation()));
         
         // 执行测试
         MyOrderResponse response = orderService.getMyOrdersByConditions(userId, null, startDate, endDate, null, null);
@@ -1286,10 +1410,10 @@ class OrderServiceImplTest {
         // Mock repository 调用
         when(orderRepository.findByUserIdOrderByOrderTimeDesc(eq(userId)))
                 .thenReturn(mockOrders);
-        when(ticketRepository.findByOrderId(1L)).thenReturn(Arrays.asList(createMockTicket()));
-        when(trainRepository.findById(1)).thenReturn(Optional.of(createMockTrain()));
-        when(trainStopRepository.findByStopId(1L)).thenReturn(Optional.of(createMockTrainStop()));
-        when(stationRepository.findById(1)).thenReturn(Optional.of(createMockStation()));
+        when(ticketRepository.findByOrderIdIn(List.of(1L))).thenReturn(Arrays.asList(createMockTicket()));
+        when(timetableCache.getTrain(1)).thenReturn(Optional.of(createMockTrain()));
+        when(timetableCache.getStop(1L)).thenReturn(Optional.of(createMockTrainStop()));
+        when(timetableCache.getStation(1)).thenReturn(Optional.of(createMockStation()));
         
         // 执行测试
         MyOrderResponse response = orderService.getMyOrdersByConditions(userId, null, null, null, null, null);
@@ -1316,12 +1440,14 @@ class OrderServiceImplTest {
         // Mock repository 调用
         when(orderRepository.findByUserIdOrderByOrderTimeDesc(eq(userId)))
                 .thenReturn(mockOrders);
-        when(ticketRepository.findByOrderId(1L)).thenReturn(Arrays.asList(createMockTicket()));
-        when(ticketRepository.findByOrderId(2L)).thenReturn(Arrays.asList(createMockTicket()));
-        when(trainRepository.findById(1)).thenReturn(Optional.of(createMockTrain("G123")));
-        when(trainRepository.findById(1)).thenReturn(Optional.of(createMockTrain("K456")));
-        when(trainStopRepository.findByStopId(1L)).thenReturn(Optional.of(createMockTrainStop()));
-        when(stationRepository.findById(1)).thenReturn(Optional.of(createMockStation()));
+        Ticket secondOrderTicket = createMockTicket();
+        secondOrderTicket.setTicketId(2L);
+        secondOrderTicket.setOrderId(2L);
+        when(ticketRepository.findByOrderIdIn(List.of(1L, 2L))).thenReturn(Arrays.asList(createMockTicket(), secondOrderTicket));
+        when(timetableCache.getTrain(1)).thenReturn(Optional.of(createMockTrain("G123")));
+        when(timetableCache.getTrain(1)).thenReturn(Optional.of(createMockTrain("K456")));
+        when(timetableCache.getStop(1L)).thenReturn(Optional.of(createMockTrainStop()));
+        when(timetableCache.getStation(1)).thenReturn(Optional.of(createMockStation()));
         
         // 执行测试
         MyOrderResponse response = orderService.getMyOrdersByConditions(userId, null, null, null, null, trainNumber);
@@ -1344,10 +1470,10 @@ class OrderServiceImplTest {
         // Mock repository 调用
         when(orderRepository.findByUserIdOrderByOrderTimeDesc(eq(userId)))
                 .thenReturn(mockOrders);
-        when(ticketRepository.findByOrderId(1L)).thenReturn(Arrays.asList(createMockTicket()));
-        when(trainRepository.findById(1)).thenReturn(Optional.of(createMockTrain()));
-        when(trainStopRepository.findByStopId(1L)).thenReturn(Optional.of(createMockTrainStop()));
-        when(stationRepository.findById(1)).thenReturn(Optional.of(createMockStation()));
+        when(ticketRepository.findByOrderIdIn(List.of(1L))).thenReturn(Arrays.asList(createMockTicket()));
+        when(timetableCache.getTrain(1)).thenReturn(Optional.of(createMockTrain()));
+        when(timetableCache.getStop(1L)).thenReturn(Optional.of(createMockTrainStop()));
+        when(timetableCache.getStation(1)).thenReturn(Optional.of(createMockStation()));
         
         // 执行测试
         MyOrderResponse response = orderService.getMyOrdersByConditions(userId, orderNumber, null, null, null, null);
@@ -1372,10 +1498,10 @@ class OrderServiceImplTest {
         // Mock repository 调用
         when(orderRepository.findByUserIdOrderByOrderTimeDesc(eq(userId)))
                 .thenReturn(mockOrders);
-        when(ticketRepository.findByOrderId(1L)).thenReturn(Arrays.asList(createMockTicket()));
-        when(trainRepository.findById(1)).thenReturn(Optional.of(createMockTrain()));
-        when(trainStopRepository.findByStopId(1L)).thenReturn(Optional.of(createMockTrainStop()));
-        when(stationRepository.findById(1)).thenReturn(Optional.of(createMockStation()));
+        when(ticketRepository.findByOrderIdIn(List.of(1L))).thenReturn(Arrays.asList(createMockTicket()));
+        when(timetableCache.getTrain(1)).thenReturn(Optional.of(createMockTrain()));
+        when(timetableCache.getStop(1L)).thenReturn(Optional.of(createMockTrainStop()));
+        when(timetableCache.getStation(1)).thenReturn(Optional.of(createMockStation()));
         
         // 执行测试
         MyOrderResponse response = orderService.getMyOrdersByConditions(userId, null, null, null, null, trainNumber);
@@ -1399,10 +1525,10 @@ class OrderServiceImplTest {
         // Mock repository 调用
         when(orderRepository.findByUserIdOrderByOrderTimeDesc(eq(userId)))
                 .thenReturn(mockOrders);
-        when(ticketRepository.findByOrderId(1L)).thenReturn(Arrays.asList(createMockTicket()));
-        when(trainRepository.findById(1)).thenReturn(Optional.of(createMockTrain("G123")));
-        when(trainStopRepository.findByStopId(1L)).thenReturn(Optional.of(createMockTrainStop()));
-        when(stationRepository.findById(1)).thenReturn(Optional.of(createMockStation()));
+        when(ticketRepository.findByOrderIdIn(List.of(1L))).thenReturn(Arrays.asList(createMockTicket()));
+        when(timetableCache.getTrain(1)).thenReturn(Optional.of(createMockTrain("G123")));
+        when(timetableCache.getStop(1L)).thenReturn(Optional.of(createMockTrainStop()));
+        when(timetableCache.getStation(1)).thenReturn(Optional.of(createMockStation()));
         
         // 执行测试
         MyOrderResponse response = orderService.getMyOrdersByConditions(userId, null, null, null, null, trainNumber);
@@ -1425,10 +1551,10 @@ class OrderServiceImplTest {
         // Mock repository 调用
         when(orderRepository.findByUserIdOrderByOrderTimeDesc(eq(userId)))
                 .thenReturn(mockOrders);
-        when(ticketRepository.findByOrderId(1L)).thenReturn(Arrays.asList(createMockTicket()));
-        when(trainRepository.findById(1)).thenReturn(Optional.of(createMockTrain("G123456")));
-        when(trainStopRepository.findByStopId(1L)).thenReturn(Optional.of(createMockTrainStop()));
-        when(stationRepository.findById(1)).thenReturn(Optional.of(createMockStation()));
+        when(ticketRepository.findByOrderIdIn(List.of(1L))).thenReturn(Arrays.asList(createMockTicket()));
+        when(timetableCache.getTrain(1)).thenReturn(Optional.of(createMockTrain("G123456")));
+        when(timetableCache.getStop(1L)).thenReturn(Optional.of(createMockTrainStop()));
+        when(timetableCache.getStation(1)).thenReturn(Optional.of(createMockStation()));
         
         // 执行测试
         MyOrderResponse response = orderService.getMyOrdersByConditions(userId, null, null, null, null, trainNumber);
@@ -1452,10 +1578,10 @@ class OrderServiceImplTest {
         // Mock repository 调用
         when(orderRepository.findByUserIdOrderByOrderTimeDesc(eq(userId)))
                 .thenReturn(mockOrders);
-        when(ticketRepository.findByOrderId(1L)).thenReturn(Arrays.asList(createMockTicket()));
-        when(trainRepository.findById(1)).thenReturn(Optional.of(createMockTrain("K456")));
-        when(trainStopRepository.findByStopId(1L)).thenReturn(Optional.of(createMockTrainStop()));
-        when(stationRepository.findById(1)).thenReturn(Optional.of(createMockStation()));
+        when(ticketRepository.findByOrderIdIn(List.of(1L))).thenReturn(Arrays.asList(createMockTicket()));
+        when(timetableCache.getTrain(1)).thenReturn(Optional.of(createMockTrain("K456")));
+        when(timetableCache.getStop(1L)).thenReturn(Optional.of(createMockTrainStop()));
+        when(timetableCache.getStation(1)).thenReturn(Optional.of(createMockStation()));
         
         // 执行测试
         MyOrderResponse response = orderService.getMyOrdersByConditions(userId, null, null, null, null, trainNumber);
@@ -1502,10 +1628,10 @@ class OrderServiceImplTest {
         // Mock repository 调用
         when(orderRepository.findByUserIdAndOrderNumberContaining(eq(userId), eq("ORDER123")))
                 .thenReturn(mockOrders);
-        when(ticketRepository.findByOrderId(1L)).thenReturn(Arrays.asList(createMockTicket()));
-        when(trainRepository.findById(1)).thenReturn(Optional.of(createMockTrain()));
-        when(trainStopRepository.findByStopId(1L)).thenReturn(Optional.of(createMockTrainStop()));
-        when(stationRepository.findById(1)).thenReturn(Optional.of(createMockStation()));
+        when(ticketRepository.findByOrderIdIn(List.of(1L))).thenReturn(Arrays.asList(createMockTicket()));
+        when(timetableCache.getTrain(1)).thenReturn(Optional.of(createMockTrain()));
+        when(timetableCache.getStop(1L)).thenReturn(Optional.of(createMockTrainStop()));
+        when(timetableCache.getStation(1)).thenReturn(Optional.of(createMockStation()));
         
         // 执行测试 - 同时提供所有条件，但订单号应该优先
         MyOrderResponse response = orderService.getMyOrdersByConditions(userId, orderNumber, startDate, endDate, orderStatus, null);
@@ -1534,10 +1660,10 @@ class OrderServiceImplTest {
         // Mock repository 调用
         when(orderRepository.findByUserIdAndOrderStatus(eq(userId), eq(orderStatus)))
                 .thenReturn(mockOrders);
-        when(ticketRepository.findByOrderId(1L)).thenReturn(Arrays.asList(createMockTicket()));
-        when(trainRepository.findById(1)).thenReturn(Optional.of(createMockTrain()));
-        when(trainStopRepository.findByStopId(1L)).thenReturn(Optional.of(createMockTrainStop()));
-        when(stationRepository.findById(1)).thenReturn(Optional.of(createMockStation()));
+        when(ticketRepository.findByOrderIdIn(List.of(1L))).thenReturn(Arrays.asList(createMockTicket()));
+        when(timetableCache.getTrain(1)).thenReturn(Optional.of(createMockTrain()));
+        when(timetableCache.getStop(1L)).thenReturn(Optional.of(createMockTrainStop()));
+        when(timetableCache.getStation(1)).thenReturn(Optional.of(createMockStation()));
         
         // 执行测试 - 提供订单状态和日期范围，订单状态应该优先
         MyOrderResponse response = orderService.getMyOrdersByConditions(userId, null, startDate, endDate, orderStatus, null);
@@ -1564,10 +1690,10 @@ class OrderServiceImplTest {
         // Mock repository 调用
         when(orderRepository.findByUserIdAndTicketTravelDateBetween(eq(userId), eq(startDate), eq(endDate)))
                 .thenReturn(mockOrders);
-        when(ticketRepository.findByOrderId(1L)).thenReturn(Arrays.asList(createMockTicket()));
-        when(trainRepository.findById(1)).thenReturn(Optional.of(createMockTrain()));
-        when(trainStopRepository.findByStopId(1L)).thenReturn(Optional.of(createMockTrainStop()));
-        when(stationRepository.findById(1)).thenReturn(Optional.of(createMockStation()));
+        when(ticketRepository.findByOrderIdIn(List.of(1L))).thenReturn(Arrays.asList(createMockTicket()));
+        when(timetableCache.getTrain(1)).thenReturn(Optional.of(createMockTrain()));
+        when(timetableCache.getStop(1L)).thenReturn(Optional.of(createMockTrainStop()));
+        when(timetableCache.getStation(1)).thenReturn(Optional.of(createMockStation()));
         
         // 执行测试 - 只提供日期范围
         MyOrderResponse response = orderService.getMyOrdersByConditions(userId, null, startDate, endDate, null, null);
@@ -1592,10 +1718,10 @@ class OrderServiceImplTest {
         // Mock repository 调用 - 应该调用查询所有订单的方法
         when(orderRepository.findByUserIdOrderByOrderTimeDesc(eq(userId)))
                 .thenReturn(mockOrders);
-        when(ticketRepository.findByOrderId(1L)).thenReturn(Arrays.asList(createMockTicket()));
-        when(trainRepository.findById(1)).thenReturn(Optional.of(createMockTrain()));
-        when(trainStopRepository.findByStopId(1L)).thenReturn(Optional.of(createMockTrainStop()));
-        when(stationRepository.findById(1)).thenReturn(Optional.of(createMockStation()));
+        when(ticketRepository.findByOrderIdIn(List.of(1L))).thenReturn(Arrays.asList(createMockTicket()));
+        when(timetableCache.getTrain(1)).thenReturn(Optional.of(createMockTrain()));
+        when(timetableCache.getStop(1L)).thenReturn(Optional.of(createMockTrainStop()));
+        when(timetableCache.getStation(1)).thenReturn(Optional.of(createMockStation()));
         
         // 执行测试 - startDate 为 null，endDate 不为 null
         MyOrderResponse response = orderService.getMyOrdersByConditions(userId, null, null, endDate, null, null);
@@ -1620,10 +1746,10 @@ class OrderServiceImplTest {
         // Mock repository 调用 - 应该调用查询所有订单的方法
         when(orderRepository.findByUserIdOrderByOrderTimeDesc(eq(userId)))
                 .thenReturn(mockOrders);
-        when(ticketRepository.findByOrderId(1L)).thenReturn(Arrays.asList(createMockTicket()));
-        when(trainRepository.findById(1)).thenReturn(Optional.of(createMockTrain()));
-        when(trainStopRepository.findByStopId(1L)).thenReturn(Optional.of(createMockTrainStop()));
-        when(stationRepository.findById(1)).thenReturn(Optional.of(createMockStation()));
+        when(ticketRepository.findByOrderIdIn(List.of(1L))).thenReturn(Arrays.asList(createMockTicket()));
+        when(timetableCache.getTrain(1)).thenReturn(Optional.of(createMockTrain()));
+        when(timetableCache.getStop(1L)).thenReturn(Optional.of(createMockTrainStop()));
+        when(timetableCache.getStation(1)).thenReturn(Optional.of(createMockStation()));
         
         // 执行测试 - startDate 不为 null，endDate 为 null
         MyOrderResponse response = orderService.getMyOrdersByConditions(userId, null, startDate, null, null, null);
@@ -1648,11 +1774,11 @@ class OrderServiceImplTest {
         // Mock repository 调用
         when(orderRepository.findByUserIdOrderByOrderTimeDesc(eq(userId)))
                 .thenReturn(mockOrders);
-        when(ticketRepository.findByOrderId(1L)).thenReturn(Arrays.asList(createMockTicket()));
-        // Mock trainRepository 返回 null 或抛出异常，使得 getTrainNumber 返回 "未知车次"
-        when(trainRepository.findById(1)).thenReturn(Optional.empty());
-        when(trainStopRepository.findByStopId(1L)).thenReturn(Optional.of(createMockTrainStop()));
-        when(stationRepository.findById(1)).thenReturn(Optional.of(createMockStation()));
+        when(ticketRepository.findByOrderIdIn(List.of(1L))).thenReturn(Arrays.asList(createMockTicket()));
+        // Mock timetableCache 返回 null 或抛出异常，使得 getTrainNumber 返回 "未知车次"
+        when(timetableCache.getTrain(1)).thenReturn(Optional.empty());
+        when(timetableCache.getStop(1L)).thenReturn(Optional.of(createMockTrainStop()));
+        when(timetableCache.getStation(1)).thenReturn(Optional.of(createMockStation()));
         
         // 执行测试
         MyOrderResponse response = orderService.getMyOrdersByConditions(userId, null, null, null, null, trainNumber);
@@ -1718,14 +1844,14 @@ class OrderServiceImplTest {
         // Mock repository 调用
         when(orderRepository.findByUserIdOrderByOrderTimeDesc(eq(userId)))
                 .thenReturn(mockOrders);
-        when(ticketRepository.findByOrderId(1L)).thenReturn(Arrays.asList(createMockTicket()));
+        when(ticketRepository.findByOrderIdIn(List.of(1L))).thenReturn(Arrays.asList(createMockTicket()));
         
         // Mock getTrainNumber 方法返回 null
         // 我们需要使用 PowerMock 来 mock 私有方法，或者通过其他方式
-        // 这里我们通过让 trainRepository 抛出异常来实现
-        when(trainRepository.findById(1)).thenThrow(new RuntimeException("数据库连接失败"));
-        when(trainStopRepository.findByStopId(1L)).thenReturn(Optional.of(createMockTrainStop()));
-        when(stationRepository.findById(1)).thenReturn(Optional.of(createMockStation()));
+        // 这里我们通过让 timetableCache 抛出异常来实现
+        when(timetableCache.getTrain(1)).thenThrow(new RuntimeException("数据库连接失败"));
+        when(timetableCache.getStop(1L)).thenReturn(Optional.of(createMockTrainStop()));
+        when(timetableCache.getStation(1)).thenReturn(Optional.of(createMockStation()));
         
         // 执行测试
         MyOrderResponse response = orderService.getMyOrdersByConditions(userId, null, null, null, null, trainNumber);
@@ -1789,16 +1915,16 @@ class OrderServiceImplTest {
         // Mock repository 调用
         when(orderRepository.findByUserIdOrderByOrderTimeDesc(eq(userId)))
                 .thenReturn(mockOrders);
-        when(ticketRepository.findByOrderId(1L)).thenReturn(Arrays.asList(createMockTicket()));
+        when(ticketRepository.findByOrderIdIn(List.of(1L))).thenReturn(Arrays.asList(createMockTicket()));
         
         // 创建一个 Train 对象，其 getTrainNumber() 方法返回 null
         Train trainWithNullNumber = new Train();
         trainWithNullNumber.setTrainId(1);
         // 不设置 trainNumber，让它为 null
         
-        when(trainRepository.findById(1)).thenReturn(Optional.of(trainWithNullNumber));
-        when(trainStopRepository.findByStopId(1L)).thenReturn(Optional.of(createMockTrainStop()));
-        when(stationRepository.findById(1)).thenReturn(Optional.of(createMockStation()));
+        when(timetableCache.getTrain(1)).thenReturn(Optional.of(trainWithNullNumber));
+        when(timetableCache.getStop(1L)).thenReturn(Optional.of(createMockTrainStop()));
+        when(timetableCache.getStation(1)).thenReturn(Optional.of(createMockStation()));
         
         // 执行测试
         MyOrderResponse response = orderService.getMyOrdersByConditions(userId, null, null, null, null, trainNumber);
@@ -2831,11 +2957,11 @@ class OrderServiceImplTest {
         // Mock repository 调用
         when(orderRepository.findByOrderIdAndUserId(orderId, userId)).thenReturn(Optional.of(order));
         when(ticketRepository.findByOrderId(orderId)).thenReturn(Arrays.asList(ticket));
-        when(trainRepository.findById(ticket.getTrainId())).thenReturn(Optional.of(train));
+        when(timetableCache.getTrain(ticket.getTrainId())).thenReturn(Optional.of(train));
         when(passengerRepository.findById(ticket.getPassengerId())).thenReturn(Optional.of(passenger));
-        when(trainStopRepository.findByStopId(ticket.getDepartureStopId())).thenReturn(Optional.of(createMockTrainStop()));
-        when(trainStopRepository.findByStopId(ticket.getArrivalStopId())).thenReturn(Optional.of(createMockTrainStop()));
-        when(stationRepository.findById(anyInt())).thenReturn(Optional.of(createMockStation()));
+        when(timetableCache.getStop(ticket.getDepartureStopId())).thenReturn(Optional.of(createMockTrainStop()));
+        when(timetableCache.getStop(ticket.getArrivalStopId())).thenReturn(Optional.of(createMockTrainStop()));
+        when(timetableCache.getStation(anyInt())).thenReturn(Optional.of(createMockStation()));
         
         // 执行测试
         OrderDetailResponse response = orderService.getOrderDetail(userId, orderId);
@@ -2908,11 +3034,11 @@ class OrderServiceImplTest {
         // Mock repository 调用
         when(orderRepository.findByOrderIdAndUserId(orderId, userId)).thenReturn(Optional.of(order));
         when(ticketRepository.findByOrderId(orderId)).thenReturn(Arrays.asList(ticket1, ticket2));
-        when(trainRepository.findById(ticket1.getTrainId())).thenReturn(Optional.of(train));
+        when(timetableCache.getTrain(ticket1.getTrainId())).thenReturn(Optional.of(train));
         when(passengerRepository.findById(1L)).thenReturn(Optional.of(passenger1));
         when(passengerRepository.findById(2L)).thenReturn(Optional.of(passenger2));
-        when(trainStopRepository.findByStopId(anyLong())).thenReturn(Optional.of(createMockTrainStop()));
-        when(stationRepository.findById(anyInt())).thenReturn(Optional.of(createMockStation()));
+        when(timetableCache.getStop(anyLong())).thenReturn(Optional.of(createMockTrainStop()));
+        when(timetableCache.getStation(anyInt())).thenReturn(Optional.of(createMockStation()));
         
         // 执行测试
         OrderDetailResponse response = orderService.getOrderDetail(userId, orderId);
@@ -3007,7 +3133,7 @@ class OrderServiceImplTest {
         // Mock repository 调用
         when(orderRepository.findByOrderIdAndUserId(orderId, userId)).thenReturn(Optional.of(order));
         when(ticketRepository.findByOrderId(orderId)).thenReturn(Arrays.asList(ticket));
-        when(trainRepository.findById(ticket.getTrainId())).thenReturn(Optional.empty()); // 车次不存在
+        when(timetableCache.getTrain(ticket.getTrainId())).thenReturn(Optional.empty()); // 车次不存在
         
         // 执行测试并验证异常
         Exception exception = assertThrows(RuntimeException.class, () -> {
@@ -3052,11 +3178,11 @@ class OrderServiceImplTest {
         // Mock repository 调用
         when(orderRepository.findByOrderIdAndUserId(orderId, userId)).thenReturn(Optional.of(order));
         when(ticketRepository.findByOrderId(orderId)).thenReturn(Arrays.asList(ticket1, ticket2));
-        when(trainRepository.findById(ticket1.getTrainId())).thenReturn(Optional.of(train));
+        when(timetableCache.getTrain(ticket1.getTrainId())).thenReturn(Optional.of(train));
         when(passengerRepository.findById(1L)).thenReturn(Optional.empty()); // 第一个乘客不存在
         when(passengerRepository.findById(2L)).thenReturn(Optional.of(passenger2)); // 第二个乘客存在
-        when(trainStopRepository.findByStopId(anyLong())).thenReturn(Optional.of(createMockTrainStop()));
-        when(stationRepository.findById(anyInt())).thenReturn(Optional.of(createMockStation()));
+        when(timetableCache.getStop(anyLong())).thenReturn(Optional.of(createMockTrainStop()));
+        when(timetableCache.getStation(anyInt())).thenReturn(Optional.of(createMockStation()));
         
         // 执行测试
         OrderDetailResponse response = orderService.getOrderDetail(userId, orderId);
@@ -3109,10 +3235,10 @@ class OrderServiceImplTest {
         // Mock repository 调用
         when(orderRepository.findByOrderIdAndUserId(orderId, userId)).thenReturn(Optional.of(order));
         when(ticketRepository.findByOrderId(orderId)).thenReturn(Arrays.asList(ticket1, ticket2, ticket3));
-        when(trainRepository.findById(ticket1.getTrainId())).thenReturn(Optional.of(train));
+        when(timetableCache.getTrain(ticket1.getTrainId())).thenReturn(Optional.of(train));
         when(passengerRepository.findById(1L)).thenReturn(Optional.of(passenger));
-        when(trainStopRepository.findByStopId(anyLong())).thenReturn(Optional.of(createMockTrainStop()));
-        when(stationRepository.findById(anyInt())).thenReturn(Optional.of(createMockStation()));
+        when(timetableCache.getStop(anyLong())).thenReturn(Optional.of(createMockTrainStop()));
+        when(timetableCache.getStation(anyInt())).thenReturn(Optional.of(createMockStation()));
         
         // 执行测试
         OrderDetailResponse response = orderService.getOrderDetail(userId, orderId);
@@ -3157,10 +3283,10 @@ class OrderServiceImplTest {
         // Mock repository 调用
         when(orderRepository.findByOrderIdAndUserId(orderId, userId)).thenReturn(Optional.of(order));
         when(ticketRepository.findByOrderId(orderId)).thenReturn(Arrays.asList(ticket));
-        when(trainRepository.findById(ticket.getTrainId())).thenReturn(Optional.of(train));
+        when(timetableCache.getTrain(ticket.getTrainId())).thenReturn(Optional.of(train));
         when(passengerRepository.findById(1L)).thenReturn(Optional.of(passenger));
-        when(trainStopRepository.findByStopId(anyLong())).thenReturn(Optional.of(createMockTrainStop()));
-        when(stationRepository.findById(anyInt())).thenReturn(Optional.of(createMockStation()));
+        when(timetableCache.getStop(anyLong())).thenReturn(Optional.of(createMockTrainStop()));
+        when(timetableCache.getStation(anyInt())).thenReturn(Optional.of(createMockStation()));
         
         // 执行测试
         OrderDetailResponse response = orderService.getOrderDetail(userId, orderId);
@@ -3199,7 +3325,7 @@ class OrderServiceImplTest {
         // Mock repository 调用
         when(orderRepository.findByOrderIdAndUserId(orderId, userId)).thenReturn(Optional.of(order));
         when(ticketRepository.findByOrderId(orderId)).thenReturn(Arrays.asList(ticket));
-        when(trainRepository.findById(ticket.getTrainId())).thenReturn(Optional.of(train));
+        when(timetableCache.getTrain(ticket.getTrainId())).thenReturn(Optional.of(train));
         when(passengerRepository.findById(1L)).thenReturn(Optional.of(passenger));
         
         // Mock 车票仓库抛出异常
@@ -3234,10 +3360,10 @@ class OrderServiceImplTest {
         // Mock repository 调用
         when(orderRepository.findByOrderIdAndUserId(orderId, userId)).thenReturn(Optional.of(order));
         when(ticketRepository.findByOrderId(orderId)).thenReturn(Arrays.asList(ticket));
-        when(trainRepository.findById(ticket.getTrainId())).thenReturn(Optional.of(train));
+        when(timetableCache.getTrain(ticket.getTrainId())).thenReturn(Optional.of(train));
         when(passengerRepository.findById(1L)).thenReturn(Optional.empty()); // 乘客不存在
-        when(trainStopRepository.findByStopId(anyLong())).thenReturn(Optional.of(createMockTrainStop()));
-        when(stationRepository.findById(anyInt())).thenReturn(Optional.of(createMockStation()));
+        when(timetableCache.getStop(anyLong())).thenReturn(Optional.of(createMockTrainStop()));
+        when(timetableCache.getStation(anyInt())).thenReturn(Optional.of(createMockStation()));
         
         // 执行测试
         OrderDetailResponse response = orderService.getOrderDetail(userId, orderId);
@@ -3285,10 +3411,10 @@ class OrderServiceImplTest {
         // Mock repository 调用
         when(orderRepository.findByOrderIdAndUserId(orderId, userId)).thenReturn(Optional.of(order));
         when(ticketRepository.findByOrderIdAndTicketIdIn(orderId, ticketIds)).thenReturn(Arrays.asList(ticket));
-        when(trainRepository.findById(ticket.getTrainId())).thenReturn(Optional.of(train));
+        when(timetableCache.getTrain(ticket.getTrainId())).thenReturn(Optional.of(train));
         when(passengerRepository.findById(1L)).thenReturn(Optional.of(passenger));
-        when(trainStopRepository.findByStopId(anyLong())).thenReturn(Optional.of(createMockTrainStop()));
-        when(stationRepository.findById(anyInt())).thenReturn(Optional.of(createMockStation()));
+        when(timetableCache.getStop(anyLong())).thenReturn(Optional.of(createMockTrainStop()));
+        when(timetableCache.getStation(anyInt())).thenReturn(Optional.of(createMockStation()));
         
         // 执行测试
         RefundPreparationResponse response = orderService.getRefundPreparation(request);
@@ -3366,11 +3492,11 @@ class OrderServiceImplTest {
         // Mock repository 调用
         when(orderRepository.findByOrderIdAndUserId(orderId, userId)).thenReturn(Optional.of(order));
         when(ticketRepository.findByOrderIdAndTicketIdIn(orderId, ticketIds)).thenReturn(Arrays.asList(ticket1, ticket2));
-        when(trainRepository.findById(ticket1.getTrainId())).thenReturn(Optional.of(train));
+        when(timetableCache.getTrain(ticket1.getTrainId())).thenReturn(Optional.of(train));
         when(passengerRepository.findById(1L)).thenReturn(Optional.of(passenger1));
         when(passengerRepository.findById(2L)).thenReturn(Optional.of(passenger2));
-        when(trainStopRepository.findByStopId(anyLong())).thenReturn(Optional.of(createMockTrainStop()));
-        when(stationRepository.findById(anyInt())).thenReturn(Optional.of(createMockStation()));
+        when(timetableCache.getStop(anyLong())).thenReturn(Optional.of(createMockTrainStop()));
+        when(timetableCache.getStation(anyInt())).thenReturn(Optional.of(createMockStation()));
         
         // 执行测试
         RefundPreparationResponse response = orderService.getRefundPreparation(request);
@@ -3531,7 +3657,7 @@ class OrderServiceImplTest {
         // Mock repository 调用
         when(orderRepository.findByOrderIdAndUserId(orderId, userId)).thenReturn(Optional.of(order));
         when(ticketRepository.findByOrderIdAndTicketIdIn(orderId, ticketIds)).thenReturn(Arrays.asList(ticket));
-        when(trainRepository.findById(ticket.getTrainId())).thenReturn(Optional.empty()); // 车次不存在
+        when(timetableCache.getTrain(ticket.getTrainId())).thenReturn(Optional.empty()); // 车次不存在
         
         // 执行测试并验证异常
         Exception exception = assertThrows(RuntimeException.class, () -> {
@@ -3577,10 +3703,10 @@ class OrderServiceImplTest {
         // Mock repository 调用
         when(orderRepository.findByOrderIdAndUserId(orderId, userId)).thenReturn(Optional.of(order));
         when(ticketRepository.findByOrderIdAndTicketIdIn(orderId, ticketIds)).thenReturn(Arrays.asList(ticket));
-        when(trainRepository.findById(ticket.getTrainId())).thenReturn(Optional.of(train));
+        when(timetableCache.getTrain(ticket.getTrainId())).thenReturn(Optional.of(train));
         when(passengerRepository.findById(1L)).thenReturn(Optional.of(passenger));
-        when(trainStopRepository.findByStopId(anyLong())).thenReturn(Optional.of(createMockTrainStop()));
-        when(stationRepository.findById(anyInt())).thenReturn(Optional.of(createMockStation()));
+        when(timetableCache.getStop(anyLong())).thenReturn(Optional.of(createMockTrainStop()));
+        when(timetableCache.getStation(anyInt())).thenReturn(Optional.of(createMockStation()));
         
         // 执行测试
         RefundPreparationResponse response = orderService.getRefundPreparation(request);
@@ -3632,10 +3758,10 @@ class OrderServiceImplTest {
         // Mock repository 调用
         when(orderRepository.findByOrderIdAndUserId(orderId, userId)).thenReturn(Optional.of(order));
         when(ticketRepository.findByOrderIdAndTicketIdIn(orderId, ticketIds)).thenReturn(Arrays.asList(ticket));
-        when(trainRepository.findById(ticket.getTrainId())).thenReturn(Optional.of(train));
+        when(timetableCache.getTrain(ticket.getTrainId())).thenReturn(Optional.of(train));
         when(passengerRepository.findById(1L)).thenReturn(Optional.of(passenger));
-        when(trainStopRepository.findByStopId(anyLong())).thenReturn(Optional.of(createMockTrainStop()));
-        when(stationRepository.findById(anyInt())).thenReturn(Optional.of(createMockStation()));
+        when(timetableCache.getStop(anyLong())).thenReturn(Optional.of(createMockTrainStop()));
+        when(timetableCache.getStation(anyInt())).thenReturn(Optional.of(createMockStation()));
         
         // 执行测试
         RefundPreparationResponse response = orderService.getRefundPreparation(request);
@@ -3704,11 +3830,11 @@ class OrderServiceImplTest {
         // Mock repository 调用
         when(orderRepository.findByOrderIdAndUserId(orderId, userId)).thenReturn(Optional.of(order));
         when(ticketRepository.findByOrderIdAndTicketIdIn(orderId, ticketIds)).thenReturn(Arrays.asList(ticket1, ticket2));
-        when(trainRepository.findById(ticket1.getTrainId())).thenReturn(Optional.of(train));
+        when(timetableCache.getTrain(ticket1.getTrainId())).thenReturn(Optional.of(train));
         when(passengerRepository.findById(1L)).thenReturn(Optional.of(passenger1));
         when(passengerRepository.findById(2L)).thenReturn(Optional.of(passenger2));
-        when(trainStopRepository.findByStopId(anyLong())).thenReturn(Optional.of(createMockTrainStop()));
-        when(stationRepository.findById(anyInt())).thenReturn(Optional.of(createMockStation()));
+        when(timetableCache.getStop(anyLong())).thenReturn(Optional.of(createMockTrainStop()));
+        when(timetableCache.getStation(anyInt())).thenReturn(Optional.of(createMockStation()));
         
         // 执行测试
         RefundPreparationResponse response = orderService.getRefundPreparation(request);
@@ -3760,10 +3886,10 @@ class OrderServiceImplTest {
         // Mock repository 调用
         when(orderRepository.findByOrderIdAndUserId(orderId, userId)).thenReturn(Optional.of(order));
         when(ticketRepository.findByOrderIdAndTicketIdIn(orderId, ticketIds)).thenReturn(Arrays.asList(ticket));
-        when(trainRepository.findById(ticket.getTrainId())).thenReturn(Optional.of(train));
+        when(timetableCache.getTrain(ticket.getTrainId())).thenReturn(Optional.of(train));
         when(passengerRepository.findById(1L)).thenReturn(Optional.empty()); // 乘客不存在
-        when(trainStopRepository.findByStopId(anyLong())).thenReturn(Optional.of(createMockTrainStop()));
-        when(stationRepository.findById(anyInt())).thenReturn(Optional.of(createMockStation()));
+        when(timetableCache.getStop(anyLong())).thenReturn(Optional.of(createMockTrainStop()));
+        when(timetableCache.getStation(anyInt())).thenReturn(Optional.of(createMockStation()));
         
         // 执行测试
         RefundPreparationResponse response = orderService.getRefundPreparation(request);
@@ -3851,10 +3977,10 @@ class OrderServiceImplTest {
         // Mock repository 调用
         when(orderRepository.findByOrderIdAndUserId(orderId, userId)).thenReturn(Optional.of(order));
         when(ticketRepository.findByOrderIdAndTicketIdIn(orderId, ticketIds)).thenReturn(Arrays.asList(ticket1, ticket2, ticket3));
-        when(trainRepository.findById(ticket1.getTrainId())).thenReturn(Optional.of(train));
+        when(timetableCache.getTrain(ticket1.getTrainId())).thenReturn(Optional.of(train));
         when(passengerRepository.findById(1L)).thenReturn(Optional.of(passenger));
-        when(trainStopRepository.findByStopId(anyLong())).thenReturn(Optional.of(createMockTrainStop()));
-        when(stationRepository.findById(anyInt())).thenReturn(Optional.of(createMockStation()));
+        when(timetableCache.getStop(anyLong())).thenReturn(Optional.of(createMockTrainStop()));
+        when(timetableCache.getStation(anyInt())).thenReturn(Optional.of(createMockStation()));
         
         // 执行测试
         RefundPreparationResponse response = orderService.getRefundPreparation(request);
@@ -3905,10 +4031,10 @@ class OrderServiceImplTest {
         // Mock repository 调用
         when(orderRepository.findByOrderIdAndUserId(orderId, userId)).thenReturn(Optional.of(order));
         when(ticketRepository.findByOrderIdAndTicketIdIn(orderId, ticketIds)).thenReturn(Arrays.asList(ticket));
-        when(trainRepository.findById(ticket.getTrainId())).thenReturn(Optional.of(train));
+        when(timetableCache.getTrain(ticket.getTrainId())).thenReturn(Optional.of(train));
         when(passengerRepository.findById(1L)).thenReturn(Optional.of(passenger));
-        when(trainStopRepository.findByStopId(anyLong())).thenReturn(Optional.of(createMockTrainStop()));
-        when(stationRepository.findById(anyInt())).thenReturn(Optional.of(createMockStation()));
+        when(timetableCache.getStop(anyLong())).thenReturn(Optional.of(createMockTrainStop()));
+        when(timetableCache.getStation(anyInt())).thenReturn(Optional.of(createMockStation()));
         
         // 执行测试
         RefundPreparationResponse response = orderService.getRefundPreparation(request);
@@ -1,5 +1,6 @@
 package com.example.techprototype.Service.Impl;
 
+import com.example.techprototype.Component.PassengerItineraryIndex;
 import com.example.techprototype.DTO.BookingResponse;
 import com.example.techprototype.Entity.Order;
 import com.example.techprototype.Entity.Ticket;
@@ -37,6 +38,8 @@ class PaymentServiceImplTest {
     private RedisService redisService;
     @Mock
     private SeatService seatService;
+    @Mock
+    private PassengerItineraryIndex passengerItineraryIndex;
 
     private Order order;
     private Ticket ticket;
@@ -1,14 +1,25 @@
 package com.example.techprototype.Service.Impl;
 
+import com.example.techprototype.Component.PassengerItineraryIndex;
+import com.example.techprototype.Component.RedisScriptRegistry;
+import com.example.techprototype.Component.SearchResultCache;
+import com.example.techprototype.Component.StopSequenceCache;
+import com.example.techprototype.Component.WaitlistFulfillmentExecutor;
+import com.example.techprototype.Component.WaitlistIndex;
+import com.example.techprototype.DTO.SegmentStock;
+import com.example.techprototype.DTO.StockQuery;
+import com.example.techprototype.DTO.StockReservation;
 import com.example.techprototype.Service.RedisService;
 import com.example.techprototype.Entity.Order;
 import com.example.techprototype.Entity.Ticket;
+import com.example.techprototype.Entity.TicketInventory;
 import com.example.techprototype.Entity.WaitlistOrder;
 import com.example.techprototype.Entity.WaitlistItem;
 import com.example.techprototype.Enums.WaitlistOrderStatus;
 import com.example.techprototype.Enums.WaitlistItemStatus;
 import com.example.techprototype.Enums.OrderStatus;
 import com.example.techprototype.Enums.TicketStatus;
+import com.example.techprototype.Enums.ReservationStatus;
 import com.example.techprototype.Repository.WaitlistOrderRepository;
 import com.example.techprototype.Repository.WaitlistItemRepository;
 import com.example.techprototype.Repository.OrderRepository;
@@ -20,8 +31,12 @@ import org.junit.jupiter.api.Test;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
+import org.springframework.data.redis.core.HashOperations;
 import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.SessionCallback;
+import org.springframework.data.redis.core.SetOperations;
 import org.springframework.data.redis.core.ValueOperations;
+import org.springframework.data.redis.core.ZSetOperations;
 import org.springframework.data.redis.core.ListOperations;
 import org.springframework.test.context.ActiveProfiles;
 import org.redisson.api.RLock;
@@ -33,6 +48,12 @@ import java.time.LocalDateTime;
 import java.util.Optional;
 import java.util.List;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
 import java.math.BigDecimal;
 
 import static org.junit.jupiter.api.Assertions.*;
@@ -71,56 +92,231 @@ class RedisServiceImplTest {
     @Mock
     private TicketRepository ticketRepository;
 
+    @Mock
+    private HashOperations<String, Object, Object> hashOperations;
+
+    @Mock
+    private SetOperations<String, Object> setOperations;
+
+    @Mock
+    private ZSetOperations<String, Object> zSetOperations;
+
+    @Mock
+    private RedisScriptRegistry redisScriptRegistry;
+
+    @Mock
+    private StopSequenceCache stopSequenceCache;
+
+    @Mock
+    private WaitlistIndex waitlistIndex;
+
+    @Mock
+    private WaitlistFulfillmentExecutor waitlistFulfillmentExecutor;
+
+    @Mock
+    private SearchResultCache searchResultCache;
+
+    @Mock
+    private PassengerItineraryIndex passengerItineraryIndex;
+
     @BeforeEach
     void setUp() {
         MockitoAnnotations.openMocks(this);
         when(redisTemplate.opsForValue()).thenReturn(valueOperations);
         when(redisTemplate.opsForList()).thenReturn(listOperations);
+        when(redisTemplate.<Object, Object>opsForHash()).thenReturn(hashOperations);
+        when(redisTemplate.opsForSet()).thenReturn(setOperations);
+        when(redisTemplate.opsForZSet()).thenReturn(zSetOperations);
         when(redissonClient.getLock(anyString())).thenReturn(rLock);
+        // 测试中停靠点ID即站序
+        when(stopSequenceCache.getSequence(anyInt(), anyLong())).thenAnswer(invocation -> ((Long) invocation.getArgument(1)).intValue());
     }
 
     @Test
     void testGetStock() {
-        when(valueOperations.get(anyString())).thenReturn(10);
+        // 区间2->5覆盖区段2、3、4，余票取最小值
+        when(hashOperations.multiGet(anyString(), anyCollection())).thenReturn(Arrays.asList("10", "4", "7"));
         
-        Optional<Integer> result = redisService.getStock(1, 2L, 3L, LocalDate.now(), 1);
+        Optional<Integer> result = redisService.getStock(1, 2L, 5L, LocalDate.now(), 1);
         
         assertTrue(result.isPresent());
-        assertEquals(10, result.get());
+        assertEquals(4, result.get());
+        verify(hashOperations).multiGet(anyString(), eq(Arrays.asList("2", "3", "4")));
     }
 
     @Test
     void testGetStock_NullValue() {
-        when(valueOperations.get(anyString())).thenReturn(null);
+        when(hashOperations.multiGet(anyString(), anyCollection())).thenReturn(Arrays.asList("10", null));
+        
+        Optional<Integer> result = redisService.getStock(1, 2L, 4L, LocalDate.now(), 1);
+        
+        assertFalse(result.isPresent());
+    }
+
+    @Test
+    void testGetStock_UnknownStop() {
+        when(stopSequenceCache.getSequence(1, 9L)).thenReturn(null);
         
-        Optional<Integer> result = redisService.getStock(1, 2L, 3L, LocalDate.now(), 1);
+        Optional<Integer> result = redisService.getStock(1, 2L, 9L, LocalDate.now(), 1);
         
         assertFalse(result.isPresent());
+        verify(hashOperations, never()).multiGet(anyString(), anyCollection());
+    }
+
+    @Test
+    void testGetStocks_OnePipelineAlignedWithQueries() {
+        LocalDate date = LocalDate.now();
+        when(stopSequenceCache.getSequence(1, 9L)).thenReturn(null);
+        // 无法换算区段的查询不发出命令，管道结果只有两条
+        when(redisTemplate.executePipelined(any(SessionCallback.class)))
+            .thenReturn(Arrays.asList(Arrays.asList("10", "4"), Arrays.asList("6", null)));
+        
+        List<Optional<Integer>> stocks = redisService.getStocks(Arrays.asList(
+            new StockQuery(1, 1L, 3L, date, 1),
+            new StockQuery(1, 2L, 9L, date, 1),
+            new StockQuery(2, 1L, 3L, date, 2)));
+        
+        assertEquals(3, stocks.size());
+        assertEquals(Optional.of(4), stocks.get(0));
+        assertFalse(stocks.get(1).isPresent());
+        assertFalse(stocks.get(2).isPresent());
+        verify(redisTemplate, times(1)).executePipelined(any(SessionCallback.class));
+        verify(hashOperations, never()).multiGet(anyString(), anyCollection());
+    }
+
+    @Test
+    void testGetStocks_NothingResolved() {
+        when(stopSequenceCache.getSequence(1, 9L)).thenReturn(null);
+        
+        List<Optional<Integer>> stocks = redisService.getStocks(List.of(new StockQuery(1, 2L, 9L, LocalDate.now(), 1)));
+        
+        assertEquals(List.of(Optional.empty()), stocks);
+        verify(redisTemplate, never()).executePipelined(any(SessionCallback.class));
     }
 
     @Test
     void testSetStock() {
-        doNothing().when(valueOperations).set(anyString(), anyString());
+        assertDoesNotThrow(() -> redisService.setStock(1, 2L, 4L, LocalDate.now(), 1, 10));
+        
+        verify(hashOperations).putAll(anyString(), eq(Map.of("2", "10", "3", "10")));
+    }
+
+    @Test
+    void testLoadStocks_OverlappingIntervalsKeepMinimum() {
+        LocalDate date = LocalDate.now();
+        TicketInventory whole = new TicketInventory();
+        whole.setTrainId(1);
+        whole.setDepartureStopId(1L);
+        whole.setArrivalStopId(3L);
+        whole.setTravelDate(date);
+        whole.setCarriageTypeId(1);
+        whole.setAvailableSeats(50);
+        TicketInventory second = new TicketInventory();
+        second.setTrainId(1);
+        second.setDepartureStopId(2L);
+        second.setArrivalStopId(3L);
+        second.setTravelDate(date);
+        second.setCarriageTypeId(1);
+        second.setAvailableSeats(30);
+        
+        // 管道回调直接在模拟的RedisTemplate上执行
+        when(redisTemplate.executePipelined(any(SessionCallback.class))).thenAnswer(invocation -> {
+            SessionCallback<?> callback = invocation.getArgument(0);
+            callback.execute(redisTemplate);
+            return new ArrayList<>();
+        });
+        
+        int segments = redisService.loadStocks(Arrays.asList(whole, second));
+        
+        // 区段1只被1->3覆盖，区段2取两条记录的最小值
+        assertEquals(2, segments);
+        verify(hashOperations).putAll(eq("stock:1:" + date + ":1"), eq(Map.of("1", "50", "2", "30")));
+        verify(redisTemplate, times(1)).executePipelined(any(SessionCallback.class));
+    }
+
+    @Test
+    void testDrainDirtyStocks() {
+        LocalDate date = LocalDate.now();
+        when(setOperations.pop("stock:dirty", 100)).thenReturn(Arrays.asList("stock:1:" + date + ":2", "stock:bad"));
+        Map<Object, Object> segments = new LinkedHashMap<>();
+        segments.put("1", "8");
+        segments.put("2", "5");
+        when(redisTemplate.executePipelined(any(SessionCallback.class))).thenReturn(Arrays.asList(segments, new LinkedHashMap<>()));
+        
+        List<SegmentStock> stocks = redisService.drainDirtyStocks(100);
+        
+        // 格式不正确的key被丢弃
+        assertEquals(1, stocks.size());
+        assertEquals(1, stocks.get(0).getTrainId());
+        assertEquals(date, stocks.get(0).getTravelDate());
+        assertEquals(2, stocks.get(0).getCarriageTypeId());
+        assertEquals(Map.of(1, 8, 2, 5), stocks.get(0).getAvailableBySegment());
+    }
+
+    @Test
+    void testDrainDirtyStocks_Empty() {
+        when(setOperations.pop("stock:dirty", 100)).thenReturn(new ArrayList<>());
         
-        assertDoesNotThrow(() -> redisService.setStock(1, 2L, 3L, LocalDate.now(), 1, 10));
+        assertTrue(redisService.drainDirtyStocks(100).isEmpty());
+        verify(redisTemplate, never()).executePipelined(any(SessionCallback.class));
+    }
+
+    @Test
+    void testRequeueDirtyStocks() {
+        LocalDate date = LocalDate.now();
+        SegmentStock stock = new SegmentStock(1, date, 2, new HashMap<>());
         
-        verify(valueOperations).set(anyString(), eq("10"));
+        redisService.requeueDirtyStocks(List.of(stock));
+        
+        verify(setOperations).add(eq("stock:dirty"), eq(new Object[]{"stock:1:" + date + ":2"}));
     }
 
     @Test
     void testDecrStock() {
         // Mock Lua脚本执行结果，返回1表示成功
-        when(redisTemplate.execute(any(), anyList(), anyString())).thenReturn(1L);
+        when(redisTemplate.execute(any(), anyList(), any(Object[].class))).thenReturn(1L);
         
         boolean result = redisService.decrStock(1, 2L, 3L, LocalDate.now(), 1, 1);
         
         assertTrue(result);
     }
 
+    @Test
+    void testDecrStock_PassesSegmentRange() {
+        when(redisTemplate.execute(any(), anyList(), any(Object[].class))).thenReturn(1L);
+        
+        redisService.decrStock(1, 2L, 5L, LocalDate.now(), 1, 3);
+        
+        // 一次脚本调用扣减区段2、3、4
+        verify(redisTemplate).execute(any(), eq(Arrays.asList("stock:1:" + LocalDate.now() + ":1", "stock:dirty")), eq(new Object[]{"2", "5", "3"}));
+    }
+
+    @Test
+    void testDecrStock_BumpsSearchStockVersion() {
+        LocalDate date = LocalDate.now();
+        when(redisTemplate.execute(any(), anyList(), any(Object[].class))).thenReturn(1L, 0L);
+        
+        redisService.decrStock(1, 2L, 3L, date, 1, 1);
+        // 库存不足时库存未变化，不使查询缓存失效
+        redisService.decrStock(1, 2L, 3L, date, 1, 1);
+        
+        verify(searchResultCache, times(1)).onStockChanged(1, date);
+    }
+
+    @Test
+    void testDecrStock_UnknownStop() {
+        when(stopSequenceCache.getSequence(1, 9L)).thenReturn(null);
+        
+        boolean result = redisService.decrStock(1, 2L, 9L, LocalDate.now(), 1, 1);
+        
+        assertFalse(result);
+        verify(redisTemplate, never()).execute(any(), anyList(), any(Object[].class));
+    }
+
     @Test
     void testDecrStock_NullResult() {
         // Mock Lua脚本执行结果，返回null
-        when(redisTemplate.execute(any(), anyList(), anyString())).thenReturn(null);
+        when(redisTemplate.execute(any(), anyList(), any(Object[].class))).thenReturn(null);
         
         boolean result = redisService.decrStock(1, 2L, 3L, LocalDate.now(), 1, 1);
         
@@ -130,7 +326,7 @@ class RedisServiceImplTest {
     @Test
     void testDecrStock_InsufficientStock() {
         // Mock Lua脚本执行结果，返回0表示库存不足
-        when(redisTemplate.execute(any(), anyList(), anyString())).thenReturn(0L);
+        when(redisTemplate.execute(any(), anyList(), any(Object[].class))).thenReturn(0L);
         
         boolean result = redisService.decrStock(1, 2L, 3L, LocalDate.now(), 1, 1);
         
@@ -140,7 +336,7 @@ class RedisServiceImplTest {
     @Test
     void testDecrStock_KeyNotExists() {
         // Mock Lua脚本执行结果，返回-1表示key不存在
-        when(redisTemplate.execute(any(), anyList(), anyString())).thenReturn(-1L);
+        when(redisTemplate.execute(any(), anyList(), any(Object[].class))).thenReturn(-1L);
         
         boolean result = redisService.decrStock(1, 2L, 3L, LocalDate.now(), 1, 1);
         
@@ -150,7 +346,7 @@ class RedisServiceImplTest {
     @Test
     void testDecrStock_InvalidQuantity() {
         // Mock Lua脚本执行结果，返回-2表示数量参数无效
-        when(redisTemplate.execute(any(), anyList(), anyString())).thenReturn(-2L);
+        when(redisTemplate.execute(any(), anyList(), any(Object[].class))).thenReturn(-2L);
         
         boolean result = redisService.decrStock(1, 2L, 3L, LocalDate.now(), 1, 1);
         
@@ -160,7 +356,7 @@ class RedisServiceImplTest {
     @Test
     void testDecrStock_InvalidStockValue() {
         // Mock Lua脚本执行结果，返回-3表示库存值格式错误
-        when(redisTemplate.execute(any(), anyList(), anyString())).thenReturn(-3L);
+        when(redisTemplate.execute(any(), anyList(), any(Object[].class))).thenReturn(-3L);
         
         boolean result = redisService.decrStock(1, 2L, 3L, LocalDate.now(), 1, 1);
         
@@ -170,27 +366,145 @@ class RedisServiceImplTest {
     @Test
     void testDecrStock_UnknownError() {
         // Mock Lua脚本执行结果，返回未知错误码
-        when(redisTemplate.execute(any(), anyList(), anyString())).thenReturn(999L);
+        when(redisTemplate.execute(any(), anyList(), any(Object[].class))).thenReturn(999L);
         
         boolean result = redisService.decrStock(1, 2L, 3L, LocalDate.now(), 1, 1);
         
         assertFalse(result);
     }
 
+    @Test
+    void testReserveStocksOnce_Reserved() {
+        // Mock Lua脚本执行结果，{1, 0}表示扣减成功并写入预留标记
+        List<Object> scriptArgs = new ArrayList<>();
+        when(redisTemplate.execute(any(), anyList(), any(Object[].class))).thenAnswer(invocation -> {
+            Object[] arguments = invocation.getArguments();
+            scriptArgs.addAll(Arrays.asList(arguments).subList(2, arguments.length));
+            return Arrays.asList(1L, 0L);
+        });
+        
+        StockReservation result = redisService.reserveStocksOnce("O1", 7L, 1, 2L, 3L, LocalDate.now(), Map.of(1, 2));
+        
+        assertEquals(ReservationStatus.RESERVED, result.getStatus());
+        // 最后三个key为待同步集合、订单号的预留记录和待确认预留集合
+        verify(redisTemplate).execute(any(),
+                argThat(keys -> keys.size() == 4 && "stock:dirty".equals(keys.get(1)) && "booking:reservation:O1".equals(keys.get(2))
+                        && "booking:reservation:pending".equals(keys.get(3))),
+                any(Object[].class));
+        // 区段范围、扣减数量、用户ID、过期秒数，之后为预留时间、订单号和出发、到达停靠点
+        assertEquals(Arrays.asList("2", "3", "2", "7", "86400"), scriptArgs.subList(0, 5));
+        assertTrue(Long.parseLong((String) scriptArgs.get(5)) > 0);
+        assertEquals(Arrays.asList("O1", "2", "3"), scriptArgs.subList(6, 9));
+    }
+
+    @Test
+    void testReserveStocksOnce_DuplicateAndConflict() {
+        when(redisTemplate.execute(any(), anyList(), any(Object[].class)))
+                .thenReturn(Arrays.asList(2L, 0L))
+                .thenReturn(Arrays.asList(3L, 0L));
+        
+        assertEquals(ReservationStatus.DUPLICATE, redisService.reserveStocksOnce("O1", 7L, 1, 2L, 3L, LocalDate.now(), Map.of(1, 1)).getStatus());
+        assertEquals(ReservationStatus.CONFLICT, redisService.reserveStocksOnce("O1", 8L, 1, 2L, 3L, LocalDate.now(), Map.of(1, 1)).getStatus());
+    }
+
+    @Test
+    void testReserveStocksOnce_Insufficient() {
+        // Mock Lua脚本执行结果，{0, 2}表示第二个key库存不足
+        when(redisTemplate.execute(any(), anyList(), any(Object[].class))).thenReturn(Arrays.asList(0L, 2L));
+        Map<Integer, Integer> quantities = new LinkedHashMap<>();
+        quantities.put(1, 1);
+        quantities.put(3, 1);
+        
+        StockReservation result = redisService.reserveStocksOnce("O1", 7L, 1, 2L, 3L, LocalDate.now(), quantities);
+        
+        assertEquals(ReservationStatus.INSUFFICIENT, result.getStatus());
+        assertEquals(3, result.getCarriageTypeId());
+    }
+
+    @Test
+    void testReserveStocksOnce_KeyNotExists() {
+        // Mock Lua脚本执行结果，{-1, 1}表示第一个key不存在
+        when(redisTemplate.execute(any(), anyList(), any(Object[].class))).thenReturn(Arrays.asList(-1L, 1L));
+        
+        StockReservation result = redisService.reserveStocksOnce("O1", 7L, 1, 2L, 3L, LocalDate.now(), Map.of(1, 1));
+        
+        assertEquals(ReservationStatus.INSUFFICIENT, result.getStatus());
+        assertEquals(1, result.getCarriageTypeId());
+    }
+
+    @Test
+    void testReserveStocksOnce_NullResult() {
+        // Mock Lua脚本执行结果，返回null
+        when(redisTemplate.execute(any(), anyList(), any(Object[].class))).thenReturn(null);
+        
+        StockReservation result = redisService.reserveStocksOnce("O1", 7L, 1, 2L, 3L, LocalDate.now(), Map.of(1, 1));
+        
+        assertEquals(ReservationStatus.INSUFFICIENT, result.getStatus());
+        verify(searchResultCache, never()).onStockChanged(anyInt(), any(LocalDate.class));
+    }
+
+    @Test
+    void testReleaseReservation_ReturnsStock() {
+        // 脚本返回已归还的预留记录，按记录中的库存key失效查询缓存并触发候补兑现
+        LocalDate travelDate = LocalDate.of(2025, 7, 1);
+        when(redisTemplate.execute(any(), anyList(), any(Object[].class))).thenReturn(Arrays.asList(
+                "owner", "7", "from", "2", "to", "3", "departure", "2", "arrival", "3",
+                "stock:1:2025-07-01:1", "2", "stock:1:2025-07-01:3", "1"));
+        
+        assertTrue(redisService.releaseReservation("O1"));
+        
+        verify(redisTemplate).execute(any(),
+                eq(Arrays.asList("booking:reservation:O1", "booking:reservation:pending", "stock:dirty")), eq("O1"));
+        verify(searchResultCache, times(2)).onStockChanged(1, travelDate);
+        verify(waitlistFulfillmentExecutor).submit(eq("stock:1:2025-07-01:1"), eq("stock:1:2025-07-01:1:2:3"), any(Runnable.class));
+        verify(waitlistFulfillmentExecutor).submit(eq("stock:1:2025-07-01:3"), eq("stock:1:2025-07-01:3:2:3"), any(Runnable.class));
+    }
+
+    @Test
+    void testReleaseReservation_AlreadySettled() {
+        // 已确认或已归还的预留，脚本不做任何操作
+        when(redisTemplate.execute(any(), anyList(), any(Object[].class))).thenReturn(Collections.emptyList());
+        
+        assertFalse(redisService.releaseReservation("O1"));
+        
+        verifyNoInteractions(searchResultCache, waitlistFulfillmentExecutor);
+    }
+
+    @Test
+    void testConfirmReservation() {
+        redisService.confirmReservation("O1");
+        
+        verify(zSetOperations).remove("booking:reservation:pending", "O1");
+        verify(redisTemplate, never()).delete(anyString());
+    }
+
+    @Test
+    void testFindPendingReservations() {
+        when(zSetOperations.rangeByScore("booking:reservation:pending", 0, 1000L, 0, 10))
+                .thenReturn(new LinkedHashSet<>(Arrays.asList("O1", "O2")));
+        
+        assertEquals(Arrays.asList("O1", "O2"), redisService.findPendingReservations(1000L, 10));
+    }
+
     @Test
     void testIncrStock() {
         // Mock Lua脚本执行结果，返回1表示成功
-        when(redisTemplate.execute(any(), anyList(), anyString())).thenReturn(1L);
+        when(redisTemplate.execute(any(), anyList(), any(Object[].class))).thenReturn(1L);
         
-        boolean result = redisService.incrStock(1, 2L, 3L, LocalDate.now(), 1, 1);
+        LocalDate travelDate = LocalDate.now();
+        boolean result = redisService.incrStock(1, 2L, 3L, travelDate, 1, 1);
         
         assertTrue(result);
+        // 兑现检查提交到执行器，不在当前线程执行
+        String key = "stock:1:" + travelDate + ":1";
+        verify(waitlistFulfillmentExecutor).submit(eq(key), eq(key + ":2:3"), any(Runnable.class));
+        verify(waitlistIndex, never()).findCandidates(anyInt(), any(), anyLong(), anyLong(), anyInt(), anyInt());
     }
 
     @Test
     void testIncrStock_NullResult() {
         // Mock Lua脚本执行结果，返回null
-        when(redisTemplate.execute(any(), anyList(), anyString())).thenReturn(null);
+        when(redisTemplate.execute(any(), anyList(), any(Object[].class))).thenReturn(null);
         
         boolean result = redisService.incrStock(1, 2L, 3L, LocalDate.now(), 1, 1);
         
@@ -200,11 +514,12 @@ class RedisServiceImplTest {
     @Test
     void testIncrStock_NonOneResult() {
         // Mock Lua脚本执行结果，返回非1值
-        when(redisTemplate.execute(any(), anyList(), anyString())).thenReturn(0L);
+        when(redisTemplate.execute(any(), anyList(), any(Object[].class))).thenReturn(0L);
         
         boolean result = redisService.incrStock(1, 2L, 3L, LocalDate.now(), 1, 1);
         
         assertFalse(result);
+        verify(waitlistFulfillmentExecutor, never()).submit(anyString(), anyString(), any(Runnable.class));
     }
 
     @Test
@@ -495,84 +810,83 @@ class RedisServiceImplTest {
     }
 
     @Test
-    void testTriggerWaitlistFulfillment_NoPendingOrders() {
-        when(waitlistOrderRepository.findPendingFulfillmentOrders(any(LocalDateTime.class)))
+    void testTriggerWaitlistFulfillment_NoCandidates() {
+        when(waitlistIndex.findCandidates(eq(1), any(LocalDate.class), eq(2L), eq(3L), eq(1), anyInt()))
             .thenReturn(new ArrayList<>());
         
         assertDoesNotThrow(() -> redisService.triggerWaitlistFulfillment(1, 2L, 3L, LocalDate.now(), 1));
         
-        verify(waitlistOrderRepository).findPendingFulfillmentOrders(any(LocalDateTime.class));
+        verify(waitlistIndex).findCandidates(eq(1), any(LocalDate.class), eq(2L), eq(3L), eq(1), anyInt());
+        verify(waitlistOrderRepository, never()).findPendingFulfillmentOrders(any(LocalDateTime.class));
+        verify(waitlistOrderRepository, never()).findById(anyLong());
     }
 
     @Test
-    void testTriggerWaitlistFulfillment_WithPendingOrders() {
-        WaitlistOrder order1 = new WaitlistOrder();
-        order1.setWaitlistId(1L);
-        order1.setUserId(1L);
-        order1.setOrderTime(LocalDateTime.now());
-        
-        WaitlistOrder order2 = new WaitlistOrder();
-        order2.setWaitlistId(2L);
-        order2.setUserId(2L);
-        order2.setOrderTime(LocalDateTime.now());
-        
-        List<WaitlistOrder> pendingOrders = new ArrayList<>();
-        pendingOrders.add(order1);
-        pendingOrders.add(order2);
-        
-        when(waitlistOrderRepository.findPendingFulfillmentOrders(any(LocalDateTime.class)))
-            .thenReturn(pendingOrders);
+    void testTriggerWaitlistFulfillment_WithCandidates() {
+        WaitlistOrder order1 = createPendingWaitlistOrder(1L);
+        WaitlistOrder order2 = createPendingWaitlistOrder(2L);
+        
+        when(waitlistIndex.findCandidates(anyInt(), any(LocalDate.class), anyLong(), anyLong(), anyInt(), anyInt()))
+            .thenReturn(Arrays.asList(1L, 2L));
+        when(waitlistOrderRepository.findById(1L)).thenReturn(Optional.of(order1));
+        when(waitlistOrderRepository.findById(2L)).thenReturn(Optional.of(order2));
         when(waitlistItemRepository.findPendingItemsByWaitlistId(1L)).thenReturn(new ArrayList<>());
         when(waitlistItemRepository.findPendingItemsByWaitlistId(2L)).thenReturn(new ArrayList<>());
         
         assertDoesNotThrow(() -> redisService.triggerWaitlistFulfillment(1, 2L, 3L, LocalDate.now(), 1));
         
-        verify(waitlistOrderRepository).findPendingFulfillmentOrders(any(LocalDateTime.class));
         verify(waitlistItemRepository).findPendingItemsByWaitlistId(1L);
         verify(waitlistItemRepository).findPendingItemsByWaitlistId(2L);
     }
 
+    @Test
+    void testTriggerWaitlistFulfillment_StaleCandidateRemoved() {
+        WaitlistOrder cancelled = createPendingWaitlistOrder(1L);
+        cancelled.setOrderStatus((byte) WaitlistOrderStatus.CANCELLED.getCode());
+        WaitlistOrder expired = createPendingWaitlistOrder(2L);
+        expired.setExpireTime(LocalDateTime.now().minusMinutes(1));
+        List<WaitlistItem> items = List.of(createWaitlistItem(1L));
+        
+        when(waitlistIndex.findCandidates(anyInt(), any(LocalDate.class), anyLong(), anyLong(), anyInt(), anyInt()))
+            .thenReturn(Arrays.asList(1L, 2L, 3L));
+        when(waitlistOrderRepository.findById(1L)).thenReturn(Optional.of(cancelled));
+        when(waitlistOrderRepository.findById(2L)).thenReturn(Optional.of(expired));
+        when(waitlistOrderRepository.findById(3L)).thenReturn(Optional.empty());
+        when(waitlistItemRepository.findByWaitlistId(1L)).thenReturn(items);
+        
+        redisService.triggerWaitlistFulfillment(1, 2L, 3L, LocalDate.now(), 1);
+        
+        verify(waitlistIndex).remove(1L, items);
+        verify(waitlistIndex).remove(eq(2L), anyList());
+        verify(waitlistIndex).remove(eq(3L), anyList());
+        verify(waitlistItemRepository, never()).findPendingItemsByWaitlistId(anyLong());
+    }
+
     @Test
     void testTriggerWaitlistFulfillment_Exception() {
-        when(waitlistOrderRepository.findPendingFulfillmentOrders(any(LocalDateTime.class)))
-            .thenThrow(new RuntimeException("Database error"));
+        when(waitlistIndex.findCandidates(anyInt(), any(LocalDate.class), anyLong(), anyLong(), anyInt(), anyInt()))
+            .thenThrow(new RuntimeException("Redis error"));
         
         assertDoesNotThrow(() -> redisService.triggerWaitlistFulfillment(1, 2L, 3L, LocalDate.now(), 1));
         
-        verify(waitlistOrderRepository).findPendingFulfillmentOrders(any(LocalDateTime.class));
+        verify(waitlistOrderRepository, never()).findById(anyLong());
     }
 
     @Test
     void testTriggerWaitlistFulfillment_OrderFulfilled() {
-        WaitlistOrder order = new WaitlistOrder();
-        order.setWaitlistId(1L);
-        order.setUserId(1L);
-        order.setOrderTime(LocalDateTime.now());
-        
-        WaitlistItem item = new WaitlistItem();
+        WaitlistOrder order = createPendingWaitlistOrder(1L);
+        WaitlistItem item = createWaitlistItem(1L);
         item.setItemId(1L);
-        item.setWaitlistId(1L);
-        item.setTrainId(1);
-        item.setDepartureStopId(2L);
-        item.setArrivalStopId(3L);
-        item.setTravelDate(LocalDate.now());
-        item.setCarriageTypeId(1);
-        item.setPassengerId(100L);
-        item.setTicketType((byte) 1);
-        item.setPrice(new BigDecimal("50.00"));
-        item.setItemStatus((byte) WaitlistItemStatus.PENDING_FULFILLMENT.getCode());
-        
-        List<WaitlistOrder> pendingOrders = new ArrayList<>();
-        pendingOrders.add(order);
         
         List<WaitlistItem> pendingItems = new ArrayList<>();
         pendingItems.add(item);
         
-        when(waitlistOrderRepository.findPendingFulfillmentOrders(any(LocalDateTime.class)))
-            .thenReturn(pendingOrders);
+        when(waitlistIndex.findCandidates(anyInt(), any(LocalDate.class), anyLong(), anyLong(), anyInt(), anyInt()))
+            .thenReturn(List.of(1L));
+        when(waitlistOrderRepository.findById(1L)).thenReturn(Optional.of(order));
         when(waitlistItemRepository.findPendingItemsByWaitlistId(1L)).thenReturn(pendingItems);
-        when(valueOperations.get(anyString())).thenReturn(10); // 有库存
-        when(redisTemplate.execute(any(), anyList(), anyString())).thenReturn(1L); // 扣减库存成功
+        when(hashOperations.multiGet(anyString(), anyCollection())).thenReturn(Collections.singletonList("10")); // 有库存
+        when(redisTemplate.execute(any(), anyList(), any(Object[].class))).thenReturn(1L); // 扣减库存成功
         when(orderRepository.save(any(Order.class))).thenAnswer(invocation -> {
             Order savedOrder = invocation.getArgument(0);
             savedOrder.setOrderId(1L);
@@ -588,90 +902,78 @@ class RedisServiceImplTest {
         
         assertDoesNotThrow(() -> redisService.triggerWaitlistFulfillment(1, 2L, 3L, LocalDate.now(), 1));
         
-        verify(waitlistOrderRepository).findPendingFulfillmentOrders(any(LocalDateTime.class));
         verify(waitlistItemRepository).findPendingItemsByWaitlistId(1L);
         verify(orderRepository).save(any(Order.class));
         verify(ticketRepository).save(any(Ticket.class));
         verify(waitlistItemRepository).save(any(WaitlistItem.class));
         verify(waitlistOrderRepository).save(any(WaitlistOrder.class));
+        verify(waitlistIndex).remove(1L, pendingItems);
     }
 
     @Test
     void testTriggerWaitlistFulfillment_OrderNotFulfilled() {
-        WaitlistOrder order = new WaitlistOrder();
-        order.setWaitlistId(1L);
-        order.setUserId(1L);
-        order.setOrderTime(LocalDateTime.now());
-        
-        WaitlistItem item = new WaitlistItem();
-        item.setItemId(1L);
-        item.setWaitlistId(1L);
-        item.setTrainId(1);
-        item.setDepartureStopId(2L);
-        item.setArrivalStopId(3L);
-        item.setTravelDate(LocalDate.now());
-        item.setCarriageTypeId(1);
-        item.setPassengerId(100L);
-        item.setTicketType((byte) 1);
-        item.setPrice(new BigDecimal("50.00"));
-        item.setItemStatus((byte) WaitlistItemStatus.PENDING_FULFILLMENT.getCode());
-        
-        List<WaitlistOrder> pendingOrders = new ArrayList<>();
-        pendingOrders.add(order);
-        
+        WaitlistOrder order = createPendingWaitlistOrder(1L);
         List<WaitlistItem> pendingItems = new ArrayList<>();
-        pendingItems.add(item);
+        pendingItems.add(createWaitlistItem(1L));
         
-        when(waitlistOrderRepository.findPendingFulfillmentOrders(any(LocalDateTime.class)))
-            .thenReturn(pendingOrders);
+        when(waitlistIndex.findCandidates(anyInt(), any(LocalDate.class), anyLong(), anyLong(), anyInt(), anyInt()))
+            .thenReturn(List.of(1L));
+        when(waitlistOrderRepository.findById(1L)).thenReturn(Optional.of(order));
         when(waitlistItemRepository.findPendingItemsByWaitlistId(1L)).thenReturn(pendingItems);
-        when(valueOperations.get(anyString())).thenReturn(null); // 无库存
+        when(hashOperations.multiGet(anyString(), anyCollection())).thenReturn(Collections.singletonList(null)); // 无库存
         
         assertDoesNotThrow(() -> redisService.triggerWaitlistFulfillment(1, 2L, 3L, LocalDate.now(), 1));
         
-        verify(waitlistOrderRepository).findPendingFulfillmentOrders(any(LocalDateTime.class));
         verify(waitlistItemRepository).findPendingItemsByWaitlistId(1L);
         verify(orderRepository, never()).save(any(Order.class));
         verify(ticketRepository, never()).save(any(Ticket.class));
+        verify(waitlistIndex, never()).remove(anyLong(), anyList());
     }
 
     @Test
     void testTriggerWaitlistFulfillment_StockReductionFailed() {
-        // 设置候补订单
+        WaitlistOrder order = createPendingWaitlistOrder(1L);
+        List<WaitlistItem> items = List.of(createWaitlistItem(1L));
+
+        // Mock索引和仓库方法
+        when(waitlistIndex.findCandidates(anyInt(), any(LocalDate.class), anyLong(), anyLong(), anyInt(), anyInt()))
+                .thenReturn(List.of(1L));
+        when(waitlistOrderRepository.findById(1L)).thenReturn(Optional.of(order));
+        when(waitlistItemRepository.findPendingItemsByWaitlistId(1L)).thenReturn(items);
+        when(hashOperations.multiGet(anyString(), anyCollection())).thenReturn(Collections.singletonList("1")); // 有库存
+        when(redisTemplate.execute(any(), anyList(), any(Object[].class))).thenReturn(0L); // 减库存失败
+
+        // 执行方法
+        redisService.triggerWaitlistFulfillment(1, 2L, 3L, LocalDate.now(), 1);
+
+        // 验证调用
+        verify(waitlistOrderRepository).findById(1L);
+        verify(waitlistItemRepository).findPendingItemsByWaitlistId(1L);
+    }
+
+    private WaitlistOrder createPendingWaitlistOrder(Long waitlistId) {
         WaitlistOrder order = new WaitlistOrder();
-        order.setWaitlistId(1L);
-        order.setUserId(1L);
+        order.setWaitlistId(waitlistId);
+        order.setUserId(waitlistId);
         order.setOrderTime(LocalDateTime.now());
+        order.setExpireTime(LocalDateTime.now().plusDays(1));
         order.setOrderStatus((byte) WaitlistOrderStatus.PENDING_FULFILLMENT.getCode());
+        return order;
+    }
 
-        // 设置候补订单项
+    private WaitlistItem createWaitlistItem(Long waitlistId) {
         WaitlistItem item = new WaitlistItem();
-        item.setWaitlistId(1L);
+        item.setWaitlistId(waitlistId);
         item.setTrainId(1);
         item.setDepartureStopId(2L);
         item.setArrivalStopId(3L);
         item.setTravelDate(LocalDate.now());
         item.setCarriageTypeId(1);
-        item.setPassengerId(1L);
+        item.setPassengerId(100L);
         item.setTicketType((byte) 1);
         item.setPrice(new BigDecimal("50.00"));
         item.setItemStatus((byte) WaitlistItemStatus.PENDING_FULFILLMENT.getCode());
-
-        List<WaitlistItem> items = List.of(item);
-
-        // Mock仓库方法
-        when(waitlistOrderRepository.findPendingFulfillmentOrders(any(LocalDateTime.class)))
-                .thenReturn(List.of(order));
-        when(waitlistItemRepository.findPendingItemsByWaitlistId(1L)).thenReturn(items);
-        when(valueOperations.get(anyString())).thenReturn(1); // 有库存
-        when(redisTemplate.execute(any(), anyList(), anyString())).thenReturn(0L); // 减库存失败
-
-        // 执行方法
-        redisService.triggerWaitlistFulfillment(1, 2L, 3L, LocalDate.now(), 1);
-
-        // 验证调用
-        verify(waitlistOrderRepository).findPendingFulfillmentOrders(any(LocalDateTime.class));
-        verify(waitlistItemRepository).findPendingItemsByWaitlistId(1L);
+        return item;
     }
 
     @Test
@@ -700,7 +1002,7 @@ class RedisServiceImplTest {
 
         // Mock仓库方法
         when(waitlistItemRepository.findPendingItemsByWaitlistId(1L)).thenReturn(items);
-        when(valueOperations.get(anyString())).thenReturn(0); // 库存为0
+        when(hashOperations.multiGet(anyString(), anyCollection())).thenReturn(Collections.singletonList("0")); // 库存为0
 
         // 使用反射调用私有方法
         try {
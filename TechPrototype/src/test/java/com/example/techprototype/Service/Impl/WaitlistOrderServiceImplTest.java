@@ -1,5 +1,9 @@
 package com.example.techprototype.Service.Impl;
 
+import com.example.techprototype.Component.HistoryPager;
+import com.example.techprototype.Component.PassengerItineraryIndex;
+import com.example.techprototype.Component.TimetableCache;
+import com.example.techprototype.Component.WaitlistIndex;
 import com.example.techprototype.DTO.*;
 import com.example.techprototype.Entity.*;
 import com.example.techprototype.Enums.WaitlistOrderStatus;
@@ -11,6 +15,8 @@ import org.junit.jupiter.api.Test;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
+import org.mockito.Spy;
+import org.springframework.data.domain.Pageable;
 
 import java.math.BigDecimal;
 import java.time.LocalDate;
@@ -36,11 +42,7 @@ class WaitlistOrderServiceImplTest {
     @Mock
     private PassengerRepository passengerRepository;
     @Mock
-    private TrainRepository trainRepository;
-    @Mock
-    private TrainStopRepository trainStopRepository;
-    @Mock
-    private StationRepository stationRepository;
+    private TimetableCache timetableCache;
     @Mock
     private CarriageTypeRepository carriageTypeRepository;
     @Mock
@@ -51,6 +53,12 @@ class WaitlistOrderServiceImplTest {
     private TicketInventoryRepository ticketInventoryRepository;
     @Mock
     private RedisService redisService;
+    @Mock
+    private WaitlistIndex waitlistIndex;
+    @Mock
+    private PassengerItineraryIndex passengerItineraryIndex;
+    @Spy
+    private HistoryPager historyPager;
 
     private BookingRequest bookingRequest;
     private User user;
@@ -62,6 +70,9 @@ class WaitlistOrderServiceImplTest {
     @BeforeEach
     void setUp() {
         MockitoAnnotations.openMocks(this);
+        // 按停靠点查车站时沿用各用例对停靠点和车站的打桩
+        when(timetableCache.getStationOfStop(any())).thenAnswer(invocation ->
+                timetableCache.getStop(invocation.<Long>getArgument(0)).flatMap(stop -> timetableCache.getStation(stop.getStationId())));
         
         // 设置测试数据
         user = new User();
@@ -121,7 +132,7 @@ class WaitlistOrderServiceImplTest {
     @Test
     void testCreateWaitlistOrder_Success() {
         when(userRepository.findById(1L)).thenReturn(Optional.of(user));
-        when(trainRepository.findById(1)).thenReturn(Optional.of(train));
+        when(timetableCache.getTrain(1)).thenReturn(Optional.of(train));
         when(ticketInventoryRepository.findByKeyWithLock(anyInt(), anyLong(), anyLong(), any(LocalDate.class), anyInt()))
             .thenReturn(Optional.of(ticketInventory));
         when(waitlistOrderRepository.save(any(WaitlistOrder.class))).thenReturn(waitlistOrder);
@@ -158,15 +169,15 @@ class WaitlistOrderServiceImplTest {
 
     @Test
     void testGetMyWaitlistOrders_Success() {
-        when(waitlistOrderRepository.findByUserIdOrderByOrderTimeDesc(1L))
+        when(waitlistOrderRepository.findFirstPageByUserId(eq(1L), any(Pageable.class)))
             .thenReturn(Arrays.asList(waitlistOrder));
-        when(waitlistItemRepository.findByWaitlistId(1L))
+        when(waitlistItemRepository.findByWaitlistIdIn(List.of(1L)))
             .thenReturn(Arrays.asList(waitlistItem));
-        when(trainRepository.findById(1)).thenReturn(Optional.of(train));
-        when(trainStopRepository.findByStopId(1L)).thenReturn(Optional.of(new TrainStop()));
-        when(stationRepository.findById(anyInt())).thenReturn(Optional.of(new Station()));
+        when(timetableCache.getTrain(1)).thenReturn(Optional.of(train));
+        when(timetableCache.getStop(1L)).thenReturn(Optional.of(new TrainStop()));
+        when(timetableCache.getStation(anyInt())).thenReturn(Optional.of(new Station()));
 
-        WaitlistOrderResponse response = waitlistOrderService.getMyWaitlistOrders(1L);
+        WaitlistOrderResponse response = waitlistOrderService.getMyWaitlistOrders(1L, null, null);
         
         assertEquals("SUCCESS", response.getStatus());
         assertNotNull(response.getWaitlistOrders());
@@ -175,10 +186,10 @@ class WaitlistOrderServiceImplTest {
 
     @Test
     void testGetMyWaitlistOrders_Exception() {
-        when(waitlistOrderRepository.findByUserIdOrderByOrderTimeDesc(1L))
+        when(waitlistOrderRepository.findFirstPageByUserId(eq(1L), any(Pageable.class)))
             .thenThrow(new RuntimeException("Database error"));
 
-        WaitlistOrderResponse response = waitlistOrderService.getMyWaitlistOrders(1L);
+        WaitlistOrderResponse response = waitlistOrderService.getMyWaitlistOrders(1L, null, null);
         
         assertEquals("FAILURE", response.getStatus());
         assertTrue(response.getMessage().contains("获取候补订单失败"));
@@ -190,9 +201,9 @@ class WaitlistOrderServiceImplTest {
         when(waitlistItemRepository.findByWaitlistId(1L))
             .thenReturn(Arrays.asList(waitlistItem));
         when(passengerRepository.findById(100L)).thenReturn(Optional.of(new Passenger()));
-        when(trainRepository.findById(1)).thenReturn(Optional.of(train));
-        when(trainStopRepository.findByStopId(anyLong())).thenReturn(Optional.of(new TrainStop()));
-        when(stationRepository.findById(anyInt())).thenReturn(Optional.of(new Station()));
+        when(timetableCache.getTrain(1)).thenReturn(Optional.of(train));
+        when(timetableCache.getStop(anyLong())).thenReturn(Optional.of(new TrainStop()));
+        when(timetableCache.getStation(anyInt())).thenReturn(Optional.of(new Station()));
         when(carriageTypeRepository.findById(1)).thenReturn(Optional.of(new CarriageType()));
 
         WaitlistOrderDetailResponse response = waitlistOrderService.getWaitlistOrderDetail(1L, 1L);
@@ -236,6 +247,7 @@ class WaitlistOrderServiceImplTest {
         assertTrue(response.getMessage().contains("候补订单支付成功"));
         verify(waitlistOrderRepository).save(any(WaitlistOrder.class));
         verify(waitlistItemRepository).saveAll(anyList());
+        verify(waitlistIndex).add(waitlistOrder, Arrays.asList(waitlistItem));
     }
 
     @Test
@@ -284,6 +296,7 @@ class WaitlistOrderServiceImplTest {
         assertTrue(response.getMessage().contains("候补订单取消成功"));
         verify(waitlistOrderRepository).save(any(WaitlistOrder.class));
         verify(waitlistItemRepository).saveAll(anyList());
+        verify(waitlistIndex).remove(1L, Arrays.asList(waitlistItem));
     }
 
     @Test
@@ -469,7 +482,7 @@ class WaitlistOrderServiceImplTest {
 
         // 通过 createWaitlistOrder 间接测试 calculateTicketPrice
         when(userRepository.findById(1L)).thenReturn(Optional.of(user));
-        when(trainRepository.findById(1)).thenReturn(Optional.of(train));
+        when(timetableCache.getTrain(1)).thenReturn(Optional.of(train));
         when(waitlistOrderRepository.save(any(WaitlistOrder.class))).thenReturn(waitlistOrder);
         when(waitlistItemRepository.saveAll(anyList())).thenReturn(Arrays.asList(waitlistItem));
 
@@ -489,7 +502,7 @@ class WaitlistOrderServiceImplTest {
         bookingRequest.getPassengers().get(0).setTicketType((byte) 2); // 儿童票
 
         when(userRepository.findById(1L)).thenReturn(Optional.of(user));
-        when(trainRepository.findById(1)).thenReturn(Optional.of(train));
+        when(timetableCache.getTrain(1)).thenReturn(Optional.of(train));
         when(waitlistOrderRepository.save(any(WaitlistOrder.class))).thenReturn(waitlistOrder);
         when(waitlistItemRepository.saveAll(anyList())).thenReturn(Arrays.asList(waitlistItem));
 
@@ -504,7 +517,7 @@ class WaitlistOrderServiceImplTest {
             .thenReturn(Optional.empty());
 
         when(userRepository.findById(1L)).thenReturn(Optional.of(user));
-        when(trainRepository.findById(1)).thenReturn(Optional.of(train));
+        when(timetableCache.getTrain(1)).thenReturn(Optional.of(train));
         when(waitlistOrderRepository.save(any(WaitlistOrder.class))).thenReturn(waitlistOrder);
         when(waitlistItemRepository.saveAll(anyList())).thenReturn(Arrays.asList(waitlistItem));
 
@@ -515,7 +528,7 @@ class WaitlistOrderServiceImplTest {
 
     @Test
     void testCalculateExpireTime_TrainNotFound() throws Exception {
-        when(trainRepository.findById(1)).thenReturn(Optional.empty());
+        when(timetableCache.getTrain(1)).thenReturn(Optional.empty());
         
         java.lang.reflect.Method method = WaitlistOrderServiceImpl.class.getDeclaredMethod("calculateExpireTime", LocalDate.class, Integer.class);
         method.setAccessible(true);
@@ -529,7 +542,7 @@ class WaitlistOrderServiceImplTest {
     void testGetArrivalTime_Success() throws Exception {
         TrainStop trainStop = new TrainStop();
         trainStop.setArrivalTime(LocalTime.of(10, 30));
-        when(trainStopRepository.findByStopId(1L)).thenReturn(Optional.of(trainStop));
+        when(timetableCache.getStop(1L)).thenReturn(Optional.of(trainStop));
         
         java.lang.reflect.Method method = WaitlistOrderServiceImpl.class.getDeclaredMethod("getArrivalTime", Integer.class, Long.class);
         method.setAccessible(true);
@@ -540,7 +553,7 @@ class WaitlistOrderServiceImplTest {
 
     @Test
     void testGetArrivalTime_TrainStopNotFound() throws Exception {
-        when(trainStopRepository.findByStopId(1L)).thenReturn(Optional.empty());
+        when(timetableCache.getStop(1L)).thenReturn(Optional.empty());
         
         java.lang.reflect.Method method = WaitlistOrderServiceImpl.class.getDeclaredMethod("getArrivalTime", Integer.class, Long.class);
         method.setAccessible(true);
@@ -551,7 +564,7 @@ class WaitlistOrderServiceImplTest {
 
     @Test
     void testGetArrivalTime_Exception() throws Exception {
-        when(trainStopRepository.findByStopId(1L)).thenThrow(new RuntimeException("Database error"));
+        when(timetableCache.getStop(1L)).thenThrow(new RuntimeException("Database error"));
         
         java.lang.reflect.Method method = WaitlistOrderServiceImpl.class.getDeclaredMethod("getArrivalTime", Integer.class, Long.class);
         method.setAccessible(true);
@@ -564,7 +577,7 @@ class WaitlistOrderServiceImplTest {
     void testGetDepartureTime_Success() throws Exception {
         TrainStop trainStop = new TrainStop();
         trainStop.setDepartureTime(LocalTime.of(8, 0));
-        when(trainStopRepository.findByStopId(1L)).thenReturn(Optional.of(trainStop));
+        when(timetableCache.getStop(1L)).thenReturn(Optional.of(trainStop));
         
         java.lang.reflect.Method method = WaitlistOrderServiceImpl.class.getDeclaredMethod("getDepartureTime", Integer.class, Long.class);
         method.setAccessible(true);
@@ -575,7 +588,7 @@ class WaitlistOrderServiceImplTest {
 
     @Test
     void testGetDepartureTime_TrainStopNotFound() throws Exception {
-        when(trainStopRepository.findByStopId(1L)).thenReturn(Optional.empty());
+        when(timetableCache.getStop(1L)).thenReturn(Optional.empty());
         
         java.lang.reflect.Method method = WaitlistOrderServiceImpl.class.getDeclaredMethod("getDepartureTime", Integer.class, Long.class);
         method.setAccessible(true);
@@ -586,7 +599,7 @@ class WaitlistOrderServiceImplTest {
 
     @Test
     void testGetDepartureTime_Exception() throws Exception {
-        when(trainStopRepository.findByStopId(1L)).thenThrow(new RuntimeException("Database error"));
+        when(timetableCache.getStop(1L)).thenThrow(new RuntimeException("Database error"));
         
         java.lang.reflect.Method method = WaitlistOrderServiceImpl.class.getDeclaredMethod("getDepartureTime", Integer.class, Long.class);
         method.setAccessible(true);
@@ -670,8 +683,8 @@ class WaitlistOrderServiceImplTest {
         trainStop.setStationId(1);
         Station station = new Station();
         station.setStationName("北京站");
-        when(trainStopRepository.findByStopId(1L)).thenReturn(Optional.of(trainStop));
-        when(stationRepository.findById(1)).thenReturn(Optional.of(station));
+        when(timetableCache.getStop(1L)).thenReturn(Optional.of(trainStop));
+        when(timetableCache.getStation(1)).thenReturn(Optional.of(station));
         
         java.lang.reflect.Method method = WaitlistOrderServiceImpl.class.getDeclaredMethod("getStationName", Long.class);
         method.setAccessible(true);
@@ -682,7 +695,7 @@ class WaitlistOrderServiceImplTest {
 
     @Test
     void testGetStationName_TrainStopNotFound() throws Exception {
-        when(trainStopRepository.findByStopId(1L)).thenReturn(Optional.empty());
+        when(timetableCache.getStop(1L)).thenReturn(Optional.empty());
         
         java.lang.reflect.Method method = WaitlistOrderServiceImpl.class.getDeclaredMethod("getStationName", Long.class);
         method.setAccessible(true);
@@ -695,8 +708,8 @@ class WaitlistOrderServiceImplTest {
     void testGetStationName_StationNotFound() throws Exception {
         TrainStop trainStop = new TrainStop();
         trainStop.setStationId(1);
-        when(trainStopRepository.findByStopId(1L)).thenReturn(Optional.of(trainStop));
-        when(stationRepository.findById(1)).thenReturn(Optional.empty());
+        when(timetableCache.getStop(1L)).thenReturn(Optional.of(trainStop));
+        when(timetableCache.getStation(1)).thenReturn(Optional.empty());
         
         java.lang.reflect.Method method = WaitlistOrderServiceImpl.class.getDeclaredMethod("getStationName", Long.class);
         method.setAccessible(true);
@@ -707,7 +720,7 @@ class WaitlistOrderServiceImplTest {
 
     @Test
     void testGetStationName_Exception() throws Exception {
-        when(trainStopRepository.findByStopId(1L)).thenThrow(new RuntimeException("Database error"));
+        when(timetableCache.getStop(1L)).thenThrow(new RuntimeException("Database error"));
         
         java.lang.reflect.Method method = WaitlistOrderServiceImpl.class.getDeclaredMethod("getStationName", Long.class);
         method.setAccessible(true);
@@ -897,7 +910,7 @@ class WaitlistOrderServiceImplTest {
     @Test
     void testConvertToWaitlistOrderDetail_TrainNotFound() throws Exception {
         when(waitlistItemRepository.findByWaitlistId(1L)).thenReturn(Arrays.asList(waitlistItem));
-        when(trainRepository.findById(1)).thenReturn(Optional.empty());
+        when(timetableCache.getTrain(1)).thenReturn(Optional.empty());
         
         java.lang.reflect.Method method = WaitlistOrderServiceImpl.class.getDeclaredMethod("convertToWaitlistOrderDetail", WaitlistOrder.class, List.class);
         method.setAccessible(true);
@@ -909,9 +922,9 @@ class WaitlistOrderServiceImplTest {
     @Test
     void testConvertToWaitlistOrderDetail_DepartureTimeNull() throws Exception {
         when(waitlistItemRepository.findByWaitlistId(1L)).thenReturn(Arrays.asList(waitlistItem));
-        when(trainRepository.findById(1)).thenReturn(Optional.of(train));
-        when(trainStopRepository.findByStopId(1L)).thenReturn(Optional.empty());
-        when(stationRepository.findById(anyInt())).thenReturn(Optional.of(new Station()));
+        when(timetableCache.getTrain(1)).thenReturn(Optional.of(train));
+        when(timetableCache.getStop(1L)).thenReturn(Optional.empty());
+        when(timetableCache.getStation(anyInt())).thenReturn(Optional.of(new Station()));
         when(passengerRepository.findById(anyLong())).thenReturn(Optional.of(new Passenger()));
         when(carriageTypeRepository.findById(anyInt())).thenReturn(Optional.of(new CarriageType()));
         
@@ -926,9 +939,9 @@ class WaitlistOrderServiceImplTest {
     @Test
     void testConvertToWaitlistOrderDetail_ArrivalTimeNull() throws Exception {
         when(waitlistItemRepository.findByWaitlistId(1L)).thenReturn(Arrays.asList(waitlistItem));
-        when(trainRepository.findById(1)).thenReturn(Optional.of(train));
-        when(trainStopRepository.findByStopId(1L)).thenReturn(Optional.empty());
-        when(stationRepository.findById(anyInt())).thenReturn(Optional.of(new Station()));
+        when(timetableCache.getTrain(1)).thenReturn(Optional.of(train));
+        when(timetableCache.getStop(1L)).thenReturn(Optional.empty());
+        when(timetableCache.getStation(anyInt())).thenReturn(Optional.of(new Station()));
         when(passengerRepository.findById(anyLong())).thenReturn(Optional.of(new Passenger()));
         when(carriageTypeRepository.findById(anyInt())).thenReturn(Optional.of(new CarriageType()));
         
@@ -943,9 +956,9 @@ class WaitlistOrderServiceImplTest {
     @Test
     void testConvertToWaitlistOrderDetail_PassengerNotFound() throws Exception {
         when(waitlistItemRepository.findByWaitlistId(1L)).thenReturn(Arrays.asList(waitlistItem));
-        when(trainRepository.findById(1)).thenReturn(Optional.of(train));
-        when(trainStopRepository.findByStopId(anyLong())).thenReturn(Optional.of(new TrainStop()));
-        when(stationRepository.findById(anyInt())).thenReturn(Optional.of(new Station()));
+        when(timetableCache.getTrain(1)).thenReturn(Optional.of(train));
+        when(timetableCache.getStop(anyLong())).thenReturn(Optional.of(new TrainStop()));
+        when(timetableCache.getStation(anyInt())).thenReturn(Optional.of(new Station()));
         when(passengerRepository.findById(100L)).thenReturn(Optional.empty());
         
         java.lang.reflect.Method method = WaitlistOrderServiceImpl.class.getDeclaredMethod("convertToWaitlistOrderDetail", WaitlistOrder.class, List.class);
@@ -960,11 +973,11 @@ class WaitlistOrderServiceImplTest {
     @Test
     void testConvertToWaitlistOrderDetail_ItemTrainNotFound() throws Exception {
         when(waitlistItemRepository.findByWaitlistId(1L)).thenReturn(Arrays.asList(waitlistItem));
-        when(trainRepository.findById(1)).thenReturn(Optional.of(train));
-        when(trainStopRepository.findByStopId(anyLong())).thenReturn(Optional.of(new TrainStop()));
-        when(stationRepository.findById(anyInt())).thenReturn(Optional.of(new Station()));
+        when(timetableCache.getTrain(1)).thenReturn(Optional.of(train));
+        when(timetableCache.getStop(anyLong())).thenReturn(Optional.of(new TrainStop()));
+        when(timetableCache.getStation(anyInt())).thenReturn(Optional.of(new Station()));
         when(passengerRepository.findById(100L)).thenReturn(Optional.of(new Passenger()));
-        when(trainRepository.findById(1)).thenReturn(Optional.empty());
+        when(timetableCache.getTrain(1)).thenReturn(Optional.empty());
         
         java.lang.reflect.Method method = WaitlistOrderServiceImpl.class.getDeclaredMethod("convertToWaitlistOrderDetail", WaitlistOrder.class, List.class);
         method.setAccessible(true);
@@ -978,9 +991,9 @@ class WaitlistOrderServiceImplTest {
     @Test
     void testConvertToWaitlistOrderDetail_CarriageTypeNotFound() throws Exception {
         when(waitlistItemRepository.findByWaitlistId(1L)).thenReturn(Arrays.asList(waitlistItem));
-        when(trainRepository.findById(1)).thenReturn(Optional.of(train));
-        when(trainStopRepository.findByStopId(anyLong())).thenReturn(Optional.of(new TrainStop()));
-        when(stationRepository.findById(anyInt())).thenReturn(Optional.of(new Station()));
+        when(timetableCache.getTrain(1)).thenReturn(Optional.of(train));
+        when(timetableCache.getStop(anyLong())).thenReturn(Optional.of(new TrainStop()));
+        when(timetableCache.getStation(anyInt())).thenReturn(Optional.of(new Station()));
         when(passengerRepository.findById(100L)).thenReturn(Optional.of(new Passenger()));
         when(carriageTypeRepository.findById(1)).thenReturn(Optional.empty());
         
@@ -1076,7 +1089,7 @@ class WaitlistOrderServiceImplTest {
 
     @Test
     void testConvertToWaitlistOrderInfo_EmptyItems() throws Exception {
-        when(waitlistItemRepository.findByWaitlistId(1L)).thenReturn(Collections.emptyList());
+        when(waitlistItemRepository.findByWaitlistIdIn(anyList())).thenReturn(Collections.emptyList());
         
         java.lang.reflect.Method method = WaitlistOrderServiceImpl.class.getDeclaredMethod("convertToWaitlistOrderInfo", List.class);
         method.setAccessible(true);
@@ -1088,10 +1101,10 @@ class WaitlistOrderServiceImplTest {
     @Test
     void testConvertToWaitlistOrderInfo_ItemCountNull() throws Exception {
         waitlistOrder.setItemCount(null);
-        when(waitlistItemRepository.findByWaitlistId(1L)).thenReturn(Arrays.asList(waitlistItem));
-        when(trainRepository.findById(1)).thenReturn(Optional.of(train));
-        when(trainStopRepository.findByStopId(anyLong())).thenReturn(Optional.of(new TrainStop()));
-        when(stationRepository.findById(anyInt())).thenReturn(Optional.of(new Station()));
+        when(waitlistItemRepository.findByWaitlistIdIn(anyList())).thenReturn(Arrays.asList(waitlistItem));
+        when(timetableCache.getTrain(1)).thenReturn(Optional.of(train));
+        when(timetableCache.getStop(anyLong())).thenReturn(Optional.of(new TrainStop()));
+        when(timetableCache.getStation(anyInt())).thenReturn(Optional.of(new Station()));
         
         java.lang.reflect.Method method = WaitlistOrderServiceImpl.class.getDeclaredMethod("convertToWaitlistOrderInfo", List.class);
         method.setAccessible(true);
@@ -1103,10 +1116,10 @@ class WaitlistOrderServiceImplTest {
 
     @Test
     void testConvertToWaitlistOrderInfo_TrainNotFound() throws Exception {
-        when(waitlistItemRepository.findByWaitlistId(1L)).thenReturn(Arrays.asList(waitlistItem));
-        when(trainRepository.findById(1)).thenReturn(Optional.empty());
-        when(trainStopRepository.findByStopId(anyLong())).thenReturn(Optional.of(new TrainStop()));
-        when(stationRepository.findById(anyInt())).thenReturn(Optional.of(new Station()));
+        when(waitlistItemRepository.findByWaitlistIdIn(anyList())).thenReturn(Arrays.asList(waitlistItem));
+        when(timetableCache.getTrain(1)).thenReturn(Optional.empty());
+        when(timetableCache.getStop(anyLong())).thenReturn(Optional.of(new TrainStop()));
+        when(timetableCache.getStation(anyInt())).thenReturn(Optional.of(new Station()));
         
         java.lang.reflect.Method method = WaitlistOrderServiceImpl.class.getDeclaredMethod("convertToWaitlistOrderInfo", List.class);
         method.setAccessible(true);
@@ -1118,10 +1131,10 @@ class WaitlistOrderServiceImplTest {
 
     @Test
     void testConvertToWaitlistOrderInfo_DepartureTimeNull() throws Exception {
-        when(waitlistItemRepository.findByWaitlistId(1L)).thenReturn(Arrays.asList(waitlistItem));
-        when(trainRepository.findById(1)).thenReturn(Optional.of(train));
-        when(trainStopRepository.findByStopId(1L)).thenReturn(Optional.empty());
-        when(stationRepository.findById(anyInt())).thenReturn(Optional.of(new Station()));
+        when(waitlistItemRepository.findByWaitlistIdIn(anyList())).thenReturn(Arrays.asList(waitlistItem));
+        when(timetableCache.getTrain(1)).thenReturn(Optional.of(train));
+        when(timetableCache.getStop(1L)).thenReturn(Optional.empty());
+        when(timetableCache.getStation(anyInt())).thenReturn(Optional.of(new Station()));
         
         java.lang.reflect.Method method = WaitlistOrderServiceImpl.class.getDeclaredMethod("convertToWaitlistOrderInfo", List.class);
         method.setAccessible(true);
@@ -1133,10 +1146,10 @@ class WaitlistOrderServiceImplTest {
 
     @Test
     void testConvertToWaitlistOrderInfo_ArrivalTimeNull() throws Exception {
-        when(waitlistItemRepository.findByWaitlistId(1L)).thenReturn(Arrays.asList(waitlistItem));
-        when(trainRepository.findById(1)).thenReturn(Optional.of(train));
-        when(trainStopRepository.findByStopId(1L)).thenReturn(Optional.empty());
-        when(stationRepository.findById(anyInt())).thenReturn(Optional.of(new Station()));
+        when(waitlistItemRepository.findByWaitlistIdIn(anyList())).thenReturn(Arrays.asList(waitlistItem));
+        when(timetableCache.getTrain(1)).thenReturn(Optional.of(train));
+        when(timetableCache.getStop(1L)).thenReturn(Optional.empty());
+        when(timetableCache.getStation(anyInt())).thenReturn(Optional.of(new Station()));
         
         java.lang.reflect.Method method = WaitlistOrderServiceImpl.class.getDeclaredMethod("convertToWaitlistOrderInfo", List.class);
         method.setAccessible(true);
@@ -1257,12 +1270,15 @@ class WaitlistOrderServiceImplTest {
         // Order status should remain PENDING_FULFILLMENT since not all items are cancelled
         assertEquals((byte) WaitlistOrderStatus.PENDING_FULFILLMENT.getCode(), waitlistOrder.getOrderStatus());
         assertEquals(1, waitlistOrder.getItemCount()); // Only one item refunded
+        // 退掉的项移出候补索引，剩余待兑现项重新加入
+        verify(waitlistIndex).remove(1L, Arrays.asList(waitlistItem));
+        verify(waitlistIndex).add(waitlistOrder, Arrays.asList(waitlistItem, remainingItem));
     }
 
     @Test
     void testConvertToWaitlistOrderInfo_DepartureTimeNotNull() throws Exception {
-        when(waitlistItemRepository.findByWaitlistId(1L)).thenReturn(Arrays.asList(waitlistItem));
-        when(trainRepository.findById(1)).thenReturn(Optional.of(train));
+        when(waitlistItemRepository.findByWaitlistIdIn(anyList())).thenReturn(Arrays.asList(waitlistItem));
+        when(timetableCache.getTrain(1)).thenReturn(Optional.of(train));
         
         TrainStop departureStop = new TrainStop();
         departureStop.setStopId(1L);
@@ -1278,10 +1294,10 @@ class WaitlistOrderServiceImplTest {
         station.setStationId(1);
         station.setStationName("北京站");
         
-        when(trainStopRepository.findByStopId(1L)).thenReturn(Optional.of(departureStop));
-        when(trainStopRepository.findByStopId(2L)).thenReturn(Optional.of(arrivalStop));
-        when(stationRepository.findById(1)).thenReturn(Optional.of(station));
-        when(stationRepository.findById(2)).thenReturn(Optional.of(station));
+        when(timetableCache.getStop(1L)).thenReturn(Optional.of(departureStop));
+        when(timetableCache.getStop(2L)).thenReturn(Optional.of(arrivalStop));
+        when(timetableCache.getStation(1)).thenReturn(Optional.of(station));
+        when(timetableCache.getStation(2)).thenReturn(Optional.of(station));
         
         java.lang.reflect.Method method = WaitlistOrderServiceImpl.class.getDeclaredMethod("convertToWaitlistOrderInfo", List.class);
         method.setAccessible(true);
@@ -1295,7 +1311,7 @@ class WaitlistOrderServiceImplTest {
     @Test
     void testConvertToWaitlistOrderDetail_DepartureTimeNotNull() throws Exception {
         when(waitlistItemRepository.findByWaitlistId(1L)).thenReturn(Arrays.asList(waitlistItem));
-        when(trainRepository.findById(1)).thenReturn(Optional.of(train));
+        when(timetableCache.getTrain(1)).thenReturn(Optional.of(train));
         when(passengerRepository.findById(100L)).thenReturn(Optional.of(new Passenger()));
         when(carriageTypeRepository.findById(1)).thenReturn(Optional.of(new CarriageType()));
         
@@ -1313,10 +1329,10 @@ class WaitlistOrderServiceImplTest {
         station.setStationId(1);
         station.setStationName("北京站");
         
-        when(trainStopRepository.findByStopId(1L)).thenReturn(Optional.of(departureStop));
-        when(trainStopRepository.findByStopId(2L)).thenReturn(Optional.of(arrivalStop));
-        when(stationRepository.findById(1)).thenReturn(Optional.of(station));
-        when(stationRepository.findById(2)).thenReturn(Optional.of(station));
+        when(timetableCache.getStop(1L)).thenReturn(Optional.of(departureStop));
+        when(timetableCache.getStop(2L)).thenReturn(Optional.of(arrivalStop));
+        when(timetableCache.getStation(1)).thenReturn(Optional.of(station));
+        when(timetableCache.getStation(2)).thenReturn(Optional.of(station));
         
         java.lang.reflect.Method method = WaitlistOrderServiceImpl.class.getDeclaredMethod("convertToWaitlistOrderDetail", WaitlistOrder.class, List.class);
         method.setAccessible(true);
@@ -7,12 +7,16 @@ import org.junit.jupiter.api.Test;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
+import org.springframework.test.util.ReflectionTestUtils;
 
 import java.math.BigDecimal;
 import java.time.LocalDate;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.Executor;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.*;
@@ -31,79 +35,110 @@ class InventoryInitServiceTest {
     @BeforeEach
     void setUp() {
         MockitoAnnotations.openMocks(this);
+        // 测试中在当前线程同步加载
+        ReflectionTestUtils.setField(inventoryInitService, "loaderExecutor", (Executor) Runnable::run);
+    }
+
+    private TicketInventory createInventory(Integer trainId, Integer carriageTypeId, int availableSeats) {
+        TicketInventory inventory = new TicketInventory();
+        inventory.setTrainId(trainId);
+        inventory.setDepartureStopId(1L);
+        inventory.setArrivalStopId(2L);
+        inventory.setTravelDate(LocalDate.now().plusDays(1));
+        inventory.setCarriageTypeId(carriageTypeId);
+        inventory.setAvailableSeats(availableSeats);
+        return inventory;
     }
 
     @Test
     void testRun_WithExistingInventory() throws Exception {
         // 创建测试库存数据
-        TicketInventory inventory1 = new TicketInventory();
-        inventory1.setTrainId(1);
-        inventory1.setDepartureStopId(1L);
-        inventory1.setArrivalStopId(2L);
-        inventory1.setTravelDate(LocalDate.now().plusDays(1));
-        inventory1.setCarriageTypeId(1);
-        inventory1.setAvailableSeats(100);
-        
-        TicketInventory inventory2 = new TicketInventory();
-        inventory2.setTrainId(1);
-        inventory2.setDepartureStopId(1L);
-        inventory2.setArrivalStopId(2L);
-        inventory2.setTravelDate(LocalDate.now().plusDays(1));
-        inventory2.setCarriageTypeId(2);
-        inventory2.setAvailableSeats(200);
+        TicketInventory inventory1 = createInventory(1, 1, 100);
+        TicketInventory inventory2 = createInventory(1, 2, 200);
         
-        List<TicketInventory> existingInventories = Arrays.asList(inventory1, inventory2);
-        
-        when(ticketInventoryDAO.findAll()).thenReturn(existingInventories);
-        doNothing().when(redisService).setStock(anyInt(), anyLong(), anyLong(), any(LocalDate.class), anyInt(), anyInt());
+        when(ticketInventoryDAO.findAllTrainIds()).thenReturn(List.of(1));
+        when(ticketInventoryDAO.findByTrainIds(List.of(1))).thenReturn(Arrays.asList(inventory1, inventory2));
+        when(redisService.loadStocks(anyList())).thenReturn(2);
 
         assertDoesNotThrow(() -> inventoryInitService.run());
         
-        verify(ticketInventoryDAO).findAll();
-        verify(redisService, times(2)).setStock(anyInt(), anyLong(), anyLong(), any(LocalDate.class), anyInt(), anyInt());
+        verify(ticketInventoryDAO, never()).findAll();
+        verify(redisService).loadStocks(argThat(list -> list.size() == 2));
         verify(ticketInventoryDAO, never()).save(any(TicketInventory.class));
+        assertTrue(inventoryInitService.isCompleted());
+        assertTrue(inventoryInitService.isLoaded(1));
     }
 
     @Test
     void testRun_WithEmptyInventory() throws Exception {
-        // 创建有效的库存数据
-        TicketInventory inventory1 = new TicketInventory();
-        inventory1.setTrainId(1);
-        inventory1.setDepartureStopId(1L);
-        inventory1.setArrivalStopId(2L);
-        inventory1.setTravelDate(LocalDate.of(2025, 7, 1));
-        inventory1.setCarriageTypeId(1);
-        inventory1.setAvailableSeats(100);
-        
-        TicketInventory inventory2 = new TicketInventory();
-        inventory2.setTrainId(1);
-        inventory2.setDepartureStopId(1L);
-        inventory2.setArrivalStopId(2L);
-        inventory2.setTravelDate(LocalDate.of(2025, 7, 1));
-        inventory2.setCarriageTypeId(2);
-        inventory2.setAvailableSeats(200);
-        
-        // 第一次调用返回空列表，第二次调用返回创建的默认数据
-        when(ticketInventoryDAO.findAll())
+        // 第一次查询没有车次，创建默认数据后再分批加载
+        when(ticketInventoryDAO.findAllTrainIds())
             .thenReturn(Collections.emptyList())
-            .thenReturn(Arrays.asList(inventory1, inventory2));
+            .thenReturn(List.of(1));
+        when(ticketInventoryDAO.findByTrainIds(List.of(1)))
+            .thenReturn(Arrays.asList(createInventory(1, 1, 100), createInventory(1, 2, 200)));
         doNothing().when(ticketInventoryDAO).save(any(TicketInventory.class));
-        doNothing().when(redisService).setStock(anyInt(), anyLong(), anyLong(), any(LocalDate.class), anyInt(), anyInt());
+        when(redisService.loadStocks(anyList())).thenReturn(2);
 
         assertDoesNotThrow(() -> inventoryInitService.run());
         
-        verify(ticketInventoryDAO, times(2)).findAll();
+        verify(ticketInventoryDAO, times(2)).findAllTrainIds();
         verify(ticketInventoryDAO, atLeastOnce()).save(any(TicketInventory.class));
-        verify(redisService, times(2)).setStock(anyInt(), anyLong(), anyLong(), any(LocalDate.class), anyInt(), anyInt());
+        verify(redisService).loadStocks(argThat(list -> list.size() == 2));
+    }
+
+    @Test
+    void testLoadInventoryInChunks_OneQueryPerChunk() {
+        // 每批2个车次，5个车次分3批
+        ReflectionTestUtils.setField(inventoryInitService, "trainsPerChunk", 2);
+        when(ticketInventoryDAO.findAllTrainIds()).thenReturn(Arrays.asList(1, 2, 3, 4, 5));
+        when(ticketInventoryDAO.findByTrainIds(anyCollection()))
+            .thenAnswer(invocation -> {
+                Collection<Integer> trainIds = invocation.getArgument(0);
+                List<TicketInventory> inventories = new ArrayList<>();
+                for (Integer trainId : trainIds) {
+                    inventories.add(createInventory(trainId, 1, 100));
+                }
+                return inventories;
+            });
+        when(redisService.loadStocks(anyList())).thenReturn(1);
+
+        int loaded = inventoryInitService.loadInventoryInChunks();
+
+        assertEquals(5, loaded);
+        verify(ticketInventoryDAO, times(3)).findByTrainIds(anyCollection());
+        verify(redisService, times(3)).loadStocks(anyList());
+        assertEquals(5, inventoryInitService.getLoadedTrainCount());
+        assertTrue(inventoryInitService.isLoaded(5));
+        assertFalse(inventoryInitService.isLoaded(6));
     }
 
     @Test
     void testRun_ExceptionHandling() throws Exception {
-        when(ticketInventoryDAO.findAll()).thenThrow(new RuntimeException("Database error"));
+        when(ticketInventoryDAO.findAllTrainIds()).thenThrow(new RuntimeException("Database error"));
 
         assertDoesNotThrow(() -> inventoryInitService.run());
         
-        verify(ticketInventoryDAO).findAll();
-        verify(redisService, never()).setStock(anyInt(), anyLong(), anyLong(), any(LocalDate.class), anyInt(), anyInt());
+        verify(ticketInventoryDAO).findAllTrainIds();
+        verify(redisService, never()).loadStocks(anyList());
+        // 加载失败不标记完成，车次仍视为未加载
+        assertFalse(inventoryInitService.isCompleted());
+        assertFalse(inventoryInitService.isLoaded(1));
+    }
+
+    @Test
+    void testRun_PartialLoadFailureKeepsLoadedTrainsOnly() throws Exception {
+        // 第二批加载失败：第一批车次可用，其余车次仍未加载
+        ReflectionTestUtils.setField(inventoryInitService, "trainsPerChunk", 1);
+        when(ticketInventoryDAO.findAllTrainIds()).thenReturn(Arrays.asList(1, 2));
+        when(ticketInventoryDAO.findByTrainIds(List.of(1))).thenReturn(List.of(createInventory(1, 1, 100)));
+        when(ticketInventoryDAO.findByTrainIds(List.of(2))).thenThrow(new RuntimeException("Database error"));
+        when(redisService.loadStocks(anyList())).thenReturn(1);
+
+        assertDoesNotThrow(() -> inventoryInitService.run());
+
+        assertFalse(inventoryInitService.isCompleted());
+        assertTrue(inventoryInitService.isLoaded(1));
+        assertFalse(inventoryInitService.isLoaded(2));
     }
 } 
\ No newline at end of file
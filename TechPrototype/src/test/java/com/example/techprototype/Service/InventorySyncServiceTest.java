@@ -1,6 +1,8 @@
 package com.example.techprototype.Service;
 
+import com.example.techprototype.Component.StopSequenceCache;
 import com.example.techprototype.DAO.TicketInventoryDAO;
+import com.example.techprototype.DTO.SegmentStock;
 import com.example.techprototype.Entity.TicketInventory;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -11,8 +13,9 @@ import org.mockito.MockitoAnnotations;
 import java.time.LocalDate;
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
-import java.util.Optional;
+import java.util.Map;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.*;
@@ -28,156 +31,143 @@ class InventorySyncServiceTest {
     @Mock
     private RedisService redisService;
 
+    @Mock
+    private InventoryInitService inventoryInitService;
+
+    @Mock
+    private StopSequenceCache stopSequenceCache;
+
     @BeforeEach
     void setUp() {
         MockitoAnnotations.openMocks(this);
+        // 测试中停靠点ID即站序
+        when(stopSequenceCache.getSequence(anyInt(), anyLong())).thenAnswer(invocation -> ((Long) invocation.getArgument(1)).intValue());
+    }
+
+    private TicketInventory createInventory(Long inventoryId, Long departureStopId, Long arrivalStopId, int availableSeats) {
+        TicketInventory inventory = new TicketInventory();
+        inventory.setInventoryId(inventoryId);
+        inventory.setTrainId(1);
+        inventory.setDepartureStopId(departureStopId);
+        inventory.setArrivalStopId(arrivalStopId);
+        inventory.setTravelDate(LocalDate.now().plusDays(1));
+        inventory.setCarriageTypeId(1);
+        inventory.setAvailableSeats(availableSeats);
+        inventory.setCacheVersion(1L);
+        inventory.setDbVersion(1);
+        return inventory;
+    }
+
+    private SegmentStock createStock(Map<Integer, Integer> availableBySegment) {
+        return new SegmentStock(1, LocalDate.now().plusDays(1), 1, new HashMap<>(availableBySegment));
     }
 
     @Test
-    void testSyncInventoryToDatabase_NoInventories() {
-        when(ticketInventoryDAO.findAll()).thenReturn(Collections.emptyList());
+    void testSyncInventoryToDatabase_NoDirtyKeys() {
+        when(redisService.drainDirtyStocks(anyInt())).thenReturn(Collections.emptyList());
 
         assertDoesNotThrow(() -> inventorySyncService.syncInventoryToDatabase());
         
-        verify(ticketInventoryDAO).findAll();
-        verify(redisService, never()).getStock(anyInt(), anyLong(), anyLong(), any(LocalDate.class), anyInt());
+        // 没有变更时不访问库存表
+        verify(ticketInventoryDAO, never()).findAll();
+        verify(ticketInventoryDAO, never()).findByTrainAndDateAndType(anyInt(), any(LocalDate.class), anyInt());
+        verify(ticketInventoryDAO, never()).batchUpdateAvailableSeats(anyMap());
     }
 
     @Test
     void testSyncInventoryToDatabase_WithInventories_NoChanges() {
-        // 创建测试库存数据
-        TicketInventory inventory = new TicketInventory();
-        inventory.setTrainId(1);
-        inventory.setDepartureStopId(1L);
-        inventory.setArrivalStopId(2L);
-        inventory.setTravelDate(LocalDate.now().plusDays(1));
-        inventory.setCarriageTypeId(1);
-        inventory.setAvailableSeats(100);
-        inventory.setCacheVersion(1L);
-        inventory.setDbVersion(1);
-        
-        List<TicketInventory> inventories = Arrays.asList(inventory);
-        
-        when(ticketInventoryDAO.findAll()).thenReturn(inventories);
-        when(redisService.getStock(anyInt(), anyLong(), anyLong(), any(LocalDate.class), anyInt()))
-            .thenReturn(Optional.of(100)); // Redis库存与数据库库存相同
-        doNothing().when(ticketInventoryDAO).save(any(TicketInventory.class));
+        // 区段1、2余票为100、80，记录1->2为100，1->3为80，都与Redis一致
+        when(redisService.drainDirtyStocks(anyInt()))
+            .thenReturn(List.of(createStock(Map.of(1, 100, 2, 80))))
+            .thenReturn(Collections.emptyList());
+        when(ticketInventoryDAO.findByTrainAndDateAndType(anyInt(), any(LocalDate.class), anyInt()))
+            .thenReturn(Arrays.asList(createInventory(1L, 1L, 2L, 100), createInventory(2L, 1L, 3L, 80)));
 
         assertDoesNotThrow(() -> inventorySyncService.syncInventoryToDatabase());
         
-        verify(ticketInventoryDAO).findAll();
-        verify(redisService).getStock(anyInt(), anyLong(), anyLong(), any(LocalDate.class), anyInt());
-        verify(ticketInventoryDAO, never()).save(any(TicketInventory.class));
+        verify(ticketInventoryDAO).findByTrainAndDateAndType(anyInt(), any(LocalDate.class), anyInt());
+        verify(ticketInventoryDAO, never()).batchUpdateAvailableSeats(anyMap());
     }
 
     @Test
     void testSyncInventoryToDatabase_WithInventories_WithChanges() {
-        // 创建测试库存数据
-        TicketInventory inventory = new TicketInventory();
-        inventory.setTrainId(1);
-        inventory.setDepartureStopId(1L);
-        inventory.setArrivalStopId(2L);
-        inventory.setTravelDate(LocalDate.now().plusDays(1));
-        inventory.setCarriageTypeId(1);
-        inventory.setAvailableSeats(100); // 数据库库存
-        inventory.setCacheVersion(1L);
-        inventory.setDbVersion(1);
-        
-        List<TicketInventory> inventories = Arrays.asList(inventory);
-        
-        when(ticketInventoryDAO.findAll()).thenReturn(inventories);
-        when(redisService.getStock(anyInt(), anyLong(), anyLong(), any(LocalDate.class), anyInt()))
-            .thenReturn(Optional.of(80)); // Redis库存与数据库库存不同
-        doNothing().when(ticketInventoryDAO).save(any(TicketInventory.class));
+        // 卖出区段2后，覆盖区段2的记录余票都应减少，只覆盖区段1的记录不变
+        when(redisService.drainDirtyStocks(anyInt()))
+            .thenReturn(List.of(createStock(Map.of(1, 100, 2, 79))))
+            .thenReturn(Collections.emptyList());
+        when(ticketInventoryDAO.findByTrainAndDateAndType(anyInt(), any(LocalDate.class), anyInt()))
+            .thenReturn(Arrays.asList(
+                createInventory(1L, 1L, 2L, 100),
+                createInventory(2L, 1L, 3L, 80),
+                createInventory(3L, 2L, 3L, 80)));
+        when(ticketInventoryDAO.batchUpdateAvailableSeats(anyMap())).thenReturn(2);
 
         assertDoesNotThrow(() -> inventorySyncService.syncInventoryToDatabase());
         
-        verify(ticketInventoryDAO).findAll();
-        verify(redisService).getStock(anyInt(), anyLong(), anyLong(), any(LocalDate.class), anyInt());
-        verify(ticketInventoryDAO).save(any(TicketInventory.class));
+        verify(ticketInventoryDAO).batchUpdateAvailableSeats(eq(Map.of(2L, 79, 3L, 79)));
+        verify(ticketInventoryDAO, never()).save(any(TicketInventory.class));
     }
 
     @Test
-    void testSyncInventoryToDatabase_RedisStockNotPresent() {
-        // 创建测试库存数据
-        TicketInventory inventory = new TicketInventory();
-        inventory.setTrainId(1);
-        inventory.setDepartureStopId(1L);
-        inventory.setArrivalStopId(2L);
-        inventory.setTravelDate(LocalDate.now().plusDays(1));
-        inventory.setCarriageTypeId(1);
-        inventory.setAvailableSeats(100);
-        
-        List<TicketInventory> inventories = Arrays.asList(inventory);
-        
-        when(ticketInventoryDAO.findAll()).thenReturn(inventories);
-        when(redisService.getStock(anyInt(), anyLong(), anyLong(), any(LocalDate.class), anyInt()))
-            .thenReturn(Optional.empty()); // Redis中没有库存数据
+    void testSyncInventoryToDatabase_MissingSegment() {
+        // 区段2在Redis中不存在，覆盖区段2的记录不回写
+        when(redisService.drainDirtyStocks(anyInt()))
+            .thenReturn(List.of(createStock(Map.of(1, 90))))
+            .thenReturn(Collections.emptyList());
+        when(ticketInventoryDAO.findByTrainAndDateAndType(anyInt(), any(LocalDate.class), anyInt()))
+            .thenReturn(Arrays.asList(createInventory(1L, 1L, 2L, 100), createInventory(2L, 1L, 3L, 80)));
+        when(ticketInventoryDAO.batchUpdateAvailableSeats(anyMap())).thenReturn(1);
 
         assertDoesNotThrow(() -> inventorySyncService.syncInventoryToDatabase());
         
-        verify(ticketInventoryDAO).findAll();
-        verify(redisService).getStock(anyInt(), anyLong(), anyLong(), any(LocalDate.class), anyInt());
-        verify(ticketInventoryDAO, never()).save(any(TicketInventory.class));
+        verify(ticketInventoryDAO).batchUpdateAvailableSeats(eq(Map.of(1L, 90)));
     }
 
     @Test
-    void testSyncInventoryToDatabase_ExceptionHandling() {
-        when(ticketInventoryDAO.findAll()).thenThrow(new RuntimeException("Database error"));
+    void testSyncInventoryToDatabase_DrainsUntilEmpty() {
+        when(redisService.drainDirtyStocks(anyInt()))
+            .thenReturn(List.of(createStock(Map.of(1, 100))))
+            .thenReturn(List.of(createStock(Map.of(1, 100))))
+            .thenReturn(Collections.emptyList());
+        when(ticketInventoryDAO.findByTrainAndDateAndType(anyInt(), any(LocalDate.class), anyInt()))
+            .thenReturn(Collections.emptyList());
 
         assertDoesNotThrow(() -> inventorySyncService.syncInventoryToDatabase());
         
-        verify(ticketInventoryDAO).findAll();
-        verify(redisService, never()).getStock(anyInt(), anyLong(), anyLong(), any(LocalDate.class), anyInt());
+        verify(redisService, times(3)).drainDirtyStocks(anyInt());
     }
 
     @Test
-    void testSyncDatabaseToRedis_WithInventories() {
-        // 创建测试库存数据
-        TicketInventory inventory1 = new TicketInventory();
-        inventory1.setTrainId(1);
-        inventory1.setDepartureStopId(1L);
-        inventory1.setArrivalStopId(2L);
-        inventory1.setTravelDate(LocalDate.now().plusDays(1));
-        inventory1.setCarriageTypeId(1);
-        inventory1.setAvailableSeats(100);
-        
-        TicketInventory inventory2 = new TicketInventory();
-        inventory2.setTrainId(1);
-        inventory2.setDepartureStopId(1L);
-        inventory2.setArrivalStopId(2L);
-        inventory2.setTravelDate(LocalDate.now().plusDays(1));
-        inventory2.setCarriageTypeId(2);
-        inventory2.setAvailableSeats(200);
-        
-        List<TicketInventory> inventories = Arrays.asList(inventory1, inventory2);
-        
-        when(ticketInventoryDAO.findAll()).thenReturn(inventories);
-        doNothing().when(redisService).setStock(anyInt(), anyLong(), anyLong(), any(LocalDate.class), anyInt(), anyInt());
+    void testSyncInventoryToDatabase_ExceptionHandling() {
+        // 回写失败时把取出的key重新标记为待同步
+        List<SegmentStock> stocks = List.of(createStock(Map.of(1, 90)));
+        when(redisService.drainDirtyStocks(anyInt())).thenReturn(stocks);
+        when(ticketInventoryDAO.findByTrainAndDateAndType(anyInt(), any(LocalDate.class), anyInt()))
+            .thenThrow(new RuntimeException("Database error"));
 
-        assertDoesNotThrow(() -> inventorySyncService.syncDatabaseToRedis());
+        assertDoesNotThrow(() -> inventorySyncService.syncInventoryToDatabase());
         
-        verify(ticketInventoryDAO).findAll();
-        verify(redisService, times(2)).setStock(anyInt(), anyLong(), anyLong(), any(LocalDate.class), anyInt(), anyInt());
+        verify(redisService).requeueDirtyStocks(stocks);
+        verify(redisService, times(1)).drainDirtyStocks(anyInt());
     }
 
     @Test
-    void testSyncDatabaseToRedis_NoInventories() {
-        when(ticketInventoryDAO.findAll()).thenReturn(Collections.emptyList());
+    void testSyncDatabaseToRedis_WithInventories() {
+        when(inventoryInitService.loadInventoryInChunks()).thenReturn(2);
 
         assertDoesNotThrow(() -> inventorySyncService.syncDatabaseToRedis());
         
-        verify(ticketInventoryDAO).findAll();
-        verify(redisService, never()).setStock(anyInt(), anyLong(), anyLong(), any(LocalDate.class), anyInt(), anyInt());
+        // 按车次分批加载，不再全表读取
+        verify(inventoryInitService).loadInventoryInChunks();
+        verify(ticketInventoryDAO, never()).findAll();
     }
 
     @Test
     void testSyncDatabaseToRedis_ExceptionHandling() {
-        when(ticketInventoryDAO.findAll()).thenThrow(new RuntimeException("Database error"));
+        when(inventoryInitService.loadInventoryInChunks()).thenThrow(new RuntimeException("Database error"));
 
         assertDoesNotThrow(() -> inventorySyncService.syncDatabaseToRedis());
         
-        verify(ticketInventoryDAO).findAll();
-        verify(redisService, never()).setStock(anyInt(), anyLong(), anyLong(), any(LocalDate.class), anyInt(), anyInt());
+        verify(inventoryInitService).loadInventoryInChunks();
     }
 } 
\ No newline at end of file
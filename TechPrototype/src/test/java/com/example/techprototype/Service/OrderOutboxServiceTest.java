@@ -0,0 +1,171 @@
+package com.example.techprototype.Service;
+
+import com.example.techprototype.Component.OrderPartitioner;
+import com.example.techprototype.DTO.OrderMessage;
+import com.example.techprototype.Entity.OrderOutbox;
+import com.example.techprototype.Enums.OutboxStatus;
+import com.example.techprototype.Repository.OrderOutboxRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.amqp.rabbit.core.RabbitOperations;
+import org.springframework.amqp.rabbit.core.RabbitTemplate;
+import org.springframework.data.domain.Pageable;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class OrderOutboxServiceTest {
+
+    @InjectMocks
+    private OrderOutboxService orderOutboxService;
+
+    @Mock
+    private OrderOutboxRepository orderOutboxRepository;
+
+    @Mock
+    private RabbitTemplate rabbitTemplate;
+
+    @Mock
+    private RabbitOperations rabbitOperations;
+
+    @Mock
+    private OrderPartitioner orderPartitioner;
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.openMocks(this);
+        ReflectionTestUtils.setField(orderOutboxService, "batchSize", 2);
+        when(orderPartitioner.routingKey(anyInt(), any(LocalDate.class))).thenReturn("order.create.3");
+        // invoke回调在模拟的信道上执行
+        when(rabbitTemplate.invoke(any())).thenAnswer(invocation -> {
+            RabbitOperations.OperationsCallback<?> callback = invocation.getArgument(0);
+            return callback.doInRabbit(rabbitOperations);
+        });
+    }
+
+    private OrderMessage createMessage(String orderNumber) {
+        OrderMessage message = new OrderMessage();
+        message.setOrderNumber(orderNumber);
+        message.setUserId(1L);
+        message.setTrainId(1);
+        message.setDepartureStopId(1L);
+        message.setArrivalStopId(3L);
+        message.setTravelDate(LocalDate.of(2025, 7, 1));
+        message.setPassengers(new ArrayList<>(List.of(new OrderMessage.PassengerInfo(100L, (byte) 1, 2))));
+        return message;
+    }
+
+    private OrderOutbox appendAndCapture(String orderNumber, Long outboxId) {
+        orderOutboxService.append(createMessage(orderNumber));
+        ArgumentCaptor<OrderOutbox> captor = ArgumentCaptor.forClass(OrderOutbox.class);
+        verify(orderOutboxRepository, atLeastOnce()).save(captor.capture());
+        OrderOutbox outbox = captor.getValue();
+        outbox.setOutboxId(outboxId);
+        return outbox;
+    }
+
+    @Test
+    void testAppend_WritesPendingMessage() {
+        // When
+        OrderOutbox outbox = appendAndCapture("O1", 1L);
+
+        // Then
+        assertEquals("O1", outbox.getOrderNumber());
+        assertEquals("order.exchange", outbox.getExchange());
+        // 路由到车次日期所属的分区
+        assertEquals("order.create.3", outbox.getRoutingKey());
+        verify(orderPartitioner).routingKey(1, LocalDate.of(2025, 7, 1));
+        assertEquals((byte) OutboxStatus.PENDING.getCode(), outbox.getStatus().byteValue());
+        assertTrue(outbox.getPayload().contains("\"travelDate\""));
+        verifyNoInteractions(rabbitTemplate);
+    }
+
+    @Test
+    void testRelayBatch_PublishesAndMarksSentAfterConfirm() {
+        // Given
+        OrderOutbox first = appendAndCapture("O1", 1L);
+        OrderOutbox second = appendAndCapture("O2", 2L);
+        when(orderOutboxRepository.findPendingBatch(any(Pageable.class))).thenReturn(Arrays.asList(first, second));
+
+        // When
+        int relayed = orderOutboxService.relayBatch();
+
+        // Then
+        assertEquals(2, relayed);
+        ArgumentCaptor<Object> messages = ArgumentCaptor.forClass(Object.class);
+        verify(rabbitOperations, times(2)).convertAndSend(eq("order.exchange"), eq("order.create.3"), messages.capture());
+        OrderMessage published = (OrderMessage) messages.getAllValues().get(0);
+        assertEquals("O1", published.getOrderNumber());
+        assertEquals(LocalDate.of(2025, 7, 1), published.getTravelDate());
+        verify(rabbitOperations).waitForConfirmsOrDie(anyLong());
+        verify(orderOutboxRepository).markSent(eq(Arrays.asList(1L, 2L)), any(LocalDateTime.class));
+    }
+
+    @Test
+    void testRelayBatch_UnconfirmedBatchKeptForRetry() {
+        // Given
+        OrderOutbox outbox = appendAndCapture("O1", 1L);
+        when(orderOutboxRepository.findPendingBatch(any(Pageable.class))).thenReturn(List.of(outbox));
+        doThrow(new RuntimeException("nack")).when(rabbitOperations).waitForConfirmsOrDie(anyLong());
+
+        // When
+        int relayed = orderOutboxService.relayBatch();
+
+        // Then
+        assertEquals(0, relayed);
+        verify(orderOutboxRepository).incrementAttempts(List.of(1L));
+        verify(orderOutboxRepository, never()).markSent(anyCollection(), any(LocalDateTime.class));
+    }
+
+    @Test
+    void testRelayPendingMessages_DrainsFullBatches() {
+        // Given: 第一批满批，第二批不满，之后停止
+        OrderOutbox first = appendAndCapture("O1", 1L);
+        OrderOutbox second = appendAndCapture("O2", 2L);
+        OrderOutbox third = appendAndCapture("O3", 3L);
+        when(orderOutboxRepository.findPendingBatch(any(Pageable.class)))
+                .thenReturn(Arrays.asList(first, second))
+                .thenReturn(List.of(third));
+
+        // When
+        orderOutboxService.relayPendingMessages();
+
+        // Then
+        verify(orderOutboxRepository, times(2)).findPendingBatch(any(Pageable.class));
+        verify(orderOutboxRepository, times(2)).markSent(anyCollection(), any(LocalDateTime.class));
+    }
+
+    @Test
+    void testRelayBatch_Empty() {
+        // Given
+        when(orderOutboxRepository.findPendingBatch(any(Pageable.class))).thenReturn(new ArrayList<>());
+
+        // When & Then
+        assertEquals(0, orderOutboxService.relayBatch());
+        verifyNoInteractions(rabbitTemplate);
+    }
+
+    @Test
+    void testPurgeSentMessages() {
+        // Given
+        when(orderOutboxRepository.deleteSentBefore(any(LocalDateTime.class))).thenReturn(3);
+
+        // When
+        orderOutboxService.purgeSentMessages();
+
+        // Then
+        verify(orderOutboxRepository).deleteSentBefore(any(LocalDateTime.class));
+    }
+}
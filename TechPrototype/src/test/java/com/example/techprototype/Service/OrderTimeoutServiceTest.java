@@ -1,5 +1,6 @@
 package com.example.techprototype.Service;
 
+import com.example.techprototype.Component.PassengerItineraryIndex;
 import com.example.techprototype.Entity.Order;
 import com.example.techprototype.Entity.Ticket;
 import com.example.techprototype.Entity.WaitlistOrder;
@@ -45,6 +46,9 @@ class OrderTimeoutServiceTest {
     @Mock
     private WaitlistItemRepository waitlistItemRepository;
 
+    @Mock
+    private PassengerItineraryIndex passengerItineraryIndex;
+
     @BeforeEach
     void setUp() {
         MockitoAnnotations.openMocks(this);
@@ -0,0 +1,75 @@
+package com.example.techprototype.Service;
+
+import com.example.techprototype.Repository.OrderOutboxRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class ReservationSweepServiceTest {
+
+    @InjectMocks
+    private ReservationSweepService reservationSweepService;
+
+    @Mock
+    private RedisService redisService;
+
+    @Mock
+    private OrderOutboxRepository orderOutboxRepository;
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.openMocks(this);
+        ReflectionTestUtils.setField(reservationSweepService, "graceSeconds", 600L);
+        ReflectionTestUtils.setField(reservationSweepService, "batchSize", 50);
+    }
+
+    @Test
+    void testSweep_ConfirmsCommittedAndReleasesOrphaned() {
+        // O1的订单消息已提交，O2在写入发件箱前进程退出
+        when(redisService.findPendingReservations(anyLong(), eq(50))).thenReturn(Arrays.asList("O1", "O2"));
+        when(orderOutboxRepository.existsByOrderNumber("O1")).thenReturn(true);
+        when(orderOutboxRepository.existsByOrderNumber("O2")).thenReturn(false);
+        when(redisService.releaseReservation("O2")).thenReturn(true);
+
+        long before = System.currentTimeMillis();
+        reservationSweepService.sweepPendingReservations();
+
+        verify(redisService).confirmReservation("O1");
+        verify(redisService, never()).releaseReservation("O1");
+        verify(redisService).releaseReservation("O2");
+        verify(redisService, never()).confirmReservation("O2");
+        // 只检查超过宽限期的预留
+        verify(redisService).findPendingReservations(longThat(t -> t <= before - 600_000L + 1000 && t >= before - 600_000L), eq(50));
+    }
+
+    @Test
+    void testSweep_FailureDoesNotStopBatch() {
+        when(redisService.findPendingReservations(anyLong(), anyInt())).thenReturn(Arrays.asList("O1", "O2"));
+        when(orderOutboxRepository.existsByOrderNumber("O1")).thenThrow(new RuntimeException("数据库连接失败"));
+        when(orderOutboxRepository.existsByOrderNumber("O2")).thenReturn(false);
+
+        assertDoesNotThrow(() -> reservationSweepService.sweepPendingReservations());
+
+        verify(redisService, never()).releaseReservation("O1");
+        verify(redisService).releaseReservation("O2");
+    }
+
+    @Test
+    void testSweep_NothingPending() {
+        when(redisService.findPendingReservations(anyLong(), anyInt())).thenReturn(Collections.emptyList());
+
+        reservationSweepService.sweepPendingReservations();
+
+        verifyNoInteractions(orderOutboxRepository);
+    }
+}
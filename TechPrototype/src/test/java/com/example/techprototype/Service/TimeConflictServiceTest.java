@@ -1,21 +1,37 @@
 package com.example.techprototype.Service;
 
+import com.example.techprototype.Component.OrderProcessor;
+import com.example.techprototype.Component.PassengerItineraryIndex;
+import com.example.techprototype.Component.TicketPriceCache;
+import com.example.techprototype.Component.TimetableCache;
+import com.example.techprototype.DAO.OrderBatchDAO;
+import com.example.techprototype.DTO.OrderMessage;
 import com.example.techprototype.Entity.Ticket;
 import com.example.techprototype.Entity.TrainStop;
 import com.example.techprototype.Repository.TicketRepository;
-import com.example.techprototype.Repository.TrainStopRepository;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.ZSetOperations;
+import org.springframework.test.util.ReflectionTestUtils;
 
+import java.math.BigDecimal;
 import java.time.LocalDate;
 import java.time.LocalTime;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
 import java.util.Collections;
+import java.util.HashSet;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.stream.Collectors;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.*;
@@ -29,11 +45,70 @@ class TimeConflictServiceTest {
     private TicketRepository ticketRepository;
 
     @Mock
-    private TrainStopRepository trainStopRepository;
+    private TimetableCache timetableCache;
+
+    @Mock
+    private RedisTemplate<String, Object> redisTemplate;
+
+    @Mock
+    private ZSetOperations<String, Object> zSetOperations;
+
+    private PassengerItineraryIndex passengerItineraryIndex;
+
+    // 用内存中的有序集合模拟乘客1的行程索引：成员 -> 分值
+    private final Map<String, Double> itinerary = new HashMap<>();
 
     @BeforeEach
     void setUp() {
         MockitoAnnotations.openMocks(this);
+        passengerItineraryIndex = new PassengerItineraryIndex();
+        ReflectionTestUtils.setField(passengerItineraryIndex, "redisTemplate", redisTemplate);
+        ReflectionTestUtils.setField(passengerItineraryIndex, "timetableCache", timetableCache);
+        ReflectionTestUtils.setField(passengerItineraryIndex, "ticketRepository", ticketRepository);
+        ReflectionTestUtils.setField(timeConflictService, "passengerItineraryIndex", passengerItineraryIndex);
+
+        when(redisTemplate.opsForZSet()).thenReturn(zSetOperations);
+        // 用eq绑定单成员的score重载，any()会匹配到可变参数版本
+        when(zSetOperations.score(anyString(), eq("loaded"))).thenAnswer(invocation -> itinerary.get("loaded"));
+        when(zSetOperations.add(anyString(), any(), anyDouble())).thenAnswer(invocation -> {
+            itinerary.put(invocation.<Object>getArgument(1).toString(), invocation.<Double>getArgument(2));
+            return true;
+        });
+        when(zSetOperations.add(anyString(), anySet())).thenAnswer(invocation -> {
+            Set<ZSetOperations.TypedTuple<Object>> tuples = invocation.getArgument(1);
+            for (ZSetOperations.TypedTuple<Object> tuple : tuples) {
+                itinerary.put(tuple.getValue().toString(), tuple.getScore());
+            }
+            return (long) tuples.size();
+        });
+        when(zSetOperations.rangeByScore(anyString(), anyDouble(), anyDouble())).thenAnswer(invocation -> {
+            double min = invocation.getArgument(1);
+            double max = invocation.getArgument(2);
+            return itinerary.entrySet().stream()
+                    .filter(entry -> entry.getValue() >= min && entry.getValue() <= max)
+                    .sorted(Map.Entry.comparingByValue())
+                    .map(Map.Entry::getKey)
+                    .collect(Collectors.toCollection(java.util.LinkedHashSet::new));
+        });
+        when(zSetOperations.remove(anyString(), any())).thenAnswer(invocation -> {
+            itinerary.remove(invocation.<Object>getArgument(1).toString());
+            return 1L;
+        });
+    }
+
+    /**
+     * 乘客1在数据库中的有效车票，加载索引和回表确认时返回
+     */
+    private void givenTickets(Ticket... tickets) {
+        List<Ticket> all = Arrays.asList(tickets);
+        for (Ticket ticket : all) {
+            ticket.setPassengerId(1L);
+        }
+        when(ticketRepository.findValidTicketsByPassengerFrom(eq(1L), any(LocalDate.class))).thenReturn(all);
+        when(ticketRepository.findAllById(any())).thenAnswer(invocation -> {
+            Collection<Long> ids = invocation.getArgument(0);
+            return all.stream().filter(ticket -> ids.contains(ticket.getTicketId())).collect(Collectors.toList());
+        });
     }
 
     @Test
@@ -45,10 +120,9 @@ class TimeConflictServiceTest {
         TrainStop arrivalStop = new TrainStop();
         arrivalStop.setArrivalTime(LocalTime.of(10, 0));
         
-        when(trainStopRepository.findByStopId(1L)).thenReturn(Optional.of(departureStop));
-        when(trainStopRepository.findByStopId(2L)).thenReturn(Optional.of(arrivalStop));
-        when(ticketRepository.findValidTicketsByPassengerAndDate(anyLong(), any(LocalDate.class)))
-            .thenReturn(Collections.emptyList());
+        when(timetableCache.getStop(1L)).thenReturn(Optional.of(departureStop));
+        when(timetableCache.getStop(2L)).thenReturn(Optional.of(arrivalStop));
+        givenTickets();
 
         List<Ticket> result = timeConflictService.checkTimeConflict(1L, LocalDate.now(), 1, 1L, 2L);
         assertNotNull(result);
@@ -64,10 +138,9 @@ class TimeConflictServiceTest {
         TrainStop arrivalStop = new TrainStop();
         arrivalStop.setArrivalTime(LocalTime.of(10, 0));
         
-        when(trainStopRepository.findByStopId(1L)).thenReturn(Optional.of(departureStop));
-        when(trainStopRepository.findByStopId(2L)).thenReturn(Optional.of(arrivalStop));
-        when(ticketRepository.findValidTicketsByPassengerAndDate(anyLong(), any(LocalDate.class), anyLong()))
-            .thenReturn(Collections.emptyList());
+        when(timetableCache.getStop(1L)).thenReturn(Optional.of(departureStop));
+        when(timetableCache.getStop(2L)).thenReturn(Optional.of(arrivalStop));
+        givenTickets();
 
         List<Ticket> result = timeConflictService.checkTimeConflict(1L, LocalDate.now(), 1, 1L, 2L, 1L);
         assertNotNull(result);
@@ -77,14 +150,15 @@ class TimeConflictServiceTest {
     @Test
     void testCheckTimeConflict_WithNullDepartureTime() {
         // 设置Mock行为 - 出发时间为null
-        when(trainStopRepository.findByStopId(1L)).thenReturn(Optional.empty());
-        when(trainStopRepository.findByStopId(2L)).thenReturn(Optional.empty());
+        when(timetableCache.getStop(1L)).thenReturn(Optional.empty());
+        when(timetableCache.getStop(2L)).thenReturn(Optional.empty());
 
         List<Ticket> result = timeConflictService.checkTimeConflict(1L, LocalDate.now(), 1, 1L, 2L);
         assertNotNull(result);
         assertTrue(result.isEmpty());
         
-        verify(ticketRepository, never()).findValidTicketsByPassengerAndDate(anyLong(), any(LocalDate.class));
+        verify(ticketRepository, never()).findValidTicketsByPassengerFrom(anyLong(), any(LocalDate.class));
+        verifyNoInteractions(redisTemplate);
     }
 
     @Test
@@ -93,14 +167,15 @@ class TimeConflictServiceTest {
         TrainStop departureStop = new TrainStop();
         departureStop.setDepartureTime(LocalTime.of(8, 0));
         
-        when(trainStopRepository.findByStopId(1L)).thenReturn(Optional.of(departureStop));
-        when(trainStopRepository.findByStopId(2L)).thenReturn(Optional.empty());
+        when(timetableCache.getStop(1L)).thenReturn(Optional.of(departureStop));
+        when(timetableCache.getStop(2L)).thenReturn(Optional.empty());
 
         List<Ticket> result = timeConflictService.checkTimeConflict(1L, LocalDate.now(), 1, 1L, 2L);
         assertNotNull(result);
         assertTrue(result.isEmpty());
         
-        verify(ticketRepository, never()).findValidTicketsByPassengerAndDate(anyLong(), any(LocalDate.class));
+        verify(ticketRepository, never()).findValidTicketsByPassengerFrom(anyLong(), any(LocalDate.class));
+        verifyNoInteractions(redisTemplate);
     }
 
     @Test
@@ -112,10 +187,9 @@ class TimeConflictServiceTest {
         TrainStop arrivalStop = new TrainStop();
         arrivalStop.setArrivalTime(LocalTime.of(6, 0)); // 早上6点到达
         
-        when(trainStopRepository.findByStopId(1L)).thenReturn(Optional.of(departureStop));
-        when(trainStopRepository.findByStopId(2L)).thenReturn(Optional.of(arrivalStop));
-        when(ticketRepository.findValidTicketsByPassengerAndDate(anyLong(), any(LocalDate.class)))
-            .thenReturn(Collections.emptyList());
+        when(timetableCache.getStop(1L)).thenReturn(Optional.of(departureStop));
+        when(timetableCache.getStop(2L)).thenReturn(Optional.of(arrivalStop));
+        givenTickets();
 
         List<Ticket> result = timeConflictService.checkTimeConflict(1L, LocalDate.now(), 1, 1L, 2L);
         assertNotNull(result);
@@ -146,16 +220,12 @@ class TimeConflictServiceTest {
         TrainStop existingArrivalStop = new TrainStop();
         existingArrivalStop.setArrivalTime(LocalTime.of(11, 0));
         
-        when(trainStopRepository.findByStopId(1L)).thenReturn(Optional.of(departureStop));
-        when(trainStopRepository.findByStopId(2L)).thenReturn(Optional.of(arrivalStop));
-        when(trainStopRepository.findByStopId(3L)).thenReturn(Optional.of(existingDepartureStop));
-        when(trainStopRepository.findByStopId(4L)).thenReturn(Optional.of(existingArrivalStop));
+        when(timetableCache.getStop(1L)).thenReturn(Optional.of(departureStop));
+        when(timetableCache.getStop(2L)).thenReturn(Optional.of(arrivalStop));
+        when(timetableCache.getStop(3L)).thenReturn(Optional.of(existingDepartureStop));
+        when(timetableCache.getStop(4L)).thenReturn(Optional.of(existingArrivalStop));
         
-        // 只在当天返回冲突车票，前一天返回空列表
-        when(ticketRepository.findValidTicketsByPassengerAndDate(anyLong(), eq(LocalDate.now().minusDays(1))))
-            .thenReturn(Collections.emptyList());
-        when(ticketRepository.findValidTicketsByPassengerAndDate(anyLong(), eq(LocalDate.now())))
-            .thenReturn(Arrays.asList(conflictTicket));
+        givenTickets(conflictTicket);
 
         List<Ticket> result = timeConflictService.checkTimeConflict(1L, LocalDate.now(), 1, 1L, 2L);
         assertNotNull(result);
@@ -187,8 +257,8 @@ class TimeConflictServiceTest {
         TrainStop arrivalStop = new TrainStop();
         arrivalStop.setArrivalTime(LocalTime.of(11, 0));
         
-        when(trainStopRepository.findByStopId(3L)).thenReturn(Optional.of(departureStop));
-        when(trainStopRepository.findByStopId(4L)).thenReturn(Optional.of(arrivalStop));
+        when(timetableCache.getStop(3L)).thenReturn(Optional.of(departureStop));
+        when(timetableCache.getStop(4L)).thenReturn(Optional.of(arrivalStop));
         
         List<Ticket> conflictTickets = Arrays.asList(conflictTicket);
         String result = timeConflictService.generateConflictMessage(conflictTickets);
@@ -217,8 +287,8 @@ class TimeConflictServiceTest {
         TrainStop arrivalStop = new TrainStop();
         arrivalStop.setArrivalTime(LocalTime.of(6, 0)); // 早上6点到达
         
-        when(trainStopRepository.findByStopId(3L)).thenReturn(Optional.of(departureStop));
-        when(trainStopRepository.findByStopId(4L)).thenReturn(Optional.of(arrivalStop));
+        when(timetableCache.getStop(3L)).thenReturn(Optional.of(departureStop));
+        when(timetableCache.getStop(4L)).thenReturn(Optional.of(arrivalStop));
         
         List<Ticket> conflictTickets = Arrays.asList(conflictTicket);
         String result = timeConflictService.generateConflictMessage(conflictTickets);
@@ -243,8 +313,8 @@ class TimeConflictServiceTest {
         conflictTicket.setTravelDate(LocalDate.now());
         conflictTicket.setTicketNumber("T001");
         
-        when(trainStopRepository.findByStopId(3L)).thenReturn(Optional.empty());
-        when(trainStopRepository.findByStopId(4L)).thenReturn(Optional.empty());
+        when(timetableCache.getStop(3L)).thenReturn(Optional.empty());
+        when(timetableCache.getStop(4L)).thenReturn(Optional.empty());
         
         List<Ticket> conflictTickets = Arrays.asList(conflictTicket);
         String result = timeConflictService.generateConflictMessage(conflictTickets);
@@ -272,14 +342,11 @@ class TimeConflictServiceTest {
         existingTicket.setArrivalStopId(4L);
         existingTicket.setTravelDate(LocalDate.now());
         
-        when(trainStopRepository.findByStopId(1L)).thenReturn(Optional.of(departureStop));
-        when(trainStopRepository.findByStopId(2L)).thenReturn(Optional.of(arrivalStop));
-        when(trainStopRepository.findByStopId(3L)).thenReturn(Optional.empty()); // 现有车票出发时间为null
-        when(trainStopRepository.findByStopId(4L)).thenReturn(Optional.empty()); // 现有车票到达时间为null
-        when(ticketRepository.findValidTicketsByPassengerAndDate(anyLong(), eq(LocalDate.now().minusDays(1))))
-            .thenReturn(Collections.emptyList());
-        when(ticketRepository.findValidTicketsByPassengerAndDate(anyLong(), eq(LocalDate.now())))
-            .thenReturn(Arrays.asList(existingTicket));
+        when(timetableCache.getStop(1L)).thenReturn(Optional.of(departureStop));
+        when(timetableCache.getStop(2L)).thenReturn(Optional.of(arrivalStop));
+        when(timetableCache.getStop(3L)).thenReturn(Optional.empty()); // 现有车票出发时间为null
+        when(timetableCache.getStop(4L)).thenReturn(Optional.empty()); // 现有车票到达时间为null
+        givenTickets(existingTicket);
 
         List<Ticket> result = timeConflictService.checkTimeConflict(1L, LocalDate.now(), 1, 1L, 2L);
         assertNotNull(result);
@@ -309,14 +376,11 @@ class TimeConflictServiceTest {
         TrainStop existingArrivalStop = new TrainStop();
         existingArrivalStop.setArrivalTime(LocalTime.of(6, 0)); // 早上6点到达
         
-        when(trainStopRepository.findByStopId(1L)).thenReturn(Optional.of(departureStop));
-        when(trainStopRepository.findByStopId(2L)).thenReturn(Optional.of(arrivalStop));
-        when(trainStopRepository.findByStopId(3L)).thenReturn(Optional.of(existingDepartureStop));
-        when(trainStopRepository.findByStopId(4L)).thenReturn(Optional.of(existingArrivalStop));
-        when(ticketRepository.findValidTicketsByPassengerAndDate(anyLong(), eq(LocalDate.now().minusDays(1))))
-            .thenReturn(Arrays.asList(existingTicket)); // 前一天有车票
-        when(ticketRepository.findValidTicketsByPassengerAndDate(anyLong(), eq(LocalDate.now())))
-            .thenReturn(Collections.emptyList()); // 当天没有车票
+        when(timetableCache.getStop(1L)).thenReturn(Optional.of(departureStop));
+        when(timetableCache.getStop(2L)).thenReturn(Optional.of(arrivalStop));
+        when(timetableCache.getStop(3L)).thenReturn(Optional.of(existingDepartureStop));
+        when(timetableCache.getStop(4L)).thenReturn(Optional.of(existingArrivalStop));
+        givenTickets(existingTicket);
 
         List<Ticket> result = timeConflictService.checkTimeConflict(1L, LocalDate.now(), 1, 1L, 2L);
         assertNotNull(result);
@@ -346,14 +410,11 @@ class TimeConflictServiceTest {
         TrainStop existingArrivalStop = new TrainStop();
         existingArrivalStop.setArrivalTime(LocalTime.of(10, 0)); // 现有票10:00到达
         
-        when(trainStopRepository.findByStopId(1L)).thenReturn(Optional.of(departureStop));
-        when(trainStopRepository.findByStopId(2L)).thenReturn(Optional.of(arrivalStop));
-        when(trainStopRepository.findByStopId(3L)).thenReturn(Optional.of(existingDepartureStop));
-        when(trainStopRepository.findByStopId(4L)).thenReturn(Optional.of(existingArrivalStop));
-        when(ticketRepository.findValidTicketsByPassengerAndDate(anyLong(), eq(LocalDate.now().minusDays(1))))
-            .thenReturn(Collections.emptyList());
-        when(ticketRepository.findValidTicketsByPassengerAndDate(anyLong(), eq(LocalDate.now())))
-            .thenReturn(Arrays.asList(existingTicket));
+        when(timetableCache.getStop(1L)).thenReturn(Optional.of(departureStop));
+        when(timetableCache.getStop(2L)).thenReturn(Optional.of(arrivalStop));
+        when(timetableCache.getStop(3L)).thenReturn(Optional.of(existingDepartureStop));
+        when(timetableCache.getStop(4L)).thenReturn(Optional.of(existingArrivalStop));
+        givenTickets(existingTicket);
 
         List<Ticket> result = timeConflictService.checkTimeConflict(1L, LocalDate.now(), 1, 1L, 2L);
         assertNotNull(result);
@@ -384,14 +445,11 @@ class TimeConflictServiceTest {
         TrainStop existingArrivalStop = new TrainStop();
         existingArrivalStop.setArrivalTime(LocalTime.of(11, 0)); // 现有票11:00到达
         
-        when(trainStopRepository.findByStopId(1L)).thenReturn(Optional.of(departureStop));
-        when(trainStopRepository.findByStopId(2L)).thenReturn(Optional.of(arrivalStop));
-        when(trainStopRepository.findByStopId(3L)).thenReturn(Optional.of(existingDepartureStop));
-        when(trainStopRepository.findByStopId(4L)).thenReturn(Optional.of(existingArrivalStop));
-        when(ticketRepository.findValidTicketsByPassengerAndDate(anyLong(), eq(LocalDate.now().minusDays(1))))
-            .thenReturn(Collections.emptyList());
-        when(ticketRepository.findValidTicketsByPassengerAndDate(anyLong(), eq(LocalDate.now())))
-            .thenReturn(Arrays.asList(existingTicket));
+        when(timetableCache.getStop(1L)).thenReturn(Optional.of(departureStop));
+        when(timetableCache.getStop(2L)).thenReturn(Optional.of(arrivalStop));
+        when(timetableCache.getStop(3L)).thenReturn(Optional.of(existingDepartureStop));
+        when(timetableCache.getStop(4L)).thenReturn(Optional.of(existingArrivalStop));
+        givenTickets(existingTicket);
 
         List<Ticket> result = timeConflictService.checkTimeConflict(1L, LocalDate.now(), 1, 1L, 2L);
         assertNotNull(result);
@@ -422,14 +480,11 @@ class TimeConflictServiceTest {
         TrainStop existingArrivalStop = new TrainStop();
         existingArrivalStop.setArrivalTime(LocalTime.of(11, 0)); // 现有票11:00到达
         
-        when(trainStopRepository.findByStopId(1L)).thenReturn(Optional.of(departureStop));
-        when(trainStopRepository.findByStopId(2L)).thenReturn(Optional.of(arrivalStop));
-        when(trainStopRepository.findByStopId(3L)).thenReturn(Optional.of(existingDepartureStop));
-        when(trainStopRepository.findByStopId(4L)).thenReturn(Optional.of(existingArrivalStop));
-        when(ticketRepository.findValidTicketsByPassengerAndDate(anyLong(), eq(LocalDate.now().minusDays(1))))
-            .thenReturn(Collections.emptyList());
-        when(ticketRepository.findValidTicketsByPassengerAndDate(anyLong(), eq(LocalDate.now())))
-            .thenReturn(Arrays.asList(existingTicket));
+        when(timetableCache.getStop(1L)).thenReturn(Optional.of(departureStop));
+        when(timetableCache.getStop(2L)).thenReturn(Optional.of(arrivalStop));
+        when(timetableCache.getStop(3L)).thenReturn(Optional.of(existingDepartureStop));
+        when(timetableCache.getStop(4L)).thenReturn(Optional.of(existingArrivalStop));
+        givenTickets(existingTicket);
 
         List<Ticket> result = timeConflictService.checkTimeConflict(1L, LocalDate.now(), 1, 1L, 2L);
         assertNotNull(result);
@@ -454,8 +509,8 @@ class TimeConflictServiceTest {
         TrainStop arrivalStop = new TrainStop();
         arrivalStop.setArrivalTime(LocalTime.of(6, 0)); // 早上6点到达
         
-        when(trainStopRepository.findByStopId(3L)).thenReturn(Optional.of(departureStop));
-        when(trainStopRepository.findByStopId(4L)).thenReturn(Optional.of(arrivalStop));
+        when(timetableCache.getStop(3L)).thenReturn(Optional.of(departureStop));
+        when(timetableCache.getStop(4L)).thenReturn(Optional.of(arrivalStop));
         
         List<Ticket> conflictTickets = Arrays.asList(conflictTicket);
         String result = timeConflictService.generateConflictMessage(conflictTickets);
@@ -468,4 +523,156 @@ class TimeConflictServiceTest {
         // 应该显示跨天信息
         assertTrue(result.contains("~"));
     }
-} 
\ No newline at end of file
+
+    private Ticket createTicket(Long ticketId, Long departureStopId, Long arrivalStopId) {
+        Ticket ticket = new Ticket();
+        ticket.setTicketId(ticketId);
+        ticket.setTrainId(2);
+        ticket.setDepartureStopId(departureStopId);
+        ticket.setArrivalStopId(arrivalStopId);
+        ticket.setTravelDate(LocalDate.now());
+        ticket.setTicketNumber("T00" + ticketId);
+        return ticket;
+    }
+
+    private void givenStop(Long stopId, LocalTime departureTime, LocalTime arrivalTime) {
+        TrainStop stop = new TrainStop();
+        stop.setDepartureTime(departureTime);
+        stop.setArrivalTime(arrivalTime);
+        when(timetableCache.getStop(stopId)).thenReturn(Optional.of(stop));
+    }
+
+    @Test
+    void testCheckTimeConflict_ExcludesOriginalTicket() {
+        // 改签时原票与新票时间重叠，不算冲突
+        givenStop(1L, LocalTime.of(9, 0), null);
+        givenStop(2L, null, LocalTime.of(11, 0));
+        givenStop(3L, LocalTime.of(9, 30), null);
+        givenStop(4L, null, LocalTime.of(10, 30));
+        givenTickets(createTicket(5L, 3L, 4L));
+
+        List<Ticket> result = timeConflictService.checkTimeConflict(1L, LocalDate.now(), 1, 1L, 2L, 5L);
+
+        assertTrue(result.isEmpty());
+        verify(ticketRepository, never()).findAllById(any());
+    }
+
+    @Test
+    void testCheckTimeConflict_AdjacentTripsDoNotConflict() {
+        // 现有票10:00到达，新票10:00出发
+        givenStop(1L, LocalTime.of(10, 0), null);
+        givenStop(2L, null, LocalTime.of(12, 0));
+        givenStop(3L, LocalTime.of(8, 0), null);
+        givenStop(4L, null, LocalTime.of(10, 0));
+        givenTickets(createTicket(5L, 3L, 4L));
+
+        List<Ticket> result = timeConflictService.checkTimeConflict(1L, LocalDate.now(), 1, 1L, 2L);
+
+        assertTrue(result.isEmpty());
+    }
+
+    @Test
+    void testCheckTimeConflict_SameDepartureLongerExistingTrip() {
+        // 同时出发、现有票更晚到达，同样冲突
+        givenStop(1L, LocalTime.of(9, 0), null);
+        givenStop(2L, null, LocalTime.of(10, 0));
+        givenStop(3L, LocalTime.of(9, 0), null);
+        givenStop(4L, null, LocalTime.of(12, 0));
+        givenTickets(createTicket(5L, 3L, 4L));
+
+        List<Ticket> result = timeConflictService.checkTimeConflict(1L, LocalDate.now(), 1, 1L, 2L);
+
+        assertEquals(1, result.size());
+    }
+
+    @Test
+    void testCheckTimeConflict_SingleLoadRegardlessOfTicketCount() {
+        // 乘客有很多车票，检查只加载一次索引，没有重叠时不回表
+        givenStop(1L, LocalTime.of(20, 0), null);
+        givenStop(2L, null, LocalTime.of(22, 0));
+        givenStop(3L, LocalTime.of(8, 0), null);
+        givenStop(4L, null, LocalTime.of(10, 0));
+        Ticket[] tickets = new Ticket[30];
+        for (int i = 0; i < tickets.length; i++) {
+            tickets[i] = createTicket((long) i + 1, 3L, 4L);
+            tickets[i].setTravelDate(LocalDate.now().plusDays(i));
+        }
+        givenTickets(tickets);
+
+        assertTrue(timeConflictService.checkTimeConflict(1L, LocalDate.now(), 1, 1L, 2L).isEmpty());
+        assertTrue(timeConflictService.checkTimeConflict(1L, LocalDate.now().plusDays(1), 1, 1L, 2L).isEmpty());
+
+        verify(ticketRepository, times(1)).findValidTicketsByPassengerFrom(eq(1L), any(LocalDate.class));
+        verify(ticketRepository, never()).findAllById(any());
+        verify(zSetOperations, times(2)).rangeByScore(anyString(), anyDouble(), anyDouble());
+    }
+
+    @Test
+    void testCheckTimeConflict_StaleIndexEntryRemoved() {
+        // 索引中仍有车票，但数据库中已退票
+        givenStop(1L, LocalTime.of(9, 0), null);
+        givenStop(2L, null, LocalTime.of(11, 0));
+        givenStop(3L, LocalTime.of(9, 30), null);
+        givenStop(4L, null, LocalTime.of(10, 30));
+        Ticket refunded = createTicket(5L, 3L, 4L);
+        givenTickets(refunded);
+        timeConflictService.checkTimeConflict(1L, LocalDate.now(), 1, 1L, 2L);
+        refunded.setTicketStatus((byte) 3);
+
+        List<Ticket> result = timeConflictService.checkTimeConflict(1L, LocalDate.now(), 1, 1L, 2L);
+
+        assertTrue(result.isEmpty());
+        assertEquals(Set.of("loaded"), itinerary.keySet());
+    }
+
+    @Test
+    void testCheckTimeConflict_SeesTicketBookedThroughProcessOrders() {
+        // 下单前检查无冲突，分区消费者批量出票后，同一时段再次下单应检测到冲突
+        givenStop(1L, LocalTime.of(9, 0), null);
+        givenStop(2L, null, LocalTime.of(11, 0));
+        givenTickets();
+        assertTrue(timeConflictService.checkTimeConflict(1L, LocalDate.now(), 1, 1L, 2L).isEmpty());
+
+        OrderProcessor orderProcessor = new OrderProcessor();
+        OrderBatchDAO orderBatchDAO = mock(OrderBatchDAO.class);
+        TicketPriceCache ticketPriceCache = mock(TicketPriceCache.class);
+        ReflectionTestUtils.setField(orderProcessor, "seatService", mock(SeatService.class));
+        ReflectionTestUtils.setField(orderProcessor, "ticketPriceCache", ticketPriceCache);
+        ReflectionTestUtils.setField(orderProcessor, "orderBatchDAO", orderBatchDAO);
+        ReflectionTestUtils.setField(orderProcessor, "redisService", mock(RedisService.class));
+        ReflectionTestUtils.setField(orderProcessor, "passengerItineraryIndex", passengerItineraryIndex);
+        when(ticketPriceCache.getBasePrice(anyInt(), anyLong(), anyLong(), any(LocalDate.class), anyInt()))
+                .thenReturn(Optional.of(new BigDecimal(100)));
+        when(orderBatchDAO.findExistingOrderNumbers(anyCollection())).thenReturn(new HashSet<>());
+        // 批量插入回填车票ID
+        List<Ticket> booked = new ArrayList<>();
+        doAnswer(invocation -> {
+            Map<String, List<Ticket>> ticketsByNumber = invocation.getArgument(1);
+            for (List<Ticket> tickets : ticketsByNumber.values()) {
+                for (Ticket ticket : tickets) {
+                    ticket.setTicketId(100L + booked.size());
+                    booked.add(ticket);
+                }
+            }
+            return null;
+        }).when(orderBatchDAO).insertOrdersWithTickets(anyList(), anyMap());
+
+        OrderMessage message = new OrderMessage();
+        message.setOrderNumber("O1");
+        message.setUserId(1L);
+        message.setTrainId(1);
+        message.setDepartureStopId(1L);
+        message.setArrivalStopId(2L);
+        message.setTravelDate(LocalDate.now());
+        message.setPassengers(Arrays.asList(new OrderMessage.PassengerInfo(1L, (byte) 1, 1)));
+        orderProcessor.processOrders(Arrays.asList(message));
+        when(ticketRepository.findAllById(any())).thenReturn(booked);
+
+        List<Ticket> result = timeConflictService.checkTimeConflict(1L, LocalDate.now(), 2, 1L, 2L);
+
+        assertEquals(1, result.size());
+        assertEquals(100L, result.get(0).getTicketId());
+        // 索引已加载，不需要重新从数据库加载
+        verify(ticketRepository, times(1)).findValidTicketsByPassengerFrom(eq(1L), any(LocalDate.class));
+    }
+}
@@ -0,0 +1,55 @@
+package com.example.techprototype.Util;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class IntervalMaskTableTest {
+
+    @Test
+    void testGetMask_MatchesGeneratedMask() {
+        // Given
+        IntervalMaskTable table = IntervalMaskTable.build(40);
+
+        // When & Then - 表中每个区间与直接生成的掩码一致
+        assertEquals(2, table.getWords());
+        for (int dep = 1; dep < 40; dep++) {
+            for (int arr = dep + 1; arr <= 40; arr++) {
+                assertArrayEquals(SeatBitmapUtil.generateIntervalMask(dep, arr, 2), table.getMask(dep, arr));
+            }
+        }
+    }
+
+    @Test
+    void testGetMask_ReturnsSharedArray() {
+        // Given
+        IntervalMaskTable table = IntervalMaskTable.build(10);
+
+        // When & Then - 重复查询不分配新数组
+        assertSame(table.getMask(2, 5), table.getMask(2, 5));
+        assertEquals(SeatBitmapUtil.generateIntervalMask(2, 5), table.getMask(2, 5)[0]);
+    }
+
+    @Test
+    void testGetMask_InvalidInterval() {
+        // Given
+        IntervalMaskTable table = IntervalMaskTable.build(10);
+
+        // When & Then
+        assertArrayEquals(new long[1], table.getMask(5, 5));
+        assertArrayEquals(new long[1], table.getMask(6, 3));
+        assertThrows(IllegalArgumentException.class, () -> table.getMask(1, 11));
+        assertThrows(IllegalArgumentException.class, () -> table.getMask(0, 3));
+    }
+
+    @Test
+    void testBuild_EmptyTimetable() {
+        // When
+        IntervalMaskTable table = IntervalMaskTable.build(0);
+
+        // Then
+        assertEquals(0, table.getStationCount());
+        assertEquals(1, table.getWords());
+        assertThrows(IllegalArgumentException.class, () -> table.getMask(1, 2));
+    }
+}
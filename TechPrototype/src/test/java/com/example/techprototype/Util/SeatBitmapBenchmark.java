@@ -0,0 +1,116 @@
+package com.example.techprototype.Util;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 区间位图基准测试：单字位图(long) 与 多字位图(long[]) 的冲突检查、锁定、释放
+ * 模拟在1000个座位中逐个检查并锁定第一个可用座位
+ * 运行方式：执行main方法，或 mvn test-compile 后用 org.openjdk.jmh.Main 指定本类
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SeatBitmapBenchmark {
+
+    private static final int SEAT_COUNT = 1000;
+
+    // 车次站点数：32站以内为单字，40和96站分别为2字和3字
+    @Param({"20", "40", "96"})
+    private int stationCount;
+
+    private int words;
+    private long[] singleWordBitmaps;
+    private long[] multiWordBitmaps;
+    private long singleWordMask;
+    private long[] multiWordMask;
+    private IntervalMaskTable maskTable;
+
+    @Setup
+    public void setUp() {
+        words = SeatBitmapUtil.wordCount(stationCount);
+        singleWordBitmaps = new long[SEAT_COUNT];
+        multiWordBitmaps = new long[SEAT_COUNT * words];
+
+        // 随机占用约90%的座位，使扫描需要经过大部分座位
+        Random random = new Random(42);
+        int shortRoute = Math.min(stationCount, SeatBitmapUtil.STATIONS_PER_WORD);
+        for (int i = 0; i < SEAT_COUNT; i++) {
+            if (random.nextInt(10) == 0) {
+                continue;
+            }
+            int dep = 1 + random.nextInt(shortRoute - 1);
+            int arr = dep + 1 + random.nextInt(shortRoute - dep);
+            singleWordBitmaps[i] = SeatBitmapUtil.generateIntervalMask(dep, arr);
+            dep = 1 + random.nextInt(stationCount - 1);
+            arr = dep + 1 + random.nextInt(stationCount - dep);
+            SeatBitmapUtil.lock(multiWordBitmaps, i * words, SeatBitmapUtil.generateIntervalMask(dep, arr, words));
+        }
+
+        singleWordMask = SeatBitmapUtil.generateIntervalMask(1, shortRoute);
+        multiWordMask = SeatBitmapUtil.generateIntervalMask(1, stationCount, words);
+        maskTable = IntervalMaskTable.build(stationCount);
+    }
+
+    @Benchmark
+    public int singleWordScanAndLock() {
+        for (int i = 0; i < SEAT_COUNT; i++) {
+            if (SeatBitmapUtil.isAvailable(singleWordBitmaps[i], singleWordMask)) {
+                singleWordBitmaps[i] |= singleWordMask;
+                singleWordBitmaps[i] &= ~singleWordMask; // 立即释放，保持状态不变
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    @Benchmark
+    public int multiWordScanAndLock() {
+        for (int i = 0; i < SEAT_COUNT; i++) {
+            int offset = i * words;
+            if (SeatBitmapUtil.isAvailable(multiWordBitmaps, offset, multiWordMask)) {
+                SeatBitmapUtil.lock(multiWordBitmaps, offset, multiWordMask);
+                SeatBitmapUtil.release(multiWordBitmaps, offset, multiWordMask); // 立即释放，保持状态不变
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    @Benchmark
+    public long[] fillIntervalMask() {
+        SeatBitmapUtil.fillIntervalMask(multiWordMask, 1, stationCount);
+        return multiWordMask;
+    }
+
+    @Benchmark
+    public long[] maskTableLookup() {
+        return maskTable.getMask(1, stationCount);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options options = new OptionsBuilder()
+                .include(SeatBitmapBenchmark.class.getSimpleName())
+                .build();
+        new Runner(options).run();
+    }
+}
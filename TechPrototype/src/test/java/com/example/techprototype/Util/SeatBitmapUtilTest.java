@@ -1,57 +1,57 @@
 package com.example.techprototype.Util;
 
-import com.example.techprototype.Entity.Seat;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
 import java.time.LocalDate;
+import java.util.HashSet;
+import java.util.Set;
 
 import static org.junit.jupiter.api.Assertions.*;
 
 class SeatBitmapUtilTest {
-    private Seat seat;
-    private LocalDate testDate;
+    private static final int HORIZON_DAYS = 30;
+    private LocalDate today;
 
     @BeforeEach
     void setUp() {
-        seat = new Seat();
-        seat.setSeatId(1L);
-        seat.setSeatNumber("1A");
-        seat.setCarriageId(1L);
-        seat.setDate1(0L);
-        seat.setDate2(0L);
-        seat.setDate3(0L);
-        seat.setDate4(0L);
-        seat.setDate5(0L);
-        seat.setDate6(0L);
-        seat.setDate7(0L);
-        seat.setDate8(0L);
-        seat.setDate9(0L);
-        seat.setDate10(0L);
-        
-        // 使用基准日期作为测试日期
-        testDate = SeatBitmapUtil.BASE_DATE;
+        today = LocalDate.of(2025, 7, 1);
     }
 
     @Test
-    void testGetDateIndex_ValidDate() {
-        LocalDate validDate = SeatBitmapUtil.BASE_DATE;
-        assertEquals(1, SeatBitmapUtil.getDateIndex(validDate));
-        
-        validDate = SeatBitmapUtil.BASE_DATE.plusDays(4);
-        assertEquals(5, SeatBitmapUtil.getDateIndex(validDate));
-        
-        validDate = SeatBitmapUtil.BASE_DATE.plusDays(9);
-        assertEquals(10, SeatBitmapUtil.getDateIndex(validDate));
+    void testIsWithinWindow_ValidDate() {
+        assertTrue(SeatBitmapUtil.isWithinWindow(today, today, HORIZON_DAYS));
+        assertTrue(SeatBitmapUtil.isWithinWindow(today.plusDays(4), today, HORIZON_DAYS));
+        assertTrue(SeatBitmapUtil.isWithinWindow(today.plusDays(HORIZON_DAYS - 1), today, HORIZON_DAYS));
     }
 
     @Test
-    void testGetDateIndex_InvalidDate() {
-        LocalDate invalidDate = SeatBitmapUtil.BASE_DATE.minusDays(1);
-        assertEquals(-1, SeatBitmapUtil.getDateIndex(invalidDate));
-        
-        invalidDate = SeatBitmapUtil.BASE_DATE.plusDays(10);
-        assertEquals(-1, SeatBitmapUtil.getDateIndex(invalidDate));
+    void testIsWithinWindow_InvalidDate() {
+        assertFalse(SeatBitmapUtil.isWithinWindow(today.minusDays(1), today, HORIZON_DAYS));
+        assertFalse(SeatBitmapUtil.isWithinWindow(today.plusDays(HORIZON_DAYS), today, HORIZON_DAYS));
+    }
+
+    @Test
+    void testGetSlotIndex_DistinctWithinWindow() {
+        // 窗口内每个日期对应不同槽位
+        Set<Integer> slots = new HashSet<>();
+        for (int i = 0; i < HORIZON_DAYS; i++) {
+            int slot = SeatBitmapUtil.getSlotIndex(today.plusDays(i), HORIZON_DAYS);
+            assertTrue(slot >= 0 && slot < HORIZON_DAYS);
+            slots.add(slot);
+        }
+        assertEquals(HORIZON_DAYS, slots.size());
+    }
+
+    @Test
+    void testGetSlotIndex_ExpiredDateReusedByNewDate() {
+        // 跨天后，过期日期的槽位由新进入窗口的日期复用
+        LocalDate expired = today.minusDays(1);
+        LocalDate newest = expired.plusDays(HORIZON_DAYS);
+        assertEquals(SeatBitmapUtil.getSlotIndex(expired, HORIZON_DAYS), SeatBitmapUtil.getSlotIndex(newest, HORIZON_DAYS));
+        // 跨月、跨年连续
+        assertEquals((SeatBitmapUtil.getSlotIndex(LocalDate.of(2025, 12, 31), HORIZON_DAYS) + 1) % HORIZON_DAYS,
+                SeatBitmapUtil.getSlotIndex(LocalDate.of(2026, 1, 1), HORIZON_DAYS));
     }
 
     @Test
@@ -80,56 +80,98 @@ class SeatBitmapUtilTest {
     }
 
     @Test
-    void testIsSeatAvailable_Available() {
-        long intervalMask = SeatBitmapUtil.generateIntervalMask(1, 2);
-        
-        assertTrue(SeatBitmapUtil.isSeatAvailable(seat, testDate, intervalMask));
+    void testGenerateIntervalMask_MoreThan32StopsRejected() {
+        // 单个long最多表示32个站点
+        assertEquals(1L << 62 | 1L << 61, SeatBitmapUtil.generateIntervalMask(31, 32));
+        assertThrows(IllegalArgumentException.class, () -> SeatBitmapUtil.generateIntervalMask(1, 33));
     }
 
     @Test
-    void testIsSeatAvailable_NotAvailable() {
-        long intervalMask = SeatBitmapUtil.generateIntervalMask(1, 2);
+    void testWordCount() {
+        assertEquals(1, SeatBitmapUtil.wordCount(0));
+        assertEquals(1, SeatBitmapUtil.wordCount(5));
+        assertEquals(1, SeatBitmapUtil.wordCount(32));
+        assertEquals(2, SeatBitmapUtil.wordCount(33));
+        assertEquals(2, SeatBitmapUtil.wordCount(64));
+        assertEquals(3, SeatBitmapUtil.wordCount(65));
+    }
+
+    @Test
+    void testGenerateIntervalMask_MultiWordMatchesSingleWord() {
+        // 32站以内，多字掩码的第一个字与单字掩码一致
+        for (int dep = 1; dep < 32; dep++) {
+            for (int arr = dep + 1; arr <= 32; arr++) {
+                long[] mask = SeatBitmapUtil.generateIntervalMask(dep, arr, 2);
+                assertEquals(SeatBitmapUtil.generateIntervalMask(dep, arr), mask[0]);
+                assertEquals(0L, mask[1]);
+            }
+        }
+    }
+
+    @Test
+    void testGenerateIntervalMask_MultiWordAcrossBoundary() {
+        // 区间30:35跨越第一个字：站点30离开(bit59)到站点35到达(bit68)
+        long[] mask = SeatBitmapUtil.generateIntervalMask(30, 35, 2);
+        assertEquals(-1L << 59, mask[0]);
+        assertEquals(0b11111L, mask[1]);
+        
+        // 区间33:40完全位于第二个字
+        mask = SeatBitmapUtil.generateIntervalMask(33, 40, 2);
+        assertEquals(0L, mask[0]);
+        assertEquals(SeatBitmapUtil.generateIntervalMask(1, 8), mask[1]);
+        
+        // 无效区间
+        mask = SeatBitmapUtil.generateIntervalMask(5, 5, 2);
+        assertArrayEquals(new long[2], mask);
+        
+        // 超出位图容量
+        assertThrows(IllegalArgumentException.class, () -> SeatBitmapUtil.generateIntervalMask(1, 40, 1));
+    }
+
+    @Test
+    void testFillIntervalMask_ReusesArray() {
+        long[] mask = SeatBitmapUtil.generateIntervalMask(1, 40, 2);
         
-        // 先锁定座位
-        SeatBitmapUtil.lockSeat(seat, testDate, intervalMask);
+        SeatBitmapUtil.fillIntervalMask(mask, 1, 2);
         
-        // 检查是否不可用
-        assertFalse(SeatBitmapUtil.isSeatAvailable(seat, testDate, intervalMask));
+        assertArrayEquals(new long[]{6L, 0L}, mask);
     }
 
     @Test
-    void testIsSeatAvailable_InvalidDate() {
-        LocalDate invalidDate = SeatBitmapUtil.BASE_DATE.minusDays(1);
-        long intervalMask = SeatBitmapUtil.generateIntervalMask(1, 2);
+    void testMultiWordLockAndRelease() {
+        // 两个座位各占2个字
+        long[] bitmap = new long[4];
+        long[] longMask = SeatBitmapUtil.generateIntervalMask(30, 40, 2);
+        long[] shortMask = SeatBitmapUtil.generateIntervalMask(1, 20, 2);
         
-        assertFalse(SeatBitmapUtil.isSeatAvailable(seat, invalidDate, intervalMask));
+        SeatBitmapUtil.lock(bitmap, 2, longMask);
+        
+        assertTrue(SeatBitmapUtil.isAvailable(bitmap, 0, longMask));
+        assertFalse(SeatBitmapUtil.isAvailable(bitmap, 2, longMask));
+        assertTrue(SeatBitmapUtil.isAvailable(bitmap, 2, shortMask));
+        
+        SeatBitmapUtil.release(bitmap, 2, longMask);
+        
+        assertTrue(SeatBitmapUtil.isAvailable(bitmap, 2, longMask));
+        assertArrayEquals(new long[4], bitmap);
     }
 
     @Test
-    void testLockSeat() {
+    void testIsAvailable_Available() {
         long intervalMask = SeatBitmapUtil.generateIntervalMask(1, 2);
         
-        SeatBitmapUtil.lockSeat(seat, testDate, intervalMask);
-        
-        // 验证座位已被锁定
-        assertFalse(SeatBitmapUtil.isSeatAvailable(seat, testDate, intervalMask));
-        assertEquals(6L, seat.getDate1()); // 二进制: 0110
+        assertTrue(SeatBitmapUtil.isAvailable(0L, intervalMask));
+        // 区间3:4不影响区间1:2
+        assertTrue(SeatBitmapUtil.isAvailable(SeatBitmapUtil.generateIntervalMask(3, 4), intervalMask));
     }
 
     @Test
-    void testReleaseSeat() {
+    void testIsAvailable_NotAvailable() {
         long intervalMask = SeatBitmapUtil.generateIntervalMask(1, 2);
         
-        // 先锁定座位
-        SeatBitmapUtil.lockSeat(seat, testDate, intervalMask);
-        assertFalse(SeatBitmapUtil.isSeatAvailable(seat, testDate, intervalMask));
-        
-        // 释放座位
-        SeatBitmapUtil.releaseSeat(seat, testDate, intervalMask);
-        
-        // 验证座位已被释放
-        assertTrue(SeatBitmapUtil.isSeatAvailable(seat, testDate, intervalMask));
-        assertEquals(0L, seat.getDate1());
+        assertFalse(SeatBitmapUtil.isAvailable(intervalMask, intervalMask));
+        // 区间1:3与区间2:4重叠
+        assertFalse(SeatBitmapUtil.isAvailable(SeatBitmapUtil.generateIntervalMask(1, 3), SeatBitmapUtil.generateIntervalMask(2, 4)));
     }
 
     @Test
@@ -145,28 +187,10 @@ class SeatBitmapUtilTest {
         // 测试复杂位图
         long complexBitmap = SeatBitmapUtil.generateIntervalMask(1, 3);
         result = SeatBitmapUtil.bitmapToString(complexBitmap);
-        assertTrue(result.contains("站点"));
-    }
-
-    @Test
-    void testLockAndReleaseMultipleIntervals() {
-        // 锁定区间1:2
-        long mask1 = SeatBitmapUtil.generateIntervalMask(1, 2);
-        SeatBitmapUtil.lockSeat(seat, testDate, mask1);
-        
-        // 锁定区间3:4
-        long mask2 = SeatBitmapUtil.generateIntervalMask(3, 4);
-        SeatBitmapUtil.lockSeat(seat, testDate, mask2);
-        
-        // 验证两个区间都被锁定
-        assertFalse(SeatBitmapUtil.isSeatAvailable(seat, testDate, mask1));
-        assertFalse(SeatBitmapUtil.isSeatAvailable(seat, testDate, mask2));
-        
-        // 释放区间1:2
-        SeatBitmapUtil.releaseSeat(seat, testDate, mask1);
+        assertEquals("站点1离开,站点2经过,站点3到达", result);
         
-        // 验证区间1:2已释放，区间3:4仍被锁定
-        assertTrue(SeatBitmapUtil.isSeatAvailable(seat, testDate, mask1));
-        assertFalse(SeatBitmapUtil.isSeatAvailable(seat, testDate, mask2));
+        // 测试超过5个站点和超过32个站点的位图
+        assertEquals("站点6离开,站点7到达", SeatBitmapUtil.bitmapToString(SeatBitmapUtil.generateIntervalMask(6, 7)));
+        assertEquals("站点32离开,站点33到达", SeatBitmapUtil.bitmapToString(SeatBitmapUtil.generateIntervalMask(32, 33, 2)));
     }
-} 
\ No newline at end of file
+}
\ No newline at end of file
@@ -110,6 +110,18 @@ CREATE TABLE IF NOT EXISTS user_passenger_relation (
     FOREIGN KEY (passenger_id) REFERENCES passengers(passenger_id)
 );
 
+CREATE TABLE IF NOT EXISTS order_outbox (
+    outbox_id BIGINT AUTO_INCREMENT PRIMARY KEY,
+    order_number VARCHAR(32) NOT NULL UNIQUE,
+    exchange VARCHAR(64) NOT NULL,
+    routing_key VARCHAR(64) NOT NULL,
+    payload TEXT NOT NULL,
+    status TINYINT NOT NULL,
+    attempts INT NOT NULL,
+    created_time TIMESTAMP NOT NULL,
+    sent_time TIMESTAMP
+);
+
 -- 插入测试数据
 INSERT INTO trains (train_id, train_number, train_type, departure_time, arrival_time, duration_minutes) VALUES
 (1, 'G11', '高铁', '8:00:00', '10:00:00', 120),